@@ -1,5 +1,6 @@
 // Implements A* Search Algorithm for emergency routing considering traffic conditions
 import java.util.*;
+import java.util.concurrent.CancellationException;
 
 public class AStarSearch {
 
@@ -19,6 +20,15 @@ public class AStarSearch {
      * while considering traffic conditions based on the time of day.
      */
     public static List<Integer> findPath(Graph graph, TrafficData trafficData, int startId, int goalId, TrafficTime time) {
+        return findPath(graph, trafficData, startId, goalId, time, SearchProgress.NONE);
+    }
+
+    /**
+     * Same search, reporting the road that reached each settled node to progress.
+     * Throws CancellationException as soon as progress is cancelled.
+     */
+    public static List<Integer> findPath(Graph graph, TrafficData trafficData, int startId, int goalId, TrafficTime time,
+                                         SearchProgress progress) {
         // gScore stores the actual cost from start node to each node
         Map<Integer, Double> gScore = new HashMap<>();
 
@@ -44,10 +54,23 @@ public class AStarSearch {
         PriorityQueue<NodeRecord> openSet = new PriorityQueue<>(Comparator.comparingDouble(a -> a.f));
         openSet.add(new NodeRecord(startId, fScore.get(startId)));
 
+        // Search metrics (recorded only when SearchMetrics is enabled)
+        long startTime = SearchMetrics.start(); // 0 when metrics are off
+        boolean watched = progress != SearchProgress.NONE;
+        Set<Integer> settledNodes = startTime != 0 || watched ? new HashSet<>() : null; // Only tracked for metrics/progress
+        Map<Integer, Edge> cameFromEdge = watched ? new HashMap<>() : null; // Road that reached each node
+        int relaxed = 0, pushes = 1, stalePops = 0;
+
         // Main loop: continues until there are no nodes left to explore
         while (!openSet.isEmpty()) {
             // Get the node with the lowest fScore
             int current = openSet.poll().nodeId;
+            if (settledNodes != null && !settledNodes.add(current)) {
+                stalePops++; // Popped again after a better path was found
+            } else if (watched) {
+                if (progress.isCancelled()) throw new CancellationException("A* search cancelled");
+                progress.edgeAdded(cameFromEdge.get(current), settledNodes.size(), graph.nodes.size());
+            }
 
             // If we reached the goal, stop the loop
             if (current == goalId) break;
@@ -75,11 +98,13 @@ public class AStarSearch {
 
                 // Tentative gScore (current path cost + cost to neighbor)
                 double tentativeG = gScore.get(current) + effectiveDistance;
+                relaxed++;
 
                 // If this path to neighbor is better than any previous one
                 if (tentativeG < gScore.get(neighbor)) {
                     // Record this path as the best so far
                     cameFrom.put(neighbor, current);
+                    if (watched) cameFromEdge.put(neighbor, edge);
 
                     // Update cost scores
                     gScore.put(neighbor, tentativeG);
@@ -87,9 +112,11 @@ public class AStarSearch {
 
                     // Add neighbor to the open set for future exploration
                     openSet.add(new NodeRecord(neighbor, fScore.get(neighbor)));
+                    pushes++;
                 }
             }
         }
+        SearchMetrics.record("astar", startTime, settledNodes == null ? 0 : settledNodes.size(), relaxed, pushes, stalePops);
 
         // Reconstruct the path from goal to start using the cameFrom map
         List<Integer> path = new ArrayList<>();
@@ -0,0 +1,214 @@
+// AlternativeRoutes.java
+// Generates a few short but clearly different routes between two nodes, to spread vehicles over the network
+// Faster than KShortestPaths because it does not enumerate near-identical paths. Two methods:
+// - PLATEAU: build the forward tree from the start and the reverse tree to the end; a stretch of road that is
+//   in both trees (a "plateau") marks a natural alternative via that stretch. Long plateaus are tried first.
+// - PENALTY: repeatedly run Dijkstra, each time making the roads of the routes found so far more expensive.
+// A route is accepted if it is at most maxStretch times the best cost and shares at most maxOverlap of its
+// length with every route accepted before it.
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+public class AlternativeRoutes {
+
+    public enum Method { PLATEAU, PENALTY }
+
+    private final CompactGraph graph; // Array form of the road network
+    private final double[] weights; // Cost of every arc
+    private final ThreadLocal<SearchWorkspace> forwardTrees; // Per-thread trees from the start (also used by PENALTY)
+    private final ThreadLocal<SearchWorkspace> backwardTrees; // Per-thread reverse trees to the end
+
+    public double maxStretch = 1.4; // Accepted routes cost at most this times the shortest route
+    public double maxOverlap = 0.7; // Max share of a route's cost on roads of an already accepted route
+    public double penaltyFactor = 0.3; // PENALTY method: cost increase of a used road per round
+
+    public AlternativeRoutes(CompactGraph graph, double[] weights) {
+        this.graph = graph;
+        this.weights = weights;
+        this.forwardTrees = ThreadLocal.withInitial(() -> new SearchWorkspace(graph.nodeCount));
+        this.backwardTrees = ThreadLocal.withInitial(() -> new SearchWorkspace(graph.nodeCount));
+    }
+
+    // Engine using the same traffic-weighted lengths as TrafficDijkstra for a time of day
+    public static AlternativeRoutes forTraffic(CompactGraph graph, TrafficData trafficData, TrafficTime time) {
+        return new AlternativeRoutes(graph, graph.trafficWeights(trafficData, time));
+    }
+
+    // Returns up to count routes from startId to endId, cheapest first. Both methods start from the shortest
+    // route (the forward tree's path for PLATEAU, the first round for PENALTY), so it is always the first one.
+    public List<Route> findRoutes(int startId, int endId, int count, Method method) {
+        int source = graph.indexOf(startId);
+        int target = graph.indexOf(endId);
+        if (source < 0 || target < 0 || count <= 0) return new ArrayList<>();
+        return method == Method.PLATEAU
+                ? plateauRoutes(source, target, count)
+                : penaltyRoutes(source, target, count);
+    }
+
+    // ----------- Plateau method -----------
+
+    private List<Route> plateauRoutes(int source, int target, int count) {
+        SearchWorkspace forward = forwardTrees.get();
+        SearchWorkspace backward = backwardTrees.get();
+        CompactDijkstra.shortestPathTree(graph, weights, source, false, forward);
+        CompactDijkstra.shortestPathTree(graph, weights, target, true, backward);
+
+        double best = forward.distance(target);
+        if (best == Double.POSITIVE_INFINITY) return new ArrayList<>();
+
+        // nextArc[u] = arc from u towards the target in the reverse tree
+        int[] nextArc = new int[graph.nodeCount];
+        for (int v = 0; v < graph.nodeCount; v++) {
+            int a = backward.parentArc[v];
+            nextArc[v] = (backward.distance(v) == Double.POSITIVE_INFINITY || a < 0) ? -1 : graph.arcTwin[a];
+        }
+
+        // An arc u → v is on a plateau if it is in both trees; chains of such arcs form plateaus.
+        // A plateau starts at a node whose incoming forward-tree arc is not a plateau arc.
+        List<int[]> plateaus = new ArrayList<>(); // {first node, last node}
+        for (int u = 0; u < graph.nodeCount; u++) {
+            if (!onPlateau(u, nextArc, forward)) continue;
+            int parentArc = forward.parentArc[u];
+            if (parentArc >= 0 && nextArc[graph.arcSource(parentArc)] == parentArc) continue; // Not a start
+            int end = u;
+            while (onPlateau(end, nextArc, forward)) end = graph.arcTarget[nextArc[end]];
+            plateaus.add(new int[]{u, end});
+        }
+
+        // The route via a plateau costs forward + backward distance of its first node, so plateaus that are too
+        // long a detour are dropped before any route is built; the rest are built in parallel, longest plateau first
+        List<Candidate> candidates = plateaus.parallelStream()
+                .filter(p -> forward.distance(p[0]) + backward.distance(p[0]) <= maxStretch * best)
+                .map(p -> viaPlateau(source, target, p[0], p[1], forward, nextArc))
+                .filter(Objects::nonNull)
+                .sorted(Comparator.comparingDouble((Candidate c) -> -c.plateauLength).thenComparingDouble(c -> c.cost))
+                .collect(Collectors.toList());
+
+        // The shortest route itself goes first: it is only a single plateau when both trees pick the same path
+        List<Integer> shortestArcs = new ArrayList<>();
+        for (int v = target; v != source; v = graph.arcSource(forward.parentArc[v])) shortestArcs.add(forward.parentArc[v]);
+        Collections.reverse(shortestArcs);
+        candidates.add(0, Candidate.fromArcs(graph, weights, source, shortestArcs));
+
+        return selectDiverse(candidates, count);
+    }
+
+    private boolean onPlateau(int u, int[] nextArc, SearchWorkspace forward) {
+        int a = nextArc[u];
+        return a >= 0 && forward.parentArc[graph.arcTarget[a]] == a;
+    }
+
+    // Route start → plateau start (forward tree), along the plateau, plateau end → target (reverse tree)
+    private Candidate viaPlateau(int source, int target, int first, int last, SearchWorkspace forward, int[] nextArc) {
+        List<Integer> arcs = new ArrayList<>();
+        for (int v = first; v != source; v = graph.arcSource(forward.parentArc[v])) arcs.add(forward.parentArc[v]);
+        Collections.reverse(arcs);
+        double plateauLength = 0;
+        for (int v = first; v != target; v = graph.arcTarget[nextArc[v]]) {
+            arcs.add(nextArc[v]);
+        }
+        for (int v = first; v != last; v = graph.arcTarget[nextArc[v]]) {
+            plateauLength += weights[nextArc[v]];
+        }
+
+        Candidate c = Candidate.fromArcs(graph, weights, source, arcs);
+        if (c == null) return null; // The two tree halves cross each other
+        c.plateauLength = plateauLength;
+        return c;
+    }
+
+    // ----------- Penalty method -----------
+
+    private List<Route> penaltyRoutes(int source, int target, int count) {
+        double[] penalized = weights.clone();
+        SearchWorkspace ws = forwardTrees.get();
+        List<Candidate> found = new ArrayList<>();
+        double best = Double.POSITIVE_INFINITY;
+
+        // A few more rounds than routes requested, since some rounds repeat or fail the filters
+        for (int round = 0; round < count * 3 && found.size() < count * 2; round++) {
+            int[] nodes = CompactDijkstra.findPath(graph, penalized, source, target, ws);
+            if (nodes.length == 0) break;
+            List<Integer> arcs = new ArrayList<>();
+            for (int i = 1; i < nodes.length; i++) arcs.add(ws.parentArc[nodes[i]]);
+
+            Candidate c = Candidate.fromArcs(graph, weights, source, arcs);
+            if (round == 0) best = c.cost;
+            if (c.cost <= maxStretch * best) found.add(c);
+
+            // Make the roads of this route (both directions) more expensive for the next round
+            for (int a : arcs) {
+                penalized[a] += weights[a] * penaltyFactor;
+                penalized[graph.arcTwin[a]] += weights[graph.arcTwin[a]] * penaltyFactor;
+            }
+        }
+        return selectDiverse(found, count);
+    }
+
+    // ----------- Shared selection -----------
+
+    // Keeps candidates in order, skipping any that overlaps too much with an already selected route
+    private List<Route> selectDiverse(List<Candidate> candidates, int count) {
+        List<Candidate> selected = new ArrayList<>();
+        for (Candidate c : candidates) {
+            if (selected.size() == count) break;
+            boolean diverse = true;
+            for (Candidate s : selected) {
+                if (c.sharedCost(s, weights) > maxOverlap * c.cost) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) selected.add(c);
+        }
+        // Cheapest first (the sort is stable, so the shortest route stays ahead of any tie)
+        selected.sort(Comparator.comparingDouble(c -> c.cost));
+
+        List<Route> routes = new ArrayList<>();
+        for (Candidate c : selected) {
+            routes.add(new Route(graph.toNodeIds(c.nodes, c.nodes.length), c.cost));
+        }
+        return routes;
+    }
+
+    // A candidate route: dense nodes, the roads (edge indices) it uses and its cost under the real weights
+    private static class Candidate {
+        int[] nodes;
+        int[] arcs;
+        int[] edges; // Road (edge index) of each arc
+        Set<Integer> edgeSet = new HashSet<>();
+        double cost;
+        double plateauLength;
+
+        // Returns null if the arcs visit a node twice
+        static Candidate fromArcs(CompactGraph graph, double[] weights, int source, List<Integer> arcs) {
+            Candidate c = new Candidate();
+            c.nodes = new int[arcs.size() + 1];
+            c.arcs = new int[arcs.size()];
+            c.edges = new int[arcs.size()];
+            c.nodes[0] = source;
+            Set<Integer> visited = new HashSet<>();
+            visited.add(source);
+            for (int i = 0; i < arcs.size(); i++) {
+                int a = arcs.get(i);
+                c.arcs[i] = a;
+                c.nodes[i + 1] = graph.arcTarget[a];
+                if (!visited.add(c.nodes[i + 1])) return null;
+                c.edges[i] = graph.arcEdge[a];
+                c.edgeSet.add(c.edges[i]);
+                c.cost += weights[a];
+            }
+            return c;
+        }
+
+        // Cost of the roads this route shares with another one
+        double sharedCost(Candidate other, double[] weights) {
+            double shared = 0;
+            for (int i = 0; i < arcs.length; i++) {
+                if (other.edgeSet.contains(edges[i])) shared += weights[arcs[i]];
+            }
+            return shared;
+        }
+    }
+}
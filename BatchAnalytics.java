@@ -0,0 +1,425 @@
+// BatchAnalytics.java
+// Headless batch mode: evaluates many planning scenarios on one network without opening the visualizer
+// Usage: java BatchAnalytics --scenarios scenarios.csv [--out batch_results] [--threads 4] [--trips bin|csv|none]
+//                            [--nodes src/nodes.csv] [--existing src/existing_roads.csv]
+//                            [--potential src/potential_roads.csv] [--traffic src/traffic_data.csv]
+//                            [--routes src/bus_routes.csv]
+//        or: java Main --batch scenarios.csv [same options]
+// Scenario file (one scenario per line, ';' separates list items, '#' starts a comment line):
+//   Name,Time,Trips,RepairBudget,Fleet,NewRoads
+//   base,MORNING,1-109;1-5;2-3,1000,60,none
+//   sweep,EVENING,random:5000,500,40,1-4;1-14
+// - Trips: origin-destination pairs "from-to", or "random:N" for N random pairs (same pairs on every run)
+// - NewRoads: which potential roads are built in the scenario: "none", "all" or a list of "from-to" roads
+// The work runs as a pipeline:
+// 1. load: the network, traffic counts, bus routes and scenarios are read once;
+// 2. index: one CompactGraph, the repair candidates and the arc weights are built once and shared read-only;
+//    weights are cached per (time of day, built roads), so scenarios with the same setting share one array;
+// 3. compute: scenarios run in parallel on a worker pool; trips are grouped by origin so each origin needs
+//    only one shortest-path tree (a single trip stops as soon as its destination is settled);
+// 4. aggregate: results are written in scenario order while later scenarios are still computing:
+//    <out>.csv has one summary line per scenario, <out>.trips.bin (or .trips.csv) the cost of every trip.
+// Binary trip file: int magic 0x53435452 ("SCTR"), int scenario count, then per scenario the name
+// (DataOutput.writeUTF), int trip count and per trip int from, int to, float cost (Infinity if unreachable).
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class BatchAnalytics {
+    public static final int TRIP_FILE_MAGIC = 0x53435452;
+
+    // One line of the scenario file
+    public static class Scenario {
+        public final String name;
+        public final TrafficTime time;
+        public final int[] tripFrom, tripTo; // Node IDs of the origin and destination of each trip
+        public final double repairBudget; // Million EGP available for road repairs
+        public final int fleet; // Buses available for the bus routes
+        public final String newRoads; // "none", "all" or "from-to;from-to..." (normalized)
+
+        public Scenario(String name, TrafficTime time, int[] tripFrom, int[] tripTo, double repairBudget, int fleet, String newRoads) {
+            this.name = name;
+            this.time = time;
+            this.tripFrom = tripFrom;
+            this.tripTo = tripTo;
+            this.repairBudget = repairBudget;
+            this.fleet = fleet;
+            this.newRoads = newRoads;
+        }
+    }
+
+    // What one scenario produced
+    public static class Result {
+        public final Scenario scenario;
+        public final double[] tripCost; // Travel cost of each trip (effective km, Infinity if unreachable)
+        public int reachableTrips;
+        public double totalTripCost; // Sum over the reachable trips
+        public int newRoadCount;
+        public double constructionCost; // Million EGP for the built potential roads
+        public int repairsSelected;
+        public double repairCost, repairBenefit;
+        public int routesServed, busesUsed, passengersServed;
+        public long computeNanos;
+
+        Result(Scenario scenario) {
+            this.scenario = scenario;
+            this.tripCost = new double[scenario.tripFrom.length];
+        }
+
+        public double meanTripCost() {
+            return reachableTrips == 0 ? Double.NaN : totalTripCost / reachableTrips;
+        }
+    }
+
+    private final CompactGraph compact; // Shared read-only by every scenario
+    private final TrafficData trafficData;
+    private final List<BusRoute> busRoutes;
+    private final List<RoadRepair> repairCandidates;
+    private final Map<String, Integer> potentialRoadByKey = new HashMap<>(); // "from-to" → index in compact.edges
+    private final double[][] baseWeights = new double[TrafficTime.values().length][]; // All roads open, per time
+    private final Map<String, double[]> weightCache = new ConcurrentHashMap<>(); // time + built roads → arc weights
+    private final ThreadLocal<SearchWorkspace> workspace;
+
+    // Index stage: everything the scenarios share is built here once
+    public BatchAnalytics(Graph graph, TrafficData trafficData, List<BusRoute> busRoutes) {
+        this.trafficData = trafficData;
+        this.busRoutes = busRoutes;
+        this.compact = CompactGraph.fromGraph(graph);
+        this.workspace = ThreadLocal.withInitial(() -> new SearchWorkspace(compact.nodeCount));
+
+        // Repair candidates, estimated exactly like Main does
+        List<RoadRepair> repairs = new ArrayList<>();
+        for (Edge edge : compact.edges) {
+            if (edge.isExisting && edge.condition < 8) {
+                repairs.add(new RoadRepair(edge, 10 * (10 - edge.condition), edge.distance * edge.capacity * edge.condition));
+            }
+        }
+        this.repairCandidates = Collections.unmodifiableList(repairs);
+
+        for (int e = 0; e < compact.edges.length; e++) {
+            Edge edge = compact.edges[e];
+            if (!edge.isExisting) {
+                potentialRoadByKey.put(edge.from + "-" + edge.to, e);
+                potentialRoadByKey.put(edge.to + "-" + edge.from, e);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String scenarios = null, out = "batch_results", trips = "bin";
+        String nodes = "src/nodes.csv", existing = "src/existing_roads.csv", potential = "src/potential_roads.csv";
+        String traffic = "src/traffic_data.csv", routes = "src/bus_routes.csv";
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 == args.length) throw new IllegalArgumentException("Missing value for " + args[i]);
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--scenarios":
+                case "--batch":
+                    scenarios = value;
+                    break;
+                case "--out":
+                    out = value;
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(value);
+                    break;
+                case "--trips":
+                    trips = value;
+                    break;
+                case "--nodes":
+                    nodes = value;
+                    break;
+                case "--existing":
+                    existing = value;
+                    break;
+                case "--potential":
+                    potential = value;
+                    break;
+                case "--traffic":
+                    traffic = value;
+                    break;
+                case "--routes":
+                    routes = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (scenarios == null) throw new IllegalArgumentException("Missing --scenarios <file>");
+        if (!trips.equals("bin") && !trips.equals("csv") && !trips.equals("none")) {
+            throw new IllegalArgumentException("--trips must be bin, csv or none");
+        }
+
+        // 1. Load
+        long start = System.nanoTime();
+        Graph graph = GraphBuilder.buildGraphFromFiles(nodes, existing, potential);
+        TrafficData trafficData = new TrafficData(traffic);
+        List<BusRoute> busRoutes = readBusRoutes(new File(routes));
+        long loaded = System.nanoTime();
+
+        // 2. Index
+        BatchAnalytics batch = new BatchAnalytics(graph, trafficData, busRoutes);
+        List<Scenario> list = batch.readScenarios(new File(scenarios));
+        long indexed = System.nanoTime();
+        System.out.printf("Loaded %d nodes, %d roads in %d ms; indexed %d scenarios in %d ms%n",
+                graph.nodes.size(), graph.edges.size(), (loaded - start) / 1_000_000,
+                list.size(), (indexed - loaded) / 1_000_000);
+
+        // 3 + 4. Compute in parallel, aggregate in order
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            File summary = new File(out + ".csv");
+            File tripFile = trips.equals("none") ? null : new File(out + ".trips." + trips);
+            batch.run(list, pool, summary, tripFile);
+            System.out.printf("Evaluated %d scenarios in %d ms → %s%s%n", list.size(),
+                    (System.nanoTime() - indexed) / 1_000_000, summary, tripFile == null ? "" : ", " + tripFile);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Runs every scenario on the pool and writes the results in scenario order as soon as each one is done.
+    // tripFile may be null (no per-trip output); its extension picks the format (.csv or binary otherwise).
+    public void run(List<Scenario> scenarios, ExecutorService pool, File summaryFile, File tripFile) throws IOException {
+        List<CompletableFuture<Result>> pending = new ArrayList<>(scenarios.size());
+        for (Scenario scenario : scenarios) {
+            pending.add(CompletableFuture.supplyAsync(() -> evaluate(scenario), pool));
+        }
+
+        boolean tripCsv = tripFile != null && tripFile.getName().endsWith(".csv");
+        try (PrintWriter summary = new PrintWriter(new BufferedWriter(new FileWriter(summaryFile)));
+             OutputStream tripStream = tripFile == null ? OutputStream.nullOutputStream()
+                     : new BufferedOutputStream(new FileOutputStream(tripFile), 1 << 16)) {
+            DataOutputStream tripData = new DataOutputStream(tripStream);
+            PrintWriter tripText = new PrintWriter(new OutputStreamWriter(tripStream));
+            summary.println("Scenario,Time,Trips,Reachable,TotalCost,MeanCost,NewRoads,ConstructionCost,"
+                    + "Repairs,RepairCost,RepairBenefit,Routes,BusesUsed,Passengers,ComputeMs");
+            if (tripCsv) {
+                tripText.println("Scenario,From,To,Cost");
+            } else {
+                tripData.writeInt(TRIP_FILE_MAGIC);
+                tripData.writeInt(scenarios.size());
+            }
+
+            for (CompletableFuture<Result> future : pending) {
+                Result r;
+                try {
+                    r = future.join();
+                } catch (CompletionException e) {
+                    pending.forEach(f -> f.cancel(false)); // Stop queued scenarios; running ones finish
+                    throw e;
+                }
+                Scenario s = r.scenario;
+                summary.printf(Locale.ROOT, "%s,%s,%d,%d,%.3f,%.3f,%d,%.1f,%d,%.1f,%.1f,%d,%d,%d,%.1f%n",
+                        s.name, s.time, s.tripFrom.length, r.reachableTrips, r.totalTripCost, r.meanTripCost(),
+                        r.newRoadCount, r.constructionCost, r.repairsSelected, r.repairCost, r.repairBenefit,
+                        r.routesServed, r.busesUsed, r.passengersServed, r.computeNanos / 1e6);
+                if (tripCsv) {
+                    for (int i = 0; i < r.tripCost.length; i++) {
+                        tripText.printf(Locale.ROOT, "%s,%d,%d,%.3f%n", s.name, s.tripFrom[i], s.tripTo[i], r.tripCost[i]);
+                    }
+                } else {
+                    tripData.writeUTF(s.name);
+                    tripData.writeInt(r.tripCost.length);
+                    for (int i = 0; i < r.tripCost.length; i++) {
+                        tripData.writeInt(s.tripFrom[i]);
+                        tripData.writeInt(s.tripTo[i]);
+                        tripData.writeFloat((float) r.tripCost[i]);
+                    }
+                }
+            }
+            tripText.flush();
+            tripData.flush();
+        }
+    }
+
+    // Compute stage of one scenario (thread-safe: only reads the shared index)
+    public Result evaluate(Scenario s) {
+        long start = System.nanoTime();
+        Result r = new Result(s);
+
+        // New roads and their construction cost
+        double[] weights = weightsFor(s.time, s.newRoads);
+        for (int e : builtRoads(s.newRoads)) {
+            r.newRoadCount++;
+            r.constructionCost += compact.edges[e].cost;
+        }
+
+        // Trips, grouped by origin: one tree per origin instead of one search per trip
+        SearchWorkspace ws = workspace.get();
+        Map<Integer, List<Integer>> tripsByOrigin = new LinkedHashMap<>();
+        for (int i = 0; i < s.tripFrom.length; i++) {
+            tripsByOrigin.computeIfAbsent(s.tripFrom[i], k -> new ArrayList<>()).add(i);
+        }
+        for (Map.Entry<Integer, List<Integer>> entry : tripsByOrigin.entrySet()) {
+            int source = compact.indexOf(entry.getKey());
+            List<Integer> trips = entry.getValue();
+            if (trips.size() == 1) {
+                CompactDijkstra.findPath(compact, weights, source, compact.indexOf(s.tripTo[trips.get(0)]), ws);
+            } else {
+                CompactDijkstra.shortestPathTree(compact, weights, source, false, ws);
+            }
+            for (int trip : trips) {
+                double cost = ws.distance(compact.indexOf(s.tripTo[trip]));
+                r.tripCost[trip] = cost;
+                if (cost != Double.POSITIVE_INFINITY) {
+                    r.reachableTrips++;
+                    r.totalTripCost += cost;
+                }
+            }
+        }
+
+        // Road maintenance within the budget
+        for (RoadRepair repair : MaintenanceOptimizer.optimizeRepairs(repairCandidates, s.repairBudget)) {
+            r.repairsSelected++;
+            r.repairCost += repair.cost;
+            r.repairBenefit += repair.benefit;
+        }
+
+        // Bus allocation with the fleet
+        for (BusRoute route : TransitOptimizer.optimizeBusAllocation(busRoutes, s.fleet)) {
+            r.routesServed++;
+            r.busesUsed += route.busesAssigned;
+            r.passengersServed += route.passengers;
+        }
+
+        r.computeNanos = System.nanoTime() - start;
+        return r;
+    }
+
+    // Arc weights for a time of day with only the given potential roads open (cached and shared)
+    private double[] weightsFor(TrafficTime time, String newRoads) {
+        return weightCache.computeIfAbsent(time + "|" + newRoads, key -> {
+            double[] base = baseWeights(time);
+            if (newRoads.equals("all")) return base;
+            double[] weights = base.clone();
+            boolean[] built = new boolean[compact.edges.length];
+            for (int e : builtRoads(newRoads)) built[e] = true;
+            for (int a = 0; a < compact.arcCount; a++) {
+                int e = compact.arcEdge[a];
+                if (!compact.edges[e].isExisting && !built[e]) weights[a] = Double.POSITIVE_INFINITY; // Not built
+            }
+            return weights;
+        });
+    }
+
+    private synchronized double[] baseWeights(TrafficTime time) {
+        if (baseWeights[time.ordinal()] == null) {
+            baseWeights[time.ordinal()] = compact.trafficWeights(trafficData, time);
+        }
+        return baseWeights[time.ordinal()];
+    }
+
+    // Positions in compact.edges of the potential roads a NewRoads value builds
+    private List<Integer> builtRoads(String newRoads) {
+        List<Integer> built = new ArrayList<>();
+        if (newRoads.equals("none")) return built;
+        if (newRoads.equals("all")) {
+            for (int e = 0; e < compact.edges.length; e++) {
+                if (!compact.edges[e].isExisting) built.add(e);
+            }
+            return built;
+        }
+        for (String key : newRoads.split(";")) built.add(potentialRoadByKey.get(key));
+        return built;
+    }
+
+    // Reads and checks the scenario file; every node and potential road must exist in the network
+    public List<Scenario> readScenarios(File file) throws IOException {
+        List<Scenario> scenarios = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || line.startsWith("Name,")) continue; // Comment or header
+                try {
+                    Scenario scenario = parseScenario(line);
+                    if (!names.add(scenario.name)) throw new IllegalArgumentException("duplicate scenario " + scenario.name);
+                    scenarios.add(scenario);
+                } catch (RuntimeException e) {
+                    throw new IllegalArgumentException(file + ":" + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        return scenarios;
+    }
+
+    private Scenario parseScenario(String line) {
+        String[] parts = line.split(",", -1);
+        if (parts.length != 6) throw new IllegalArgumentException("expected 6 columns, found " + parts.length);
+        String name = parts[0].trim();
+        TrafficTime time = TrafficTime.valueOf(parts[1].trim().toUpperCase(Locale.ROOT));
+        double budget = Double.parseDouble(parts[3].trim());
+        int fleet = Integer.parseInt(parts[4].trim());
+
+        // Trips
+        String trips = parts[2].trim();
+        int[] from, to;
+        if (trips.startsWith("random:")) {
+            int count = Integer.parseInt(trips.substring("random:".length()));
+            Random random = new Random(name.hashCode()); // The same pairs every run of the same scenario
+            from = new int[count];
+            to = new int[count];
+            for (int i = 0; i < count; i++) {
+                from[i] = compact.nodeIds[random.nextInt(compact.nodeCount)];
+                to[i] = compact.nodeIds[random.nextInt(compact.nodeCount)];
+            }
+        } else {
+            String[] pairs = trips.isEmpty() ? new String[0] : trips.split(";");
+            from = new int[pairs.length];
+            to = new int[pairs.length];
+            for (int i = 0; i < pairs.length; i++) {
+                int[] pair = parsePair(pairs[i]);
+                if (compact.indexOf(pair[0]) < 0 || compact.indexOf(pair[1]) < 0) {
+                    throw new IllegalArgumentException("unknown node in trip " + pairs[i].trim());
+                }
+                from[i] = pair[0];
+                to[i] = pair[1];
+            }
+        }
+
+        // Built potential roads
+        String roads = parts[5].trim().toLowerCase(Locale.ROOT);
+        if (roads.isEmpty()) roads = "none";
+        if (!roads.equals("none") && !roads.equals("all")) {
+            StringJoiner normalized = new StringJoiner(";");
+            for (String road : roads.split(";")) {
+                int[] pair = parsePair(road);
+                String key = pair[0] + "-" + pair[1];
+                if (!potentialRoadByKey.containsKey(key)) throw new IllegalArgumentException("no potential road " + key);
+                normalized.add(key);
+            }
+            roads = normalized.toString();
+        }
+        return new Scenario(name, time, from, to, budget, fleet, roads);
+    }
+
+    private static int[] parsePair(String text) {
+        String[] ends = text.trim().split("-");
+        if (ends.length != 2) throw new IllegalArgumentException("expected from-to, found " + text.trim());
+        return new int[]{Integer.parseInt(ends[0].trim()), Integer.parseInt(ends[1].trim())};
+    }
+
+    // Bus routes file: RouteID,Stops (';' separated node IDs),Buses,DailyPassengers
+    public static List<BusRoute> readBusRoutes(File file) throws IOException {
+        List<BusRoute> routes = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            reader.readLine(); // Skip header
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                String[] parts = line.split(",");
+                List<Integer> stops = new ArrayList<>();
+                for (String stop : parts[1].split(";")) stops.add(Integer.parseInt(stop.trim()));
+                routes.add(new BusRoute(parts[0].trim(), stops, Integer.parseInt(parts[2].trim()), Integer.parseInt(parts[3].trim())));
+            }
+        }
+        return routes;
+    }
+}
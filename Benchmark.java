@@ -0,0 +1,387 @@
+// Benchmark.java
+// Performance regression harness for the algorithm classes, run on generated cities of growing size
+// Usage: java Benchmark [--sizes 1000,10000,100000] [--generators grid,geometric,scalefree] [--seed 42]
+//                       [--warmup 3] [--iterations 5] [--max-seconds 20] [--out results.csv]
+//                       [--baseline previous.csv] [--tolerance 0.25]
+// Each benchmark runs a few warmup operations, then measured ones, and reports:
+// - mean and best time per operation;
+// - bytes allocated per operation (allocation counter of the running thread, com.sun.management.ThreadMXBean);
+// - garbage collections and GC time during the measured operations.
+// Each city is also run under every node ordering (NodeOrdering), with modelled cache misses per ordering.
+// With --baseline, a benchmark whose mean time grew by more than the tolerance is reported as a regression
+// and the exit code is 1, so a build script can stop on it. Large sizes (1M-10M nodes) need a large heap (-Xmx).
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.*;
+
+public class Benchmark {
+    private static final int QUERIES = 20; // Point-to-point queries per operation
+
+    private static volatile long sink; // Results are folded in here so the JIT cannot drop the work
+
+    private int warmup = 3;
+    private int iterations = 5;
+    private double maxSeconds = 20; // Measurement stops early after this much time (at least one operation)
+    private final List<Result> results = new ArrayList<>();
+
+    // One measured benchmark
+    public static class Result {
+        public String generator, benchmark;
+        public int size, operations;
+        public double meanMs, bestMs, allocatedBytesPerOp, gcMs;
+        public long gcCount;
+        public String error; // Set when the benchmark failed (for example StackOverflowError)
+
+        public String key() {
+            return generator + "," + size + "," + benchmark;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = {1000, 10000, 100000};
+        String[] generators = {"grid", "geometric", "scalefree"};
+        long seed = 42;
+        String out = "benchmark_results.csv", baseline = null;
+        double tolerance = 0.25;
+        Benchmark benchmark = new Benchmark();
+
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 == args.length) throw new IllegalArgumentException("Missing value for " + args[i]);
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--sizes":
+                    sizes = Arrays.stream(value.split(",")).mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+                    break;
+                case "--generators":
+                    generators = value.split(",");
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--warmup":
+                    benchmark.warmup = Integer.parseInt(value);
+                    break;
+                case "--iterations":
+                    benchmark.iterations = Integer.parseInt(value);
+                    break;
+                case "--max-seconds":
+                    benchmark.maxSeconds = Double.parseDouble(value);
+                    break;
+                case "--out":
+                    out = value;
+                    break;
+                case "--baseline":
+                    baseline = value;
+                    break;
+                case "--tolerance":
+                    tolerance = Double.parseDouble(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        for (String generator : generators) {
+            for (int size : sizes) {
+                benchmark.runAll(generator, size, seed);
+            }
+        }
+        writeCsv(benchmark.results, out);
+        System.out.println("Results written to " + out);
+
+        if (baseline != null) {
+            List<String> regressions = compare(readCsv(baseline), benchmark.results, tolerance);
+            for (String regression : regressions) System.out.println("⚠️ Regression: " + regression);
+            if (!regressions.isEmpty()) System.exit(1);
+            System.out.println("✅ No regression above " + Math.round(tolerance * 100) + "%");
+        }
+    }
+
+    // All benchmarks on one generated city
+    public void runAll(String generator, int size, long seed) throws IOException {
+        System.out.println("\n📊 " + generator + ", " + size + " nodes");
+        Graph graph = CityGenerator.generate(generator, size, seed);
+        TrafficData traffic = CityGenerator.traffic(graph, seed);
+        System.out.println("Roads: " + graph.edges.size());
+
+        // The same random queries for every algorithm
+        Random random = new Random(seed);
+        List<Integer> ids = new ArrayList<>(graph.nodes.keySet());
+        Collections.sort(ids);
+        int[] from = new int[QUERIES], to = new int[QUERIES];
+        for (int q = 0; q < QUERIES; q++) {
+            from[q] = ids.get(random.nextInt(ids.size()));
+            to[q] = ids.get(random.nextInt(ids.size()));
+        }
+
+        // CSV files for the loading benchmark
+        File directory = Files.createTempDirectory("city").toFile();
+        CityGenerator.writeCsv(graph, traffic, directory);
+        String nodesFile = new File(directory, "nodes.csv").getPath();
+        String existingFile = new File(directory, "existing_roads.csv").getPath();
+        String potentialFile = new File(directory, "potential_roads.csv").getPath();
+
+        measure(generator, size, "GraphBuilder.buildGraphFromFiles", () ->
+                GraphBuilder.buildGraphFromFiles(nodesFile, existingFile, potentialFile).edges.size());
+        measure(generator, size, "Dijkstra.findShortestPaths", () ->
+                Dijkstra.findShortestPaths(graph, from[0]).size());
+        measure(generator, size, "Dijkstra.findShortestPath x" + QUERIES, () -> {
+            long sum = 0;
+            for (int q = 0; q < QUERIES; q++) sum += Dijkstra.findShortestPath(graph, from[q], to[q]).size();
+            return sum;
+        });
+        measure(generator, size, "TrafficDijkstra.findPathWithTraffic x" + QUERIES, () -> {
+            long sum = 0;
+            for (int q = 0; q < QUERIES; q++) {
+                sum += TrafficDijkstra.findPathWithTraffic(graph, traffic, from[q], to[q], TrafficTime.MORNING).size();
+            }
+            return sum;
+        });
+        measure(generator, size, "AStarSearch.findPath x" + QUERIES, () -> {
+            long sum = 0;
+            for (int q = 0; q < QUERIES; q++) sum += AStarSearch.findPath(graph, traffic, from[q], to[q], TrafficTime.MORNING).size();
+            return sum;
+        });
+        measure(generator, size, "MSTBuilder.buildMST", () -> MSTBuilder.buildMST(graph).size());
+        measure(generator, size, "DisjointSet", () -> {
+            DisjointSet ds = new DisjointSet();
+            for (int id : ids) ds.makeSet(id);
+            long unions = 0;
+            for (Edge edge : graph.edges) {
+                if (ds.find(edge.from) != ds.find(edge.to)) {
+                    ds.union(edge.from, edge.to);
+                    unions++;
+                }
+            }
+            return unions;
+        });
+
+        // Knapsack inputs grow with the city but stay within a sensible DP table size
+        List<BusRoute> routes = syntheticRoutes(ids, Math.min(size / 20, 500), random);
+        int buses = Math.min(size / 10, 2000);
+        measure(generator, size, "TransitOptimizer.optimizeBusAllocation", () ->
+                TransitOptimizer.optimizeBusAllocation(routes, buses).size());
+        List<RoadRepair> repairs = new ArrayList<>();
+        for (Edge edge : graph.edges) {
+            if (edge.isExisting && edge.condition < 8 && repairs.size() < 500) {
+                repairs.add(new RoadRepair(edge, 10 * (10 - edge.condition), edge.distance * edge.capacity * edge.condition));
+            }
+        }
+        measure(generator, size, "MaintenanceOptimizer.optimizeRepairs", () ->
+                MaintenanceOptimizer.optimizeRepairs(repairs, 1000).size());
+
+        // Node orderings: the same queries on the CSR graph and on the map-based Graph after renumbering.
+        // There are no hardware counters here, so cache misses are modelled: the dist[] reads of one full
+        // shortest-path tree (8 nodes per 64-byte line) are replayed through an LRU L1 (32 KB) and L2 (1 MB).
+        CompactGraph compact = CompactGraph.fromGraph(graph);
+        for (String name : new String[]{"id", "hilbert", "bfs", "rcm"}) {
+            long orderStart = System.nanoTime();
+            int[] order = NodeOrdering.byName(compact, name);
+            CompactGraph ordered = compact.permute(order);
+            long orderMs = (System.nanoTime() - orderStart) / 1_000_000;
+            NodeOrdering.Renumbered renumbered = NodeOrdering.renumber(graph, traffic, compact, order);
+            double[] weights = ordered.distanceWeights();
+            SearchWorkspace ws = new SearchWorkspace(ordered.nodeCount);
+            CompactDijkstra.shortestPathTree(ordered, weights, ordered.indexOf(from[0]), false, ws);
+            long relaxations = 0;
+            for (int i = 0; i < ws.orderSize; i++) relaxations += ordered.firstArc[ws.order[i] + 1] - ordered.firstArc[ws.order[i]];
+            System.out.printf("Ordering %-8s built in %d ms, mean arc gap %.0f, modelled dist[] misses per 1000 relaxations: L1 %.0f, L2 %.0f\n",
+                    name, orderMs, NodeOrdering.meanArcGap(ordered),
+                    1000.0 * cacheMisses(ordered, ws, 64, 8) / relaxations, 1000.0 * cacheMisses(ordered, ws, 1024, 16) / relaxations);
+
+            measure(generator, size, "CompactDijkstra.shortestPathTree (" + name + ")", () -> {
+                CompactDijkstra.shortestPathTree(ordered, weights, ordered.indexOf(from[0]), false, ws);
+                return ws.orderSize;
+            });
+            measure(generator, size, "Dijkstra.findShortestPath x" + QUERIES + " (" + name + ")", () -> {
+                long sum = 0;
+                for (int q = 0; q < QUERIES; q++) {
+                    sum += Dijkstra.findShortestPath(renumbered.graph, renumbered.toInternal(from[q]), renumbered.toInternal(to[q])).size();
+                }
+                return sum;
+            });
+        }
+
+        ParetoRouter pareto = ParetoRouter.forVehicles(compact, traffic, TrafficTime.MORNING);
+        measure(generator, size, "ParetoRouter.findRoutes x" + QUERIES + " (epsilon 0.1)", () -> {
+            long sum = 0;
+            for (int q = 0; q < QUERIES; q++) sum += pareto.findRoutes(from[q], to[q], 0, 0.1).size();
+            return sum;
+        });
+
+        int[] sites = ids.stream().filter(id -> random.nextInt(ids.size()) < 200).mapToInt(Integer::intValue).toArray();
+        FacilityLocator locator = FacilityLocator.forDistance(compact, sites);
+        measure(generator, size, "FacilityLocator.solve p=10 (median)", () ->
+                locator.solve(10, FacilityLocator.Objective.MEDIAN, 5).swaps);
+
+        PathTreeStore treeStore = new PathTreeStore(compact, traffic, Long.MAX_VALUE, 1);
+        treeStore.prefetch(TrafficTime.MORNING, from[0]); // Only path extraction from the stored tree is timed
+        measure(generator, size, "PathTreeStore.path x" + QUERIES + " (one origin)", () -> {
+            long sum = 0;
+            for (int q = 0; q < QUERIES; q++) sum += treeStore.path(from[0], to[q], TrafficTime.MORNING).size();
+            return sum;
+        });
+        measure(generator, size, "OffHeapGraph.load", () ->
+                OffHeapGraph.load(nodesFile, existingFile, potentialFile).edgeCount());
+        OffHeapGraph offHeap = OffHeapGraph.fromGraph(graph);
+        measure(generator, size, "Dijkstra.findShortestPath x" + QUERIES + " (off-heap)", () -> {
+            long sum = 0;
+            for (int q = 0; q < QUERIES; q++) sum += Dijkstra.findShortestPath(offHeap, from[q], to[q]).size();
+            return sum;
+        });
+        measure(generator, size, "MSTBuilder.buildMST (off-heap)", () -> MSTBuilder.buildMST(offHeap).size());
+
+        for (File file : Objects.requireNonNull(directory.listFiles())) file.delete();
+        directory.delete();
+    }
+
+    // Misses of an LRU cache (sets x ways lines of 64 bytes) on the dist[] reads of the tree in ws, replayed
+    // in settle order: the settled node, then the target of each of its arcs
+    private static long cacheMisses(CompactGraph graph, SearchWorkspace ws, int sets, int ways) {
+        long[][] tags = new long[sets][ways];
+        long[][] used = new long[sets][ways];
+        long clock = 0, misses = 0;
+        for (long[] set : tags) Arrays.fill(set, -1);
+        for (int i = 0; i < ws.orderSize; i++) {
+            int u = ws.order[i];
+            for (int a = graph.firstArc[u] - 1; a < graph.firstArc[u + 1]; a++) {
+                long line = (a < graph.firstArc[u] ? u : graph.arcTarget[a]) >> 3; // 8 doubles per line
+                int set = (int) (line % sets), victim = 0;
+                boolean hit = false;
+                for (int w = 0; w < ways; w++) {
+                    if (tags[set][w] == line) {
+                        used[set][w] = ++clock;
+                        hit = true;
+                        break;
+                    }
+                    if (used[set][w] < used[set][victim]) victim = w;
+                }
+                if (!hit) {
+                    misses++;
+                    tags[set][victim] = line;
+                    used[set][victim] = ++clock;
+                }
+            }
+        }
+        return misses;
+    }
+
+    // Routes of 3-8 random stops with random buses and passengers
+    private static List<BusRoute> syntheticRoutes(List<Integer> ids, int count, Random random) {
+        List<BusRoute> routes = new ArrayList<>();
+        for (int r = 0; r < count; r++) {
+            List<Integer> stops = new ArrayList<>();
+            int length = 3 + random.nextInt(6);
+            for (int s = 0; s < length; s++) stops.add(ids.get(random.nextInt(ids.size())));
+            routes.add(new BusRoute("S" + (r + 1), stops, 5 + random.nextInt(30), 5000 + random.nextInt(45000)));
+        }
+        return routes;
+    }
+
+    // Operation to measure; the returned value is kept so the work is not optimized away
+    private interface Operation {
+        long run() throws Exception;
+    }
+
+    private void measure(String generator, int size, String name, Operation operation) {
+        Result result = new Result();
+        result.generator = generator;
+        result.size = size;
+        result.benchmark = name;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        try {
+            for (int i = 0; i < warmup; i++) sink += operation.run();
+
+            long gcCountBefore = gcCount(), gcTimeBefore = gcTime();
+            long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+            long total = 0, best = Long.MAX_VALUE;
+            long deadline = System.nanoTime() + (long) (maxSeconds * 1e9);
+            int operations = 0;
+            while (operations < iterations && (operations == 0 || System.nanoTime() < deadline)) {
+                long startTime = System.nanoTime();
+                sink += operation.run();
+                long elapsed = System.nanoTime() - startTime;
+                total += elapsed;
+                best = Math.min(best, elapsed);
+                operations++;
+            }
+            result.operations = operations;
+            result.meanMs = total / 1e6 / operations;
+            result.bestMs = best / 1e6;
+            result.allocatedBytesPerOp = (double) (threads.getThreadAllocatedBytes(thread) - allocatedBefore) / operations;
+            result.gcCount = gcCount() - gcCountBefore;
+            result.gcMs = gcTime() - gcTimeBefore;
+            System.out.printf("%-45s %10.3f ms/op (best %.3f)  %12.0f B/op  %d GCs (%d ms)\n",
+                    name, result.meanMs, result.bestMs, result.allocatedBytesPerOp, result.gcCount, (long) result.gcMs);
+        } catch (Throwable e) { // StackOverflowError and OutOfMemoryError are results too at large sizes
+            result.error = e.getClass().getSimpleName();
+            System.out.printf("%-45s FAILED (%s)\n", name, result.error);
+        }
+        results.add(result);
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) count += Math.max(gc.getCollectionCount(), 0);
+        return count;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) time += Math.max(gc.getCollectionTime(), 0);
+        return time;
+    }
+
+    private static void writeCsv(List<Result> results, String file) throws IOException {
+        try (PrintWriter out = new PrintWriter(file)) {
+            out.println("generator,size,benchmark,operations,mean_ms,best_ms,allocated_bytes_per_op,gc_count,gc_ms,error");
+            for (Result r : results) {
+                out.printf(Locale.ROOT, "%s,%d,%s,%d,%.4f,%.4f,%.0f,%d,%.0f,%s\n", r.generator, r.size, r.benchmark,
+                        r.operations, r.meanMs, r.bestMs, r.allocatedBytesPerOp, r.gcCount, r.gcMs, r.error == null ? "" : r.error);
+            }
+        }
+    }
+
+    private static Map<String, Result> readCsv(String file) throws IOException {
+        Map<String, Result> results = new HashMap<>();
+        List<String> lines = Files.readAllLines(new File(file).toPath());
+        for (String line : lines.subList(1, lines.size())) {
+            String[] parts = line.split(",", -1);
+            Result r = new Result();
+            r.generator = parts[0];
+            r.size = Integer.parseInt(parts[1]);
+            r.benchmark = parts[2];
+            r.operations = Integer.parseInt(parts[3]);
+            r.meanMs = Double.parseDouble(parts[4]);
+            r.bestMs = Double.parseDouble(parts[5]);
+            r.allocatedBytesPerOp = Double.parseDouble(parts[6]);
+            r.gcCount = Long.parseLong(parts[7]);
+            r.gcMs = Double.parseDouble(parts[8]);
+            r.error = parts[9].isEmpty() ? null : parts[9];
+            results.put(r.key(), r);
+        }
+        return results;
+    }
+
+    // Benchmarks slower than the baseline by more than the tolerance, or failing where the baseline did not
+    private static List<String> compare(Map<String, Result> baseline, List<Result> current, double tolerance) {
+        List<String> regressions = new ArrayList<>();
+        for (Result r : current) {
+            Result old = baseline.get(r.key());
+            if (old == null || old.error != null) continue;
+            if (r.error != null) {
+                regressions.add(r.key() + " now fails with " + r.error);
+            } else if (r.meanMs > old.meanMs * (1 + tolerance)) {
+                regressions.add(String.format(Locale.ROOT, "%s %.3f ms → %.3f ms (+%.0f%%)", r.key(), old.meanMs, r.meanMs,
+                        (r.meanMs / old.meanMs - 1) * 100));
+            }
+        }
+        return regressions;
+    }
+}
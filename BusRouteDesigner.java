@@ -0,0 +1,263 @@
+// BusRouteDesigner.java
+// Generates new bus routes from the road network and the population, instead of choosing among fixed ones
+// 1. Stop-to-stop matrix: one shortest-path tree per stop (built in parallel) gives every stop-to-stop distance.
+//    Only the distances are kept; the road path between two stops is searched when it is first needed and
+//    cached, so memory grows with stops² (the matrices) and not with stops x nodes. By default the stops are
+//    the facilities and the most populated nodes, at most DEFAULT_MAX_STOPS of them.
+// 2. Demand between stops comes from the DemandModel (both directions added).
+// 3. Construction: each route starts from the busiest pair of stops not yet served and grows by insertion,
+//    adding the stop that serves the most new demand per extra kilometer (all stops are scored in parallel).
+// 4. Improvement: 2-opt (reverse a part of the route) and or-opt (move 1-3 consecutive stops elsewhere)
+//    shorten each route while keeping its stops.
+// The result is a list of BusRoute objects that TransitOptimizer can allocate buses to.
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+public class BusRouteDesigner {
+    public static final int DEFAULT_MAX_STOPS = 400; // Stops chosen by the two-argument constructor
+
+    public double maxRouteLengthKm = 30.0; // A route may not be longer than this
+    public double busSpeedKmh = 25.0; // Average bus speed including stops
+    public double headwayMinutes = 10.0; // Time between two buses on a route
+    public double serviceHours = 16.0; // Daily service hours (turns hourly demand into daily passengers)
+
+    private final CompactGraph graph;
+    private final int[] stops; // Dense node index of each stop
+    private final double[][] distance; // Stop-to-stop road distance in km
+    private final double[][] pairDemand; // Trips per hour between two stops (both directions)
+    private final double[] weights; // Road length of every arc
+    private final Map<Long, List<Integer>> segmentCache = new ConcurrentHashMap<>(); // Road paths of the segments asked for
+    private final ThreadLocal<SearchWorkspace> workspaces;
+
+    // Uses the facilities and the most populated nodes as possible stops (see defaultStops)
+    public BusRouteDesigner(CompactGraph graph, DemandModel demand) {
+        this(graph, demand, defaultStops(graph, DEFAULT_MAX_STOPS));
+    }
+
+    public BusRouteDesigner(CompactGraph graph, DemandModel demand, int[] stopIds) {
+        this.graph = graph;
+        this.stops = new int[stopIds.length];
+        for (int i = 0; i < stopIds.length; i++) {
+            stops[i] = graph.indexOf(stopIds[i]);
+            if (stops[i] < 0) throw new IllegalArgumentException("Unknown stop " + stopIds[i]);
+        }
+
+        int s = stops.length;
+        distance = new double[s][s];
+        pairDemand = new double[s][s];
+        weights = graph.distanceWeights();
+        workspaces = ThreadLocal.withInitial(() -> new SearchWorkspace(graph.nodeCount));
+
+        // One shortest-path tree per stop, in parallel; only its distances to the other stops are kept
+        IntStream.range(0, s).parallel().forEach(i -> {
+            SearchWorkspace ws = workspaces.get();
+            CompactDijkstra.shortestPathTree(graph, weights, stops[i], false, ws);
+            for (int j = 0; j < s; j++) {
+                distance[i][j] = ws.distance(stops[j]);
+                pairDemand[i][j] = demand.demand(stops[i], stops[j]) + demand.demand(stops[j], stops[i]);
+            }
+        });
+    }
+
+    // Node IDs of at most maxStops stops: the facilities, then the most populated nodes
+    public static int[] defaultStops(CompactGraph graph, int maxStops) {
+        List<Integer> candidates = new ArrayList<>();
+        for (int i = 0; i < graph.nodeCount; i++) {
+            if (graph.population[i] > 0 || graph.isFacility[i]) candidates.add(i);
+        }
+        candidates.sort(Comparator.comparing((Integer i) -> !graph.isFacility[i])
+                .thenComparing(i -> -graph.population[i]));
+        return candidates.stream().limit(Math.max(maxStops, 0)).sorted() // Back in node order
+                .mapToInt(i -> graph.nodeIds[i]).toArray();
+    }
+
+    // Designs up to routeCount routes; routes are returned in the order they were built
+    public List<BusRoute> designRoutes(int routeCount) {
+        int s = stops.length;
+        boolean[][] served = new boolean[s][s];
+        List<BusRoute> routes = new ArrayList<>();
+
+        for (int r = 0; r < routeCount; r++) {
+            List<Integer> route = seedRoute(served);
+            if (route == null) break; // No unserved pair fits in one route
+
+            growByInsertion(route, served);
+            improve(route);
+
+            // Mark every pair of stops on this route as served
+            for (int a : route) {
+                for (int b : route) served[a][b] = true;
+            }
+            routes.add(toBusRoute("D" + (r + 1), route));
+        }
+        return routes;
+    }
+
+    // Busiest unserved pair of stops that can be connected within the length limit
+    private List<Integer> seedRoute(boolean[][] served) {
+        int bestA = -1, bestB = -1;
+        double best = 0;
+        for (int a = 0; a < stops.length; a++) {
+            for (int b = a + 1; b < stops.length; b++) {
+                if (!served[a][b] && pairDemand[a][b] > best && distance[a][b] <= maxRouteLengthKm) {
+                    best = pairDemand[a][b];
+                    bestA = a;
+                    bestB = b;
+                }
+            }
+        }
+        return bestA < 0 ? null : new ArrayList<>(List.of(bestA, bestB));
+    }
+
+    // Repeatedly inserts the stop with the best (new demand served / extra length) ratio
+    private void growByInsertion(List<Integer> route, boolean[][] served) {
+        while (true) {
+            double currentLength = routeLength(route);
+            Set<Integer> onRoute = new HashSet<>(route);
+
+            // Score every stop not on the route, in parallel; each result is {stop, position, score}
+            double[] best = IntStream.range(0, stops.length).parallel()
+                    .filter(k -> !onRoute.contains(k))
+                    .mapToObj(k -> bestInsertion(route, k, currentLength, served))
+                    .filter(Objects::nonNull)
+                    .max(Comparator.comparingDouble(c -> c[2]))
+                    .orElse(null);
+            if (best == null) return;
+            route.add((int) best[1], (int) best[0]);
+        }
+    }
+
+    // Cheapest feasible position for stop k and its score, or null if k adds nothing or does not fit
+    private double[] bestInsertion(List<Integer> route, int k, double currentLength, boolean[][] served) {
+        double gain = 0;
+        for (int stop : route) {
+            if (!served[k][stop]) gain += pairDemand[k][stop];
+        }
+        if (gain <= 0) return null;
+
+        double bestExtra = Double.POSITIVE_INFINITY;
+        int bestPosition = -1;
+        for (int p = 0; p <= route.size(); p++) {
+            double extra;
+            if (p == 0) extra = distance[k][route.get(0)];
+            else if (p == route.size()) extra = distance[route.get(p - 1)][k];
+            else extra = distance[route.get(p - 1)][k] + distance[k][route.get(p)] - distance[route.get(p - 1)][route.get(p)];
+            if (extra < bestExtra) {
+                bestExtra = extra;
+                bestPosition = p;
+            }
+        }
+        if (bestPosition < 0 || currentLength + bestExtra > maxRouteLengthKm) return null;
+        return new double[]{k, bestPosition, gain / Math.max(bestExtra, 0.1)};
+    }
+
+    // Local search on the stop order: 2-opt and or-opt moves until no move shortens the route
+    private void improve(List<Integer> route) {
+        boolean improved = true;
+        while (improved) {
+            improved = twoOpt(route) || orOpt(route);
+        }
+    }
+
+    // Reverses route[i..j] if that makes the route shorter
+    private boolean twoOpt(List<Integer> route) {
+        int n = route.size();
+        for (int i = 0; i < n - 1; i++) {
+            for (int j = i + 1; j < n; j++) {
+                double before = 0, after = 0;
+                if (i > 0) {
+                    before += distance[route.get(i - 1)][route.get(i)];
+                    after += distance[route.get(i - 1)][route.get(j)];
+                }
+                if (j < n - 1) {
+                    before += distance[route.get(j)][route.get(j + 1)];
+                    after += distance[route.get(i)][route.get(j + 1)];
+                }
+                if (after < before - 1e-9) {
+                    Collections.reverse(route.subList(i, j + 1));
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Moves a block of 1-3 consecutive stops to another position if that makes the route shorter
+    private boolean orOpt(List<Integer> route) {
+        double length = routeLength(route);
+        for (int size = 1; size <= 3; size++) {
+            for (int i = 0; i + size <= route.size(); i++) {
+                List<Integer> block = new ArrayList<>(route.subList(i, i + size));
+                List<Integer> rest = new ArrayList<>(route);
+                rest.subList(i, i + size).clear();
+                for (int p = 0; p <= rest.size(); p++) {
+                    if (p == i) continue; // Same position as before
+                    List<Integer> candidate = new ArrayList<>(rest);
+                    candidate.addAll(p, block);
+                    if (routeLength(candidate) < length - 1e-9) {
+                        route.clear();
+                        route.addAll(candidate);
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private double routeLength(List<Integer> route) {
+        double length = 0;
+        for (int i = 0; i + 1 < route.size(); i++) length += distance[route.get(i)][route.get(i + 1)];
+        return length;
+    }
+
+    // Builds the BusRoute: buses needed to keep the headway on a round trip, and daily passengers served
+    private BusRoute toBusRoute(String id, List<Integer> route) {
+        List<Integer> stopIds = new ArrayList<>();
+        for (int stop : route) stopIds.add(graph.nodeIds[stops[stop]]);
+
+        double roundTripMinutes = 2 * routeLength(route) / busSpeedKmh * 60.0;
+        int buses = Math.max(1, (int) Math.ceil(roundTripMinutes / headwayMinutes));
+
+        double hourlyDemand = 0;
+        for (int i = 0; i < route.size(); i++) {
+            for (int j = i + 1; j < route.size(); j++) hourlyDemand += pairDemand[route.get(i)][route.get(j)];
+        }
+        return new BusRoute(id, stopIds, buses, (int) (hourlyDemand * serviceHours));
+    }
+
+    // Road path between two consecutive stops (node IDs; empty if unreachable), searched once and cached
+    public List<Integer> segment(int fromStopId, int toStopId) {
+        int from = stopPosition(fromStopId);
+        int to = stopPosition(toStopId);
+        long key = ((long) from << 32) | to;
+        List<Integer> path = segmentCache.get(key);
+        if (path == null) {
+            int[] nodes = CompactDijkstra.findPath(graph, weights, stops[from], stops[to], workspaces.get());
+            path = graph.toNodeIds(nodes, nodes.length);
+            segmentCache.put(key, path);
+        }
+        return path;
+    }
+
+    // Full road path of a designed route (all nodes driven through, not just the stops)
+    public List<Integer> expandRoute(BusRoute route) {
+        List<Integer> path = new ArrayList<>();
+        for (int i = 0; i + 1 < route.stops.size(); i++) {
+            List<Integer> part = segment(route.stops.get(i), route.stops.get(i + 1));
+            if (part.isEmpty()) continue; // Stops not connected by road
+            path.addAll(path.isEmpty() ? part : part.subList(1, part.size()));
+        }
+        return path;
+    }
+
+    private int stopPosition(int stopId) {
+        int index = graph.indexOf(stopId);
+        for (int i = 0; i < stops.length; i++) {
+            if (stops[i] == index) return i;
+        }
+        throw new IllegalArgumentException("Not a stop: " + stopId);
+    }
+}
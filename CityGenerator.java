@@ -0,0 +1,306 @@
+// CityGenerator.java
+// Seeded synthetic road networks for benchmarks and scaling tests (the same seed always gives the same city)
+// - grid: Manhattan-style blocks with some missing streets and a few diagonal avenues
+// - randomGeometric: nodes scattered at random, each joined to its nearest neighbours
+// - scaleFree: nodes join nearby earlier nodes with a preference for busy intersections, so a few hubs get many roads
+// Nodes are placed around Cairo (x = longitude, y = latitude) about 500 m apart, so A* and the coordinate-based
+// code behave as on the real data. Road lengths are in km. About 1% of the nodes are facilities (no population)
+// and about 10% of the roads are potential roads with a construction cost, like the CSV files.
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.*;
+import java.util.function.IntPredicate;
+
+public class CityGenerator {
+    private static final double ORIGIN_X = 31.0, ORIGIN_Y = 29.8; // South-west corner of the generated city
+    private static final double SPACING = 0.0045; // About 500 m in degrees
+    private static final double KM_PER_DEGREE = 111.0;
+    private static final int[] CAPACITIES = {1500, 2000, 2500, 3000, 4000};
+
+    // rows x cols blocks (about n nodes); 5% of the streets are missing, every 10th diagonal is an avenue
+    public static Graph grid(int n, long seed) {
+        Random random = new Random(seed);
+        int cols = (int) Math.ceil(Math.sqrt(n));
+        int rows = (n + cols - 1) / cols;
+        Graph graph = new Graph();
+        for (int i = 0; i < n; i++) {
+            double x = ORIGIN_X + (i % cols) * SPACING + random.nextGaussian() * SPACING * 0.1;
+            double y = ORIGIN_Y + (i / cols) * SPACING + random.nextGaussian() * SPACING * 0.1;
+            addNode(graph, i + 1, x, y, random);
+        }
+        // Every node but the first keeps one street to a parent that is never dropped (the node above, or the one
+        // to its left; random inside the grid), so those streets form a spanning tree and the city stays connected
+        boolean[] parentAbove = new boolean[n];
+        for (int i = cols; i < n; i++) parentAbove[i] = i % cols == 0 || random.nextBoolean();
+        for (int i = 0; i < n; i++) {
+            int r = i / cols, c = i % cols;
+            if (c + 1 < cols && i + 1 < n && (!parentAbove[i + 1] || random.nextDouble() >= 0.05)) addRoad(graph, i + 1, i + 2, random);
+            if (r + 1 < rows && i + cols < n && (parentAbove[i + cols] || random.nextDouble() >= 0.05)) addRoad(graph, i + 1, i + cols + 1, random);
+            if ((r + c) % 10 == 0 && c + 1 < cols && i + cols + 1 < n) addRoad(graph, i + 1, i + cols + 2, random);
+        }
+        return graph;
+    }
+
+    // n nodes uniformly in a square, each joined to its k nearest neighbours (found through a bucket grid);
+    // pieces left apart are then linked to their nearest neighbouring piece, so the city is connected
+    public static Graph randomGeometric(int n, int k, long seed) {
+        Random random = new Random(seed);
+        double side = Math.sqrt(n) * SPACING;
+        Graph graph = new Graph();
+        double[] xs = new double[n], ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = random.nextDouble() * side;
+            ys[i] = random.nextDouble() * side;
+            addNode(graph, i + 1, ORIGIN_X + xs[i], ORIGIN_Y + ys[i], random);
+        }
+        Buckets buckets = new Buckets(xs, ys, n, side);
+        Set<Long> roads = new HashSet<>();
+        for (int i = 0; i < n; i++) {
+            for (int j : buckets.nearest(i, k)) {
+                long key = (long) Math.min(i, j) * n + Math.max(i, j);
+                if (roads.add(key)) addRoad(graph, i + 1, j + 1, random);
+            }
+        }
+        connectPieces(graph, buckets, n, random);
+        return graph;
+    }
+
+    // Nodes arrive in random order; each joins m earlier nodes of its neighbourhood, chosen with probability
+    // proportional to their number of roads (preferential attachment kept local, so roads stay short)
+    public static Graph scaleFree(int n, int m, long seed) {
+        Random random = new Random(seed);
+        double side = Math.sqrt(n) * SPACING;
+        Graph graph = new Graph();
+        double[] xs = new double[n], ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = random.nextDouble() * side;
+            ys[i] = random.nextDouble() * side;
+            addNode(graph, i + 1, ORIGIN_X + xs[i], ORIGIN_Y + ys[i], random);
+        }
+        Buckets buckets = new Buckets(xs, ys, n, side * 2); // Bigger cells: about 16 earlier nodes to choose from
+        int[] degree = new int[n];
+        List<Integer> candidates = new ArrayList<>();
+        for (int i = 1; i < n; i++) {
+            int node = i;
+            candidates.clear();
+            buckets.around(i, j -> j < node, candidates);
+            if (candidates.isEmpty()) candidates.add(i - 1); // Isolated area: attach to the previous node
+            int links = Math.min(m, candidates.size());
+            for (int l = 0; l < links; l++) {
+                long total = 0;
+                for (int j : candidates) total += degree[j] + 1;
+                long pick = (long) (random.nextDouble() * total);
+                int chosen = candidates.size() - 1;
+                for (int c = 0; c < candidates.size(); c++) {
+                    pick -= degree[candidates.get(c)] + 1;
+                    if (pick < 0) {
+                        chosen = c;
+                        break;
+                    }
+                }
+                int j = candidates.remove(chosen);
+                addRoad(graph, i + 1, j + 1, random);
+                degree[i]++;
+                degree[j]++;
+            }
+        }
+        return graph;
+    }
+
+    // Generator by name ("grid", "geometric" or "scalefree"), as used on the benchmark command line
+    public static Graph generate(String generator, int n, long seed) {
+        switch (generator) {
+            case "grid":
+                return grid(n, seed);
+            case "geometric":
+                return randomGeometric(n, 3, seed);
+            case "scalefree":
+                return scaleFree(n, 2, seed);
+            default:
+                throw new IllegalArgumentException("Unknown generator: " + generator);
+        }
+    }
+
+    // Traffic table for every road: capacity times a random load for each time of day
+    public static TrafficData traffic(Graph graph, long seed) {
+        Random random = new Random(seed);
+        TrafficData data = new TrafficData();
+        double[][] loads = {{0.6, 1.1}, {0.4, 0.7}, {0.6, 1.0}, {0.1, 0.3}}; // MORNING, AFTERNOON, EVENING, NIGHT
+        for (Edge edge : graph.edges) {
+            int[] flow = new int[4];
+            for (int t = 0; t < 4; t++) {
+                flow[t] = (int) (edge.capacity * (loads[t][0] + random.nextDouble() * (loads[t][1] - loads[t][0])));
+            }
+            data.trafficMap.put(edge.from + "-" + edge.to, flow);
+        }
+        return data;
+    }
+
+    // Writes the network in the CSV format read by GraphBuilder and TrafficData
+    public static void writeCsv(Graph graph, TrafficData traffic, File directory) throws IOException {
+        directory.mkdirs();
+        List<Node> nodes = new ArrayList<>(graph.nodes.values());
+        nodes.sort(Comparator.comparingInt(node -> node.id));
+        try (PrintWriter out = new PrintWriter(new File(directory, "nodes.csv"))) {
+            out.println("ID,Name,Population,Type,X,Y");
+            for (Node node : nodes) {
+                if (node.isFacility) {
+                    out.println(node.id + "," + node.name + ",," + node.type + "," + node.x + "," + node.y);
+                } else {
+                    out.println(node.id + "," + node.name + "," + node.population + "," + node.type + "," + node.x + "," + node.y);
+                }
+            }
+        }
+        try (PrintWriter existing = new PrintWriter(new File(directory, "existing_roads.csv"));
+             PrintWriter potential = new PrintWriter(new File(directory, "potential_roads.csv"))) {
+            existing.println("FromID,ToID,Distance,Capacity,Condition");
+            potential.println("FromID,ToID,Distance,Capacity,Cost");
+            for (Edge edge : graph.edges) {
+                if (edge.isExisting) {
+                    existing.println(edge.from + "," + edge.to + "," + edge.distance + "," + edge.capacity + "," + edge.condition);
+                } else {
+                    potential.println(edge.from + "," + edge.to + "," + edge.distance + "," + edge.capacity + "," + edge.cost);
+                }
+            }
+        }
+        try (PrintWriter out = new PrintWriter(new File(directory, "traffic_data.csv"))) {
+            out.println("RoadID,Morning,Afternoon,Evening,Night");
+            for (Map.Entry<String, int[]> entry : traffic.trafficMap.entrySet()) {
+                int[] f = entry.getValue();
+                out.println(entry.getKey() + "," + f[0] + "," + f[1] + "," + f[2] + "," + f[3]);
+            }
+        }
+    }
+
+    // Links the connected pieces until one is left: each piece but the largest gets one road, the shortest from
+    // one of its nodes to a node of another piece (more neighbours are looked at until one is found)
+    private static void connectPieces(Graph graph, Buckets buckets, int n, Random random) {
+        int[] parent = new int[n]; // Union-find over the roads
+        for (int i = 0; i < n; i++) parent[i] = i;
+        for (Edge edge : graph.edges) parent[find(parent, edge.from - 1)] = find(parent, edge.to - 1);
+        while (true) {
+            int[] size = new int[n];
+            int largest = 0;
+            for (int i = 0; i < n; i++) {
+                int root = find(parent, i);
+                if (++size[root] > size[largest]) largest = root;
+            }
+            if (size[largest] == n) return;
+            Map<Integer, List<Integer>> pieces = new LinkedHashMap<>();
+            for (int i = 0; i < n; i++) {
+                int root = find(parent, i);
+                if (root != largest) pieces.computeIfAbsent(root, r -> new ArrayList<>()).add(i);
+            }
+            for (List<Integer> piece : pieces.values()) {
+                int from = -1, to = -1;
+                for (int k = 8; from < 0; k *= 2) {
+                    double best = Double.POSITIVE_INFINITY;
+                    for (int i : piece) {
+                        for (int j : buckets.nearest(i, k)) {
+                            double d = Math.hypot(buckets.xs[j] - buckets.xs[i], buckets.ys[j] - buckets.ys[i]);
+                            if (d < best && find(parent, j) != find(parent, i)) {
+                                best = d;
+                                from = i;
+                                to = j;
+                            }
+                        }
+                    }
+                }
+                addRoad(graph, from + 1, to + 1, random);
+                parent[find(parent, from)] = find(parent, to);
+            }
+        }
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) i = parent[i] = parent[parent[i]];
+        return i;
+    }
+
+    // Every 100th node is a facility; the others are districts with a random population
+    private static void addNode(Graph graph, int id, double x, double y, Random random) {
+        boolean facility = id % 100 == 0;
+        int population = facility ? 0 : 5000 + random.nextInt(95000);
+        graph.addNode(new Node(id, (facility ? "Facility " : "District ") + id, facility ? "Facility" : "Residential",
+                x, y, population, facility));
+    }
+
+    // Road with a length a bit longer than the straight line; 10% are potential roads
+    private static void addRoad(Graph graph, int from, int to, Random random) {
+        Node a = graph.nodes.get(from), b = graph.nodes.get(to);
+        double straight = Math.hypot(a.x - b.x, a.y - b.y) * KM_PER_DEGREE;
+        double distance = Math.round(straight * (1.0 + random.nextDouble() * 0.3) * 100) / 100.0;
+        distance = Math.max(distance, 0.05);
+        int capacity = CAPACITIES[random.nextInt(CAPACITIES.length)];
+        if (random.nextDouble() < 0.1) {
+            graph.addEdge(new Edge(from, to, distance, capacity, Math.round(distance * 20)));
+        } else {
+            graph.addEdge(new Edge(from, to, distance, capacity, 1 + random.nextInt(10), true));
+        }
+    }
+
+    // Uniform bucket grid over the points (about 4 points per cell) for neighbourhood queries
+    private static class Buckets {
+        final double[] xs, ys;
+        final int cells;
+        final double cellSize;
+        final int[] start, items;
+
+        Buckets(double[] xs, double[] ys, int n, double side) {
+            this.xs = xs;
+            this.ys = ys;
+            this.cells = Math.max(1, (int) Math.sqrt(n / 4.0));
+            this.cellSize = side / cells;
+            start = new int[cells * cells + 1];
+            items = new int[n];
+            for (int i = 0; i < n; i++) start[cell(i) + 1]++;
+            for (int c = 0; c < cells * cells; c++) start[c + 1] += start[c];
+            int[] next = Arrays.copyOf(start, cells * cells);
+            for (int i = 0; i < n; i++) items[next[cell(i)]++] = i;
+        }
+
+        int slot(double coordinate) {
+            return Math.min(cells - 1, Math.max(0, (int) (coordinate / cellSize)));
+        }
+
+        int cell(int i) {
+            return slot(ys[i]) * cells + slot(xs[i]);
+        }
+
+        // Points in the 3x3 cells around point i that pass the filter
+        void around(int i, IntPredicate filter, List<Integer> out) {
+            int cx = slot(xs[i]), cy = slot(ys[i]);
+            for (int y = Math.max(0, cy - 1); y <= Math.min(cells - 1, cy + 1); y++) {
+                for (int x = Math.max(0, cx - 1); x <= Math.min(cells - 1, cx + 1); x++) {
+                    int c = y * cells + x;
+                    for (int p = start[c]; p < start[c + 1]; p++) {
+                        if (items[p] != i && filter.test(items[p])) out.add(items[p]);
+                    }
+                }
+            }
+        }
+
+        // The k nearest points to point i, widening the search ring until k are found
+        List<Integer> nearest(int i, int k) {
+            int cx = slot(xs[i]), cy = slot(ys[i]);
+            List<Integer> found = new ArrayList<>();
+            for (int ring = 1; ring <= cells; ring++) {
+                found.clear();
+                for (int y = Math.max(0, cy - ring); y <= Math.min(cells - 1, cy + ring); y++) {
+                    for (int x = Math.max(0, cx - ring); x <= Math.min(cells - 1, cx + ring); x++) {
+                        int c = y * cells + x;
+                        for (int p = start[c]; p < start[c + 1]; p++) {
+                            if (items[p] != i) found.add(items[p]);
+                        }
+                    }
+                }
+                // At least two rings, so that close points just across a cell border are not missed
+                if (found.size() > k && ring >= 2) break;
+            }
+            found.sort(Comparator.comparingDouble(j -> Math.hypot(xs[j] - xs[i], ys[j] - ys[i])));
+            return found.subList(0, Math.min(k, found.size()));
+        }
+    }
+}
@@ -0,0 +1,76 @@
+// CompactDijkstra.java
+// Dijkstra's algorithm over a CompactGraph with caller-supplied arc weights
+// Shared by the engines that need full shortest-path trees (alternative routes, assignment, ...).
+
+import java.util.*;
+
+public class CompactDijkstra {
+
+    // Builds the shortest-path tree of the source into the workspace.
+    // Afterwards ws.distance(v) is the distance and ws.parentArc[v] the tree arc that reached v (-1 at the source).
+    // With reverse = true the search follows roads backwards, so distances are TO the source:
+    // parentArc[v] is then the arc from the tree parent to v, and the road travelled is its twin (v → parent).
+    public static void shortestPathTree(CompactGraph graph, double[] weights, int source, boolean reverse, SearchWorkspace ws) {
+        ws.reset();
+        NodeHeap heap = ws.heap;
+        ws.setDistance(source, 0.0, -1);
+        heap.push(source, 0.0);
+
+        while (!heap.isEmpty()) {
+            double d = heap.peekKey();
+            int u = heap.pop();
+            if (d > ws.dist[u] || ws.isSettled(u)) continue; // Stale entry
+            ws.settle(u);
+
+            for (int a = graph.firstArc[u]; a < graph.firstArc[u + 1]; a++) {
+                int v = graph.arcTarget[a];
+                double newDist = d + (reverse ? weights[graph.arcTwin[a]] : weights[a]);
+                if (newDist < ws.distance(v)) {
+                    ws.setDistance(v, newDist, a);
+                    heap.push(v, newDist);
+                }
+            }
+        }
+    }
+
+    // Shortest path between two dense indices; returns the node indices or an empty array if unreachable
+    public static int[] findPath(CompactGraph graph, double[] weights, int source, int target, SearchWorkspace ws) {
+        ws.reset();
+        NodeHeap heap = ws.heap;
+        ws.setDistance(source, 0.0, -1);
+        heap.push(source, 0.0);
+
+        while (!heap.isEmpty()) {
+            double d = heap.peekKey();
+            int u = heap.pop();
+            if (d > ws.dist[u] || ws.isSettled(u)) continue;
+            ws.settle(u);
+            if (u == target) return treePath(graph, ws, target);
+
+            for (int a = graph.firstArc[u]; a < graph.firstArc[u + 1]; a++) {
+                int v = graph.arcTarget[a];
+                double newDist = d + weights[a];
+                if (newDist < ws.distance(v)) {
+                    ws.setDistance(v, newDist, a);
+                    heap.push(v, newDist);
+                }
+            }
+        }
+        return new int[0];
+    }
+
+    // Walks the parent arcs of a forward tree back from target; returns the nodes from the root to target
+    public static int[] treePath(CompactGraph graph, SearchWorkspace ws, int target) {
+        if (ws.distance(target) == Double.POSITIVE_INFINITY) return new int[0];
+        int length = 1;
+        for (int v = target; ws.parentArc[v] >= 0; v = graph.arcSource(ws.parentArc[v])) length++;
+
+        int[] path = new int[length];
+        int v = target;
+        for (int i = length - 1; i >= 0; i--) {
+            path[i] = v;
+            if (i > 0) v = graph.arcSource(ws.parentArc[v]);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,178 @@
+// CompactGraph.java
+// Read-only array (CSR) copy of a Graph for the search engines that run many queries
+// Nodes get dense indices 0..n-1 (sorted by ID), and the outgoing roads of node i are the
+// arcs firstArc[i] .. firstArc[i + 1] - 1. Every road in graph.edges becomes two arcs, one per direction,
+// exactly like Graph.addEdge does for the adjacency list.
+
+import java.util.*;
+
+public class CompactGraph {
+    public final int nodeCount; // Number of nodes
+    public final int arcCount; // Number of directed arcs (2 per road)
+
+    // ----------- Node arrays (indexed by dense node index) -----------
+    public final int[] nodeIds; // Original node ID of each index
+    public final double[] x, y; // Coordinates on the map
+    public final int[] population; // Population of each node (0 for facilities)
+    public final boolean[] isFacility; // True if the node is a facility
+
+    // ----------- Arc arrays (indexed by arc) -----------
+    public final int[] firstArc; // Arcs of node i are firstArc[i] .. firstArc[i + 1] - 1
+    public final int[] arcTarget; // Dense index of the node the arc leads to
+    public final int[] arcEdge; // Position of the original road in the edges array
+    public final int[] arcTwin; // The arc of the same road in the opposite direction
+    public final double[] arcDistance; // Road length in kilometers
+    public final int[] arcCapacity; // Vehicles per hour capacity
+    public final int[] arcCondition; // Road condition (-1 for potential roads)
+
+    public final Edge[] edges; // The roads of the source graph, in graph.edges order
+
+    private final Map<Integer, Integer> indexById; // Original node ID → dense index
+
+    private CompactGraph(int nodeCount, int arcCount, Edge[] edges) {
+        this.nodeCount = nodeCount;
+        this.arcCount = arcCount;
+        this.edges = edges;
+        nodeIds = new int[nodeCount];
+        x = new double[nodeCount];
+        y = new double[nodeCount];
+        population = new int[nodeCount];
+        isFacility = new boolean[nodeCount];
+        firstArc = new int[nodeCount + 1];
+        arcTarget = new int[arcCount];
+        arcEdge = new int[arcCount];
+        arcTwin = new int[arcCount];
+        arcDistance = new double[arcCount];
+        arcCapacity = new int[arcCount];
+        arcCondition = new int[arcCount];
+        indexById = new HashMap<>(nodeCount * 2);
+    }
+
+    // Builds the array form of a graph (nodes are numbered in increasing ID order)
+    public static CompactGraph fromGraph(Graph graph) {
+        List<Integer> ids = new ArrayList<>(graph.nodes.keySet());
+        Collections.sort(ids);
+
+        // Only keep roads whose both ends are known nodes
+        List<Edge> roads = new ArrayList<>();
+        for (Edge edge : graph.edges) {
+            if (graph.nodes.containsKey(edge.from) && graph.nodes.containsKey(edge.to)) roads.add(edge);
+        }
+
+        CompactGraph g = new CompactGraph(ids.size(), roads.size() * 2, roads.toArray(new Edge[0]));
+        for (int i = 0; i < ids.size(); i++) {
+            Node node = graph.nodes.get(ids.get(i));
+            g.nodeIds[i] = node.id;
+            g.x[i] = node.x;
+            g.y[i] = node.y;
+            g.population[i] = node.population;
+            g.isFacility[i] = node.isFacility;
+            g.indexById.put(node.id, i);
+        }
+
+        // Count the degree of each node, then turn the counts into start offsets
+        for (Edge edge : g.edges) {
+            g.firstArc[g.indexById.get(edge.from) + 1]++;
+            g.firstArc[g.indexById.get(edge.to) + 1]++;
+        }
+        for (int i = 0; i < g.nodeCount; i++) {
+            g.firstArc[i + 1] += g.firstArc[i];
+        }
+
+        // Fill both directions of every road
+        int[] next = Arrays.copyOf(g.firstArc, g.nodeCount);
+        for (int e = 0; e < g.edges.length; e++) {
+            Edge edge = g.edges[e];
+            int u = g.indexById.get(edge.from);
+            int v = g.indexById.get(edge.to);
+            int forward = next[u]++;
+            int backward = next[v]++;
+            g.setArc(forward, v, e);
+            g.setArc(backward, u, e);
+            g.arcTwin[forward] = backward;
+            g.arcTwin[backward] = forward;
+        }
+        return g;
+    }
+
+    private void setArc(int arc, int target, int edgeIndex) {
+        Edge edge = edges[edgeIndex];
+        arcTarget[arc] = target;
+        arcEdge[arc] = edgeIndex;
+        arcDistance[arc] = edge.distance;
+        arcCapacity[arc] = edge.capacity;
+        arcCondition[arc] = edge.condition;
+    }
+
+    // Copy with the nodes renumbered: new index i is old index order[i] (see NodeOrdering).
+    // Node IDs, roads and the edges array stay the same; the arcs of each node keep their relative order.
+    public CompactGraph permute(int[] order) {
+        if (order.length != nodeCount) throw new IllegalArgumentException("Order has " + order.length + " nodes, graph " + nodeCount);
+        int[] newIndex = new int[nodeCount];
+        Arrays.fill(newIndex, -1);
+        for (int i = 0; i < nodeCount; i++) {
+            if (newIndex[order[i]] >= 0) throw new IllegalArgumentException("Node " + order[i] + " appears twice in the order");
+            newIndex[order[i]] = i;
+        }
+
+        CompactGraph g = new CompactGraph(nodeCount, arcCount, edges);
+        int[] newArc = new int[arcCount];
+        for (int i = 0; i < nodeCount; i++) {
+            int old = order[i];
+            g.nodeIds[i] = nodeIds[old];
+            g.x[i] = x[old];
+            g.y[i] = y[old];
+            g.population[i] = population[old];
+            g.isFacility[i] = isFacility[old];
+            g.indexById.put(nodeIds[old], i);
+            g.firstArc[i + 1] = g.firstArc[i] + (firstArc[old + 1] - firstArc[old]);
+            for (int a = firstArc[old], b = g.firstArc[i]; a < firstArc[old + 1]; a++, b++) newArc[a] = b;
+        }
+        for (int a = 0; a < arcCount; a++) {
+            int b = newArc[a];
+            g.arcTarget[b] = newIndex[arcTarget[a]];
+            g.arcTwin[b] = newArc[arcTwin[a]];
+            g.arcEdge[b] = arcEdge[a];
+            g.arcDistance[b] = arcDistance[a];
+            g.arcCapacity[b] = arcCapacity[a];
+            g.arcCondition[b] = arcCondition[a];
+        }
+        return g;
+    }
+
+    // Returns the dense index of a node ID, or -1 if the node is not in the graph
+    public int indexOf(int nodeId) {
+        Integer index = indexById.get(nodeId);
+        return index == null ? -1 : index;
+    }
+
+    // Returns the dense index of the node an arc starts from
+    public int arcSource(int arc) {
+        return arcTarget[arcTwin[arc]];
+    }
+
+    // Arc weights equal to the plain road length (what Dijkstra uses)
+    public double[] distanceWeights() {
+        return arcDistance.clone();
+    }
+
+    // Arc weights including the congestion factor for a time of day (what TrafficDijkstra uses)
+    public double[] trafficWeights(TrafficData trafficData, TrafficTime time) {
+        double[] weights = new double[arcCount];
+        for (int u = 0; u < nodeCount; u++) {
+            for (int a = firstArc[u]; a < firstArc[u + 1]; a++) {
+                weights[a] = trafficData.getEffectiveDistance(nodeIds[u], nodeIds[arcTarget[a]], arcDistance[a], time);
+            }
+        }
+        return weights;
+    }
+
+    // Converts a path of dense indices back to original node IDs
+    public List<Integer> toNodeIds(int[] indexPath, int length) {
+        List<Integer> path = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            path.add(nodeIds[indexPath[i]]);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,59 @@
+// CompactIsochrone.java
+// Bitset form of an Isochrone: one bit per node of the CompactGraph (about n / 8 bytes each)
+// Thousands of these fit in memory at once and can be combined with and/or operations.
+
+import java.util.*;
+
+public class CompactIsochrone {
+    public final int originId; // Node the search started from
+    public final double radius; // Search radius in traffic-weighted kilometers
+    public final int reachableCount; // Number of nodes inside the isochrone
+    public final long reachablePopulation; // Sum of Node.population over reached nodes
+    private final long[] bits; // Bit i is set if dense node i is reachable
+
+    public CompactIsochrone(int originId, double radius, long[] bits, int reachableCount, long reachablePopulation) {
+        this.originId = originId;
+        this.radius = radius;
+        this.bits = bits;
+        this.reachableCount = reachableCount;
+        this.reachablePopulation = reachablePopulation;
+    }
+
+    // True if the node with this dense index is inside the isochrone
+    public boolean containsIndex(int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    // True if the node with this original ID is inside the isochrone
+    public boolean contains(CompactGraph graph, int nodeId) {
+        int index = graph.indexOf(nodeId);
+        return index >= 0 && containsIndex(index);
+    }
+
+    // Original IDs of all reachable nodes
+    public List<Integer> reachableNodeIds(CompactGraph graph) {
+        List<Integer> ids = new ArrayList<>(reachableCount);
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                ids.add(graph.nodeIds[(w << 6) + Long.numberOfTrailingZeros(word)]);
+                word &= word - 1; // Clear the lowest set bit
+            }
+        }
+        return ids;
+    }
+
+    // Number of nodes reachable in both isochrones
+    public int overlapCount(CompactIsochrone other) {
+        int count = 0;
+        for (int w = 0; w < bits.length; w++) {
+            count += Long.bitCount(bits[w] & other.bits[w]);
+        }
+        return count;
+    }
+
+    // Approximate memory used by this isochrone in bytes
+    public long sizeInBytes() {
+        return 48L + bits.length * 8L;
+    }
+}
@@ -0,0 +1,316 @@
+// CustomizableRoutePlanner.java
+// Customizable Route Planning (CRP): routing index whose weights can be refreshed in seconds when traffic changes
+// 1. Preprocessing (topology only, once): GraphPartitioner splits the network into 2^k small cells by
+//    recursive bisection; groups of 2^fanoutBits neighbouring cells form the cells of the next level, and so on.
+//    A boundary node of a level is a node with a road into another cell of that level.
+// 2. Customization (per metric, e.g. per TrafficTime): for every cell, the cost between every pair of its
+//    boundary nodes (a clique). Level 1 searches the roads inside the cell; higher levels search the child cells'
+//    cliques plus the roads between child cells. Clique rows of a level are independent and run in parallel.
+// 3. Query: Dijkstra that stays on real roads inside the cells of the source and target, and everywhere else
+//    jumps across whole cells using the cliques of the highest level whose cell holds neither endpoint.
+//    Clique hops of the result are expanded to roads by a search limited to that cell.
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+public class CustomizableRoutePlanner {
+    private final CompactGraph graph;
+    private final int levels; // Overlay levels (0 = graph too small to split, plain Dijkstra)
+    private final int[][] cellOf; // cellOf[l][v]: cell of node v at level l (1..levels)
+    private final int[] cellCount; // Cells per level
+    private final int[][] boundaryStart; // Boundary nodes of cell c at level l: boundary[l][boundaryStart[l][c] ..]
+    private final int[][] boundary;
+    private final int[][] boundaryPosition; // Position of v in its cell's boundary list at level l, or -1
+    private final ThreadLocal<Workspace> workspaces;
+
+    // Weights of one metric: arc costs and the customized cliques of every level
+    public static class Metric {
+        public final double[] arcWeights;
+        final double[][] cliques; // cliques[l][cliqueOffset(l, c) + i * b + j]: boundary i → j inside cell c
+        public long customizationMillis;
+
+        Metric(double[] arcWeights, int levels) {
+            this.arcWeights = arcWeights;
+            this.cliques = new double[levels + 1][];
+        }
+    }
+
+    // Cells of about 128 nodes, 8 child cells per cell above level 1
+    public CustomizableRoutePlanner(Graph graph) {
+        this(CompactGraph.fromGraph(graph), 128, 3);
+    }
+
+    public CustomizableRoutePlanner(CompactGraph graph, int cellSize, int fanoutBits) {
+        this.graph = graph;
+        int n = graph.nodeCount;
+
+        // Number of level-1 cells: a power of two, so recursive bisection nests the levels
+        int bits = 0;
+        while ((1L << bits) * cellSize < n) bits++;
+        levels = bits == 0 ? 0 : 1 + (bits - 1) / fanoutBits;
+
+        cellOf = new int[levels + 1][];
+        cellCount = new int[levels + 1];
+        boundaryStart = new int[levels + 1][];
+        boundary = new int[levels + 1][];
+        boundaryPosition = new int[levels + 1][];
+        if (levels > 0) {
+            GraphPartitioner.Partition partition = new GraphPartitioner().partition(graph, 1 << bits);
+            for (int l = 1; l <= levels; l++) {
+                int shift = fanoutBits * (l - 1);
+                cellOf[l] = new int[n];
+                for (int v = 0; v < n; v++) cellOf[l][v] = partition.partOf[v] >> shift;
+                cellCount[l] = (1 << bits) >> shift;
+                buildBoundary(l);
+            }
+        }
+        workspaces = ThreadLocal.withInitial(() -> new Workspace(n));
+    }
+
+    // Boundary nodes of every cell at a level, grouped by cell
+    private void buildBoundary(int l) {
+        int n = graph.nodeCount;
+        boundaryPosition[l] = new int[n];
+        Arrays.fill(boundaryPosition[l], -1);
+        boundaryStart[l] = new int[cellCount[l] + 1];
+        boolean[] isBoundary = new boolean[n];
+        for (int v = 0; v < n; v++) {
+            for (int a = graph.firstArc[v]; a < graph.firstArc[v + 1]; a++) {
+                if (cellOf[l][graph.arcTarget[a]] != cellOf[l][v]) {
+                    isBoundary[v] = true;
+                    break;
+                }
+            }
+            if (isBoundary[v]) boundaryStart[l][cellOf[l][v] + 1]++;
+        }
+        for (int c = 0; c < cellCount[l]; c++) boundaryStart[l][c + 1] += boundaryStart[l][c];
+        boundary[l] = new int[boundaryStart[l][cellCount[l]]];
+        int[] next = Arrays.copyOf(boundaryStart[l], cellCount[l]);
+        for (int v = 0; v < n; v++) {
+            if (!isBoundary[v]) continue;
+            int c = cellOf[l][v];
+            boundaryPosition[l][v] = next[c] - boundaryStart[l][c];
+            boundary[l][next[c]++] = v;
+        }
+    }
+
+    public int levels() {
+        return levels;
+    }
+
+    public int cellCount(int level) {
+        return cellCount[level];
+    }
+
+    public int boundaryCount(int level) {
+        return boundary[level].length;
+    }
+
+    // ----------- Customization -----------
+
+    // Metric with the traffic-weighted lengths of a time of day (what TrafficDijkstra uses)
+    public Metric customize(TrafficData trafficData, TrafficTime time) {
+        return customize(graph.trafficWeights(trafficData, time));
+    }
+
+    // One metric per time of day
+    public Map<TrafficTime, Metric> customizeAll(TrafficData trafficData) {
+        Map<TrafficTime, Metric> metrics = new EnumMap<>(TrafficTime.class);
+        for (TrafficTime time : TrafficTime.values()) metrics.put(time, customize(trafficData, time));
+        return metrics;
+    }
+
+    // Computes the cliques of every cell bottom-up; each level is customized in parallel
+    public Metric customize(double[] arcWeights) {
+        long startTime = System.nanoTime();
+        Metric metric = new Metric(arcWeights, levels);
+        for (int l = 1; l <= levels; l++) {
+            int level = l;
+            int[] offsets = cliqueOffsets(l);
+            double[] clique = new double[offsets[cellCount[l]]];
+            metric.cliques[l] = clique;
+            // One task per boundary node (one clique row), so the few big cells of the top levels still use all cores
+            IntStream.range(0, boundary[l].length).parallel().forEach(k -> {
+                Workspace w = workspaces.get();
+                int source = boundary[level][k];
+                int c = cellOf[level][source];
+                int first = boundaryStart[level][c], b = boundaryStart[level][c + 1] - first;
+                int i = k - first;
+                cellSearch(metric, level, c, source, w);
+                for (int j = 0; j < b; j++) clique[offsets[c] + i * b + j] = w.ws.distance(boundary[level][first + j]);
+            });
+        }
+        metric.customizationMillis = (System.nanoTime() - startTime) / 1_000_000;
+        return metric;
+    }
+
+    // Start of each cell's b x b clique in the level's clique array
+    private int[] cliqueOffsets(int l) {
+        int[] offsets = new int[cellCount[l] + 1];
+        for (int c = 0; c < cellCount[l]; c++) {
+            int b = boundaryStart[l][c + 1] - boundaryStart[l][c];
+            offsets[c + 1] = offsets[c] + b * b;
+        }
+        return offsets;
+    }
+
+    // Dijkstra from source limited to cell c of level l.
+    // Level 1 uses the roads inside the cell; higher levels use the child cells' cliques and the roads between them.
+    private void cellSearch(Metric metric, int l, int c, int source, Workspace w) {
+        SearchWorkspace ws = w.ws;
+        ws.reset();
+        ws.setDistance(source, 0.0, -1);
+        ws.heap.push(source, 0.0);
+        int[] childOffsets = l > 1 ? w.offsets(this, l - 1) : null;
+        while (!ws.heap.isEmpty()) {
+            double d = ws.heap.peekKey();
+            int u = ws.heap.pop();
+            if (d > ws.dist[u] || ws.isSettled(u)) continue;
+            ws.settle(u);
+
+            if (l > 1) {
+                // Across the child cell of u through its clique
+                int child = cellOf[l - 1][u];
+                int first = boundaryStart[l - 1][child], b = boundaryStart[l - 1][child + 1] - first;
+                int i = boundaryPosition[l - 1][u];
+                double[] clique = metric.cliques[l - 1];
+                for (int j = 0; j < b; j++) {
+                    relax(ws, boundary[l - 1][first + j], d + clique[childOffsets[child] + i * b + j], u, l - 1, w);
+                }
+            }
+            for (int a = graph.firstArc[u]; a < graph.firstArc[u + 1]; a++) {
+                int v = graph.arcTarget[a];
+                if (cellOf[l][v] != c) continue; // Stay inside the cell
+                if (l > 1 && cellOf[l - 1][v] == cellOf[l - 1][u]) continue; // Covered by the child's clique
+                relax(ws, v, d + metric.arcWeights[a], u, 0, w);
+            }
+        }
+    }
+
+    private static void relax(SearchWorkspace ws, int v, double newDist, int from, int level, Workspace w) {
+        if (newDist < ws.distance(v)) {
+            ws.setDistance(v, newDist, -1);
+            w.parentNode[v] = from;
+            w.parentLevel[v] = (byte) level;
+            ws.heap.push(v, newDist);
+        }
+    }
+
+    // ----------- Query -----------
+
+    // Best route between two node IDs under a metric, or null if there is none
+    public Route route(Metric metric, int fromId, int toId) {
+        int s = graph.indexOf(fromId), t = graph.indexOf(toId);
+        if (s < 0 || t < 0) return null;
+        Workspace w = workspaces.get();
+        SearchWorkspace ws = w.ws;
+        int[][] offsets = new int[levels + 1][];
+        for (int l = 1; l <= levels; l++) offsets[l] = w.offsets(this, l);
+
+        ws.reset();
+        ws.setDistance(s, 0.0, -1);
+        ws.heap.push(s, 0.0);
+        while (!ws.heap.isEmpty()) {
+            double d = ws.heap.peekKey();
+            int u = ws.heap.pop();
+            if (d > ws.dist[u] || ws.isSettled(u)) continue;
+            ws.settle(u);
+            if (u == t) break;
+
+            int l = queryLevel(u, s, t);
+            if (l > 0) {
+                // Jump across u's level-l cell
+                int c = cellOf[l][u];
+                int first = boundaryStart[l][c], b = boundaryStart[l][c + 1] - first;
+                int i = boundaryPosition[l][u];
+                double[] clique = metric.cliques[l];
+                for (int j = 0; j < b; j++) {
+                    if (j != i) relax(ws, boundary[l][first + j], d + clique[offsets[l][c] + i * b + j], u, l, w);
+                }
+            }
+            // Real roads: all of them near s and t, otherwise only those leaving u's level-l cell
+            for (int a = graph.firstArc[u]; a < graph.firstArc[u + 1]; a++) {
+                int v = graph.arcTarget[a];
+                if (l > 0 && cellOf[l][v] == cellOf[l][u]) continue;
+                relax(ws, v, d + metric.arcWeights[a], u, 0, w);
+            }
+        }
+        if (ws.distance(t) == Double.POSITIVE_INFINITY) return null;
+        double cost = ws.distance(t);
+
+        // Hops from t back to s, then each clique hop expanded inside its cell
+        List<int[]> hops = new ArrayList<>(); // {from, to, level}
+        for (int v = t; v != s; v = w.parentNode[v]) hops.add(new int[]{w.parentNode[v], v, w.parentLevel[v]});
+        Collections.reverse(hops);
+        List<Integer> nodes = new ArrayList<>();
+        nodes.add(graph.nodeIds[s]);
+        for (int[] hop : hops) {
+            if (hop[2] == 0) {
+                nodes.add(graph.nodeIds[hop[1]]);
+            } else {
+                for (int v : expand(metric, hop[2], hop[0], hop[1], w.expansion)) nodes.add(graph.nodeIds[v]);
+            }
+        }
+        return new Route(nodes, cost);
+    }
+
+    // Highest level whose cell of v holds neither s nor t (0 = search the real roads)
+    private int queryLevel(int v, int s, int t) {
+        for (int l = levels; l >= 1; l--) {
+            if (cellOf[l][v] != cellOf[l][s] && cellOf[l][v] != cellOf[l][t]) return l;
+        }
+        return 0;
+    }
+
+    // Road path of a clique hop u → v at level l (without u), by a search on the roads of that cell
+    private List<Integer> expand(Metric metric, int l, int u, int v, SearchWorkspace ws) {
+        int c = cellOf[l][u];
+        ws.reset();
+        ws.setDistance(u, 0.0, -1);
+        ws.heap.push(u, 0.0);
+        while (!ws.heap.isEmpty()) {
+            double d = ws.heap.peekKey();
+            int x = ws.heap.pop();
+            if (d > ws.dist[x] || ws.isSettled(x)) continue;
+            ws.settle(x);
+            if (x == v) break;
+            for (int a = graph.firstArc[x]; a < graph.firstArc[x + 1]; a++) {
+                int y = graph.arcTarget[a];
+                if (cellOf[l][y] != c) continue;
+                double newDist = d + metric.arcWeights[a];
+                if (newDist < ws.distance(y)) {
+                    ws.setDistance(y, newDist, a);
+                    ws.heap.push(y, newDist);
+                }
+            }
+        }
+        int[] path = CompactDijkstra.treePath(graph, ws, v);
+        List<Integer> result = new ArrayList<>();
+        for (int i = 1; i < path.length; i++) result.add(path[i]);
+        return result;
+    }
+
+    // Per-thread search arrays
+    private static class Workspace {
+        final SearchWorkspace ws;
+        final SearchWorkspace expansion; // For expanding clique hops while ws still holds the route
+        final int[] parentNode; // Node the search came from (valid where ws has a distance)
+        final byte[] parentLevel; // 0 = real road, l = clique of a level-l cell
+        int[][] offsets; // Clique offsets per level, computed once
+
+        Workspace(int n) {
+            ws = new SearchWorkspace(Math.max(n, 1));
+            expansion = new SearchWorkspace(Math.max(n, 1));
+            parentNode = new int[Math.max(n, 1)];
+            parentLevel = new byte[Math.max(n, 1)];
+        }
+
+        int[] offsets(CustomizableRoutePlanner planner, int l) {
+            if (offsets == null) {
+                offsets = new int[planner.levels + 1][];
+                for (int k = 1; k <= planner.levels; k++) offsets[k] = planner.cliqueOffsets(k);
+            }
+            return offsets[l];
+        }
+    }
+}
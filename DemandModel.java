@@ -0,0 +1,59 @@
+// DemandModel.java
+// Origin-destination demand derived from Node.population with a gravity-style split
+// Every populated node produces tripRate * population trips per hour. Those trips are shared among all other
+// nodes in proportion to their attraction: their population, plus a fixed attraction for facilities.
+// Values are computed on demand, so no N x N matrix is stored.
+
+public class DemandModel {
+    public final CompactGraph graph;
+    public final double tripRate; // Trips per hour per resident
+    public final double facilityAttraction; // Attraction of a facility, in "residents"
+
+    private final double[] attraction; // Attraction of every node
+    private final double totalAttraction; // Sum of all attractions
+    private final int[] origins; // Dense indices of nodes that produce trips
+
+    public DemandModel(CompactGraph graph, double tripRate, double facilityAttraction) {
+        this.graph = graph;
+        this.tripRate = tripRate;
+        this.facilityAttraction = facilityAttraction;
+
+        attraction = new double[graph.nodeCount];
+        double total = 0;
+        int originCount = 0;
+        for (int i = 0; i < graph.nodeCount; i++) {
+            attraction[i] = graph.population[i] + (graph.isFacility[i] ? facilityAttraction : 0);
+            total += attraction[i];
+            if (graph.population[i] > 0) originCount++;
+        }
+        totalAttraction = total;
+
+        origins = new int[originCount];
+        for (int i = 0, k = 0; i < graph.nodeCount; i++) {
+            if (graph.population[i] > 0) origins[k++] = i;
+        }
+    }
+
+    // Default model: 0.5% of residents travel in the peak hour, a facility attracts like 100,000 residents
+    public static DemandModel peakHour(CompactGraph graph) {
+        return new DemandModel(graph, 0.005, 100000);
+    }
+
+    // Dense indices of the nodes that produce trips
+    public int[] origins() {
+        return origins;
+    }
+
+    // Trips per hour from node o to node d (dense indices)
+    public double demand(int o, int d) {
+        if (o == d || graph.population[o] == 0) return 0;
+        double others = totalAttraction - attraction[o];
+        if (others <= 0) return 0;
+        return tripRate * graph.population[o] * attraction[d] / others;
+    }
+
+    // Total trips per hour leaving node o
+    public double production(int o) {
+        return tripRate * graph.population[o];
+    }
+}
@@ -1,12 +1,16 @@
 // Dijkstra.java
 // Finds the shortest paths from a source using Dijkstra's algorithm
 import java.util.*;
+import java.util.concurrent.CancellationException;
 
 public class Dijkstra {
     // Returns the shortest distance to all nodes from the start node
     public static Map<Integer, Double> findShortestPaths(Graph graph, int startId) {
         Map<Integer, Double> distances = new HashMap<>();  // store the least distance to reach every node
         PriorityQueue<int[]> pq = new PriorityQueue<>(Comparator.comparingDouble(a -> a[1])); // priority queue based on distance
+        long startTime = SearchMetrics.start(); // 0 when metrics are off
+        Set<Integer> settledNodes = startTime != 0 ? new HashSet<>() : null; // Only tracked for the metrics
+        int relaxed = 0, pushes = 1, stalePops = 0;
 
         //put all distances  = infinity except the start node = 0
         for (int id : graph.nodes.keySet()) {
@@ -20,29 +24,43 @@ public class Dijkstra {
             int[] current = pq.poll();
             int currentId = current[0];
             double currentDist = distances.get(currentId);
+            if (settledNodes != null && !settledNodes.add(currentId)) stalePops++; // popped again after a shorter distance
 
             // calc new distance for any neighbor
             for (Edge edge : graph.adjacencyList.getOrDefault(currentId, new ArrayList<>())) {
                 int neighbor = (edge.from == currentId) ? edge.to : edge.from;
                 double newDist = currentDist + edge.distance;
+                relaxed++;
 
                 // if the new road shorter .. save it and put it into the queue
                 if (newDist < distances.get(neighbor)) {
                     distances.put(neighbor, newDist);
                     pq.add(new int[]{neighbor, (int) newDist});
+                    pushes++;
                 }
             }
         }
 
+        SearchMetrics.record("dijkstra_tree", startTime, settledNodes == null ? 0 : settledNodes.size(), relaxed, pushes, stalePops);
         return distances;
     }
 
-    // Returns the shortest path from start to end
+    // Returns the shortest path from start to end (just [start] if end cannot be reached)
     public static List<Integer> findShortestPath(Graph graph, int startId, int endId) {
+        return findShortestPath(graph, startId, endId, SearchProgress.NONE);
+    }
+
+    // Same, reporting the road that reached each settled node to progress (stops if progress is cancelled)
+    public static List<Integer> findShortestPath(Graph graph, int startId, int endId, SearchProgress progress) {
         Map<Integer, Double> distances = new HashMap<>();
         // keep the source for each node so we can build the path later
         Map<Integer, Integer> previous = new HashMap<>();
         PriorityQueue<int[]> pq = new PriorityQueue<>(Comparator.comparingDouble(a -> a[1]));
+        long startTime = SearchMetrics.start(); // 0 when metrics are off
+        boolean watched = progress != SearchProgress.NONE;
+        Set<Integer> settledNodes = startTime != 0 || watched ? new HashSet<>() : null; // Only tracked for metrics/progress
+        Map<Integer, Edge> previousEdge = watched ? new HashMap<>() : null; // Road that reached each node
+        int relaxed = 0, pushes = 1, stalePops = 0;
 
         for (int id : graph.nodes.keySet()) {
             distances.put(id, Double.POSITIVE_INFINITY);
@@ -53,6 +71,12 @@ public class Dijkstra {
         while (!pq.isEmpty()) {
             int[] current = pq.poll();
             int currentId = current[0];
+            if (settledNodes != null && !settledNodes.add(currentId)) {
+                stalePops++;
+            } else if (watched) {
+                if (progress.isCancelled()) throw new CancellationException("Dijkstra search cancelled");
+                progress.edgeAdded(previousEdge.get(currentId), settledNodes.size(), graph.nodes.size());
+            }
 
             // stop searching as soon as we reach the end
             if (currentId == endId) break;
@@ -60,14 +84,18 @@ public class Dijkstra {
             for (Edge edge : graph.adjacencyList.getOrDefault(currentId, new ArrayList<>())) {
                 int neighbor = (edge.from == currentId) ? edge.to : edge.from;
                 double newDist = distances.get(currentId) + edge.distance;
+                relaxed++;
 
                 if (newDist < distances.get(neighbor)) {
                     distances.put(neighbor, newDist);
                     previous.put(neighbor, currentId);
+                    if (watched) previousEdge.put(neighbor, edge);
                     pq.add(new int[]{neighbor, (int) newDist});
+                    pushes++;
                 }
             }
         }
+        SearchMetrics.record("dijkstra", startTime, settledNodes == null ? 0 : settledNodes.size(), relaxed, pushes, stalePops);
 
         List<Integer> path = new ArrayList<>();
         Integer current = endId;
@@ -80,6 +108,56 @@ public class Dijkstra {
         Collections.reverse(path);
         return path;
     }
+
+    // Same query on an off-heap network. Distances and parents live in the graph's off-heap workspace, so the
+    // Java heap only holds the search frontier and the returned path. Like the Graph version, returns just
+    // [start] if end cannot be reached (or either node is unknown).
+    public static List<Integer> findShortestPath(OffHeapGraph graph, int startId, int endId) {
+        List<Integer> path = new ArrayList<>();
+        int source = graph.indexOf(startId), target = graph.indexOf(endId);
+        if (source < 0 || target < 0) {
+            path.add(startId);
+            return path;
+        }
+        OffHeapGraph.Workspace ws = graph.workspace();
+        ws.reset(graph.nodeCount());
+        NodeHeap heap = ws.heap;
+        long startTime = SearchMetrics.start(); // 0 when metrics are off
+        int settled = 0, relaxed = 0, pushes = 1, stalePops = 0;
+
+        ws.set(source, 0.0, -1);
+        heap.push(source, 0.0);
+        while (!heap.isEmpty()) {
+            double d = heap.peekKey();
+            int u = heap.pop();
+            if (d > ws.distance(u)) { // Improved after it was pushed
+                stalePops++;
+                continue;
+            }
+            settled++;
+            if (u == target) break;
+
+            for (int a = graph.firstArc(u); a < graph.firstArc(u + 1); a++) {
+                int v = graph.arcTarget(a);
+                double newDist = d + graph.edgeDistance(graph.arcEdge(a));
+                relaxed++;
+                if (newDist < ws.distance(v)) {
+                    ws.set(v, newDist, u);
+                    heap.push(v, newDist);
+                    pushes++;
+                }
+            }
+        }
+        SearchMetrics.record("dijkstra", startTime, settled, relaxed, pushes, stalePops);
+
+        if (ws.distance(target) == Double.POSITIVE_INFINITY) {
+            path.add(startId);
+            return path;
+        }
+        for (int v = target; v >= 0; v = ws.parent(v)) path.add(graph.nodeId(v));
+        Collections.reverse(path);
+        return path;
+    }
 }
 
 
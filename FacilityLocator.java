@@ -0,0 +1,293 @@
+// FacilityLocator.java
+// Chooses where to build p new facilities (hospitals, stations, ...) among candidate nodes
+// Two objectives, both weighted by Node.population:
+// - MEDIAN: minimize the total population-weighted travel distance to the nearest facility (p-median);
+// - COVERAGE: maximize the population within a radius of a facility (maximal coverage).
+// Facilities that already exist can be given as fixed sites: they serve demand but are never moved.
+// Steps:
+// 1. Distance matrix: one reverse Dijkstra per candidate (in parallel) gives the distance from every
+//    populated node TO the candidate; stored as floats, 4 bytes per (candidate, populated node).
+// 2. Greedy start: sites are added one at a time, each time the one that saves the most.
+// 3. Teitz-Bart interchange: candidates are taken in turn and the best swap (candidate in, open site out)
+//    is made if it improves the objective, until a full round makes no swap. A candidate is evaluated in
+//    O(demand) with Whitaker's fast interchange, from the nearest and second-nearest open site of every
+//    populated node; those are updated incrementally after each swap. Blocks of candidates are evaluated in
+//    parallel and the best improving swap of each block is made.
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+public class FacilityLocator {
+    private static final double UNREACHABLE = 1e9; // Distance charged to population that cannot reach any site
+
+    public enum Objective { MEDIAN, COVERAGE }
+
+    private final CompactGraph graph; // Array form of the road network
+    private final int[] candidates; // Dense indices of the candidate sites
+    private final int[] demand; // Dense indices of the populated nodes
+    private final double[] population; // Population of each demand node
+    private final float[][] distance; // distance[c][i] = travel distance from demand node i to candidate c
+    private final ThreadLocal<double[]> lossArrays; // Per-thread scratch for interchange evaluation
+
+    // One solution
+    public static class Result {
+        public final int[] siteIds; // Chosen new sites (node IDs), without the fixed ones
+        public final double weightedDistance; // Sum of population x distance to the nearest site (reachable only)
+        public final long coveredPopulation; // Population within the radius of a site (0 if no radius)
+        public final long unreachablePopulation; // Population that cannot reach any site
+        public final long totalPopulation;
+        public final int swaps; // Interchanges made after the greedy start
+
+        Result(int[] siteIds, double weightedDistance, long coveredPopulation, long unreachablePopulation, long totalPopulation, int swaps) {
+            this.siteIds = siteIds;
+            this.weightedDistance = weightedDistance;
+            this.coveredPopulation = coveredPopulation;
+            this.unreachablePopulation = unreachablePopulation;
+            this.totalPopulation = totalPopulation;
+            this.swaps = swaps;
+        }
+
+        // Population-weighted mean distance to the nearest site, over the population that can reach one
+        public double meanDistance() {
+            long reached = totalPopulation - unreachablePopulation;
+            return reached == 0 ? 0 : weightedDistance / reached;
+        }
+    }
+
+    // Builds the distance matrix for the candidate node IDs under the given arc weights
+    public FacilityLocator(CompactGraph graph, double[] weights, int[] candidateIds) {
+        this.graph = graph;
+        candidates = new int[candidateIds.length];
+        for (int c = 0; c < candidateIds.length; c++) {
+            candidates[c] = graph.indexOf(candidateIds[c]);
+            if (candidates[c] < 0) throw new IllegalArgumentException("Unknown candidate node " + candidateIds[c]);
+        }
+
+        int demandCount = 0;
+        for (int v = 0; v < graph.nodeCount; v++) {
+            if (graph.population[v] > 0) demandCount++;
+        }
+        demand = new int[demandCount];
+        population = new double[demandCount];
+        for (int v = 0, i = 0; v < graph.nodeCount; v++) {
+            if (graph.population[v] > 0) {
+                demand[i] = v;
+                population[i++] = graph.population[v];
+            }
+        }
+
+        distance = new float[candidates.length][];
+        ThreadLocal<SearchWorkspace> workspaces = ThreadLocal.withInitial(() -> new SearchWorkspace(graph.nodeCount));
+        IntStream.range(0, candidates.length).parallel().forEach(c -> {
+            SearchWorkspace ws = workspaces.get();
+            CompactDijkstra.shortestPathTree(graph, weights, candidates[c], true, ws); // Distances TO the candidate
+            float[] row = new float[demand.length];
+            for (int i = 0; i < demand.length; i++) row[i] = (float) Math.min(ws.distance(demand[i]), UNREACHABLE);
+            distance[c] = row;
+        });
+        lossArrays = ThreadLocal.withInitial(() -> new double[candidates.length]);
+    }
+
+    // Locator using plain road lengths
+    public static FacilityLocator forDistance(CompactGraph graph, int[] candidateIds) {
+        return new FacilityLocator(graph, graph.distanceWeights(), candidateIds);
+    }
+
+    // Locator using the same traffic-weighted lengths as TrafficDijkstra for a time of day
+    public static FacilityLocator forTraffic(CompactGraph graph, TrafficData trafficData, TrafficTime time, int[] candidateIds) {
+        return new FacilityLocator(graph, graph.trafficWeights(trafficData, time), candidateIds);
+    }
+
+    // Chooses p new sites among the candidates; fixedIds (which must be candidates) are always open.
+    // radius is the coverage threshold (see IsochroneEngine.minutesToRadius); it is only reported for MEDIAN.
+    public Result solve(int p, Objective objective, double radius, int... fixedIds) {
+        State state = new State(objective, radius);
+        for (int id : fixedIds) {
+            int c = candidateOf(id);
+            state.fixed[c] = true;
+            state.open(c);
+        }
+        int newSites = Math.min(p, candidates.length - fixedIds.length);
+
+        // Greedy start: the candidate that saves the most, p times
+        for (int k = 0; k < newSites; k++) {
+            int best = -1;
+            double bestSaving = -1;
+            double[] savings = new double[candidates.length];
+            IntStream.range(0, candidates.length).parallel().forEach(c -> {
+                if (!state.isOpen[c]) savings[c] = state.saving(c);
+            });
+            for (int c = 0; c < candidates.length; c++) {
+                if (!state.isOpen[c] && savings[c] > bestSaving) {
+                    bestSaving = savings[c];
+                    best = c;
+                }
+            }
+            state.open(best);
+        }
+
+        // Teitz-Bart: candidates in turn, in parallel blocks, until a full round makes no improving swap
+        int swaps = 0;
+        if (newSites > 0) {
+            int block = Math.max(1, 4 * Runtime.getRuntime().availableProcessors());
+            int sinceLastSwap = 0, start = 0;
+            double[] profit = new double[candidates.length];
+            int[] removed = new int[candidates.length];
+            while (sinceLastSwap < candidates.length) {
+                int end = Math.min(start + block, candidates.length);
+                int from = start;
+                IntStream.range(from, end).parallel().forEach(c -> {
+                    profit[c] = Double.NEGATIVE_INFINITY;
+                    if (!state.isOpen[c]) removed[c] = state.bestSwap(c, profit);
+                });
+                int best = -1;
+                double threshold = 1e-9 * Math.max(1, state.objectiveValue()); // Ignore rounding-size gains
+                for (int c = from; c < end; c++) {
+                    if (profit[c] > threshold && (best < 0 || profit[c] > profit[best])) best = c;
+                }
+                if (best >= 0) {
+                    state.swap(best, removed[best]);
+                    swaps++;
+                    sinceLastSwap = 0;
+                } else {
+                    sinceLastSwap += end - from;
+                }
+                start = end == candidates.length ? 0 : end;
+            }
+        }
+
+        List<Integer> sites = new ArrayList<>();
+        for (int c = 0; c < candidates.length; c++) {
+            if (state.isOpen[c] && !state.fixed[c]) sites.add(graph.nodeIds[candidates[c]]);
+        }
+        return state.result(sites.stream().mapToInt(Integer::intValue).toArray(), swaps);
+    }
+
+    private int candidateOf(int nodeId) {
+        int v = graph.indexOf(nodeId);
+        for (int c = 0; c < candidates.length; c++) {
+            if (candidates[c] == v) return c;
+        }
+        throw new IllegalArgumentException("Fixed site " + nodeId + " is not a candidate");
+    }
+
+    // Open sites and, for every demand node, the cost to its nearest (c1, d1) and second nearest (c2, d2) site
+    private class State {
+        final Objective objective;
+        final double radius;
+        final boolean[] isOpen = new boolean[candidates.length];
+        final boolean[] fixed = new boolean[candidates.length];
+        final List<Integer> openSites = new ArrayList<>();
+        final int[] c1 = new int[demand.length], c2 = new int[demand.length];
+        final double[] d1 = new double[demand.length], d2 = new double[demand.length];
+
+        State(Objective objective, double radius) {
+            this.objective = objective;
+            this.radius = radius;
+            Arrays.fill(c1, -1);
+            Arrays.fill(c2, -1);
+            Arrays.fill(d1, noSite());
+            Arrays.fill(d2, noSite());
+        }
+
+        // Cost of serving demand node i from candidate c: the distance, or 0/1 for covered/uncovered
+        double cost(int c, int i) {
+            double d = distance[c][i];
+            return objective == Objective.MEDIAN ? d : (d <= radius ? 0 : 1);
+        }
+
+        // Cost of a demand node that no site serves
+        double noSite() {
+            return objective == Objective.MEDIAN ? UNREACHABLE : 1;
+        }
+
+        void open(int c) {
+            isOpen[c] = true;
+            openSites.add(c);
+            for (int i = 0; i < demand.length; i++) insert(c, i);
+        }
+
+        private void insert(int c, int i) {
+            double d = cost(c, i);
+            if (d < d1[i]) {
+                c2[i] = c1[i];
+                d2[i] = d1[i];
+                c1[i] = c;
+                d1[i] = d;
+            } else if (d < d2[i]) {
+                c2[i] = c;
+                d2[i] = d;
+            }
+        }
+
+        // Weighted cost saved by opening c in addition to the open sites
+        double saving(int c) {
+            double saving = 0;
+            for (int i = 0; i < demand.length; i++) {
+                double d = cost(c, i);
+                if (d < d1[i]) saving += population[i] * (d1[i] - d);
+            }
+            return saving;
+        }
+
+        // Whitaker's evaluation of opening c: every demand node that is nearer to c moves to it (gain);
+        // the others would lose loss[r] if their nearest site r closed. Stores the best profit in profit[c]
+        // and returns the site r to close.
+        int bestSwap(int c, double[] profit) {
+            double[] loss = lossArrays.get();
+            for (int r : openSites) loss[r] = 0;
+            double gain = 0;
+            for (int i = 0; i < demand.length; i++) {
+                double d = cost(c, i);
+                if (d < d1[i]) {
+                    gain += population[i] * (d1[i] - d);
+                } else if (c1[i] >= 0) { // Nodes no site serves lose nothing
+                    loss[c1[i]] += population[i] * (Math.min(d, d2[i]) - d1[i]);
+                }
+            }
+            int best = -1;
+            for (int r : openSites) {
+                if (!fixed[r] && (best < 0 || loss[r] < loss[best])) best = r;
+            }
+            profit[c] = best < 0 ? Double.NEGATIVE_INFINITY : gain - loss[best];
+            return best;
+        }
+
+        // Opens c and closes r; only demand nodes whose nearest or second nearest site was r rescan the open sites
+        void swap(int c, int r) {
+            isOpen[c] = true;
+            isOpen[r] = false;
+            openSites.remove((Integer) r);
+            openSites.add(c);
+            for (int i = 0; i < demand.length; i++) {
+                if (c1[i] == r || c2[i] == r) {
+                    c1[i] = c2[i] = -1;
+                    d1[i] = d2[i] = noSite();
+                    for (int s : openSites) insert(s, i);
+                } else {
+                    insert(c, i);
+                }
+            }
+        }
+
+        double objectiveValue() {
+            double total = 0;
+            for (int i = 0; i < demand.length; i++) total += population[i] * d1[i];
+            return total;
+        }
+
+        Result result(int[] siteIds, int swaps) {
+            double weighted = 0;
+            long covered = 0, unreachable = 0, total = 0;
+            for (int i = 0; i < demand.length; i++) {
+                double nearest = UNREACHABLE;
+                for (int s : openSites) nearest = Math.min(nearest, distance[s][i]);
+                if (nearest < UNREACHABLE) weighted += population[i] * nearest;
+                else unreachable += (long) population[i];
+                if (nearest <= radius) covered += (long) population[i];
+                total += (long) population[i];
+            }
+            return new Result(siteIds, weighted, covered, unreachable, total, swaps);
+        }
+    }
+}
@@ -21,6 +21,18 @@ public class Graph {
         adjacencyList.get(edge.to).add(new Edge(edge.to, edge.from, edge.distance, edge.capacity, edge.condition, edge.isExisting));
     }
 
+    // Returns a copy with the same nodes but only the existing roads (potential roads left out)
+    public Graph existingRoadsOnly() {
+        Graph copy = new Graph();
+        for (Node node : nodes.values()) {
+            copy.addNode(node);
+        }
+        for (Edge edge : edges) {
+            if (edge.isExisting) copy.addEdge(edge);
+        }
+        return copy;
+    }
+
     // Prints a summary of the graph (nodes, edges, and adjacency)
     public void printGraphSummary() {
         System.out.println("Total Nodes: " + nodes.size());
@@ -0,0 +1,406 @@
+// GraphPartitioner.java
+// Splits the road network into k parts of about the same number of nodes with as few roads between parts as
+// possible, so each part can be served by its own routing shard (see ShardedRouter).
+// Multilevel recursive bisection, the scheme used by METIS:
+// 1. Coarsening: nodes are paired along their heaviest road (heavy-edge matching) and merged, level after
+//    level, until a few dozen nodes are left. Merged nodes add up their node counts, merged roads their weights.
+// 2. Initial split of the coarsest graph by greedy region growing from several random seeds.
+// 3. Uncoarsening: the split is projected back level by level and improved at each level with
+//    Fiduccia-Mattheyses passes (move the boundary node with the best gain, keep the best prefix of moves).
+// k parts come from splitting in two recursively (k/2 and k - k/2 parts); the two halves run in parallel.
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+public class GraphPartitioner {
+    public double imbalance = 0.03; // Allowed deviation from the target size of a part (3%)
+    public int coarsestSize = 40; // Stop coarsening below this many nodes
+    public int initialTries = 8; // Random seeds tried for the initial split
+    public long seed = 42; // Same seed, same partition
+
+    // Result of a partitioning: the part of every node (dense CompactGraph index)
+    public static class Partition {
+        public final CompactGraph graph;
+        public final int parts;
+        public final int[] partOf; // Part of each dense node index
+        public final int[] sizes; // Nodes per part
+        public final int cutEdges; // Roads whose ends are in different parts
+
+        Partition(CompactGraph graph, int parts, int[] partOf) {
+            this.graph = graph;
+            this.parts = parts;
+            this.partOf = partOf;
+            this.sizes = new int[parts];
+            for (int p : partOf) sizes[p]++;
+            int cut = 0;
+            for (int a = 0; a < graph.arcCount; a++) {
+                if (a < graph.arcTwin[a] && partOf[graph.arcSource(a)] != partOf[graph.arcTarget[a]]) cut++;
+            }
+            this.cutEdges = cut;
+        }
+
+        // Part of a node ID, or -1 if the node is unknown
+        public int partOfNode(int nodeId) {
+            int index = graph.indexOf(nodeId);
+            return index < 0 ? -1 : partOf[index];
+        }
+
+        // Node IDs of one part, in increasing order
+        public List<Integer> nodesOf(int part) {
+            List<Integer> ids = new ArrayList<>();
+            for (int i = 0; i < graph.nodeCount; i++) {
+                if (partOf[i] == part) ids.add(graph.nodeIds[i]);
+            }
+            return ids;
+        }
+
+        // True if the node has a road to another part
+        public boolean isBoundary(int index) {
+            for (int a = graph.firstArc[index]; a < graph.firstArc[index + 1]; a++) {
+                if (partOf[graph.arcTarget[a]] != partOf[index]) return true;
+            }
+            return false;
+        }
+    }
+
+    public Partition partition(Graph graph, int parts) {
+        return partition(CompactGraph.fromGraph(graph), parts);
+    }
+
+    public Partition partition(CompactGraph graph, int parts) {
+        if (parts < 1) throw new IllegalArgumentException("At least one part is needed");
+        int[] partOf = new int[graph.nodeCount];
+        Level top = Level.fromCompact(graph);
+        int[] ids = new int[graph.nodeCount];
+        for (int i = 0; i < ids.length; i++) ids[i] = i;
+        split(top, ids, parts, 0, partOf);
+        return new Partition(graph, parts, partOf);
+    }
+
+    // Splits a (sub)graph into `parts` parts numbered from firstPart; ids maps level nodes to dense indices
+    private void split(Level g, int[] ids, int parts, int firstPart, int[] partOf) {
+        if (parts == 1 || g.n == 0) {
+            for (int id : ids) partOf[id] = firstPart;
+            return;
+        }
+        int leftParts = parts / 2;
+        // Each of the ~log2(parts) splits on the way down gets its share of the allowed imbalance
+        double tolerance = imbalance / Math.ceil(Math.log(parts) / Math.log(2));
+        int[] side = bisect(g, (double) leftParts / parts, tolerance, new Random(seed + firstPart * 31L + parts));
+
+        Level[] halves = new Level[2];
+        int[][] halfIds = new int[2][];
+        for (int s = 0; s < 2; s++) {
+            int[] local = new int[g.n];
+            int count = 0;
+            for (int v = 0; v < g.n; v++) {
+                if (side[v] == s) local[v] = count++;
+            }
+            halfIds[s] = new int[count];
+            for (int v = 0; v < g.n; v++) {
+                if (side[v] == s) halfIds[s][local[v]] = ids[v];
+            }
+            halves[s] = g.induced(side, s, local, count);
+        }
+
+        // Both halves are independent: the left one runs in another thread on large graphs
+        if (g.n > 2000) {
+            CompletableFuture<Void> left = CompletableFuture.runAsync(() -> split(halves[0], halfIds[0], leftParts, firstPart, partOf));
+            split(halves[1], halfIds[1], parts - leftParts, firstPart + leftParts, partOf);
+            left.join();
+        } else {
+            split(halves[0], halfIds[0], leftParts, firstPart, partOf);
+            split(halves[1], halfIds[1], parts - leftParts, firstPart + leftParts, partOf);
+        }
+    }
+
+    // Multilevel bisection: side[v] = 0 for the part that should hold leftFraction of the node weight
+    private int[] bisect(Level g, double leftFraction, double tolerance, Random random) {
+        // Coarsen
+        List<Level> levels = new ArrayList<>();
+        levels.add(g);
+        Level current = g;
+        long maxNodeWeight = Math.max(1, (long) (current.totalWeight * Math.min(leftFraction, 1 - leftFraction) / 20));
+        while (current.n > coarsestSize) {
+            Level coarse = current.coarsen(random, maxNodeWeight);
+            if (coarse.n > current.n * 0.95) break; // Matching no longer shrinks the graph
+            levels.add(coarse);
+            current = coarse;
+        }
+
+        // Initial split of the coarsest level: best of several region growings
+        double target = current.totalWeight * leftFraction;
+        long allowed = (long) (tolerance * Math.min(target, current.totalWeight - target));
+        int[] best = null;
+        long bestCut = Long.MAX_VALUE;
+        for (int t = 0; t < initialTries; t++) {
+            int[] side = current.growRegion(random.nextInt(current.n), target, random);
+            refine(current, side, target, allowed);
+            long cut = current.cut(side);
+            if (cut < bestCut) {
+                bestCut = cut;
+                best = side;
+            }
+        }
+
+        // Project back to the finest level, refining at each level
+        int[] side = best;
+        for (int l = levels.size() - 2; l >= 0; l--) {
+            Level fine = levels.get(l);
+            int[] projected = new int[fine.n];
+            for (int v = 0; v < fine.n; v++) projected[v] = side[fine.coarseOf[v]];
+            side = projected;
+            refine(fine, side, target, allowed);
+        }
+        return side;
+    }
+
+    // Fiduccia-Mattheyses passes: moves boundary nodes one at a time (best gain first, each at most once per pass),
+    // keeps the sizes within the allowed band and rolls back to the best cut seen in the pass
+    private void refine(Level g, int[] side, double target, long allowed) {
+        long slack = Math.max(allowed, g.maxNodeWeight()); // Coarse nodes cannot always hit the band exactly
+        long leftWeight = 0;
+        for (int v = 0; v < g.n; v++) if (side[v] == 0) leftWeight += g.nodeWeight[v];
+
+        int[] gain = new int[g.n];
+        boolean[] locked = new boolean[g.n];
+        int[] moves = new int[g.n];
+
+        for (int pass = 0; pass < 10; pass++) {
+            // Gain of moving v = weight of its roads to the other side - weight of its roads on its own side
+            PriorityQueue<long[]> queue = new PriorityQueue<>((a, b) -> Long.compare(b[0], a[0]));
+            for (int v = 0; v < g.n; v++) {
+                gain[v] = 0;
+                locked[v] = false;
+                boolean boundary = false;
+                for (int a = g.start[v]; a < g.start[v + 1]; a++) {
+                    if (side[g.adj[a]] != side[v]) {
+                        gain[v] += g.adjWeight[a];
+                        boundary = true;
+                    } else {
+                        gain[v] -= g.adjWeight[a];
+                    }
+                }
+                if (boundary) queue.add(new long[]{gain[v], v});
+            }
+
+            long cut = g.cut(side);
+            long bestCut = cut;
+            double bestBalance = Math.abs(leftWeight - target);
+            boolean bestFeasible = bestBalance <= slack;
+            int moveCount = 0, bestMoveCount = 0;
+            while (!queue.isEmpty() && moveCount - bestMoveCount < 50) {
+                long[] entry = queue.poll();
+                int v = (int) entry[1];
+                if (locked[v] || entry[0] != gain[v]) continue; // Stale entry
+                long newLeft = leftWeight + (side[v] == 0 ? -g.nodeWeight[v] : g.nodeWeight[v]);
+                if (Math.abs(newLeft - target) > slack && Math.abs(newLeft - target) >= Math.abs(leftWeight - target)) continue;
+
+                // Move v to the other side
+                locked[v] = true;
+                side[v] = 1 - side[v];
+                leftWeight = newLeft;
+                cut -= gain[v];
+                gain[v] = -gain[v];
+                moves[moveCount++] = v;
+                for (int a = g.start[v]; a < g.start[v + 1]; a++) {
+                    int u = g.adj[a];
+                    if (locked[u]) continue;
+                    // The road u-v switched between internal and external for u
+                    gain[u] += side[u] == side[v] ? -2 * g.adjWeight[a] : 2 * g.adjWeight[a];
+                    queue.add(new long[]{gain[u], u});
+                }
+
+                // Best point: a balanced split first, then the smallest cut (or the best balance while unbalanced)
+                double balance = Math.abs(leftWeight - target);
+                boolean feasible = balance <= slack;
+                boolean better = feasible
+                        ? !bestFeasible || cut < bestCut || (cut == bestCut && balance < bestBalance)
+                        : !bestFeasible && balance < bestBalance;
+                if (better) {
+                    bestCut = cut;
+                    bestBalance = balance;
+                    bestFeasible = feasible;
+                    bestMoveCount = moveCount;
+                }
+            }
+
+            // Undo the moves made after the best point
+            for (int m = moveCount - 1; m >= bestMoveCount; m--) {
+                int v = moves[m];
+                side[v] = 1 - side[v];
+                leftWeight += side[v] == 0 ? g.nodeWeight[v] : -g.nodeWeight[v];
+            }
+            if (bestMoveCount == 0) break; // The pass found nothing better
+        }
+    }
+
+    // One level of the multilevel hierarchy: an undirected weighted graph in CSR form
+    private static class Level {
+        int n;
+        int[] nodeWeight; // Original nodes merged into this node
+        int[] start, adj, adjWeight; // Neighbours of v: adj[start[v] .. start[v + 1] - 1], roads merged into each link
+        int[] coarseOf; // Node of the next coarser level this node was merged into
+        long totalWeight;
+
+        Level(int n) {
+            this.n = n;
+            nodeWeight = new int[n];
+            start = new int[n + 1];
+        }
+
+        // Parallel roads become one link of higher weight; roads from a node to itself are dropped
+        static Level fromCompact(CompactGraph graph) {
+            Level level = new Level(graph.nodeCount);
+            Arrays.fill(level.nodeWeight, 1);
+            level.totalWeight = graph.nodeCount;
+            List<int[]> links = new ArrayList<>();
+            for (int a = 0; a < graph.arcCount; a++) {
+                int u = graph.arcSource(a), v = graph.arcTarget[a];
+                if (u != v) links.add(new int[]{u, v, 1});
+            }
+            level.setLinks(links);
+            return level;
+        }
+
+        // Builds the CSR arrays from directed links {u, v, weight}, adding up duplicates
+        void setLinks(List<int[]> links) {
+            links.sort((a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0]) : Integer.compare(a[1], b[1]));
+            int[] u = new int[links.size()], v = new int[links.size()], w = new int[links.size()];
+            int count = 0;
+            for (int[] link : links) {
+                if (count > 0 && u[count - 1] == link[0] && v[count - 1] == link[1]) {
+                    w[count - 1] += link[2];
+                } else {
+                    u[count] = link[0];
+                    v[count] = link[1];
+                    w[count] = link[2];
+                    count++;
+                }
+            }
+            Arrays.fill(start, 0);
+            for (int i = 0; i < count; i++) start[u[i] + 1]++;
+            for (int i = 0; i < n; i++) start[i + 1] += start[i];
+            adj = Arrays.copyOf(v, count);
+            adjWeight = Arrays.copyOf(w, count);
+        }
+
+        int maxNodeWeight() {
+            int max = 0;
+            for (int w : nodeWeight) max = Math.max(max, w);
+            return max;
+        }
+
+        long cut(int[] side) {
+            long cut = 0;
+            for (int v = 0; v < n; v++) {
+                for (int a = start[v]; a < start[v + 1]; a++) {
+                    if (side[adj[a]] != side[v]) cut += adjWeight[a];
+                }
+            }
+            return cut / 2; // Every link is stored in both directions
+        }
+
+        // Heavy-edge matching: visiting nodes in random order, pair each free node with the free neighbour
+        // joined by the heaviest link (merged nodes may not grow beyond maxNodeWeight)
+        Level coarsen(Random random, long maxNodeWeight) {
+            int[] order = new int[n];
+            for (int i = 0; i < n; i++) order[i] = i;
+            for (int i = n - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int t = order[i];
+                order[i] = order[j];
+                order[j] = t;
+            }
+            int[] match = new int[n];
+            Arrays.fill(match, -1);
+            coarseOf = new int[n];
+            int coarseCount = 0;
+            for (int v : order) {
+                if (match[v] >= 0) continue;
+                int best = v, bestWeight = -1;
+                for (int a = start[v]; a < start[v + 1]; a++) {
+                    int u = adj[a];
+                    if (match[u] < 0 && u != v && adjWeight[a] > bestWeight && nodeWeight[u] + nodeWeight[v] <= maxNodeWeight) {
+                        best = u;
+                        bestWeight = adjWeight[a];
+                    }
+                }
+                match[v] = best;
+                match[best] = v;
+                coarseOf[v] = coarseCount;
+                coarseOf[best] = coarseCount;
+                coarseCount++;
+            }
+
+            Level coarse = new Level(coarseCount);
+            coarse.totalWeight = totalWeight;
+            for (int v = 0; v < n; v++) {
+                if (match[v] == v || v < match[v]) coarse.nodeWeight[coarseOf[v]] += nodeWeight[v] + (match[v] == v ? 0 : nodeWeight[match[v]]);
+            }
+            List<int[]> links = new ArrayList<>();
+            for (int v = 0; v < n; v++) {
+                for (int a = start[v]; a < start[v + 1]; a++) {
+                    int cu = coarseOf[v], cv = coarseOf[adj[a]];
+                    if (cu != cv) links.add(new int[]{cu, cv, adjWeight[a]});
+                }
+            }
+            coarse.setLinks(links);
+            return coarse;
+        }
+
+        // Grows side 0 from a seed, always adding the frontier node with the most links into the region,
+        // until it holds the target weight (a new random seed is used if the region cannot grow further)
+        int[] growRegion(int seedNode, double target, Random random) {
+            int[] side = new int[n];
+            Arrays.fill(side, 1);
+            int[] inside = new int[n]; // Link weight from each node into the region
+            PriorityQueue<long[]> frontier = new PriorityQueue<>((a, b) -> Long.compare(b[0], a[0]));
+            long weight = 0;
+            int next = seedNode;
+            while (weight < target) {
+                if (next < 0) {
+                    // Pop the best frontier node, or restart from a random node outside the region
+                    while (!frontier.isEmpty() && (side[(int) frontier.peek()[1]] == 0 || frontier.peek()[0] != inside[(int) frontier.peek()[1]])) frontier.poll();
+                    if (!frontier.isEmpty()) {
+                        next = (int) frontier.poll()[1];
+                    } else {
+                        int offset = random.nextInt(n);
+                        for (int i = 0; i < n && next < 0; i++) {
+                            if (side[(offset + i) % n] == 1) next = (offset + i) % n;
+                        }
+                        if (next < 0) break;
+                    }
+                }
+                if (weight + nodeWeight[next] / 2.0 > target && weight > 0) break; // Closer to target without it
+                side[next] = 0;
+                weight += nodeWeight[next];
+                for (int a = start[next]; a < start[next + 1]; a++) {
+                    int u = adj[a];
+                    if (side[u] == 1) {
+                        inside[u] += adjWeight[a];
+                        frontier.add(new long[]{inside[u], u});
+                    }
+                }
+                next = -1;
+            }
+            return side;
+        }
+
+        // Subgraph of the nodes with side[v] == s; local[v] is their index in it
+        Level induced(int[] side, int s, int[] local, int count) {
+            Level sub = new Level(count);
+            List<int[]> links = new ArrayList<>();
+            for (int v = 0; v < n; v++) {
+                if (side[v] != s) continue;
+                sub.nodeWeight[local[v]] = nodeWeight[v];
+                sub.totalWeight += nodeWeight[v];
+                for (int a = start[v]; a < start[v + 1]; a++) {
+                    if (side[adj[a]] == s) links.add(new int[]{local[v], local[adj[a]], adjWeight[a]});
+                }
+            }
+            sub.setLinks(links);
+            return sub;
+        }
+    }
+}
@@ -0,0 +1,550 @@
+// GraphPreprocessor.java
+// Shrinks a road network after GraphBuilder so searches touch fewer nodes, without changing their answers
+// 1. Dead-end pruning: nodes with a single road are removed again and again, so every tree hanging off the
+//    network (cul-de-sacs, spurs) disappears. Each pruned node keeps its parent towards the node its tree
+//    attaches to; a path into a tree is the unique tree path from that attach point.
+// 2. Chain compression: a node with exactly two roads to two different neighbors is contracted away, so a
+//    chain A - x1 - ... - xk - B becomes one road A - B with the total distance, the minimum capacity and the
+//    worst condition (existing only if every part exists; its cost is the sum of the potential parts).
+//    With traffic data, a chain only runs over roads with the same traffic counts, so the contracted road gets
+//    exactly the summed traffic-weighted length in TrafficDijkstra and AStarSearch.
+// The reduced graph is an ordinary Graph, so Dijkstra, AStarSearch and MSTBuilder run on it unchanged.
+// shortestPath, fastestPath and buildMST take and return ORIGINAL node IDs and roads: an endpoint inside a chain
+// is linked to both ends of its chain, one inside a dead-end tree to its attach point, and the path found on
+// the reduced graph is expanded back road by road.
+// MST: a dead-end road is a bridge, so it is always in the MST; of a chain, the MST holds either all roads or
+// all but the longest one, so the chain enters Kruskal as one road as long as its longest part.
+
+import java.util.*;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Stream;
+
+public class GraphPreprocessor {
+    public final Graph original;
+    public final Graph reduced; // Kept nodes, the original roads between them and one road per contracted chain
+    public final TrafficData reducedTraffic; // Traffic counts for the reduced graph (null if built without traffic)
+    public int prunedNodes; // Nodes removed with their dead-end trees
+    public int contractedNodes; // Nodes removed inside chains
+
+    private final TrafficData trafficData;
+
+    // A chain of contracted nodes: nodes[0] and nodes[last] are kept, roads[i] joins nodes[i] and nodes[i + 1]
+    private static class Chain {
+        final int[] nodes;
+        final Edge[] roads;
+        Edge contracted; // The road standing for the chain in the reduced graph (null for a loop A ... A)
+
+        Chain(int[] nodes, Edge[] roads) {
+            this.nodes = nodes;
+            this.roads = roads;
+        }
+
+        Edge longest() {
+            Edge longest = roads[0];
+            for (Edge road : roads) {
+                if (road.distance > longest.distance) longest = road;
+            }
+            return longest;
+        }
+    }
+
+    // A search of the existing engines on a graph between two node IDs
+    private interface Search {
+        List<Integer> find(Graph graph, int from, int to);
+    }
+
+    // Read-only view of a map plus a few added or replaced entries (the base map is not copied)
+    private static class Overlay<V> extends AbstractMap<Integer, V> {
+        private final Map<Integer, V> base, added;
+
+        Overlay(Map<Integer, V> base, Map<Integer, V> added) {
+            this.base = base;
+            this.added = added;
+        }
+
+        @Override
+        public V get(Object key) {
+            V value = added.get(key);
+            return value != null ? value : base.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return added.containsKey(key) || base.containsKey(key);
+        }
+
+        @Override
+        public Set<Entry<Integer, V>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public int size() {
+                    return base.size() + (int) added.keySet().stream().filter(key -> !base.containsKey(key)).count();
+                }
+
+                @Override
+                public Iterator<Entry<Integer, V>> iterator() {
+                    return Stream.concat(added.entrySet().stream(),
+                            base.entrySet().stream().filter(entry -> !added.containsKey(entry.getKey()))).iterator();
+                }
+            };
+        }
+    }
+
+    // ----------- Dead-end trees (keyed by pruned node ID) -----------
+    private final Map<Integer, Integer> treeParent = new HashMap<>(); // Next node towards the attach point
+    private final Map<Integer, Edge> treeRoad = new HashMap<>(); // Road to the tree parent
+    private final Map<Integer, Integer> attachPoint = new HashMap<>(); // Remaining node the tree hangs from
+    private final Map<Integer, Integer> treeDepth = new HashMap<>(); // Roads between the node and its attach point
+
+    // ----------- Chains -----------
+    private final List<Chain> chains = new ArrayList<>();
+    private final Map<Integer, Chain> chainOf = new HashMap<>(); // Contracted node → its chain
+    private final Map<Integer, Integer> chainPosition = new HashMap<>(); // Contracted node → index in chain.nodes
+    private final Map<Edge, Chain> contractedChain = new IdentityHashMap<>(); // Reduced road → chain it replaces
+    private final Map<Long, List<Edge>> roadsBetween = new HashMap<>(); // Reduced roads of each unordered node pair
+
+    public GraphPreprocessor(Graph graph) {
+        this(graph, null);
+    }
+
+    // With trafficData, chains stop where traffic counts change so fastestPath stays exact
+    public GraphPreprocessor(Graph graph, TrafficData trafficData) {
+        this.original = graph;
+        this.trafficData = trafficData;
+        this.reduced = new Graph();
+        this.reducedTraffic = trafficData == null ? null : new TrafficData();
+        if (trafficData != null) reducedTraffic.trafficMap.putAll(trafficData.trafficMap);
+
+        // Roads at each node, as the original Edge objects (a self-loop never helps a path or a tree)
+        Map<Integer, List<Edge>> incident = new HashMap<>();
+        for (int id : graph.nodes.keySet()) {
+            incident.put(id, new ArrayList<>());
+        }
+        for (Edge edge : graph.edges) {
+            if (edge.from == edge.to || !incident.containsKey(edge.from) || !incident.containsKey(edge.to)) continue;
+            incident.get(edge.from).add(edge);
+            incident.get(edge.to).add(edge);
+        }
+
+        pruneDeadEnds(incident);
+        contractChains(incident);
+    }
+
+    private static int other(Edge road, int node) {
+        return road.from == node ? road.to : road.from;
+    }
+
+    private static long pairKey(int a, int b) {
+        return ((long) Math.min(a, b) << 32) | (Math.max(a, b) & 0xffffffffL);
+    }
+
+    // Removes degree-1 nodes until none is left; the last node of a tree-shaped component stays as its root
+    private void pruneDeadEnds(Map<Integer, List<Edge>> incident) {
+        Map<Integer, Integer> degree = new HashMap<>();
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (Map.Entry<Integer, List<Edge>> entry : incident.entrySet()) {
+            degree.put(entry.getKey(), entry.getValue().size());
+            if (entry.getValue().size() == 1) queue.add(entry.getKey());
+        }
+
+        List<Integer> order = new ArrayList<>(); // Pruned nodes; a parent is always pruned after its children
+        while (!queue.isEmpty()) {
+            int v = queue.poll();
+            if (degree.get(v) != 1) continue; // Its neighbor went first: v is the root of a tree component
+            for (Edge road : incident.get(v)) {
+                int u = other(road, v);
+                if (treeParent.containsKey(u)) continue; // Road to an already pruned child
+                treeParent.put(v, u);
+                treeRoad.put(v, road);
+                degree.put(v, 0);
+                if (degree.merge(u, -1, Integer::sum) == 1) queue.add(u);
+                order.add(v);
+                break;
+            }
+        }
+
+        // Attach point and depth, from the nodes nearest the attach point outwards
+        for (int i = order.size() - 1; i >= 0; i--) {
+            int v = order.get(i);
+            int u = treeParent.get(v);
+            Integer attach = attachPoint.get(u);
+            attachPoint.put(v, attach == null ? u : attach);
+            treeDepth.put(v, attach == null ? 1 : treeDepth.get(u) + 1);
+        }
+        prunedNodes = order.size();
+    }
+
+    // Traffic counts of a road, found the same way TrafficData looks them up
+    private int[] flows(Edge road) {
+        String key = trafficData.trafficMap.containsKey(road.from + "-" + road.to) ? road.from + "-" + road.to : road.to + "-" + road.from;
+        return trafficData.trafficMap.getOrDefault(key, new int[]{1000, 1000, 1000, 1000});
+    }
+
+    // Replaces every chain of degree-2 nodes between kept nodes by one road
+    private void contractChains(Map<Integer, List<Edge>> incident) {
+        // Roads between remaining nodes
+        Map<Integer, List<Edge>> core = new HashMap<>();
+        for (Map.Entry<Integer, List<Edge>> entry : incident.entrySet()) {
+            if (treeParent.containsKey(entry.getKey())) continue;
+            List<Edge> roads = new ArrayList<>();
+            for (Edge road : entry.getValue()) {
+                if (!treeParent.containsKey(other(road, entry.getKey()))) roads.add(road);
+            }
+            core.put(entry.getKey(), roads);
+        }
+
+        Set<Integer> kept = new HashSet<>();
+        for (Map.Entry<Integer, List<Edge>> entry : core.entrySet()) {
+            int v = entry.getKey();
+            List<Edge> roads = entry.getValue();
+            boolean inChain = roads.size() == 2 && other(roads.get(0), v) != other(roads.get(1), v)
+                    && (trafficData == null || Arrays.equals(flows(roads.get(0)), flows(roads.get(1))));
+            if (!inChain) keep(v, kept);
+        }
+
+        // Walk every road of every kept node; then keep one node of each ring that has no kept node at all
+        Set<Edge> used = Collections.newSetFromMap(new IdentityHashMap<>());
+        ArrayDeque<Integer> pending = new ArrayDeque<>(kept);
+        List<Integer> remaining = new ArrayList<>(core.keySet());
+        int next = 0;
+        while (true) {
+            while (!pending.isEmpty()) {
+                int a = pending.poll();
+                for (Edge road : core.get(a)) {
+                    if (!used.contains(road)) walkChain(a, road, core, kept, used, pending);
+                }
+            }
+            while (next < remaining.size() && (kept.contains(remaining.get(next)) || chainOf.containsKey(remaining.get(next)))) next++;
+            if (next == remaining.size()) break;
+            keep(remaining.get(next), kept);
+            pending.add(remaining.get(next));
+        }
+    }
+
+    private void keep(int node, Set<Integer> kept) {
+        kept.add(node);
+        reduced.addNode(original.nodes.get(node));
+    }
+
+    // Follows the roads from kept node a through contracted nodes until the next kept node
+    private void walkChain(int a, Edge first, Map<Integer, List<Edge>> core, Set<Integer> kept, Set<Edge> used, ArrayDeque<Integer> pending) {
+        List<Integer> nodes = new ArrayList<>(List.of(a));
+        List<Edge> roads = new ArrayList<>();
+        Edge road = first;
+        int at = a;
+        while (true) {
+            used.add(road);
+            roads.add(road);
+            at = other(road, at);
+            nodes.add(at);
+            if (kept.contains(at)) break;
+            List<Edge> both = core.get(at);
+            road = both.get(0) == road ? both.get(1) : both.get(0);
+        }
+        if (roads.size() == 1) { // Two kept nodes joined directly
+            addReducedRoad(first);
+            return;
+        }
+
+        int b = at;
+        if (trafficData != null && a != b && hasRoadBetween(a, b, core)) {
+            // A second road between a and b would share its traffic key: keep the first contracted node instead
+            for (int i = 1; i < roads.size(); i++) used.remove(roads.get(i));
+            keep(nodes.get(1), kept);
+            addReducedRoad(first);
+            pending.add(nodes.get(1));
+            return;
+        }
+
+        Chain chain = new Chain(nodes.stream().mapToInt(Integer::intValue).toArray(), roads.toArray(new Edge[0]));
+        for (int i = 1; i + 1 < chain.nodes.length; i++) {
+            chainOf.put(chain.nodes[i], chain);
+            chainPosition.put(chain.nodes[i], i);
+        }
+        contractedNodes += chain.nodes.length - 2;
+        chains.add(chain);
+        if (trafficData != null) { // Traffic counts of the roads a query adds from a contracted node to both chain ends
+            int[] flows = flows(chain.roads[0]);
+            for (int i = 1; i + 1 < chain.nodes.length; i++) {
+                reducedTraffic.trafficMap.put(chain.nodes[i] + "-" + a, flows.clone());
+                reducedTraffic.trafficMap.put(chain.nodes[i] + "-" + b, flows.clone());
+            }
+        }
+        if (a == b) return; // A loop back to a: no use as a road
+
+        double distance = 0, cost = 0;
+        int capacity = Integer.MAX_VALUE, condition = Integer.MAX_VALUE;
+        boolean existing = true;
+        for (Edge part : chain.roads) {
+            distance += part.distance;
+            capacity = Math.min(capacity, part.capacity);
+            if (part.isExisting) {
+                condition = Math.min(condition, part.condition);
+            } else {
+                existing = false;
+                cost += part.cost;
+            }
+        }
+        Edge contracted = new Edge(a, b, distance, capacity, condition == Integer.MAX_VALUE ? -1 : condition, existing);
+        if (!existing) contracted.cost = cost;
+        chain.contracted = contracted;
+        contractedChain.put(contracted, chain);
+        addReducedRoad(contracted);
+        if (trafficData != null) {
+            reducedTraffic.trafficMap.remove(b + "-" + a);
+            reducedTraffic.trafficMap.put(a + "-" + b, flows(chain.roads[0]));
+        }
+    }
+
+    private boolean hasRoadBetween(int a, int b, Map<Integer, List<Edge>> core) {
+        if (roadsBetween.containsKey(pairKey(a, b))) return true;
+        for (Edge road : core.get(a)) {
+            if (other(road, a) == b) return true;
+        }
+        return false;
+    }
+
+    private void addReducedRoad(Edge road) {
+        reduced.addEdge(road);
+        roadsBetween.computeIfAbsent(pairKey(road.from, road.to), k -> new ArrayList<>()).add(road);
+    }
+
+    // Shortest path by distance between two original nodes (Dijkstra on the reduced graph); empty if unreachable
+    public List<Integer> shortestPath(int startId, int endId) {
+        return route(startId, endId, road -> road.distance, Dijkstra::findShortestPath);
+    }
+
+    // Traffic-aware path for a time of day (AStarSearch on the reduced graph); needs the traffic constructor
+    public List<Integer> fastestPath(int startId, int endId, TrafficTime time) {
+        if (trafficData == null) throw new IllegalStateException("Preprocessed without traffic data");
+        return route(startId, endId, road -> trafficData.getEffectiveDistance(road, time),
+                (graph, a, b) -> AStarSearch.findPath(graph, reducedTraffic, a, b, time));
+    }
+
+    // Turns a path over reduced nodes back into original node IDs (parallel roads: the shortest one)
+    public List<Integer> expand(List<Integer> reducedPath) {
+        return expand(reducedPath, road -> road.distance);
+    }
+
+    private List<Integer> route(int s, int t, ToDoubleFunction<Edge> weight, Search search) {
+        if (!original.nodes.containsKey(s) || !original.nodes.containsKey(t)) return new ArrayList<>();
+        if (s == t) return new ArrayList<>(List.of(s));
+        int rootS = attachPoint.getOrDefault(s, s), rootT = attachPoint.getOrDefault(t, t);
+        if (rootS == rootT) return treePath(s, t); // Same dead-end tree: the tree path is the only one
+
+        List<Integer> best = null;
+        double bestCost = Double.POSITIVE_INFINITY;
+
+        // Both inside the same chain: straight along it
+        Chain chainS = chainOf.get(rootS), chainT = chainOf.get(rootT);
+        if (chainS != null && chainS == chainT) {
+            int i = chainPosition.get(rootS), j = chainPosition.get(rootT);
+            best = chainPart(chainS, i, j);
+            bestCost = chainCost(chainS, i, j, weight);
+        }
+
+        // One search over the reduced graph; a first or last road leaving the reduced graph is part of a chain
+        List<Integer> found = search.find(queryGraph(rootS, rootT), rootS, rootT);
+        if (found.size() >= 2 && found.get(0) == rootS && found.get(found.size() - 1) == rootT) {
+            int first = chainS == null ? 0 : 1, last = found.size() - (chainT == null ? 1 : 2);
+            List<Integer> core = found.subList(first, last + 1);
+            List<Integer> path = new ArrayList<>(List.of(rootS));
+            double cost = pathCost(core, weight);
+            if (chainS != null) {
+                int i = chainPosition.get(rootS), j = chainEnd(chainS, i, found.get(1), weight);
+                path = chainPart(chainS, i, j);
+                cost += chainCost(chainS, i, j, weight);
+            }
+            append(path, expand(core, weight));
+            if (chainT != null) {
+                int j = chainPosition.get(rootT), i = chainEnd(chainT, j, found.get(last), weight);
+                append(path, chainPart(chainT, i, j));
+                cost += chainCost(chainT, i, j, weight);
+            }
+            if (cost < bestCost) {
+                best = path;
+                bestCost = cost;
+            }
+        }
+        if (best == null) return new ArrayList<>();
+
+        // Into and out of the dead-end trees
+        List<Integer> path = treePath(s, rootS);
+        append(path, best);
+        append(path, treePath(rootT, t));
+        return path;
+    }
+
+    // The reduced graph plus the query endpoints that lie inside chains, each joined to both ends of its chain.
+    // Only the changed entries are new, so a query graph is cheap and several queries can run at once.
+    private Graph queryGraph(int... endpoints) {
+        Map<Integer, Node> nodes = new HashMap<>();
+        Map<Integer, List<Edge>> adjacency = new HashMap<>();
+        for (int node : endpoints) {
+            Chain chain = chainOf.get(node);
+            if (chain == null || nodes.containsKey(node)) continue;
+            nodes.put(node, original.nodes.get(node));
+            adjacency.put(node, new ArrayList<>());
+            int i = chainPosition.get(node);
+            Edge part = chain.roads[0];
+            for (int end : new int[]{0, chain.nodes.length - 1}) {
+                int endId = chain.nodes[end];
+                double distance = chainCost(chain, i, end, road -> road.distance);
+                adjacency.get(node).add(new Edge(node, endId, distance, part.capacity, part.condition, part.isExisting));
+                adjacency.computeIfAbsent(endId, k -> new ArrayList<>(reduced.adjacencyList.get(k)))
+                        .add(new Edge(endId, node, distance, part.capacity, part.condition, part.isExisting));
+            }
+        }
+        if (nodes.isEmpty()) return reduced;
+
+        Graph graph = new Graph();
+        graph.nodes = new Overlay<>(reduced.nodes, nodes);
+        graph.adjacencyList = new Overlay<>(reduced.adjacencyList, adjacency);
+        graph.edges = reduced.edges;
+        return graph;
+    }
+
+    // Index of the chain end a search went to from position i (for a loop both ends match: the cheaper side)
+    private static int chainEnd(Chain chain, int i, int endId, ToDoubleFunction<Edge> weight) {
+        int last = chain.nodes.length - 1;
+        if (chain.nodes[0] != endId) return last;
+        if (chain.nodes[last] != endId) return 0;
+        return chainCost(chain, i, 0, weight) <= chainCost(chain, i, last, weight) ? 0 : last;
+    }
+
+    // Adds a path that starts where path ends
+    private static void append(List<Integer> path, List<Integer> more) {
+        path.addAll(path.isEmpty() ? more : more.subList(1, more.size()));
+    }
+
+    private static List<Integer> chainPart(Chain chain, int i, int j) {
+        List<Integer> part = new ArrayList<>();
+        for (int k = i; ; k += i < j ? 1 : -1) {
+            part.add(chain.nodes[k]);
+            if (k == j) return part;
+        }
+    }
+
+    private static double chainCost(Chain chain, int i, int j, ToDoubleFunction<Edge> weight) {
+        double cost = 0;
+        for (int k = Math.min(i, j); k < Math.max(i, j); k++) {
+            cost += weight.applyAsDouble(chain.roads[k]);
+        }
+        return cost;
+    }
+
+    // Cost of a reduced road in original roads (a contracted road costs the sum of its chain)
+    private double reducedCost(Edge road, ToDoubleFunction<Edge> weight) {
+        Chain chain = contractedChain.get(road);
+        return chain == null ? weight.applyAsDouble(road) : chainCost(chain, 0, chain.roads.length, weight);
+    }
+
+    // The cheapest reduced road between two adjacent reduced nodes
+    private Edge cheapestRoad(int u, int v, ToDoubleFunction<Edge> weight) {
+        Edge best = null;
+        double bestCost = Double.POSITIVE_INFINITY;
+        for (Edge road : roadsBetween.getOrDefault(pairKey(u, v), List.of())) {
+            double cost = reducedCost(road, weight);
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = road;
+            }
+        }
+        if (best == null) throw new IllegalArgumentException("No reduced road between " + u + " and " + v);
+        return best;
+    }
+
+    private double pathCost(List<Integer> reducedPath, ToDoubleFunction<Edge> weight) {
+        double cost = 0;
+        for (int i = 0; i + 1 < reducedPath.size(); i++) {
+            cost += reducedCost(cheapestRoad(reducedPath.get(i), reducedPath.get(i + 1), weight), weight);
+        }
+        return cost;
+    }
+
+    private List<Integer> expand(List<Integer> reducedPath, ToDoubleFunction<Edge> weight) {
+        List<Integer> path = new ArrayList<>();
+        if (reducedPath.isEmpty()) return path;
+        path.add(reducedPath.get(0));
+        for (int i = 0; i + 1 < reducedPath.size(); i++) {
+            int u = reducedPath.get(i), v = reducedPath.get(i + 1);
+            Chain chain = contractedChain.get(cheapestRoad(u, v, weight));
+            if (chain == null) {
+                path.add(v);
+            } else {
+                int last = chain.nodes.length - 1;
+                append(path, chain.nodes[0] == u ? chainPart(chain, 0, last) : chainPart(chain, last, 0));
+            }
+        }
+        return path;
+    }
+
+    // Unique path between two nodes of the same dead-end tree (the attach point counts as its root)
+    private List<Integer> treePath(int s, int t) {
+        List<Integer> up = new ArrayList<>(), down = new ArrayList<>();
+        int a = s, b = t;
+        while (treeDepth.getOrDefault(a, 0) > treeDepth.getOrDefault(b, 0)) {
+            up.add(a);
+            a = treeParent.get(a);
+        }
+        while (treeDepth.getOrDefault(b, 0) > treeDepth.getOrDefault(a, 0)) {
+            down.add(b);
+            b = treeParent.get(b);
+        }
+        while (a != b) {
+            up.add(a);
+            a = treeParent.get(a);
+            down.add(b);
+            b = treeParent.get(b);
+        }
+        up.add(a);
+        Collections.reverse(down);
+        up.addAll(down);
+        return up;
+    }
+
+    // Minimum spanning tree (forest) of the ORIGINAL graph, computed by MSTBuilder on the reduced graph
+    public List<Edge> buildMST() {
+        Graph mstGraph = new Graph();
+        for (Node node : reduced.nodes.values()) {
+            mstGraph.addNode(node);
+        }
+        Map<Edge, Chain> standIn = new IdentityHashMap<>(); // Kruskal road → chain it stands for
+        for (Edge road : reduced.edges) {
+            Chain chain = contractedChain.get(road);
+            if (chain == null) {
+                mstGraph.addEdge(road);
+            } else {
+                Edge link = new Edge(road.from, road.to, chain.longest().distance, road.capacity, road.condition, road.isExisting);
+                standIn.put(link, chain);
+                mstGraph.addEdge(link);
+            }
+        }
+
+        List<Edge> mst = new ArrayList<>(treeRoad.values());
+        Set<Chain> whole = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Edge road : MSTBuilder.buildMST(mstGraph)) {
+            Chain chain = standIn.get(road);
+            if (chain == null) {
+                mst.add(road);
+            } else {
+                mst.addAll(Arrays.asList(chain.roads));
+                whole.add(chain);
+            }
+        }
+        for (Chain chain : chains) { // Chains left out of the tree (and loops) lose only their longest road
+            if (whole.contains(chain)) continue;
+            Edge longest = chain.longest();
+            for (Edge road : chain.roads) {
+                if (road != longest) mst.add(road);
+            }
+        }
+        mst.sort(Comparator.comparingDouble(road -> road.distance)); // Same order as MSTBuilder
+        return mst;
+    }
+
+    public String summary() {
+        return original.nodes.size() + " nodes, " + original.edges.size() + " roads → " + reduced.nodes.size() + " nodes, "
+                + reduced.edges.size() + " roads (" + prunedNodes + " in dead ends, " + contractedNodes + " in chains)";
+    }
+}
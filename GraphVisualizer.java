@@ -3,37 +3,95 @@
 
 // GraphVisualizer.java (Updated to show labels, fix A* / Dijkstra visibility)
 // GraphVisualizer.java (with Legend and Distance Labels)
+// Drawing: MapRenderer draws the visible part of the network into a pixel buffer on a background thread,
+// and the finished image is copied onto a Canvas. While panning/zooming, the last image is shifted/scaled
+// right away, so the window stays responsive even when a full render of a huge network takes longer.
+// Computing: MST/Dijkstra/A* run as cancellable tasks on a worker pool (one shown at a time, a new one
+// cancels the previous). Their progress drives the progress bar, and the roads they have settled so far are
+// painted while they run. The traffic data is loaded once, in the background, when the window opens.
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
 import javafx.scene.Scene;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.*;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.input.ScrollEvent;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
-import javafx.scene.shape.Circle;
-import javafx.scene.shape.Line;
-import javafx.scene.text.Text;
+import javafx.scene.text.Font;
 import javafx.stage.Stage;
 
+import java.io.FileNotFoundException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 public class GraphVisualizer extends Application {
 
     public static Graph graph;
     public static List<Edge> highlightEdges = new ArrayList<>();
+    // Optional: node names read from off-heap storage. Only the names: the map is still drawn from the on-heap
+    // graph (MapRenderer builds a CompactGraph and a SpatialIndex from it), so the heap still grows with the network.
+    public static OffHeapGraph store;
+
+    private static final long PAINT_INTERVAL_NANOS = 50_000_000; // Partial results are painted at most every 50 ms
 
     private double orgSceneX, orgSceneY;
-    private double translateX = 0, translateY = 0;
-    private double zoom = 1.0;
     private Pane pane;
+    private Canvas canvas;
+
+    private MapRenderer renderer;
+    private MapRenderer.Viewport viewport; // What the user is looking at (FX thread only)
+    private MapRenderer.Frame shownFrame; // Last finished image, possibly of an older viewport
+    private WritableImage image; // shownFrame's pixels
+    private final AtomicLong latestRequest = new AtomicLong(); // Renders of older requests are skipped
+    private final ExecutorService renderThread = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "map-renderer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ExecutorService workers = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 1), runnable -> {
+                Thread thread = new Thread(runnable, "graph-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private CompletableFuture<TrafficData> trafficData; // Read once, shared by every A* run
+    private SearchTask running; // Computation currently shown (FX thread only)
+    private ProgressBar progressBar;
+    private Label status;
+    private Button cancel;
 
     private boolean showAllEdges = false;
 
     @Override
     public void start(Stage stage) {
-        pane = new Pane();
+        trafficData = CompletableFuture.supplyAsync(() -> {
+            try {
+                return new TrafficData("src/traffic_data.csv");
+            } catch (FileNotFoundException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }, workers);
+
+        canvas = new Canvas(1200, 560);
+        canvas.setManaged(false); // Sized by the pane below, not the other way round
+        pane = new Pane(canvas);
+        pane.setPrefSize(1200, 560);
+        canvas.widthProperty().bind(pane.widthProperty());
+        canvas.heightProperty().bind(pane.heightProperty());
         VBox root = new VBox();
+        VBox.setVgrow(pane, Priority.ALWAYS);
 
         Button showMST = new Button("🔗 Show MST");
         Button showShortest = new Button("📍 Show Dijkstra");
@@ -48,37 +106,40 @@ public class GraphVisualizer extends Application {
                 new Label("⬤ Orange: Facility Node"),
                 new Label("━ Gray: Existing Road"),
                 new Label("━ Blue Dashed: Potential Road"),
-                new Label("━ Red: Highlighted Edge")
+                new Label("━ Red: Highlighted Edge"),
+                new Label("━ Green: Explored by the running search")
         );
 
+        progressBar = new ProgressBar(0);
+        cancel = new Button("✖ Cancel");
+        cancel.setDisable(true);
+        cancel.setOnAction(e -> {
+            if (running != null) running.cancel();
+        });
+        status = new Label("Loading the map...");
+        HBox progress = new HBox(10);
+        progress.getChildren().addAll(progressBar, cancel, status);
+
         showMST.setOnAction(e -> {
             showAllEdges = false;
-            highlightEdges = MSTBuilder.buildMST(graph);
-            redrawGraph();
+            runTask("MST", true, p -> MSTBuilder.buildMST(graph, p));
         });
 
         showShortest.setOnAction(e -> {
             showAllEdges = false;
-            List<Integer> path = Dijkstra.findShortestPath(graph, 1, 5);
-            highlightEdges = buildEdgePath(path);
-            redrawGraph();
+            runTask("Dijkstra", false, p -> buildEdgePath(Dijkstra.findShortestPath(graph, 1, 5, p)));
         });
 
         showAStar.setOnAction(e -> {
-            try {
-                showAllEdges = false;
-                TrafficData trafficData = new TrafficData("src/traffic_data.csv");
-                List<Integer> path = AStarSearch.findPath(graph, trafficData, 1, 109, TrafficTime.MORNING);
-                highlightEdges = buildEdgePath(path);
-                redrawGraph();
-            } catch (Exception ex) {
-                ex.printStackTrace();
-            }
+            showAllEdges = false;
+            runTask("A*", false, p -> buildEdgePath(
+                    AStarSearch.findPath(graph, trafficData.join(), 1, 109, TrafficTime.MORNING, p)));
         });
 
         showAll.setOnAction(e -> {
+            if (running != null) running.cancel();
             showAllEdges = true;
-            highlightEdges.clear();
+            highlightEdges = new ArrayList<>();
             redrawGraph();
         });
 
@@ -97,14 +158,14 @@ public class GraphVisualizer extends Application {
             } else {
                 StringBuilder sb = new StringBuilder();
                 for (int id : disconnected) {
-                    sb.append(graph.nodes.get(id).name).append("\n");
+                    sb.append(nodeName(id)).append("\n");
                 }
                 alert.setContentText(sb.toString());
             }
             alert.showAndWait();
         });
 
-        root.getChildren().addAll(legend, showMST, showShortest, showAStar, showAll, checkDisconnected, pane);
+        root.getChildren().addAll(legend, showMST, showShortest, showAStar, showAll, checkDisconnected, progress, pane);
 
         Scene scene = new Scene(root, 1200, 600);
         stage.setTitle("🚦 Greater Cairo Transportation Network");
@@ -113,28 +174,19 @@ public class GraphVisualizer extends Application {
 
         scene.setOnKeyPressed((KeyEvent e) -> {
             switch (e.getCode()) {
-                case UP -> pane.setTranslateY(pane.getTranslateY() - 20);
-                case DOWN -> pane.setTranslateY(pane.getTranslateY() + 20);
-                case LEFT -> pane.setTranslateX(pane.getTranslateX() - 20);
-                case RIGHT -> pane.setTranslateX(pane.getTranslateX() + 20);
-                case PLUS, EQUALS -> {
-                    zoom *= 1.1;
-                    pane.setScaleX(zoom);
-                    pane.setScaleY(zoom);
-                }
-                case MINUS -> {
-                    zoom *= 0.9;
-                    pane.setScaleX(zoom);
-                    pane.setScaleY(zoom);
-                }
+                case UP -> moveView(viewport.panned(0, -20));
+                case DOWN -> moveView(viewport.panned(0, 20));
+                case LEFT -> moveView(viewport.panned(-20, 0));
+                case RIGHT -> moveView(viewport.panned(20, 0));
+                case PLUS, EQUALS -> moveView(viewport.zoomed(1.1, viewport.width / 2.0, viewport.height / 2.0));
+                case MINUS -> moveView(viewport.zoomed(0.9, viewport.width / 2.0, viewport.height / 2.0));
             }
         });
 
+        // Zoom around the mouse pointer
         pane.setOnScroll((ScrollEvent event) -> {
             double factor = event.getDeltaY() > 0 ? 1.1 : 0.9;
-            zoom *= factor;
-            pane.setScaleX(zoom);
-            pane.setScaleY(zoom);
+            moveView(viewport.zoomed(factor, event.getX(), event.getY()));
         });
 
         pane.setOnMousePressed((MouseEvent e) -> {
@@ -145,72 +197,165 @@ public class GraphVisualizer extends Application {
         pane.setOnMouseDragged((MouseEvent e) -> {
             double deltaX = e.getSceneX() - orgSceneX;
             double deltaY = e.getSceneY() - orgSceneY;
-            translateX += deltaX;
-            translateY += deltaY;
-            pane.setTranslateX(translateX);
-            pane.setTranslateY(translateY);
+            moveView(viewport.panned(deltaX, deltaY));
             orgSceneX = e.getSceneX();
             orgSceneY = e.getSceneY();
         });
 
-        highlightEdges = MSTBuilder.buildMST(graph);
-        redrawGraph();
+        // The canvas follows the window size
+        canvas.widthProperty().addListener((obs, oldWidth, newWidth) -> resizeView());
+        canvas.heightProperty().addListener((obs, oldHeight, newHeight) -> resizeView());
+
+        // The spatial index of a big network takes a moment to build, so the window opens first
+        CompletableFuture.supplyAsync(() -> new MapRenderer(graph), workers).thenAccept(built -> Platform.runLater(() -> {
+            renderer = built;
+            if (store != null) renderer.setNodeNames(GraphVisualizer::nodeName);
+            int width = (int) Math.max(canvas.getWidth(), 1), height = (int) Math.max(canvas.getHeight(), 1);
+            viewport = MapRenderer.Viewport.fit(renderer.getIndex(), width, height, 50);
+            status.setText("Map ready");
+            runTask("MST", true, p -> MSTBuilder.buildMST(graph, p));
+        }));
     }
 
-    private void redrawGraph() {
-        pane.getChildren().clear();
+    @Override
+    public void stop() {
+        if (running != null) running.cancel();
+        workers.shutdownNow();
+        renderThread.shutdownNow();
+    }
 
-        double width = 1200, height = 800, margin = 50;
-        double minX = Double.MAX_VALUE, maxX = Double.MIN_VALUE;
-        double minY = Double.MAX_VALUE, maxY = Double.MIN_VALUE;
+    // A computation on the worker pool that reports the roads it settles (see SearchProgress)
+    private class SearchTask extends Task<List<Edge>> implements SearchProgress {
+        private final Function<SearchProgress, List<Edge>> computation;
+        private final boolean settledIsResult; // MST: the settled roads are the result being built (red)
+        private final BitSet settled = new BitSet(); // Roads settled so far (worker thread only)
+        private long lastPaint = System.nanoTime();
 
-        for (Node node : graph.nodes.values()) {
-            minX = Math.min(minX, node.x);
-            maxX = Math.max(maxX, node.x);
-            minY = Math.min(minY, node.y);
-            maxY = Math.max(maxY, node.y);
+        SearchTask(Function<SearchProgress, List<Edge>> computation, boolean settledIsResult) {
+            this.computation = computation;
+            this.settledIsResult = settledIsResult;
         }
 
-        double scaleX = (width - 2 * margin) / (maxX - minX + 1) * 3.0;
-        double scaleY = (height - 2 * margin) / (maxY - minY + 1) * 3.0;
+        @Override
+        protected List<Edge> call() {
+            return computation.apply(this);
+        }
 
-        for (Edge edge : graph.edges) {
-            if (!showAllEdges && !highlightEdges.contains(edge)) continue;
+        @Override
+        public void edgeAdded(Edge edge, int done, int total) {
+            int road = edge == null ? -1 : renderer.roadOf(edge);
+            if (road >= 0) settled.set(road);
+            long now = System.nanoTime();
+            if (now - lastPaint < PAINT_INTERVAL_NANOS) return;
+            lastPaint = now;
+            updateProgress(done, total);
+            BitSet snapshot = (BitSet) settled.clone();
+            Platform.runLater(() -> {
+                if (running != this) return; // Superseded meanwhile
+                if (settledIsResult) renderer.setHighlightedRoads(snapshot);
+                else renderer.setExploredRoads(snapshot);
+                requestRender();
+            });
+        }
+    }
 
-            Node from = graph.nodes.get(edge.from);
-            Node to = graph.nodes.get(edge.to);
+    // Starts a computation, cancelling the one running; its result becomes the highlighted roads
+    private void runTask(String name, boolean settledIsResult, Function<SearchProgress, List<Edge>> computation) {
+        if (renderer == null) return; // Map still loading
+        if (running != null) running.cancel();
+        SearchTask task = new SearchTask(computation, settledIsResult);
+        running = task;
+        long startTime = System.nanoTime();
+        progressBar.progressProperty().bind(task.progressProperty());
+        cancel.setDisable(false);
+        status.setText(name + " running...");
+
+        task.setOnSucceeded(e -> {
+            if (running != task) return;
+            finishTask(String.format("%s done in %.0f ms", name, (System.nanoTime() - startTime) / 1e6), true);
+            highlightEdges = task.getValue();
+            redrawGraph();
+        });
+        task.setOnCancelled(e -> {
+            if (running != task) return;
+            finishTask(name + " cancelled", false);
+            redrawGraph(); // Back to the previous result
+        });
+        task.setOnFailed(e -> {
+            if (running != task) return;
+            finishTask(name + " failed: " + task.getException().getMessage(), false);
+            task.getException().printStackTrace();
+            redrawGraph();
+        });
+        workers.submit(task);
+    }
 
-            double x1 = (from.x - minX) * scaleX + margin;
-            double y1 = (from.y - minY) * scaleY + margin;
-            double x2 = (to.x - minX) * scaleX + margin;
-            double y2 = (to.y - minY) * scaleY + margin;
+    private void finishTask(String message, boolean completed) {
+        running = null;
+        progressBar.progressProperty().unbind();
+        progressBar.setProgress(completed ? 1 : 0);
+        cancel.setDisable(true);
+        status.setText(message);
+    }
 
-            Line line = new Line(x1, y1, x2, y2);
-            line.setStrokeWidth(1.5);
+    // Applies the current highlight/show-all choice and renders again
+    private void redrawGraph() {
+        if (renderer == null) return;
+        renderer.setShowAllEdges(showAllEdges);
+        renderer.setHighlighted(highlightEdges);
+        renderer.setExploredRoads(new BitSet());
+        requestRender();
+    }
 
-            if (highlightEdges.contains(edge)) {
-                line.setStroke(Color.RED);
-                Text distanceLabel = new Text((x1 + x2) / 2, (y1 + y2) / 2, String.format("%.1f km", edge.distance));
-                distanceLabel.setStyle("-fx-font-size: 9px; -fx-fill: red;");
-                pane.getChildren().add(distanceLabel);
-            } else if (!edge.isExisting) {
-                line.setStroke(Color.LIGHTBLUE);
-                line.getStrokeDashArray().addAll(5.0, 5.0);
-            } else {
-                line.setStroke(Color.GRAY);
-            }
+    private void moveView(MapRenderer.Viewport newViewport) {
+        if (renderer == null) return;
+        viewport = newViewport;
+        paint(); // Immediate preview from the last image
+        requestRender();
+    }
 
-            pane.getChildren().add(line);
-        }
+    private void resizeView() {
+        int width = (int) canvas.getWidth(), height = (int) canvas.getHeight();
+        if (width > 0 && height > 0 && viewport != null) moveView(viewport.resized(width, height));
+    }
 
-        for (Node node : graph.nodes.values()) {
-            double x = (node.x - minX) * scaleX + margin;
-            double y = (node.y - minY) * scaleY + margin;
+    // Queues a render of the current viewport; a render still waiting when a newer request arrives is dropped
+    private void requestRender() {
+        long request = latestRequest.incrementAndGet();
+        MapRenderer.Viewport view = viewport;
+        renderThread.submit(() -> {
+            if (request != latestRequest.get()) return;
+            MapRenderer.Frame frame = renderer.render(view);
+            Platform.runLater(() -> show(frame));
+        });
+    }
 
-            Circle circle = new Circle(x, y, 6, node.isFacility ? Color.ORANGE : Color.BLACK);
-            Text label = new Text(x + 8, y - 6, node.name);
-            label.setStyle("-fx-font-size: 10px;");
-            pane.getChildren().addAll(circle, label);
+    // FX thread: takes over a finished frame
+    private void show(MapRenderer.Frame frame) {
+        int width = frame.viewport.width, height = frame.viewport.height;
+        if (image == null || (int) image.getWidth() != width || (int) image.getHeight() != height) {
+            image = new WritableImage(width, height);
+        }
+        image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbPreInstance(), frame.pixels, 0, width);
+        shownFrame = frame;
+        paint();
+    }
+
+    // FX thread: draws the last frame, moved/scaled from its viewport to the current one, and its labels
+    private void paint() {
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.setFill(Color.WHITE);
+        gc.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        if (shownFrame == null) return;
+
+        MapRenderer.Viewport from = shownFrame.viewport;
+        double scale = viewport.pixelsPerUnit / from.pixelsPerUnit;
+        double left = viewport.screenX(from.mapX(0)), top = viewport.screenY(from.mapY(0));
+        gc.drawImage(image, left, top, from.width * scale, from.height * scale);
+        for (MapRenderer.Label label : shownFrame.labels) {
+            gc.setFont(Font.font(label.highlight ? 9 : 10));
+            gc.setFill(label.highlight ? Color.RED : Color.BLACK);
+            gc.fillText(label.text, left + label.x * scale, top + label.y * scale);
         }
     }
 
@@ -229,6 +374,12 @@ public class GraphVisualizer extends Application {
         return edges;
     }
 
+    // Name of a node, from the off-heap store when one is set
+    private static String nodeName(int id) {
+        int index = store == null ? -1 : store.indexOf(id);
+        return index >= 0 ? store.name(index) : graph.nodes.get(id).name;
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
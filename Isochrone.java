@@ -0,0 +1,43 @@
+// Isochrone.java
+// Result of one bounded-radius search: every node reached within the radius and its reach time
+
+import java.util.*;
+
+public class Isochrone {
+    public final int originId; // Node the search started from (or ended at, for inbound searches)
+    public final double radius; // Search radius in traffic-weighted kilometers
+    public final int[] reachedNodes; // Dense indices (CompactGraph) of reached nodes, in order of reach time
+    public final double[] reachTimes; // Reach time of each entry in reachedNodes
+    public final long reachablePopulation; // Sum of Node.population over reached nodes
+
+    public Isochrone(int originId, double radius, int[] reachedNodes, double[] reachTimes, long reachablePopulation) {
+        this.originId = originId;
+        this.radius = radius;
+        this.reachedNodes = reachedNodes;
+        this.reachTimes = reachTimes;
+        this.reachablePopulation = reachablePopulation;
+    }
+
+    // Number of nodes inside the isochrone (including the origin)
+    public int size() {
+        return reachedNodes.length;
+    }
+
+    // Reach time of every reached node, keyed by original node ID
+    public Map<Integer, Double> reachTimesById(CompactGraph graph) {
+        Map<Integer, Double> times = new LinkedHashMap<>();
+        for (int i = 0; i < reachedNodes.length; i++) {
+            times.put(graph.nodeIds[reachedNodes[i]], reachTimes[i]);
+        }
+        return times;
+    }
+
+    // Drops the reach times and keeps one bit per node, for holding many isochrones in memory
+    public CompactIsochrone compact(int nodeCount) {
+        long[] bits = new long[(nodeCount + 63) >>> 6];
+        for (int node : reachedNodes) {
+            bits[node >>> 6] |= 1L << node;
+        }
+        return new CompactIsochrone(originId, radius, bits, reachedNodes.length, reachablePopulation);
+    }
+}
@@ -0,0 +1,131 @@
+// IsochroneEngine.java
+// Answers "which nodes can be reached within R" with Dijkstra searches that stop at the radius
+// instead of exploring the whole graph like Dijkstra.findShortestPaths does.
+// Many origins can be processed at once: every worker thread reuses its own search arrays.
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+public class IsochroneEngine {
+    // Average speed used to turn a time budget into a traffic-weighted distance budget
+    public static final double DEFAULT_SPEED_KMH = 40.0;
+
+    private final CompactGraph graph; // Array form of the road network
+    private final double[] weights; // Cost of every arc (plain or traffic-weighted distance)
+
+    // Search arrays are reused per thread
+    private final ThreadLocal<Workspace> workspaces;
+
+    public IsochroneEngine(CompactGraph graph, double[] weights) {
+        this.graph = graph;
+        this.weights = weights;
+        this.workspaces = ThreadLocal.withInitial(() -> new Workspace(graph.nodeCount));
+    }
+
+    // Engine using plain road lengths
+    public static IsochroneEngine forDistance(CompactGraph graph) {
+        return new IsochroneEngine(graph, graph.distanceWeights());
+    }
+
+    // Engine using the same traffic-weighted lengths as TrafficDijkstra for a time of day
+    public static IsochroneEngine forTraffic(CompactGraph graph, TrafficData trafficData, TrafficTime time) {
+        return new IsochroneEngine(graph, graph.trafficWeights(trafficData, time));
+    }
+
+    // Converts a travel time in minutes into a radius, assuming the given average speed
+    public static double minutesToRadius(double minutes, double speedKmh) {
+        return minutes / 60.0 * speedKmh;
+    }
+
+    public CompactGraph getGraph() {
+        return graph;
+    }
+
+    // Nodes reachable FROM originId within the radius
+    public Isochrone compute(int originId, double radius) {
+        return search(originId, radius, false);
+    }
+
+    // Nodes that can REACH targetId within the radius (e.g. districts reaching a hospital)
+    public Isochrone computeInbound(int targetId, double radius) {
+        return search(targetId, radius, true);
+    }
+
+    // Runs one isochrone per origin in parallel; results are in the same order as the origins
+    public List<Isochrone> computeBatch(int[] originIds, double radius, boolean inbound) {
+        Isochrone[] results = new Isochrone[originIds.length];
+        IntStream.range(0, originIds.length).parallel()
+                .forEach(i -> results[i] = search(originIds[i], radius, inbound));
+        return Arrays.asList(results);
+    }
+
+    // Same as computeBatch but only keeps the bitset form, so thousands of results stay small
+    public CompactIsochrone[] computeCompactBatch(int[] originIds, double radius, boolean inbound) {
+        CompactIsochrone[] results = new CompactIsochrone[originIds.length];
+        IntStream.range(0, originIds.length).parallel()
+                .forEach(i -> results[i] = search(originIds[i], radius, inbound).compact(graph.nodeCount));
+        return results;
+    }
+
+    // Bounded Dijkstra: nodes are settled in order of distance and the loop stops past the radius
+    private Isochrone search(int originId, double radius, boolean inbound) {
+        int origin = graph.indexOf(originId);
+        if (origin < 0) {
+            return new Isochrone(originId, radius, new int[0], new double[0], 0);
+        }
+
+        Workspace ws = workspaces.get();
+        SearchWorkspace search = ws.search;
+        search.reset();
+        NodeHeap heap = search.heap;
+        search.setDistance(origin, 0.0, -1);
+        heap.push(origin, 0.0);
+
+        int reachedCount = 0;
+        long population = 0;
+
+        while (!heap.isEmpty()) {
+            double d = heap.peekKey();
+            int u = heap.pop();
+
+            // Everything left in the heap is farther than the radius
+            if (d > radius) break;
+            // Skip entries that were improved after being pushed
+            if (d > search.dist[u] || search.isSettled(u)) continue;
+
+            search.settle(u);
+            ws.reachedNodes[reachedCount] = u;
+            ws.reachTimes[reachedCount] = d;
+            reachedCount++;
+            population += graph.population[u];
+
+            for (int a = graph.firstArc[u]; a < graph.firstArc[u + 1]; a++) {
+                int v = graph.arcTarget[a];
+                // Inbound searches walk roads backwards, so they pay the cost of the opposite direction
+                double newDist = d + (inbound ? weights[graph.arcTwin[a]] : weights[a]);
+                if (newDist <= radius && newDist < search.distance(v)) {
+                    search.setDistance(v, newDist, a);
+                    heap.push(v, newDist);
+                }
+            }
+        }
+
+        return new Isochrone(originId, radius,
+                Arrays.copyOf(ws.reachedNodes, reachedCount),
+                Arrays.copyOf(ws.reachTimes, reachedCount),
+                population);
+    }
+
+    // Per-thread search state: the shared search arrays plus the list of settled nodes
+    private static class Workspace {
+        final SearchWorkspace search;
+        final int[] reachedNodes; // Settled nodes of the current search
+        final double[] reachTimes; // Distances of the settled nodes
+
+        Workspace(int n) {
+            search = new SearchWorkspace(n);
+            reachedNodes = new int[n];
+            reachTimes = new double[n];
+        }
+    }
+}
@@ -0,0 +1,204 @@
+// KShortestPaths.java
+// Yen's algorithm for the K shortest loopless paths between two nodes
+// Two optimizations over the textbook version:
+// 1. One reverse shortest-path tree to the target is built per query and reused by every spur search,
+//    both as an exact A* heuristic and as a shortcut: once a spur search reaches a node whose tree path
+//    to the target avoids the blocked nodes, the rest of the path is taken from the tree.
+// 2. The spur searches of one iteration are independent and run in parallel.
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+public class KShortestPaths {
+
+    private final CompactGraph graph; // Array form of the road network
+    private final double[] weights; // Cost of every arc
+    private final ThreadLocal<SearchWorkspace> workspaces;
+
+    public KShortestPaths(CompactGraph graph, double[] weights) {
+        this.graph = graph;
+        this.weights = weights;
+        this.workspaces = ThreadLocal.withInitial(() -> new SearchWorkspace(graph.nodeCount));
+    }
+
+    // Engine using the same traffic-weighted lengths as TrafficDijkstra for a time of day
+    public static KShortestPaths forTraffic(CompactGraph graph, TrafficData trafficData, TrafficTime time) {
+        return new KShortestPaths(graph, graph.trafficWeights(trafficData, time));
+    }
+
+    // Returns up to k loopless paths from startId to endId, cheapest first
+    public List<Route> findPaths(int startId, int endId, int k) {
+        int source = graph.indexOf(startId);
+        int target = graph.indexOf(endId);
+        List<Route> routes = new ArrayList<>();
+        if (source < 0 || target < 0 || k <= 0) return routes;
+
+        // Reverse tree: distance from every node to the target and the next arc towards it
+        SearchWorkspace treeWs = new SearchWorkspace(graph.nodeCount);
+        CompactDijkstra.shortestPathTree(graph, weights, target, true, treeWs);
+        ReverseTree tree = new ReverseTree(graph.nodeCount);
+        for (int v = 0; v < graph.nodeCount; v++) {
+            tree.distToTarget[v] = treeWs.distance(v);
+            int a = treeWs.parentArc[v];
+            tree.nextArc[v] = (tree.distToTarget[v] == Double.POSITIVE_INFINITY || a < 0) ? -1 : graph.arcTwin[a];
+        }
+        if (tree.distToTarget[source] == Double.POSITIVE_INFINITY) return routes;
+
+        // The first path is simply the tree path from the source
+        List<Path> accepted = new ArrayList<>();
+        accepted.add(treePathFrom(source, target, tree));
+
+        PriorityQueue<Path> candidates = new PriorityQueue<>(Comparator.comparingDouble(p -> p.cost));
+        Set<String> seen = new HashSet<>();
+        seen.add(accepted.get(0).key());
+
+        while (accepted.size() < k) {
+            Path last = accepted.get(accepted.size() - 1);
+            List<Path> snapshot = new ArrayList<>(accepted);
+
+            // Every node of the last path (except the target) is a spur node; each spur search is independent
+            Path[] spurPaths = new Path[last.nodes.length - 1];
+            IntStream.range(0, last.nodes.length - 1).parallel()
+                    .forEach(i -> spurPaths[i] = spurSearch(last, i, snapshot, target, tree));
+
+            for (Path p : spurPaths) {
+                if (p != null && seen.add(p.key())) candidates.add(p);
+            }
+            if (candidates.isEmpty()) break;
+            accepted.add(candidates.poll());
+        }
+
+        for (Path p : accepted) {
+            routes.add(new Route(graph.toNodeIds(p.nodes, p.nodes.length), p.cost));
+        }
+        return routes;
+    }
+
+    // Finds the cheapest path that shares the first i arcs of 'last' and then leaves the spur node
+    // towards a node not used next by any accepted path with the same root
+    private Path spurSearch(Path last, int i, List<Path> accepted, int target, ReverseTree tree) {
+        int spur = last.nodes[i];
+        SearchWorkspace ws = workspaces.get();
+        ws.reset();
+
+        // Root nodes (except the spur node) may not be visited again
+        for (int j = 0; j < i; j++) ws.mark(last.nodes[j]);
+
+        // Next nodes after the spur node already used by accepted paths with the same root.
+        // Blocking the next node (not just the arc) also skips parallel roads, so paths differ in their nodes.
+        Set<Integer> blockedNext = new HashSet<>();
+        for (Path p : accepted) {
+            if (p.nodes.length > i + 1 && sameRoot(p, last, i)) blockedNext.add(p.nodes[i + 1]);
+        }
+
+        double rootCost = 0;
+        for (int j = 0; j < i; j++) rootCost += weights[last.arcs[j]];
+
+        // A* from the spur node; the reverse tree distance is a consistent lower bound
+        NodeHeap heap = ws.heap;
+        ws.setDistance(spur, 0.0, -1);
+        heap.push(spur, tree.distToTarget[spur]);
+        while (!heap.isEmpty()) {
+            double f = heap.peekKey();
+            int u = heap.pop();
+            if (ws.isSettled(u) || f > ws.dist[u] + tree.distToTarget[u]) continue; // Stale entry
+            ws.settle(u);
+
+            // Shortcut: if the tree path from u is still allowed, f is the exact cost of the best spur path
+            if (treePathAllowed(u, spur, target, tree, ws, blockedNext)) {
+                return joinPath(last, i, rootCost, u, spur, target, tree, ws);
+            }
+
+            for (int a = graph.firstArc[u]; a < graph.firstArc[u + 1]; a++) {
+                int v = graph.arcTarget[a];
+                if (u == spur && blockedNext.contains(v)) continue;
+                if (ws.isMarked(v) || tree.distToTarget[v] == Double.POSITIVE_INFINITY) continue;
+                double newDist = ws.dist[u] + weights[a];
+                if (newDist < ws.distance(v)) {
+                    ws.setDistance(v, newDist, a);
+                    heap.push(v, newDist + tree.distToTarget[v]);
+                }
+            }
+        }
+        return null; // No spur path exists
+    }
+
+    // True if the reverse-tree path from u to the target avoids the root nodes, the blocked next nodes
+    // and the nodes already on the search path from the spur node to u (which would form a loop)
+    private boolean treePathAllowed(int u, int spur, int target, ReverseTree tree, SearchWorkspace ws, Set<Integer> blockedNext) {
+        Set<Integer> searchPath = new HashSet<>();
+        for (int v = u; v != spur; v = graph.arcSource(ws.parentArc[v])) searchPath.add(v);
+        searchPath.add(spur);
+
+        for (int v = u; v != target; ) {
+            int a = tree.nextArc[v];
+            if (a < 0) return false;
+            int next = graph.arcTarget[a];
+            if (v == spur && blockedNext.contains(next)) return false;
+            if (ws.isMarked(next) || searchPath.contains(next)) return false;
+            v = next;
+        }
+        return true;
+    }
+
+    // Root of 'last' + search path from the spur node to u + tree path from u to the target
+    private Path joinPath(Path last, int i, double rootCost, int u, int spur, int target, ReverseTree tree, SearchWorkspace ws) {
+        List<Integer> searchArcs = new ArrayList<>();
+        for (int v = u; v != spur; v = graph.arcSource(ws.parentArc[v])) searchArcs.add(ws.parentArc[v]);
+        Collections.reverse(searchArcs);
+        for (int v = u; v != target; v = graph.arcTarget[tree.nextArc[v]]) searchArcs.add(tree.nextArc[v]);
+
+        int[] arcs = new int[i + searchArcs.size()];
+        System.arraycopy(last.arcs, 0, arcs, 0, i);
+        for (int j = 0; j < searchArcs.size(); j++) arcs[i + j] = searchArcs.get(j);
+        return Path.fromArcs(graph, last.nodes[0], arcs, rootCost + ws.dist[u] + tree.distToTarget[u]);
+    }
+
+    private Path treePathFrom(int source, int target, ReverseTree tree) {
+        List<Integer> arcs = new ArrayList<>();
+        for (int v = source; v != target; v = graph.arcTarget[tree.nextArc[v]]) arcs.add(tree.nextArc[v]);
+        return Path.fromArcs(graph, source, arcs.stream().mapToInt(Integer::intValue).toArray(), tree.distToTarget[source]);
+    }
+
+    private static boolean sameRoot(Path a, Path b, int length) {
+        for (int j = 0; j <= length; j++) {
+            if (a.nodes[j] != b.nodes[j]) return false;
+        }
+        return true;
+    }
+
+    // Distances to the target and next arcs towards it for every node
+    private static class ReverseTree {
+        final double[] distToTarget;
+        final int[] nextArc;
+
+        ReverseTree(int n) {
+            distToTarget = new double[n];
+            nextArc = new int[n];
+        }
+    }
+
+    // A path as dense node indices plus the arcs between them
+    private static class Path {
+        final int[] nodes;
+        final int[] arcs;
+        final double cost;
+
+        Path(int[] nodes, int[] arcs, double cost) {
+            this.nodes = nodes;
+            this.arcs = arcs;
+            this.cost = cost;
+        }
+
+        static Path fromArcs(CompactGraph graph, int start, int[] arcs, double cost) {
+            int[] nodes = new int[arcs.length + 1];
+            nodes[0] = start;
+            for (int j = 0; j < arcs.length; j++) nodes[j + 1] = graph.arcTarget[arcs[j]];
+            return new Path(nodes, arcs, cost);
+        }
+
+        String key() {
+            return Arrays.toString(nodes);
+        }
+    }
+}
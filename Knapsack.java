@@ -0,0 +1,99 @@
+// Knapsack.java
+// 0/1 knapsack kernels shared by TransitOptimizer and MaintenanceOptimizer
+// The DP keeps only two rows (previous item, current item) and updates a row in two straight loops:
+// - j < weight: the item does not fit, cur[j] = prev[j] (an array copy)
+// - j >= weight: cur[j] = max(prev[j], prev[j - weight] + value), a max of two shifted slices of the same array
+// Neither loop has a branch or 2-D indexing, so HotSpot's superword pass compiles the second one to SIMD
+// max/add instructions (AVX on x86, NEON on ARM); on a JVM that does not, it runs as a plain scalar loop.
+// Which items were taken is kept as one bit per (item, capacity): memory per item is capacity + 1 bits
+// instead of a full row of ints or doubles, and backtracking reads the bits instead of comparing rows.
+
+import java.util.*;
+
+public class Knapsack {
+
+    // Indices of the items of an optimal selection with int values, last item first
+    public static int[] select(int[] weights, int[] values, int capacity) {
+        int n = weights.length;
+        int words = (capacity + 64) >>> 6; // Bits for capacities 0..capacity
+        long[] taken = new long[n * words];
+        int[] prev = new int[capacity + 1], cur = new int[capacity + 1];
+        for (int i = 0; i < n; i++) {
+            maxShifted(prev, cur, weights[i], values[i]);
+            markChanged(prev, cur, taken, i * words);
+            int[] t = prev;
+            prev = cur;
+            cur = t;
+        }
+        return backtrack(weights, taken, words, capacity);
+    }
+
+    // Indices of the items of an optimal selection with double values, last item first
+    public static int[] select(int[] weights, double[] values, int capacity) {
+        int n = weights.length;
+        int words = (capacity + 64) >>> 6;
+        long[] taken = new long[n * words];
+        double[] prev = new double[capacity + 1], cur = new double[capacity + 1];
+        for (int i = 0; i < n; i++) {
+            maxShifted(prev, cur, weights[i], values[i]);
+            markChanged(prev, cur, taken, i * words);
+            double[] t = prev;
+            prev = cur;
+            cur = t;
+        }
+        return backtrack(weights, taken, words, capacity);
+    }
+
+    // cur[j] = prev[j] where the item does not fit, max(prev[j], prev[j - weight] + value) where it does
+    static void maxShifted(int[] prev, int[] cur, int weight, int value) {
+        int fit = Math.max(Math.min(weight, cur.length), 0);
+        System.arraycopy(prev, 0, cur, 0, fit);
+        for (int j = fit; j < cur.length; j++) {
+            cur[j] = Math.max(prev[j], prev[j - weight] + value);
+        }
+    }
+
+    static void maxShifted(double[] prev, double[] cur, int weight, double value) {
+        int fit = Math.max(Math.min(weight, cur.length), 0);
+        System.arraycopy(prev, 0, cur, 0, fit);
+        for (int j = fit; j < cur.length; j++) {
+            cur[j] = Math.max(prev[j], prev[j - weight] + value);
+        }
+    }
+
+    // Sets bit j of the item's words when cur[j] differs from prev[j], i.e. when taking the item was better
+    private static void markChanged(int[] prev, int[] cur, long[] taken, int offset) {
+        for (int base = 0; base < cur.length; base += 64) {
+            long word = 0;
+            int end = Math.min(base + 64, cur.length);
+            for (int j = base; j < end; j++) {
+                if (cur[j] != prev[j]) word |= 1L << (j - base);
+            }
+            taken[offset + (base >>> 6)] = word;
+        }
+    }
+
+    private static void markChanged(double[] prev, double[] cur, long[] taken, int offset) {
+        for (int base = 0; base < cur.length; base += 64) {
+            long word = 0;
+            int end = Math.min(base + 64, cur.length);
+            for (int j = base; j < end; j++) {
+                if (cur[j] != prev[j]) word |= 1L << (j - base);
+            }
+            taken[offset + (base >>> 6)] = word;
+        }
+    }
+
+    // Walks the items backwards from the full capacity, following the taken bits
+    private static int[] backtrack(int[] weights, long[] taken, int words, int capacity) {
+        int[] selected = new int[weights.length];
+        int count = 0, remaining = capacity;
+        for (int i = weights.length - 1; i >= 0 && remaining > 0; i--) {
+            if ((taken[i * words + (remaining >>> 6)] & (1L << (remaining & 63))) != 0) {
+                selected[count++] = i;
+                remaining -= weights[i];
+            }
+        }
+        return Arrays.copyOf(selected, count);
+    }
+}
@@ -0,0 +1,80 @@
+// LatencyHistogram.java
+// Log-linear histogram of durations in nanoseconds (the bucket layout used by HdrHistogram)
+// Values below 16 get one bucket each; above that, every power of two is split into 16 equal buckets,
+// so any recorded value is known within about 6% whatever its size. Each thread records into its own
+// stripe (no locking, no shared cache lines); reading merges all stripes.
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class LatencyHistogram {
+    private static final int SUB_BUCKETS = 16; // Buckets per power of two
+    private static final int SUB_BITS = 4;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final List<long[]> stripes = new CopyOnWriteArrayList<>(); // One bucket array per recording thread
+    private final ThreadLocal<long[]> stripe = ThreadLocal.withInitial(() -> {
+        long[] counts = new long[BUCKETS];
+        stripes.add(counts);
+        return counts;
+    });
+
+    public void record(long nanos) {
+        stripe.get()[bucketOf(Math.max(nanos, 0))]++;
+    }
+
+    // Bucket of a value: the highest set bit picks the power of two, the next 4 bits the bucket inside it
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (magnitude - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (magnitude - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // Largest value that falls in a bucket
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int magnitude = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        long lower = (1L << magnitude) | (sub << (magnitude - SUB_BITS));
+        return lower + (1L << (magnitude - SUB_BITS)) - 1;
+    }
+
+    // Sum of all stripes (counts recorded while reading may or may not be included)
+    public long[] snapshot() {
+        long[] total = new long[BUCKETS];
+        for (long[] counts : stripes) {
+            for (int b = 0; b < BUCKETS; b++) total[b] += counts[b];
+        }
+        return total;
+    }
+
+    public long count() {
+        long count = 0;
+        for (long c : snapshot()) count += c;
+        return count;
+    }
+
+    // Value at a quantile (0.5 = median, 0.99 = 99th percentile), in nanoseconds; 0 if nothing was recorded
+    public long quantile(double q) {
+        return quantile(snapshot(), q);
+    }
+
+    static long quantile(long[] counts, double q) {
+        long count = 0;
+        for (long c : counts) count += c;
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * count));
+        long seen = 0;
+        for (int b = 0; b < counts.length; b++) {
+            seen += counts[b];
+            if (seen >= rank) return upperBound(b);
+        }
+        return upperBound(counts.length - 1);
+    }
+
+    public void reset() {
+        for (long[] counts : stripes) Arrays.fill(counts, 0);
+    }
+}
@@ -0,0 +1,94 @@
+// LocalShard.java
+// In-process routing shard: holds the roads of one part of the network as a CompactGraph
+// The boundary-to-boundary matrix (the shard's contribution to the router's overlay) is computed once,
+// one shortest-path tree per boundary node, in parallel.
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+public class LocalShard implements RoutingShard {
+    private final CompactGraph graph; // Nodes of the part and the roads between them
+    private final double[] weights;
+    private final int[] boundaryIds;
+    private final int[] boundaryIndex; // Dense index of each boundary node in graph
+    private final double[] matrix;
+    private final ThreadLocal<SearchWorkspace> workspaces;
+
+    // Shard over a part of the network; traffic may be null to route on plain distance
+    public LocalShard(Graph part, int[] boundaryIds, TrafficData traffic, TrafficTime time) {
+        this.graph = CompactGraph.fromGraph(part);
+        this.weights = traffic == null ? graph.distanceWeights() : graph.trafficWeights(traffic, time);
+        this.boundaryIds = boundaryIds.clone();
+        this.boundaryIndex = new int[boundaryIds.length];
+        for (int i = 0; i < boundaryIds.length; i++) {
+            boundaryIndex[i] = graph.indexOf(boundaryIds[i]);
+            if (boundaryIndex[i] < 0) throw new IllegalArgumentException("Boundary node " + boundaryIds[i] + " is not in the shard");
+        }
+        this.workspaces = ThreadLocal.withInitial(() -> new SearchWorkspace(graph.nodeCount));
+
+        int b = boundaryIds.length;
+        matrix = new double[b * b];
+        IntStream.range(0, b).parallel().forEach(i -> {
+            double[] row = costs(boundaryIndex[i], false);
+            System.arraycopy(row, 0, matrix, i * b, b);
+        });
+    }
+
+    // Cuts one part out of the whole network (used when all shards run in the same process)
+    public static LocalShard forPart(Graph graph, GraphPartitioner.Partition partition, int part, TrafficData traffic, TrafficTime time) {
+        Graph sub = new Graph();
+        for (int id : partition.nodesOf(part)) sub.addNode(graph.nodes.get(id));
+        for (Edge edge : graph.edges) {
+            if (partition.partOfNode(edge.from) == part && partition.partOfNode(edge.to) == part) sub.addEdge(edge);
+        }
+        List<Integer> boundary = new ArrayList<>();
+        for (int i = 0; i < partition.graph.nodeCount; i++) {
+            if (partition.partOf[i] == part && partition.isBoundary(i)) boundary.add(partition.graph.nodeIds[i]);
+        }
+        return new LocalShard(sub, boundary.stream().mapToInt(Integer::intValue).toArray(), traffic, time);
+    }
+
+    @Override
+    public int[] boundaryNodeIds() {
+        return boundaryIds.clone();
+    }
+
+    @Override
+    public double[] boundaryMatrix() {
+        return matrix.clone();
+    }
+
+    @Override
+    public double[] costsToBoundary(int nodeId) {
+        return costs(indexOf(nodeId), false);
+    }
+
+    @Override
+    public double[] costsFromBoundary(int nodeId) {
+        return costs(indexOf(nodeId), true);
+    }
+
+    @Override
+    public Route route(int fromId, int toId) {
+        SearchWorkspace ws = workspaces.get();
+        int target = indexOf(toId);
+        int[] path = CompactDijkstra.findPath(graph, weights, indexOf(fromId), target, ws);
+        if (path.length == 0) return null;
+        return new Route(graph.toNodeIds(path, path.length), ws.distance(target));
+    }
+
+    // Costs between a node and every boundary node (reverse = towards the node)
+    private double[] costs(int source, boolean reverse) {
+        SearchWorkspace ws = workspaces.get();
+        CompactDijkstra.shortestPathTree(graph, weights, source, reverse, ws);
+        double[] costs = new double[boundaryIndex.length];
+        for (int i = 0; i < costs.length; i++) costs[i] = ws.distance(boundaryIndex[i]);
+        return costs;
+    }
+
+    private int indexOf(int nodeId) {
+        int index = graph.indexOf(nodeId);
+        if (index < 0) throw new IllegalArgumentException("Node " + nodeId + " is not in this shard");
+        return index;
+    }
+}
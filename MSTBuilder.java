@@ -1,11 +1,20 @@
 // MSTBuilder.java
 // Implements Kruskal's algorithm to build the Minimum Spanning Tree (MST)
 import java.util.*;
+import java.util.concurrent.CancellationException;
 
 public class MSTBuilder {
     public static List<Edge> buildMST(Graph graph) {
+        return buildMST(graph, SearchProgress.NONE);
+    }
+
+    // Same, reporting every accepted road to progress (stops if progress is cancelled)
+    public static List<Edge> buildMST(Graph graph, SearchProgress progress) {
+        boolean watched = progress != SearchProgress.NONE;
         List<Edge> result = new ArrayList<>(); // Final MST result (to store the final road)
         DisjointSet ds = new DisjointSet(); // Union-Find structure to prevent cycles
+        long startTime = SearchMetrics.start(); // 0 when metrics are off
+        int examined = 0, rejected = 0;
 
         // Create a disjoint set for each node ( at first each node btb2a lwa7daha)
         for (int nodeId : graph.nodes.keySet()) {
@@ -18,6 +27,8 @@ public class MSTBuilder {
 
         // Kruskal's main loop  ( to choose the roads )
         for (Edge edge : sortedEdges) {
+            examined++;
+            if (watched && progress.isCancelled()) throw new CancellationException("MST construction cancelled");
             int rootFrom = ds.find(edge.from);  // find : to check that each 2 nodes at the same set if not
             int rootTo = ds.find(edge.to);      // if not : add the edge to mst and connect the two sets with union
 
@@ -25,14 +36,67 @@ public class MSTBuilder {
             if (rootFrom != rootTo) {
                 result.add(edge);   // add the dge to MST
                 ds.union(edge.from, edge.to);     // connect the two sets with union
+                if (watched) progress.edgeAdded(edge, result.size(), graph.nodes.size() - 1);
+            } else {
+                rejected++; // would close a cycle
             }
 
             // Early stop if MST is complete (repeat until edges = n-1)
             if (result.size() == graph.nodes.size() - 1) break;
         }
 
+        SearchMetrics.record("mst", startTime, result.size(), examined, 0, rejected);
         return result;
     }
+
+    // Kruskal on an off-heap network: the road order, the union-find and the chosen roads stay off the heap,
+    // and the result is a list view that builds each Edge when it is read
+    public static List<Edge> buildMST(OffHeapGraph graph) {
+        int n = graph.nodeCount();
+        long startTime = SearchMetrics.start(); // 0 when metrics are off
+        int examined = 0, rejected = 0;
+
+        OffHeapGraph.Region sets = new OffHeapGraph.Region(8); // Per node: parent (int), rank (int)
+        for (int i = 0; i < n; i++) {
+            sets.putInt(i, 0, i);
+            sets.putInt(i, 4, 0);
+        }
+        OffHeapGraph.Region order = graph.roadsByDistance();
+        OffHeapGraph.Region chosen = new OffHeapGraph.Region(4);
+        int count = 0;
+
+        for (int k = 0; k < graph.edgeCount() && count < n - 1; k++) {
+            int road = order.getInt(k, 0);
+            examined++;
+            int rootFrom = find(sets, graph.indexOf(graph.edgeFrom(road)));
+            int rootTo = find(sets, graph.indexOf(graph.edgeTo(road)));
+            if (rootFrom == rootTo) {
+                rejected++; // would close a cycle
+                continue;
+            }
+            chosen.putInt(count++, 0, road);
+            int rankFrom = sets.getInt(rootFrom, 4), rankTo = sets.getInt(rootTo, 4);
+            if (rankFrom < rankTo) {
+                sets.putInt(rootFrom, 0, rootTo);
+            } else {
+                sets.putInt(rootTo, 0, rootFrom);
+                if (rankFrom == rankTo) sets.putInt(rootFrom, 4, rankFrom + 1);
+            }
+        }
+
+        SearchMetrics.record("mst", startTime, count, examined, 0, rejected);
+        return graph.edgeList(chosen, count);
+    }
+
+    // Root of a node's set, halving the path on the way
+    private static int find(OffHeapGraph.Region sets, int node) {
+        while (sets.getInt(node, 0) != node) {
+            int grandparent = sets.getInt(sets.getInt(node, 0), 0);
+            sets.putInt(node, 0, grandparent);
+            node = grandparent;
+        }
+        return node;
+    }
 }
 
 
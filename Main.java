@@ -4,7 +4,22 @@ import java.util.*;
 
 public class Main {
     public static void main(String[] args) {
+        // Headless batch mode: --batch scenarios.csv evaluates a scenario file (see BatchAnalytics) without the visualizer
+        if (args != null && Arrays.asList(args).contains("--batch")) {
+            try {
+                BatchAnalytics.main(args);
+            } catch (java.io.IOException e) {
+                throw new java.io.UncheckedIOException(e);
+            }
+            return;
+        }
+
         Graph graph = null;
+
+        // Count the work done by every search (printed before the visualization; also readable over JMX)
+        SearchMetrics.enabled = true;
+        SearchMetrics.registerJmx("dijkstra", "dijkstra_tree", "traffic_dijkstra", "astar", "mst");
+
         try {
             // 1. Load graph from CSV files (nodes, existing roads, potential roads)
             graph = GraphBuilder.buildGraphFromFiles(
@@ -118,6 +133,158 @@ public class Main {
                 System.out.printf("\nEstimated emergency distance: %.2f km\n", total);
             }
 
+            // 6b. Isochrones: population that can reach each facility within 15 minutes in evening traffic
+            System.out.println("\n⏱️ Facility reach within 15 minutes (EVENING):");
+            CompactGraph compact = CompactGraph.fromGraph(graph);
+            IsochroneEngine isochrones = IsochroneEngine.forTraffic(compact, trafficData, TrafficTime.EVENING);
+            double radius = IsochroneEngine.minutesToRadius(15, IsochroneEngine.DEFAULT_SPEED_KMH);
+            List<Integer> facilityIds = new ArrayList<>();
+            for (Node node : graph.nodes.values()) {
+                if (node.isFacility) facilityIds.add(node.id);
+            }
+            Collections.sort(facilityIds);
+            int[] facilityArray = facilityIds.stream().mapToInt(Integer::intValue).toArray();
+            List<Isochrone> reach = isochrones.computeBatch(facilityArray, radius, true);
+            for (Isochrone iso : reach) {
+                System.out.println(graph.nodes.get(iso.originId).name + " → " + iso.size() + " nodes, population " + iso.reachablePopulation);
+            }
+
+            // 6c. Several routes for the same trip so morning traffic can be spread over the network
+            System.out.println("\n🔀 K shortest routes Maadi → Nasr City (MORNING):");
+            for (Route route : KShortestPaths.forTraffic(compact, trafficData, TrafficTime.MORNING).findPaths(1, 2, 4)) {
+                System.out.println(route);
+            }
+            System.out.println("🔀 Alternative routes (plateau method):");
+            AlternativeRoutes alternatives = AlternativeRoutes.forTraffic(compact, trafficData, TrafficTime.MORNING);
+            for (Route route : alternatives.findRoutes(1, 2, 3, AlternativeRoutes.Method.PLATEAU)) {
+                System.out.println(route);
+            }
+
+            // 6d. Traffic assignment: peak-hour demand from population loaded onto the roads until equilibrium
+            TrafficAssignment assignment = new TrafficAssignment(compact, DemandModel.peakHour(compact));
+            TrafficAssignment.Result equilibrium = assignment.solve();
+            System.out.printf("\n🚗 User equilibrium after %d iterations (gap %.5f):\n", equilibrium.iterations, equilibrium.relativeGap);
+            assignment.volumeCapacityRatios(equilibrium).entrySet().stream()
+                    .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                    .limit(5)
+                    .forEach(entry -> System.out.printf("Road %s → volume/capacity %.2f\n", entry.getKey(), entry.getValue()));
+
+            // 6e. Simulate 15 minutes of peak demand with and without the potential roads
+            System.out.println("\n🚙 Vehicle simulation (15 min of MORNING demand, then 45 min to clear):");
+            for (boolean withNewRoads : new boolean[]{false, true}) {
+                Graph network = withNewRoads ? graph : graph.existingRoadsOnly();
+                TrafficSimulator simulator = new TrafficSimulator(network, trafficData, TrafficTime.MORNING,
+                        Runtime.getRuntime().availableProcessors());
+                simulator.addTripsFromDemand(DemandModel.peakHour(compact), 0.25, 42);
+                TrafficSimulator.Stats stats = simulator.run(3600);
+                System.out.printf("%s: %d vehicles, %d arrived, average trip %.1f min, %.0f vehicle-steps/s\n",
+                        withNewRoads ? "With potential roads" : "Existing roads only",
+                        stats.vehicles, stats.arrived, stats.averageTripMinutes, stats.vehicleStepsPerSecond);
+            }
+
+            // 6f. Sharded routing: the network split into 3 parts, each served by its own shard server on localhost
+            GraphPartitioner.Partition partition = new GraphPartitioner().partition(graph, 3);
+            System.out.println("\n🧩 Partition into 3 shards: sizes " + Arrays.toString(partition.sizes) + ", " + partition.cutEdges + " roads cut");
+            List<ShardServer> servers = new ArrayList<>();
+            List<RemoteShard> remoteShards = new ArrayList<>();
+            for (int p = 0; p < partition.parts; p++) {
+                ShardServer server = new ShardServer(LocalShard.forPart(graph, partition, p, trafficData, TrafficTime.MORNING), 0);
+                servers.add(server);
+                remoteShards.add(new RemoteShard("localhost", server.getPort()));
+            }
+            ShardedRouter shardedRouter = new ShardedRouter(partition, new ArrayList<>(remoteShards), trafficData, TrafficTime.MORNING);
+            System.out.println("Maadi → Qasr El Aini Hospital (MORNING, through the shards): " + shardedRouter.route(1, 109));
+            System.out.println("Same trip with TrafficDijkstra: " + TrafficDijkstra.findPathWithTraffic(graph, trafficData, 1, 109, TrafficTime.MORNING));
+            for (RemoteShard shard : remoteShards) shard.close();
+            for (ShardServer server : servers) server.close();
+
+            // 6g. Customizable route planning: topology preprocessed once, then one cheap customization per time of day
+            // (tiny cells here so the demo network gets several levels)
+            CustomizableRoutePlanner planner = new CustomizableRoutePlanner(compact, 4, 1);
+            Map<TrafficTime, CustomizableRoutePlanner.Metric> metrics = planner.customizeAll(trafficData);
+            System.out.println("\n🗂️ Customizable route planning: " + planner.levels() + " levels, " + planner.cellCount(1) + " cells at level 1");
+            for (TrafficTime time : TrafficTime.values()) {
+                System.out.printf("%s: customized in %d ms, Maadi → Qasr El Aini Hospital %s\n",
+                        time, metrics.get(time).customizationMillis, planner.route(metrics.get(time), 1, 109));
+            }
+
+            // 6h. Coordinate lookups and map matching of a GPS trace along Maadi → Downtown → Qasr El Aini
+            SpatialIndex spatialIndex = new SpatialIndex(compact);
+            System.out.println("\n📡 Nearest node to (31.23, 30.03): " + graph.nodes.get(spatialIndex.nearestNode(31.23, 30.03)).name
+                    + ", nearest road: " + spatialIndex.nearestEdge(31.23, 30.03));
+            List<double[]> trace = new ArrayList<>();
+            int[] driven = {1, 3, 109};
+            Random gpsNoise = new Random(7);
+            for (int i = 0; i + 1 < driven.length; i++) {
+                Node a = graph.nodes.get(driven[i]), b = graph.nodes.get(driven[i + 1]);
+                for (double f = 0.1; f < 1; f += 0.2) {
+                    trace.add(new double[]{a.x + f * (b.x - a.x) + gpsNoise.nextGaussian() * 0.0003,
+                            a.y + f * (b.y - a.y) + gpsNoise.nextGaussian() * 0.0003});
+                }
+            }
+            MapMatcher.Match match = new MapMatcher(spatialIndex).match(trace.toArray(new double[0][]));
+            System.out.println("GPS trace of " + trace.size() + " points matched to roads " + match.roads() + ", " + match.unmatched() + " unmatched");
+
+            // 6i. Dead ends pruned and degree-2 chains contracted once; searches then run on the smaller graph
+            GraphPreprocessor preprocessor = new GraphPreprocessor(graph, trafficData);
+            System.out.println("\n✂️ Preprocessed network: " + preprocessor.summary());
+            System.out.println("Maadi → Qasr El Aini on the reduced graph: " + preprocessor.shortestPath(1, 109)
+                    + ", morning A*: " + preprocessor.fastestPath(1, 109, TrafficTime.MORNING));
+            double reducedMstLength = 0, directMstLength = 0;
+            for (Edge e : preprocessor.buildMST()) reducedMstLength += e.distance;
+            for (Edge e : MSTBuilder.buildMST(graph)) directMstLength += e.distance;
+            System.out.printf("MST through the reduced graph: %.1f km (on the full graph: %.1f km)%n", reducedMstLength, directMstLength);
+
+            // 6j. Pareto routes for an ambulance (time vs. road condition) and for a truck needing 3000 veh/h roads
+            ParetoRouter pareto = ParetoRouter.forVehicles(compact, trafficData, TrafficTime.MORNING);
+            System.out.println("\n⚖️ Pareto routes Maadi → Qasr El Aini (" + String.join(", ", pareto.criteriaNames()) + "):");
+            for (ParetoRouter.Option option : pareto.findRoutes(1, 109)) System.out.println(option);
+            System.out.println("Trucks (capacity ≥ 3000, epsilon 0.05): " + pareto.findRoutes(1, 109, 3000, 0.05));
+
+            // 6k. Versioned network: a reader keeps routing on its pinned version while a road closure is committed
+            VersionedGraph network = new VersionedGraph(graph);
+            try (VersionedGraph.Snapshot before = network.pin()) {
+                network.edit().removeEdge(1, 3).setCondition(3, 109, 4).commit();
+                try (VersionedGraph.Snapshot after = network.pin()) {
+                    System.out.println("\n🚧 Maadi → Qasr El Aini on version " + before.version() + ": "
+                            + Dijkstra.findShortestPath(before.graph(), 1, 109) + ", after closing road 1-3 (version "
+                            + after.version() + "): " + Dijkstra.findShortestPath(after.graph(), 1, 109));
+                }
+            }
+            System.out.println("Old versions reclaimed: " + network.reclaimedVersions());
+
+            // 6l. Two new hospitals next to the existing ones: best coverage within 15 minutes (EVENING) and best mean distance
+            List<Integer> hospitals = new ArrayList<>();
+            for (Node node : graph.nodes.values()) {
+                if ("Medical".equals(node.type)) hospitals.add(node.id);
+            }
+            int[] existingHospitals = hospitals.stream().mapToInt(Integer::intValue).toArray();
+            int[] allSites = graph.nodes.keySet().stream().mapToInt(Integer::intValue).toArray();
+            FacilityLocator locator = FacilityLocator.forTraffic(compact, trafficData, TrafficTime.EVENING, allSites);
+            System.out.println("\n🏥 Two new hospitals (existing: " + hospitals + "):");
+            for (FacilityLocator.Objective objective : FacilityLocator.Objective.values()) {
+                FacilityLocator.Result sites = locator.solve(2, objective, radius, existingHospitals);
+                System.out.printf("%s → %s, population within 15 min %d of %d, mean distance %.1f%n", objective,
+                        Arrays.toString(sites.siteIds), sites.coveredPopulation, sites.totalPopulation, sites.meanDistance());
+            }
+
+            // 6m. Same network stored off the Java heap: node and road attributes in direct buffers
+            OffHeapGraph offHeap = OffHeapGraph.load("src/nodes.csv", "src/existing_roads.csv", "src/potential_roads.csv");
+            double offHeapMst = 0;
+            for (Edge edge : MSTBuilder.buildMST(offHeap)) offHeapMst += edge.distance;
+            System.out.printf("%n💾 Off-heap network: %d nodes, %d roads in %d bytes outside the heap%n",
+                    offHeap.nodeCount(), offHeap.edgeCount(), offHeap.offHeapBytes());
+            System.out.printf("Maadi → Qasr El Aini: %s, MST length %.1f km%n", Dijkstra.findShortestPath(offHeap, 1, 109), offHeapMst);
+
+            // 6n. Many trips from Maadi: after two queries the origin gets a stored shortest-path tree
+            PathTreeStore treeStore = new PathTreeStore(compact, trafficData, 1 << 20, 2);
+            System.out.println("\n🌳 Morning routes from Maadi:");
+            for (int destination : new int[]{109, 5, 8, 12}) {
+                System.out.println("→ " + destination + ": " + treeStore.path(1, destination, TrafficTime.MORNING));
+            }
+            System.out.printf("Trees: %d (%d bytes), built %d, answered from a tree %d%n",
+                    treeStore.treeCount(), treeStore.usedBytes(), treeStore.builds(), treeStore.hits());
+
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -139,6 +306,35 @@ public class Main {
             System.out.println("Route " + route.id + " → " + route.passengers + " passengers, Buses used: " + route.busesAssigned);
         }
 
+        // 7a. Journey planning on the whole bus network (timetable generated from the buses of each route)
+        try {
+            TransitTimetable timetable = TransitTimetable.build(CompactGraph.fromGraph(graph), routes);
+            TransitRouter transitRouter = new TransitRouter(timetable);
+            System.out.println("\n🚏 Transit journeys Maadi → Nasr City leaving 08:00:");
+            for (TransitJourney journey : transitRouter.query(1, 2, 8 * 3600)) {
+                System.out.println(journey);
+            }
+            System.out.println("Best journeys leaving 08:00-08:30:");
+            for (TransitJourney journey : transitRouter.rangeQuery(1, 2, 8 * 3600, 8 * 3600 + 1800)) {
+                System.out.println(journey);
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("⚠️ No transit timetable: " + e.getMessage());
+        }
+
+        // 7b. Designing new bus routes from the network and population, then allocating the same fleet to them
+        CompactGraph stopNetwork = CompactGraph.fromGraph(graph);
+        BusRouteDesigner designer = new BusRouteDesigner(stopNetwork, DemandModel.peakHour(stopNetwork));
+        List<BusRoute> designed = designer.designRoutes(6);
+        System.out.println("\n🗺️ Designed bus routes:");
+        for (BusRoute route : designed) {
+            System.out.println("Route " + route.id + " stops " + route.stops + " → " + route.passengers + " passengers, Buses needed: " + route.busesAssigned);
+        }
+        System.out.println("Allocation on designed routes:");
+        for (BusRoute route : TransitOptimizer.optimizeBusAllocation(designed, totalAvailableBuses)) {
+            System.out.println("Route " + route.id + " → " + route.passengers + " passengers, Buses used: " + route.busesAssigned);
+        }
+
         // 8. Road Maintenance Optimization
         System.out.println("\n🛠️ Road Maintenance Optimization:");
         double maxBudget = 1000; // 1000 million EGP
@@ -164,6 +360,13 @@ public class Main {
 
         System.out.printf("Total Repair Budget Used: %.2fM EGP\n", totalUsed);
 
+        // 8b. Search metrics of everything above (run with --prometheus for the Prometheus text format)
+        System.out.println("\n📈 Search metrics:");
+        System.out.print(SearchMetrics.summary());
+        if (args != null && Arrays.asList(args).contains("--prometheus")) {
+            System.out.print(SearchMetrics.prometheus());
+        }
+
         // 9. Visualization using JavaFX
         System.out.println("DEBUG: Nodes = " + graph.nodes.size() + ", Edges = " + graph.edges.size());
         GraphVisualizer.graph = graph;
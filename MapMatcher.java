@@ -0,0 +1,208 @@
+// MapMatcher.java
+// Snaps GPS traces onto the road network (hidden Markov model map matching, Newson & Krumm style)
+// For every GPS point the candidates are the roads within the search radius (closest point on each).
+// - Emission: a candidate is likelier the closer it is to the GPS point (Gaussian with GPS noise sigma).
+// - Transition: from a candidate to one of the next point's, likelier when the driving distance between them
+//   along the roads is close to the straight-line distance between the two GPS points (exponential with beta).
+// Viterbi picks the likeliest sequence of candidates. When a point has no candidate or cannot be reached from
+// any previous candidate, the trace is split there and matching restarts.
+// Traces are independent, so matchAll matches them in parallel.
+// Coordinates are in map units (like Node.x / Node.y); a km-per-unit scale is estimated from the road lengths.
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+public class MapMatcher {
+    private static final int MAX_CANDIDATES = 8; // Closest roads kept per GPS point
+
+    private final SpatialIndex index;
+    private final CompactGraph graph;
+    private final double sigma; // GPS noise (km)
+    private final double beta; // Tolerated difference between driving and straight-line distance (km)
+    private final double searchRadius; // Candidate roads must be this close to the point (km)
+    private final double kmPerUnit; // Map coordinate unit in km
+    private final ThreadLocal<SearchWorkspace> workspaces;
+
+    // Result for one trace
+    public static class Match {
+        public final SpatialIndex.EdgeProjection[] points; // Matched position of each GPS point (null if unmatched)
+        public final int segments; // Pieces the trace was split into (1 if it matched in one go)
+
+        Match(SpatialIndex.EdgeProjection[] points, int segments) {
+            this.points = points;
+            this.segments = segments;
+        }
+
+        // Roads driven on, in order, without repeats
+        public List<Edge> roads() {
+            List<Edge> roads = new ArrayList<>();
+            for (SpatialIndex.EdgeProjection p : points) {
+                if (p != null && (roads.isEmpty() || roads.get(roads.size() - 1) != p.edge)) roads.add(p.edge);
+            }
+            return roads;
+        }
+
+        public int unmatched() {
+            int count = 0;
+            for (SpatialIndex.EdgeProjection p : points) if (p == null) count++;
+            return count;
+        }
+    }
+
+    // Defaults for city GPS: 50 m noise, 500 m detour tolerance, candidates within 200 m
+    public MapMatcher(SpatialIndex index) {
+        this(index, 0.05, 0.5, 0.2);
+    }
+
+    public MapMatcher(SpatialIndex index, double sigmaKm, double betaKm, double searchRadiusKm) {
+        this.index = index;
+        this.graph = index.graph;
+        this.sigma = sigmaKm;
+        this.beta = betaKm;
+        this.searchRadius = searchRadiusKm;
+        this.kmPerUnit = estimateKmPerUnit(index);
+        this.workspaces = ThreadLocal.withInitial(() -> new SearchWorkspace(Math.max(graph.nodeCount, 1)));
+    }
+
+    // Matches many traces in parallel; trace[i] = {x, y} of the i-th GPS point. Results are in input order.
+    public List<Match> matchAll(List<double[][]> traces) {
+        return traces.parallelStream().map(this::match).collect(Collectors.toList());
+    }
+
+    // Matches one trace
+    public Match match(double[][] trace) {
+        int n = trace.length;
+        SpatialIndex.EdgeProjection[] matched = new SpatialIndex.EdgeProjection[n];
+        List<List<SpatialIndex.EdgeProjection>> candidates = new ArrayList<>(n);
+        for (double[] point : trace) candidates.add(candidatesOf(point));
+
+        double[][] score = new double[n][]; // Best log-probability of ending at each candidate
+        int[][] back = new int[n][]; // Candidate of the previous point on that best sequence
+        int segmentStart = -1, segments = 0;
+        for (int i = 0; i < n; i++) {
+            List<SpatialIndex.EdgeProjection> current = candidates.get(i);
+            score[i] = new double[current.size()];
+            back[i] = new int[current.size()];
+            Arrays.fill(back[i], -1);
+            boolean reachable = false;
+            if (segmentStart >= 0 && !current.isEmpty()) reachable = transition(trace, candidates, score, back, i);
+            if (!reachable) {
+                // Start a new segment here (after closing the previous one)
+                if (segmentStart >= 0) backtrack(candidates, score, back, segmentStart, i - 1, matched);
+                segmentStart = current.isEmpty() ? -1 : i;
+                if (segmentStart >= 0) segments++;
+                for (int c = 0; c < current.size(); c++) score[i][c] = emission(current.get(c));
+            }
+        }
+        if (segmentStart >= 0) backtrack(candidates, score, back, segmentStart, n - 1, matched);
+        return new Match(matched, segments);
+    }
+
+    // Viterbi step from point i - 1 to point i; returns false if no candidate of i can be reached
+    private boolean transition(double[][] trace, List<List<SpatialIndex.EdgeProjection>> candidates,
+                               double[][] score, int[][] back, int i) {
+        List<SpatialIndex.EdgeProjection> previous = candidates.get(i - 1);
+        List<SpatialIndex.EdgeProjection> current = candidates.get(i);
+        double straight = Math.hypot(trace[i][0] - trace[i - 1][0], trace[i][1] - trace[i - 1][1]) * kmPerUnit;
+        double limit = 2 * straight + 2 * searchRadius + 5 * beta; // Longer detours are treated as impossible
+        Arrays.fill(score[i], Double.NEGATIVE_INFINITY);
+        SearchWorkspace ws = workspaces.get();
+
+        for (int p = 0; p < previous.size(); p++) {
+            if (score[i - 1][p] == Double.NEGATIVE_INFINITY) continue;
+            SpatialIndex.EdgeProjection from = previous.get(p);
+            drivingDistances(from, limit, ws);
+            for (int c = 0; c < current.size(); c++) {
+                SpatialIndex.EdgeProjection to = current.get(c);
+                double driven = Math.min(drivenTo(to, ws),
+                        from.road == to.road ? Math.abs(to.fraction - from.fraction) * to.edge.distance : Double.POSITIVE_INFINITY);
+                if (driven > limit) continue;
+                double s = score[i - 1][p] - Math.abs(driven - straight) / beta + emission(to);
+                if (s > score[i][c]) {
+                    score[i][c] = s;
+                    back[i][c] = p;
+                }
+            }
+        }
+        for (int c = 0; c < current.size(); c++) if (back[i][c] >= 0) return true;
+        return false;
+    }
+
+    // Dijkstra on road lengths from a point on a road (both ends seeded), stopped past the limit
+    private void drivingDistances(SpatialIndex.EdgeProjection from, double limit, SearchWorkspace ws) {
+        ws.reset();
+        int u = index.roadFrom(from.road), v = index.roadTo(from.road);
+        ws.setDistance(u, from.fraction * from.edge.distance, -1);
+        ws.heap.push(u, from.fraction * from.edge.distance);
+        double toEnd = (1 - from.fraction) * from.edge.distance;
+        if (toEnd < ws.distance(v)) {
+            ws.setDistance(v, toEnd, -1);
+            ws.heap.push(v, toEnd);
+        }
+        while (!ws.heap.isEmpty()) {
+            double d = ws.heap.peekKey();
+            if (d > limit) break;
+            int x = ws.heap.pop();
+            if (d > ws.dist[x] || ws.isSettled(x)) continue;
+            ws.settle(x);
+            for (int a = graph.firstArc[x]; a < graph.firstArc[x + 1]; a++) {
+                int y = graph.arcTarget[a];
+                double newDist = d + graph.arcDistance[a];
+                if (newDist < ws.distance(y)) {
+                    ws.setDistance(y, newDist, a);
+                    ws.heap.push(y, newDist);
+                }
+            }
+        }
+    }
+
+    // Driving distance to a point on a road, entering from either end (only settled ends are exact)
+    private double drivenTo(SpatialIndex.EdgeProjection to, SearchWorkspace ws) {
+        int u = index.roadFrom(to.road), v = index.roadTo(to.road);
+        double best = Double.POSITIVE_INFINITY;
+        if (ws.isSettled(u)) best = ws.distance(u) + to.fraction * to.edge.distance;
+        if (ws.isSettled(v)) best = Math.min(best, ws.distance(v) + (1 - to.fraction) * to.edge.distance);
+        return best;
+    }
+
+    // Log-probability (up to a constant) of seeing the GPS point when the vehicle is at the candidate
+    private double emission(SpatialIndex.EdgeProjection candidate) {
+        double d = candidate.distance * kmPerUnit / sigma;
+        return -0.5 * d * d;
+    }
+
+    // Writes the best sequence of points first..last into matched
+    private static void backtrack(List<List<SpatialIndex.EdgeProjection>> candidates, double[][] score, int[][] back,
+                                  int first, int last, SpatialIndex.EdgeProjection[] matched) {
+        int best = -1;
+        for (int c = 0; c < score[last].length; c++) {
+            if (score[last][c] > Double.NEGATIVE_INFINITY && (best < 0 || score[last][c] > score[last][best])) best = c;
+        }
+        for (int i = last; i >= first && best >= 0; i--) {
+            matched[i] = candidates.get(i).get(best);
+            best = back[i][best];
+        }
+    }
+
+    // Closest roads within the search radius
+    private List<SpatialIndex.EdgeProjection> candidatesOf(double[] point) {
+        List<SpatialIndex.EdgeProjection> found = index.edgesWithin(point[0], point[1], searchRadius / kmPerUnit);
+        return found.size() > MAX_CANDIDATES ? new ArrayList<>(found.subList(0, MAX_CANDIDATES)) : found;
+    }
+
+    // Median ratio of road length (km) to straight segment length (map units), over up to 1000 roads
+    private static double estimateKmPerUnit(SpatialIndex index) {
+        CompactGraph graph = index.graph;
+        int roads = graph.edges.length;
+        int step = Math.max(roads / 1000, 1);
+        List<Double> ratios = new ArrayList<>();
+        for (int r = 0; r < roads; r += step) {
+            int u = index.roadFrom(r), v = index.roadTo(r);
+            double length = Math.hypot(graph.x[u] - graph.x[v], graph.y[u] - graph.y[v]);
+            if (length > 0 && graph.edges[r].distance > 0) ratios.add(graph.edges[r].distance / length);
+        }
+        if (ratios.isEmpty()) return 1.0;
+        Collections.sort(ratios);
+        return ratios.get(ratios.size() / 2);
+    }
+}
@@ -0,0 +1,393 @@
+// MapRenderer.java
+// Draws the network into an ARGB pixel buffer, so GraphVisualizer can render on a background thread and
+// only copy the finished image onto its canvas. Large networks stay fast because:
+// - only roads/nodes inside the viewport are visited (SpatialIndex box queries);
+// - level of detail: groups of roads smaller than a pixel are drawn as one pixel, nodes shrink to dots
+//   when they get crowded, and labels are only produced when few enough are on screen;
+// - highlighted roads are a BitSet over road positions (no List.contains per road).
+// Screen y grows downwards with map y, like the original GraphVisualizer layout.
+// Highlight changes take effect on the next render.
+
+import java.util.*;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+public class MapRenderer {
+    private static final int BACKGROUND = 0xFFFFFFFF;
+    private static final int EXISTING_ROAD = 0xFF808080; // Gray
+    private static final int POTENTIAL_ROAD = 0xFFADD8E6; // Light blue, dashed
+    private static final int HIGHLIGHT = 0xFFFF0000; // Red
+    private static final int EXPLORED = 0xFF3CB371; // Green: roads a running search has already settled
+    private static final int CITY_NODE = 0xFF000000; // Black
+    private static final int FACILITY_NODE = 0xFFFFA500; // Orange
+    private static final int MAX_NODE_RADIUS = 6;
+    private static final int MAX_LABELS = 200; // More labels than this on screen are suppressed
+    private static final double MIN_LABEL_SPACING = 40; // Pixels between nodes before their names are shown
+
+    private final Graph network; // For node names
+    private final SpatialIndex index;
+    private final CompactGraph graph;
+    private final Map<Long, Integer> roadByEnds = new HashMap<>(); // Both (from, to) orders → road position
+    private final BitSet potentialRoads = new BitSet(); // Kept apart from the Edge objects for cache-friendly drawing
+    private volatile BitSet highlighted = new BitSet();
+    private volatile BitSet explored = new BitSet();
+    private volatile boolean showAllEdges = false;
+    private volatile IntFunction<String> nodeNames; // Node ID → label text
+
+    // What part of the map is shown: the map point at the centre of the image and the zoom
+    public static class Viewport {
+        public final double centerX, centerY; // Map coordinates at the image centre
+        public final double pixelsPerUnit; // Zoom
+        public final int width, height; // Image size in pixels
+
+        public Viewport(double centerX, double centerY, double pixelsPerUnit, int width, int height) {
+            this.centerX = centerX;
+            this.centerY = centerY;
+            this.pixelsPerUnit = pixelsPerUnit;
+            this.width = width;
+            this.height = height;
+        }
+
+        // Whole network with a margin around it
+        public static Viewport fit(SpatialIndex index, int width, int height, double margin) {
+            double spanX = Math.max(index.maxX - index.minX, 1e-9), spanY = Math.max(index.maxY - index.minY, 1e-9);
+            double zoom = Math.min((width - 2 * margin) / spanX, (height - 2 * margin) / spanY);
+            return new Viewport((index.minX + index.maxX) / 2, (index.minY + index.maxY) / 2, Math.max(zoom, 1e-9), width, height);
+        }
+
+        public double screenX(double mapX) {
+            return (mapX - centerX) * pixelsPerUnit + width / 2.0;
+        }
+
+        public double screenY(double mapY) {
+            return (mapY - centerY) * pixelsPerUnit + height / 2.0;
+        }
+
+        public double mapX(double screenX) {
+            return (screenX - width / 2.0) / pixelsPerUnit + centerX;
+        }
+
+        public double mapY(double screenY) {
+            return (screenY - height / 2.0) / pixelsPerUnit + centerY;
+        }
+
+        // Moved by a number of pixels (content follows the mouse)
+        public Viewport panned(double dx, double dy) {
+            return new Viewport(centerX - dx / pixelsPerUnit, centerY - dy / pixelsPerUnit, pixelsPerUnit, width, height);
+        }
+
+        // Zoomed by a factor, keeping the map point under (screenX, screenY) in place
+        public Viewport zoomed(double factor, double screenX, double screenY) {
+            double x = mapX(screenX), y = mapY(screenY);
+            double zoom = pixelsPerUnit * factor;
+            return new Viewport(x - (screenX - width / 2.0) / zoom, y - (screenY - height / 2.0) / zoom, zoom, width, height);
+        }
+
+        public Viewport resized(int newWidth, int newHeight) {
+            return new Viewport(centerX, centerY, pixelsPerUnit, newWidth, newHeight);
+        }
+    }
+
+    // Text to draw on top of the image (names and highlighted road lengths)
+    public static class Label {
+        public final double x, y; // Screen position
+        public final String text;
+        public final boolean highlight; // Red road length rather than a node name
+
+        Label(double x, double y, String text, boolean highlight) {
+            this.x = x;
+            this.y = y;
+            this.text = text;
+            this.highlight = highlight;
+        }
+    }
+
+    // A finished image
+    public static class Frame {
+        public final Viewport viewport;
+        public final int[] pixels; // ARGB, row by row (opaque, so also valid as premultiplied ARGB)
+        public final List<Label> labels;
+        public final long renderNanos;
+
+        Frame(Viewport viewport, int[] pixels, List<Label> labels, long renderNanos) {
+            this.viewport = viewport;
+            this.pixels = pixels;
+            this.labels = labels;
+            this.renderNanos = renderNanos;
+        }
+    }
+
+    public MapRenderer(Graph network) {
+        this(network, new SpatialIndex(network));
+    }
+
+    public MapRenderer(Graph network, SpatialIndex index) {
+        this.network = network;
+        this.index = index;
+        this.nodeNames = id -> network.nodes.get(id).name;
+        this.graph = index.graph;
+        for (int r = 0; r < graph.edges.length; r++) {
+            int u = index.roadFrom(r), v = index.roadTo(r);
+            roadByEnds.putIfAbsent(key(u, v), r);
+            roadByEnds.putIfAbsent(key(v, u), r);
+            if (!graph.edges[r].isExisting) potentialRoads.set(r);
+        }
+    }
+
+    public SpatialIndex getIndex() {
+        return index;
+    }
+
+    // Roads to draw in red; edges are matched by their end nodes, so reversed adjacency copies work too
+    public void setHighlighted(Collection<Edge> edges) {
+        BitSet roads = new BitSet(graph.edges.length);
+        for (Edge edge : edges) {
+            int road = roadOf(edge);
+            if (road >= 0) roads.set(road);
+        }
+        highlighted = roads;
+    }
+
+    // Same with road positions (see roadOf); the set must not be changed afterwards
+    public void setHighlightedRoads(BitSet roads) {
+        highlighted = roads;
+    }
+
+    // Roads to draw in green under the highlighted ones (partial results of a running search)
+    public void setExploredRoads(BitSet roads) {
+        explored = roads;
+    }
+
+    // Position of a road in graph.edges (either direction), or -1 if the network has no such road
+    public int roadOf(Edge edge) {
+        Integer road = roadByEnds.get(key(graph.indexOf(edge.from), graph.indexOf(edge.to)));
+        return road == null ? -1 : road;
+    }
+
+    // When false only highlighted roads are drawn (the nodes are always drawn)
+    public void setShowAllEdges(boolean showAllEdges) {
+        this.showAllEdges = showAllEdges;
+    }
+
+    // Where node labels come from, e.g. an OffHeapGraph's names for a network too big to keep as Node objects
+    public void setNodeNames(IntFunction<String> nodeNames) {
+        this.nodeNames = nodeNames;
+    }
+
+    // Renders the view; the image is cut into horizontal strips that are drawn in parallel
+    public Frame render(Viewport view) {
+        long start = System.nanoTime();
+        int w = view.width, h = view.height;
+        int[] pixels = new int[w * h];
+        BitSet marked = highlighted, searched = explored;
+        int stripCount = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() * 2, h / 32));
+        Strip[] strips = new Strip[stripCount];
+        for (int s = 0; s < stripCount; s++) {
+            strips[s] = new Strip(view, pixels, h * s / stripCount, h * (s + 1) / stripCount);
+        }
+
+        // Explored and highlighted roads are handed to the strips they reach in one pass over each set, so a
+        // large search costs O(explored) per frame and not O(strips x explored)
+        IntList[] searchedByStrip = byStrip(searched, view, stripCount);
+        IntList[] markedByStrip = byStrip(marked, view, stripCount);
+
+        // Roads first, collecting the nodes; the node radius depends on how many are visible in total
+        IntStream.range(0, stripCount).parallel()
+                .forEach(s -> strips[s].drawRoads(marked, searched, markedByStrip[s], searchedByStrip[s]));
+        int count = 0;
+        int lengths = 0;
+        for (Strip strip : strips) {
+            count += strip.nodeCount;
+            lengths += strip.lengths.size();
+        }
+        double spacing = count == 0 ? Double.POSITIVE_INFINITY : Math.sqrt((double) w * h / count);
+        int radius = (int) Math.max(0, Math.min(MAX_NODE_RADIUS, spacing / 4));
+        IntStream.range(0, stripCount).parallel().forEach(s -> strips[s].drawNodes(radius));
+
+        // Labels only when few enough are on screen
+        List<Label> labels = new ArrayList<>();
+        for (Strip strip : strips) {
+            if (lengths <= MAX_LABELS) labels.addAll(strip.lengths);
+            if (count <= MAX_LABELS && spacing >= MIN_LABEL_SPACING) {
+                for (int k = 0; k < strip.nodes.size; k++) {
+                    int node = strip.nodes.values[k];
+                    if (!strip.owns(view.screenY(graph.y[node]))) continue;
+                    labels.add(new Label(view.screenX(graph.x[node]) + 8, view.screenY(graph.y[node]) - 6,
+                            nodeNames.apply(graph.nodeIds[node]), false));
+                }
+            }
+        }
+        return new Frame(view, pixels, labels, System.nanoTime() - start);
+    }
+
+    // Roads of the set that are in view, listed under every strip whose rows they may reach (with a pixel of
+    // slack at the strip borders; the strips clip exactly)
+    private IntList[] byStrip(BitSet roads, Viewport view, int stripCount) {
+        IntList[] lists = new IntList[stripCount];
+        for (int s = 0; s < stripCount; s++) lists[s] = new IntList();
+        double pad = MAX_NODE_RADIUS + 1;
+        for (int road = roads.nextSetBit(0); road >= 0; road = roads.nextSetBit(road + 1)) {
+            int u = index.roadFrom(road), v = index.roadTo(road);
+            double xa = view.screenX(graph.x[u]), xb = view.screenX(graph.x[v]);
+            if (Math.max(xa, xb) < -pad || Math.min(xa, xb) > view.width + pad) continue;
+            double ya = view.screenY(graph.y[u]), yb = view.screenY(graph.y[v]);
+            int first = (int) Math.floor((Math.min(ya, yb) - pad) * stripCount / view.height);
+            int last = (int) Math.floor((Math.max(ya, yb) + pad) * stripCount / view.height);
+            for (int s = Math.max(first, 0); s <= Math.min(last, stripCount - 1); s++) lists[s].add(road);
+        }
+        return lists;
+    }
+
+    // Rows top .. bottom - 1 of the image; everything drawn is clipped to them
+    private class Strip {
+        final Viewport view;
+        final int[] pixels;
+        final int w, top, bottom;
+        final IntList nodes = new IntList(); // Visible nodes that reach into the strip
+        int nodeCount; // Of those, the ones centred in the strip
+        final List<Label> lengths = new ArrayList<>();
+
+        Strip(Viewport view, int[] pixels, int top, int bottom) {
+            this.view = view;
+            this.pixels = pixels;
+            this.w = view.width;
+            this.top = top;
+            this.bottom = bottom;
+        }
+
+        boolean owns(double screenY) {
+            return screenY >= top - 0.5 && screenY < bottom - 0.5;
+        }
+
+        // marked/searched are the whole sets; markedHere/searchedHere their roads that may reach this strip
+        void drawRoads(BitSet marked, BitSet searched, IntList markedHere, IntList searchedHere) {
+            Arrays.fill(pixels, top * w, bottom * w, BACKGROUND);
+
+            // Map area of the strip, widened by the largest node radius so circles at the border are not cut off
+            double pad = MAX_NODE_RADIUS / view.pixelsPerUnit;
+            double x0 = view.mapX(0) - pad, x1 = view.mapX(w) + pad;
+            double y0 = view.mapY(top) - pad, y1 = view.mapY(bottom) + pad;
+
+            // 1. Ordinary roads; road groups smaller than a pixel collapse to one pixel
+            if (showAllEdges) {
+                double pixel = 1 / view.pixelsPerUnit;
+                index.forEachEdgeInBox(x0, y0, x1, y1, pixel, (road, fromX, fromY, toX, toY) -> {
+                    if (marked.get(road) || searched.get(road)) return;
+                    boolean existing = !potentialRoads.get(road);
+                    drawLine(view.screenX(fromX), view.screenY(fromY), view.screenX(toX), view.screenY(toY),
+                            existing ? EXISTING_ROAD : POTENTIAL_ROAD, !existing);
+                }, (bx0, by0, bx1, by1) -> plot((int) view.screenX((bx0 + bx1) / 2), (int) view.screenY((by0 + by1) / 2), EXISTING_ROAD));
+            }
+
+            // 2. Roads explored by a running search, then highlighted roads on top (2 px wide, with their length)
+            for (int k = 0; k < searchedHere.size; k++) {
+                int road = searchedHere.values[k];
+                if (marked.get(road) || !visible(road, x0, y0, x1, y1)) continue;
+                int u = index.roadFrom(road), v = index.roadTo(road);
+                drawLine(view.screenX(graph.x[u]), view.screenY(graph.y[u]), view.screenX(graph.x[v]), view.screenY(graph.y[v]), EXPLORED, false);
+            }
+            for (int k = 0; k < markedHere.size; k++) {
+                int road = markedHere.values[k];
+                if (!visible(road, x0, y0, x1, y1)) continue;
+                int u = index.roadFrom(road), v = index.roadTo(road);
+                double sx1 = view.screenX(graph.x[u]), sy1 = view.screenY(graph.y[u]);
+                double sx2 = view.screenX(graph.x[v]), sy2 = view.screenY(graph.y[v]);
+                drawLine(sx1, sy1, sx2, sy2, HIGHLIGHT, false);
+                if (Math.abs(sx2 - sx1) > Math.abs(sy2 - sy1)) drawLine(sx1, sy1 + 1, sx2, sy2 + 1, HIGHLIGHT, false);
+                else drawLine(sx1 + 1, sy1, sx2 + 1, sy2, HIGHLIGHT, false);
+                double midX = (sx1 + sx2) / 2, midY = (sy1 + sy2) / 2;
+                if (owns(midY) && midX >= 0 && midX < w && lengths.size() <= MAX_LABELS) {
+                    lengths.add(new Label(midX, midY, String.format("%.1f km", graph.edges[road].distance), true));
+                }
+            }
+
+            index.forEachNodeInBox(x0, y0, x1, y1, node -> {
+                nodes.add(node);
+                if (owns(view.screenY(graph.y[node]))) nodeCount++;
+            });
+        }
+
+        boolean visible(int road, double x0, double y0, double x1, double y1) {
+            int u = index.roadFrom(road), v = index.roadTo(road);
+            return Math.max(graph.x[u], graph.x[v]) >= x0 && Math.min(graph.x[u], graph.x[v]) <= x1
+                    && Math.max(graph.y[u], graph.y[v]) >= y0 && Math.min(graph.y[u], graph.y[v]) <= y1;
+        }
+
+        // 3. Nodes: discs that shrink with the average spacing of the visible nodes, down to a single pixel
+        void drawNodes(int radius) {
+            for (int k = 0; k < nodes.size; k++) {
+                int node = nodes.values[k];
+                int color = graph.isFacility[node] ? FACILITY_NODE : CITY_NODE;
+                int sx = (int) Math.round(view.screenX(graph.x[node])), sy = (int) Math.round(view.screenY(graph.y[node]));
+                if (radius == 0) plot(sx, sy, color);
+                else fillDisc(sx, sy, radius, color);
+            }
+        }
+
+        // ----------- Rasterization -----------
+
+        void plot(int x, int y, int color) {
+            if (x >= 0 && y >= top && x < w && y < bottom) pixels[y * w + x] = color;
+        }
+
+        void fillDisc(int cx, int cy, int r, int color) {
+            for (int dy = -r; dy <= r; dy++) {
+                int y = cy + dy;
+                if (y < top || y >= bottom) continue;
+                int half = (int) Math.sqrt(r * r - dy * dy);
+                int from = Math.max(cx - half, 0), to = Math.min(cx + half, w - 1);
+                for (int x = from; x <= to; x++) pixels[y * w + x] = color;
+            }
+        }
+
+        // Line stepped one pixel at a time along its longer axis; only lines crossing the strip border are
+        // clipped (Liang-Barsky). Most lines of a zoomed-out network are shorter than a pixel and become one plot.
+        void drawLine(double xa, double ya, double xb, double yb, int color, boolean dashed) {
+            double left = 0, right = w - 1, up = top, down = bottom - 1;
+            if ((xa < left && xb < left) || (ya < up && yb < up) || (xa > right && xb > right) || (ya > down && yb > down)) return;
+            double dx = xb - xa, dy = yb - ya;
+            double length = Math.max(Math.abs(dx), Math.abs(dy));
+            if (length < 1) {
+                plot((int) (xa + 0.5), (int) (ya + 0.5), color);
+                return;
+            }
+            double t0 = 0, t1 = 1;
+            if (xa < left || xb < left || xa > right || xb > right || ya < up || yb < up || ya > down || yb > down) {
+                double[] p = {-dx, dx, -dy, dy};
+                double[] q = {xa - left, right - xa, ya - up, down - ya};
+                for (int i = 0; i < 4; i++) {
+                    if (p[i] == 0) {
+                        if (q[i] < 0) return; // Parallel to this border and outside
+                    } else {
+                        double t = q[i] / p[i];
+                        if (p[i] < 0) t0 = Math.max(t0, t);
+                        else t1 = Math.min(t1, t);
+                    }
+                }
+                if (t0 > t1) return;
+            }
+            double sx = xa + t0 * dx + 0.5, sy = ya + t0 * dy + 0.5;
+            int steps = (int) Math.ceil(length * (t1 - t0));
+            double stepX = steps == 0 ? 0 : dx * (t1 - t0) / steps, stepY = steps == 0 ? 0 : dy * (t1 - t0) / steps;
+            for (int i = 0; i <= steps; i++) {
+                if (dashed && (i / 5) % 2 == 1) continue; // 5 px on, 5 px off like the old dash array
+                plot((int) (sx + i * stepX), (int) (sy + i * stepY), color);
+            }
+        }
+    }
+
+    private static long key(int u, int v) {
+        return ((long) u << 32) | (v & 0xFFFFFFFFL);
+    }
+
+    // Growable int array for the visible nodes and the roads of a strip
+    private static class IntList {
+        int[] values = new int[64];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+// NodeHeap.java
+// Binary min-heap of (node index, key) pairs stored in primitive arrays
+// Used by the array-based searches instead of PriorityQueue<int[]> to avoid one allocation per push.
+// Like the PriorityQueue searches, it allows duplicates: callers skip stale entries when they pop them.
+
+import java.util.Arrays;
+
+public class NodeHeap {
+    private int[] nodes; // Node index stored at each heap slot
+    private double[] keys; // Priority (distance) stored at each heap slot
+    private int size; // Number of entries currently in the heap
+
+    public NodeHeap(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 16);
+        nodes = new int[capacity];
+        keys = new double[capacity];
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Removes all entries but keeps the backing arrays for reuse
+    public void clear() {
+        size = 0;
+    }
+
+    // Adds a node with the given key and sifts it up to its place
+    public void push(int node, double key) {
+        if (size == nodes.length) {
+            nodes = Arrays.copyOf(nodes, size * 2);
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (keys[parent] <= key) break;
+            nodes[i] = nodes[parent];
+            keys[i] = keys[parent];
+            i = parent;
+        }
+        nodes[i] = node;
+        keys[i] = key;
+    }
+
+    // Key of the smallest entry (call only when not empty)
+    public double peekKey() {
+        return keys[0];
+    }
+
+    // Node of the smallest entry (call only when not empty)
+    public int peekNode() {
+        return nodes[0];
+    }
+
+    // Removes the smallest entry and returns its node index
+    public int pop() {
+        int top = nodes[0];
+        size--;
+        if (size > 0) {
+            int node = nodes[size];
+            double key = keys[size];
+            int i = 0;
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && keys[child + 1] < keys[child]) child++;
+                if (key <= keys[child]) break;
+                nodes[i] = nodes[child];
+                keys[i] = keys[child];
+                i = child;
+            }
+            nodes[i] = node;
+            keys[i] = key;
+        }
+        return top;
+    }
+}
@@ -0,0 +1,246 @@
+// NodeOrdering.java
+// Renumbers the nodes of a network so nodes that are close on the map (or in the graph) get close indices
+// CompactGraph.fromGraph numbers nodes by ID, and the IDs of nodes.csv say nothing about where a node is, so the
+// neighbors of a node are scattered over dist[], parentArc[] and the arc arrays: on a large network almost
+// every edge relaxation is a cache miss. With a locality-preserving order, the nodes relaxed together sit in
+// the same cache lines and pages.
+// - hilbert: sorts nodes along a Hilbert curve over (x, y); needs only the coordinates
+// - bfs: breadth-first order from a peripheral node, component by component
+// - rcm: reverse Cuthill-McKee (BFS visiting low-degree neighbors first, then reversed), which keeps the index
+//   distance between neighbors (the bandwidth) small
+// An order is an array with order[newIndex] = oldIndex; CompactGraph.permute applies it to every node and arc
+// array. Node IDs stay the external IDs (nodeIds[] and indexOf translate), so engines using a permuted graph give
+// the same answers. renumber does the same for a Graph, for the map-based Dijkstra, TrafficDijkstra and AStarSearch.
+
+import java.util.*;
+
+public class NodeOrdering {
+    private static final int HILBERT_BITS = 16; // Curve resolution: 65536 x 65536 cells over the bounding box
+
+    // Order by name: "id" (unchanged), "hilbert", "bfs" or "rcm"
+    public static int[] byName(CompactGraph graph, String name) {
+        switch (name) {
+            case "id":
+                return identity(graph.nodeCount);
+            case "hilbert":
+                return hilbert(graph);
+            case "bfs":
+                return bfs(graph);
+            case "rcm":
+                return reverseCuthillMcKee(graph);
+            default:
+                throw new IllegalArgumentException("Unknown node ordering: " + name);
+        }
+    }
+
+    public static int[] identity(int n) {
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        return order;
+    }
+
+    // Nodes sorted by their position along a Hilbert curve over the bounding box of the coordinates
+    public static int[] hilbert(CompactGraph graph) {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < graph.nodeCount; i++) {
+            minX = Math.min(minX, graph.x[i]);
+            maxX = Math.max(maxX, graph.x[i]);
+            minY = Math.min(minY, graph.y[i]);
+            maxY = Math.max(maxY, graph.y[i]);
+        }
+        int side = 1 << HILBERT_BITS;
+        double scale = (side - 1) / Math.max(Math.max(maxX - minX, maxY - minY), 1e-12); // Same scale on both axes
+
+        // Curve position in the high bits, node index in the low 31 bits, so one primitive sort does it
+        long[] keys = new long[graph.nodeCount];
+        for (int i = 0; i < graph.nodeCount; i++) {
+            int cx = (int) ((graph.x[i] - minX) * scale);
+            int cy = (int) ((graph.y[i] - minY) * scale);
+            keys[i] = (hilbertIndex(cx, cy, side) << 31) | i;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[graph.nodeCount];
+        for (int i = 0; i < order.length; i++) order[i] = (int) (keys[i] & 0x7fffffffL);
+        return order;
+    }
+
+    // Distance along the Hilbert curve of the cell (x, y) in a side x side square (side a power of two)
+    static long hilbertIndex(int x, int y, int side) {
+        long d = 0;
+        for (int s = side / 2; s > 0; s /= 2) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            if (ry == 0) { // Rotate the quadrant so the curve stays continuous
+                if (rx == 1) {
+                    x = s - 1 - x;
+                    y = s - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+
+    // Breadth-first order; each component starts from a peripheral node so the levels are long and thin
+    public static int[] bfs(CompactGraph graph) {
+        return cuthillMcKee(graph, false);
+    }
+
+    // Reverse Cuthill-McKee: BFS from a low-degree peripheral node, neighbors by increasing degree, reversed
+    public static int[] reverseCuthillMcKee(CompactGraph graph) {
+        int[] order = cuthillMcKee(graph, true);
+        for (int i = 0, j = order.length - 1; i < j; i++, j--) {
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+        return order;
+    }
+
+    private static int[] cuthillMcKee(CompactGraph graph, boolean byDegree) {
+        int n = graph.nodeCount;
+        int[] order = new int[n];
+        boolean[] placed = new boolean[n];
+        int[] level = new int[n], queue = new int[n];
+        int count = 0;
+        Integer[] neighbors = new Integer[16];
+
+        for (int root = 0; root < n; root++) {
+            if (placed[root]) continue;
+            int start = peripheralNode(graph, root, level, queue);
+            order[count++] = start;
+            placed[start] = true;
+            for (int head = count - 1; head < count; head++) {
+                int u = order[head];
+                int first = graph.firstArc[u], degree = graph.firstArc[u + 1] - first;
+                if (neighbors.length < degree) neighbors = new Integer[degree];
+                int k = 0;
+                for (int a = first; a < first + degree; a++) {
+                    int v = graph.arcTarget[a];
+                    if (!placed[v]) {
+                        placed[v] = true; // Placed now so a parallel road does not add it twice
+                        neighbors[k++] = v;
+                    }
+                }
+                if (byDegree) Arrays.sort(neighbors, 0, k, Comparator.comparingInt(v -> graph.firstArc[v + 1] - graph.firstArc[v]));
+                for (int i = 0; i < k; i++) order[count++] = neighbors[i];
+            }
+        }
+        return order;
+    }
+
+    // Pseudo-peripheral node of root's component: repeats BFS from the farthest (then lowest-degree) node
+    // while the eccentricity grows (George-Liu); level and queue are scratch arrays of size nodeCount
+    private static int peripheralNode(CompactGraph graph, int root, int[] level, int[] queue) {
+        int node = root, eccentricity = -1;
+        while (true) {
+            // BFS levels from node; level[] is reset through the queue afterwards
+            int size = 0;
+            queue[size++] = node;
+            level[node] = 1; // 0 = not reached
+            int farthest = node;
+            for (int head = 0; head < size; head++) {
+                int u = queue[head];
+                for (int a = graph.firstArc[u]; a < graph.firstArc[u + 1]; a++) {
+                    int v = graph.arcTarget[a];
+                    if (level[v] == 0) {
+                        level[v] = level[u] + 1;
+                        queue[size++] = v;
+                    }
+                }
+            }
+            int depth = level[queue[size - 1]];
+            int bestDegree = Integer.MAX_VALUE;
+            for (int i = size - 1; i >= 0 && level[queue[i]] == depth; i--) {
+                int degree = graph.firstArc[queue[i] + 1] - graph.firstArc[queue[i]];
+                if (degree < bestDegree) {
+                    bestDegree = degree;
+                    farthest = queue[i];
+                }
+            }
+            for (int i = 0; i < size; i++) level[queue[i]] = 0;
+            if (depth <= eccentricity) return node;
+            eccentricity = depth;
+            node = farthest;
+        }
+    }
+
+    // Mean |index(u) - index(v)| over all arcs: how far apart in memory the two ends of a road are
+    public static double meanArcGap(CompactGraph graph) {
+        long sum = 0;
+        for (int u = 0; u < graph.nodeCount; u++) {
+            for (int a = graph.firstArc[u]; a < graph.firstArc[u + 1]; a++) {
+                sum += Math.abs(graph.arcTarget[a] - u);
+            }
+        }
+        return graph.arcCount == 0 ? 0 : (double) sum / graph.arcCount;
+    }
+
+    // A Graph whose node IDs are the new dense indices, for the map-based algorithms, with the translation tables
+    public static class Renumbered {
+        public final Graph graph; // Node IDs 0..n-1 in the new order; nodes, roads and lists created in that order
+        public final TrafficData traffic; // Traffic counts under the new IDs (null if none were given)
+        public final int[] externalId; // New ID → original ID
+        private final Map<Integer, Integer> internalId; // Original ID → new ID
+
+        Renumbered(Graph graph, TrafficData traffic, int[] externalId, Map<Integer, Integer> internalId) {
+            this.graph = graph;
+            this.traffic = traffic;
+            this.externalId = externalId;
+            this.internalId = internalId;
+        }
+
+        // New ID of an original node ID, or -1 if unknown
+        public int toInternal(int nodeId) {
+            return internalId.getOrDefault(nodeId, -1);
+        }
+
+        // A path of new IDs as original IDs
+        public List<Integer> toExternal(List<Integer> path) {
+            List<Integer> ids = new ArrayList<>(path.size());
+            for (int id : path) ids.add(externalId[id]);
+            return ids;
+        }
+    }
+
+    // Copies graph with the nodes numbered by order (order[newId] = index in compact, which must come from graph)
+    public static Renumbered renumber(Graph graph, TrafficData traffic, CompactGraph compact, int[] order) {
+        int n = compact.nodeCount;
+        int[] externalId = new int[n];
+        Map<Integer, Integer> internalId = new HashMap<>(n * 2);
+        Graph copy = new Graph();
+        for (int i = 0; i < n; i++) {
+            Node node = graph.nodes.get(compact.nodeIds[order[i]]);
+            externalId[i] = node.id;
+            internalId.put(node.id, i);
+            copy.addNode(new Node(i, node.name, node.type, node.x, node.y, node.population, node.isFacility));
+        }
+
+        // Roads in the order of their lower end, so the roads of nearby nodes are created together
+        List<Edge> roads = new ArrayList<>();
+        for (Edge edge : compact.edges) {
+            int from = internalId.get(edge.from), to = internalId.get(edge.to);
+            Edge road = edge.isExisting ? new Edge(from, to, edge.distance, edge.capacity, edge.condition, true)
+                    : new Edge(from, to, edge.distance, edge.capacity, edge.cost);
+            roads.add(road);
+        }
+        roads.sort(Comparator.comparingInt(road -> Math.min(road.from, road.to)));
+        for (Edge road : roads) copy.addEdge(road);
+
+        TrafficData trafficCopy = null;
+        if (traffic != null) {
+            trafficCopy = new TrafficData();
+            for (Map.Entry<String, int[]> entry : traffic.trafficMap.entrySet()) {
+                String[] ends = entry.getKey().split("-");
+                Integer from = internalId.get(Integer.parseInt(ends[0].trim()));
+                Integer to = internalId.get(Integer.parseInt(ends[1].trim()));
+                if (from != null && to != null) trafficCopy.trafficMap.put(from + "-" + to, entry.getValue());
+            }
+        }
+        return new Renumbered(copy, trafficCopy, externalId, internalId);
+    }
+}
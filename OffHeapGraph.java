@@ -0,0 +1,499 @@
+// OffHeapGraph.java
+// Read-only road network stored outside the Java heap, for networks too large for Graph or CompactGraph
+// Everything that grows with the network lives in direct ByteBuffers, which the garbage collector neither
+// copies nor scans, so the heap holds only a few buffer references whatever the size of the network:
+// - node records (48 bytes): ID, population, x, y, references to the name and type in the string pool, facility flag
+// - road records (40 bytes): from, to, distance, capacity, condition, cost, isExisting
+// - a CSR adjacency (firstArc per node, then target node and road per arc), like CompactGraph
+// - the node IDs sorted with their index, for indexOf by binary search (no HashMap)
+// - a string pool of UTF-8 names and types (an int length, then the bytes)
+// Large regions are split in buffers of at most 1 GB, each holding whole records.
+// (The Foreign Memory API, java.lang.foreign, is only final from Java 22; direct buffers give the same
+// off-heap layout on the Java 17 this project builds with.)
+// Searches over it use an off-heap workspace per thread as well (see Dijkstra and MSTBuilder).
+// Limitation: GraphVisualizer cannot draw from this store. MapRenderer and SpatialIndex work on a CompactGraph,
+// whose arrays are on the heap and grow with the network, so the visualizer still needs the on-heap Graph;
+// only its node-name lookups (GraphVisualizer.store) can come from here.
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+public class OffHeapGraph {
+    // Node record layout
+    private static final int NODE_ID = 0, NODE_POPULATION = 4, NODE_X = 8, NODE_Y = 16, NODE_NAME = 24, NODE_TYPE = 32, NODE_FACILITY = 40;
+    private static final int NODE_BYTES = 48;
+    // Road record layout
+    private static final int EDGE_FROM = 0, EDGE_TO = 4, EDGE_DISTANCE = 8, EDGE_CAPACITY = 16, EDGE_CONDITION = 20, EDGE_COST = 24, EDGE_EXISTING = 32;
+    private static final int EDGE_BYTES = 40;
+
+    private final Region nodes = new Region(NODE_BYTES);
+    private final Region edges = new Region(EDGE_BYTES);
+    private final Region sortedIds = new Region(8); // (ID << 32 | index), sorted
+    private final Region firstArc = new Region(4); // nodeCount + 1 entries
+    private final Region arcs = new Region(8); // Target node index, then road index
+    private final StringPool strings = new StringPool();
+    private int nodeCount;
+    private int edgeCount;
+    private final ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(() -> new Workspace(nodeCount));
+
+    private OffHeapGraph() {
+    }
+
+    // Copies a Graph (e.g. one built by GraphBuilder) off the heap
+    public static OffHeapGraph fromGraph(Graph graph) {
+        OffHeapGraph g = new OffHeapGraph();
+        for (Node node : graph.nodes.values()) g.addNode(node.id, node.name, node.type, node.x, node.y, node.population, node.isFacility);
+        for (Edge edge : graph.edges) g.addEdge(edge.from, edge.to, edge.distance, edge.capacity, edge.condition, edge.cost, edge.isExisting);
+        g.finish();
+        return g;
+    }
+
+    // Reads the same CSV files as GraphBuilder, line by line, without building a Graph on the heap
+    public static OffHeapGraph load(String nodesFile, String existingEdgesFile, String potentialEdgesFile) throws IOException {
+        OffHeapGraph g = new OffHeapGraph();
+        try (BufferedReader reader = new BufferedReader(new FileReader(nodesFile))) {
+            reader.readLine(); // Header
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.startsWith("#") || line.isBlank()) continue;
+                String[] parts = line.split(",");
+                int id = Integer.parseInt(parts[0].trim());
+                int pop = parts[2].trim().isEmpty() ? 0 : Integer.parseInt(parts[2].trim());
+                String type = parts.length >= 6 ? parts[3].trim() : parts[2].trim();
+                double x = Double.parseDouble(parts[parts.length - 2].trim());
+                double y = Double.parseDouble(parts[parts.length - 1].trim());
+                g.addNode(id, parts[1].trim(), type, x, y, pop, id >= 100 || parts.length < 6);
+            }
+        }
+        for (String file : new String[]{existingEdgesFile, potentialEdgesFile}) {
+            boolean existing = file.equals(existingEdgesFile);
+            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+                reader.readLine(); // Header
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    if (line.startsWith("#") || line.isBlank()) continue;
+                    String[] parts = line.split(",");
+                    int from = Integer.parseInt(parts[0].trim());
+                    int to = Integer.parseInt(parts[1].trim());
+                    double dist = Double.parseDouble(parts[2].trim());
+                    int cap = Integer.parseInt(parts[3].trim());
+                    if (existing) g.addEdge(from, to, dist, cap, Integer.parseInt(parts[4].trim()), -1, true);
+                    else g.addEdge(from, to, dist, cap, -1, Double.parseDouble(parts[4].trim()), false);
+                }
+            }
+        }
+        g.finish();
+        return g;
+    }
+
+    private void addNode(int id, String name, String type, double x, double y, int population, boolean isFacility) {
+        long r = nodeCount++;
+        nodes.putInt(r, NODE_ID, id);
+        nodes.putInt(r, NODE_POPULATION, population);
+        nodes.putDouble(r, NODE_X, x);
+        nodes.putDouble(r, NODE_Y, y);
+        nodes.putLong(r, NODE_NAME, strings.add(name));
+        nodes.putLong(r, NODE_TYPE, strings.add(type));
+        nodes.putByte(r, NODE_FACILITY, (byte) (isFacility ? 1 : 0));
+        sortedIds.putLong(r, 0, ((long) id << 32) | r);
+    }
+
+    // Roads are stored by node ID; indices are resolved in finish()
+    private void addEdge(int from, int to, double distance, int capacity, int condition, double cost, boolean isExisting) {
+        long r = edgeCount++;
+        edges.putInt(r, EDGE_FROM, from);
+        edges.putInt(r, EDGE_TO, to);
+        edges.putDouble(r, EDGE_DISTANCE, distance);
+        edges.putInt(r, EDGE_CAPACITY, capacity);
+        edges.putInt(r, EDGE_CONDITION, condition);
+        edges.putDouble(r, EDGE_COST, cost);
+        edges.putByte(r, EDGE_EXISTING, (byte) (isExisting ? 1 : 0));
+    }
+
+    // Sorts the ID index and builds the adjacency: count degrees, prefix sums, then fill both directions
+    private void finish() {
+        heapSort(sortedIds, nodeCount);
+        for (int i = 0; i <= nodeCount; i++) firstArc.putInt(i, 0, 0);
+        for (int e = 0; e < edgeCount; e++) {
+            int u = requireIndex(edges.getInt(e, EDGE_FROM)), v = requireIndex(edges.getInt(e, EDGE_TO));
+            firstArc.putInt(u + 1, 0, firstArc.getInt(u + 1, 0) + 1);
+            firstArc.putInt(v + 1, 0, firstArc.getInt(v + 1, 0) + 1);
+        }
+        for (int i = 0; i < nodeCount; i++) firstArc.putInt(i + 1, 0, firstArc.getInt(i + 1, 0) + firstArc.getInt(i, 0));
+
+        // Fill positions are kept in the workspace's parent column, which is free until the first search
+        Workspace fill = workspaces.get();
+        for (int i = 0; i < nodeCount; i++) fill.state.putInt(i, Workspace.PARENT, firstArc.getInt(i, 0));
+        for (int e = 0; e < edgeCount; e++) {
+            int u = indexOf(edges.getInt(e, EDGE_FROM)), v = indexOf(edges.getInt(e, EDGE_TO));
+            int forward = fill.state.getInt(u, Workspace.PARENT);
+            fill.state.putInt(u, Workspace.PARENT, forward + 1);
+            arcs.putInt(forward, 0, v);
+            arcs.putInt(forward, 4, e);
+            int backward = fill.state.getInt(v, Workspace.PARENT);
+            fill.state.putInt(v, Workspace.PARENT, backward + 1);
+            arcs.putInt(backward, 0, u);
+            arcs.putInt(backward, 4, e);
+        }
+    }
+
+    private int requireIndex(int nodeId) {
+        int index = indexOf(nodeId);
+        if (index < 0) throw new IllegalArgumentException("Road to unknown node " + nodeId);
+        return index;
+    }
+
+    // In-place heap sort of the first n longs of a region (no heap-side copy)
+    private static void heapSort(Region region, int n) {
+        for (int i = n / 2 - 1; i >= 0; i--) siftDown(region, i, n);
+        for (int end = n - 1; end > 0; end--) {
+            long top = region.getLong(0, 0);
+            region.putLong(0, 0, region.getLong(end, 0));
+            region.putLong(end, 0, top);
+            siftDown(region, 0, end);
+        }
+    }
+
+    private static void siftDown(Region region, int i, int n) {
+        long value = region.getLong(i, 0);
+        while (2 * i + 1 < n) {
+            int child = 2 * i + 1;
+            if (child + 1 < n && region.getLong(child + 1, 0) > region.getLong(child, 0)) child++;
+            long c = region.getLong(child, 0);
+            if (value >= c) break;
+            region.putLong(i, 0, c);
+            i = child;
+        }
+        region.putLong(i, 0, value);
+    }
+
+    // ----------- Nodes (by dense index 0..nodeCount-1, in file order) -----------
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    // Dense index of a node ID, or -1 (binary search over the sorted IDs)
+    public int indexOf(int nodeId) {
+        int lo = 0, hi = nodeCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long entry = sortedIds.getLong(mid, 0);
+            int id = (int) (entry >> 32);
+            if (id < nodeId) lo = mid + 1;
+            else if (id > nodeId) hi = mid - 1;
+            else return (int) entry;
+        }
+        return -1;
+    }
+
+    public int nodeId(int index) {
+        return nodes.getInt(index, NODE_ID);
+    }
+
+    public double x(int index) {
+        return nodes.getDouble(index, NODE_X);
+    }
+
+    public double y(int index) {
+        return nodes.getDouble(index, NODE_Y);
+    }
+
+    public int population(int index) {
+        return nodes.getInt(index, NODE_POPULATION);
+    }
+
+    public boolean isFacility(int index) {
+        return nodes.getByte(index, NODE_FACILITY) != 0;
+    }
+
+    // Decoded from the string pool on every call
+    public String name(int index) {
+        return strings.get(nodes.getLong(index, NODE_NAME));
+    }
+
+    public String type(int index) {
+        return strings.get(nodes.getLong(index, NODE_TYPE));
+    }
+
+    // The node as an ordinary Node object (for callers that need one)
+    public Node node(int index) {
+        return new Node(nodeId(index), name(index), type(index), x(index), y(index), population(index), isFacility(index));
+    }
+
+    // ----------- Roads (by position in the files) -----------
+
+    public int edgeCount() {
+        return edgeCount;
+    }
+
+    public int edgeFrom(int edge) {
+        return edges.getInt(edge, EDGE_FROM);
+    }
+
+    public int edgeTo(int edge) {
+        return edges.getInt(edge, EDGE_TO);
+    }
+
+    public double edgeDistance(int edge) {
+        return edges.getDouble(edge, EDGE_DISTANCE);
+    }
+
+    public int edgeCapacity(int edge) {
+        return edges.getInt(edge, EDGE_CAPACITY);
+    }
+
+    public int edgeCondition(int edge) {
+        return edges.getInt(edge, EDGE_CONDITION);
+    }
+
+    public double edgeCost(int edge) {
+        return edges.getDouble(edge, EDGE_COST);
+    }
+
+    public boolean edgeIsExisting(int edge) {
+        return edges.getByte(edge, EDGE_EXISTING) != 0;
+    }
+
+    // The road as an ordinary Edge object, built on every call
+    public Edge edge(int edge) {
+        if (edgeIsExisting(edge)) {
+            return new Edge(edgeFrom(edge), edgeTo(edge), edgeDistance(edge), edgeCapacity(edge), edgeCondition(edge), true);
+        }
+        return new Edge(edgeFrom(edge), edgeTo(edge), edgeDistance(edge), edgeCapacity(edge), edgeCost(edge));
+    }
+
+    // A read-only list of roads given by their positions in an off-heap int region (see MSTBuilder)
+    List<Edge> edgeList(Region positions, int size) {
+        return new AbstractList<>() {
+            @Override
+            public Edge get(int i) {
+                Objects.checkIndex(i, size);
+                return edge(positions.getInt(i, 0));
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    // Road positions sorted by distance, in an off-heap region (heap sort, comparing the road records)
+    Region roadsByDistance() {
+        Region order = new Region(4);
+        for (int e = 0; e < edgeCount; e++) order.putInt(e, 0, e);
+        for (int i = edgeCount / 2 - 1; i >= 0; i--) siftDownByDistance(order, i, edgeCount);
+        for (int end = edgeCount - 1; end > 0; end--) {
+            int top = order.getInt(0, 0);
+            order.putInt(0, 0, order.getInt(end, 0));
+            order.putInt(end, 0, top);
+            siftDownByDistance(order, 0, end);
+        }
+        return order;
+    }
+
+    private void siftDownByDistance(Region order, int i, int n) {
+        int road = order.getInt(i, 0);
+        double key = edgeDistance(road);
+        while (2 * i + 1 < n) {
+            int child = 2 * i + 1;
+            if (child + 1 < n && edgeDistance(order.getInt(child + 1, 0)) > edgeDistance(order.getInt(child, 0))) child++;
+            int c = order.getInt(child, 0);
+            if (key >= edgeDistance(c)) break;
+            order.putInt(i, 0, c);
+            i = child;
+        }
+        order.putInt(i, 0, road);
+    }
+
+    // ----------- Adjacency -----------
+
+    // Arcs of node index u are firstArc(u) .. firstArc(u + 1) - 1
+    public int firstArc(int index) {
+        return firstArc.getInt(index, 0);
+    }
+
+    public int arcTarget(int arc) {
+        return arcs.getInt(arc, 0);
+    }
+
+    public int arcEdge(int arc) {
+        return arcs.getInt(arc, 4);
+    }
+
+    // Off-heap bytes held by the network (records, adjacency, index and strings)
+    public long offHeapBytes() {
+        return nodes.capacity() + edges.capacity() + sortedIds.capacity() + firstArc.capacity() + arcs.capacity() + strings.capacity();
+    }
+
+    // Search state for this thread: distance, parent arc and stamp per node, off the heap like the network
+    Workspace workspace() {
+        return workspaces.get();
+    }
+
+    static class Workspace {
+        static final int DIST = 0, PARENT = 8, STAMP = 12;
+        final Region state = new Region(16); // Per node: distance (double), parent node (int), stamp (int)
+        final NodeHeap heap = new NodeHeap(64); // Only holds the search frontier
+        int stamp;
+
+        Workspace(int nodeCount) {
+            for (int i = 0; i < nodeCount; i++) state.putInt(i, STAMP, 0);
+        }
+
+        // Starts a new search in O(1); entries of older searches read as unvisited
+        void reset(int nodeCount) {
+            heap.clear();
+            if (++stamp == Integer.MAX_VALUE) {
+                for (int i = 0; i < nodeCount; i++) state.putInt(i, STAMP, 0);
+                stamp = 1;
+            }
+        }
+
+        double distance(int node) {
+            return state.getInt(node, STAMP) == stamp ? state.getDouble(node, DIST) : Double.POSITIVE_INFINITY;
+        }
+
+        // Node the search reached this node from (-1 at the source)
+        int parent(int node) {
+            return state.getInt(node, PARENT);
+        }
+
+        void set(int node, double d, int parent) {
+            state.putInt(node, STAMP, stamp);
+            state.putDouble(node, DIST, d);
+            state.putInt(node, PARENT, parent);
+        }
+    }
+
+    // Fixed-width records in direct buffers of at most 1 GB; buffers are added as records are written
+    static class Region {
+        private static final long MAX_BUFFER = 1L << 30;
+        private final int width; // Bytes per record
+        private final int perBuffer; // Whole records per buffer
+        private final List<ByteBuffer> buffers = new ArrayList<>();
+
+        Region(int width) {
+            this.width = width;
+            this.perBuffer = (int) (MAX_BUFFER / width);
+        }
+
+        private ByteBuffer buffer(long record) {
+            return buffers.get((int) (record / perBuffer));
+        }
+
+        private int offset(long record, int field) {
+            return (int) (record % perBuffer) * width + field;
+        }
+
+        // Buffer for writing a record; grows geometrically up to MAX_BUFFER, then adds buffers
+        private ByteBuffer writable(long record) {
+            int b = (int) (record / perBuffer);
+            while (buffers.size() <= b) buffers.add(null);
+            ByteBuffer buffer = buffers.get(b);
+            long needed = (record % perBuffer + 1) * width;
+            if (buffer == null || buffer.capacity() < needed) {
+                long size = Math.min(Math.max(needed, buffer == null ? 4096 : 2L * buffer.capacity()), (long) perBuffer * width);
+                ByteBuffer grown = ByteBuffer.allocateDirect((int) size).order(ByteOrder.nativeOrder());
+                if (buffer != null) grown.put(0, buffer, 0, buffer.capacity());
+                buffers.set(b, grown);
+                buffer = grown;
+            }
+            return buffer;
+        }
+
+        int getInt(long record, int field) {
+            return buffer(record).getInt(offset(record, field));
+        }
+
+        long getLong(long record, int field) {
+            return buffer(record).getLong(offset(record, field));
+        }
+
+        double getDouble(long record, int field) {
+            return buffer(record).getDouble(offset(record, field));
+        }
+
+        byte getByte(long record, int field) {
+            return buffer(record).get(offset(record, field));
+        }
+
+        void putInt(long record, int field, int value) {
+            writable(record).putInt(offset(record, field), value);
+        }
+
+        void putLong(long record, int field, long value) {
+            writable(record).putLong(offset(record, field), value);
+        }
+
+        void putDouble(long record, int field, double value) {
+            writable(record).putDouble(offset(record, field), value);
+        }
+
+        void putByte(long record, int field, byte value) {
+            writable(record).put(offset(record, field), value);
+        }
+
+        long capacity() {
+            long total = 0;
+            for (ByteBuffer buffer : buffers) total += buffer == null ? 0 : buffer.capacity();
+            return total;
+        }
+    }
+
+    // UTF-8 strings in direct buffers; a reference is (buffer << 32 | offset). Recently added strings are
+    // shared through a small fixed-size cache (node types repeat a lot), so the heap side stays bounded.
+    private static class StringPool {
+        private static final int BUFFER_BYTES = 64 << 20;
+        private static final int CACHE_SIZE = 1024;
+        private final List<ByteBuffer> buffers = new ArrayList<>();
+        private final Map<String, Long> recent = new LinkedHashMap<>(CACHE_SIZE * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
+
+        long add(String s) {
+            Long cached = recent.get(s);
+            if (cached != null) return cached;
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length + 4 > BUFFER_BYTES) throw new IllegalArgumentException("String too long for the pool");
+            ByteBuffer buffer = buffers.isEmpty() ? null : buffers.get(buffers.size() - 1);
+            int need = bytes.length + 4;
+            if (buffer == null || buffer.remaining() < need) {
+                int used = buffer == null ? 0 : buffer.position();
+                if (buffer != null && used + need <= BUFFER_BYTES) { // Grow the last buffer; offsets stay valid
+                    ByteBuffer grown = ByteBuffer.allocateDirect((int) Math.min(BUFFER_BYTES, Math.max(2L * buffer.capacity(), used + need)))
+                            .order(ByteOrder.nativeOrder());
+                    grown.put(0, buffer, 0, used).position(used);
+                    buffers.set(buffers.size() - 1, grown);
+                    buffer = grown;
+                } else { // Full (or none yet): start a new buffer
+                    buffer = ByteBuffer.allocateDirect(Math.max(4096, need)).order(ByteOrder.nativeOrder());
+                    buffers.add(buffer);
+                }
+            }
+            long ref = ((long) (buffers.size() - 1) << 32) | buffer.position();
+            buffer.putInt(bytes.length).put(bytes);
+            recent.put(s, ref);
+            return ref;
+        }
+
+        String get(long ref) {
+            ByteBuffer buffer = buffers.get((int) (ref >>> 32));
+            int offset = (int) ref;
+            byte[] bytes = new byte[buffer.getInt(offset)];
+            buffer.get(offset + 4, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        long capacity() {
+            long total = 0;
+            for (ByteBuffer buffer : buffers) total += buffer.capacity();
+            return total;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+// ParetoRouter.java
+// Multi-criteria routing: instead of one cheapest route, returns every route that is not beaten on all
+// criteria at once (the Pareto front), e.g. the fastest route, the one on the best roads, and the trade-offs.
+// Criteria are several additive arc costs (distance, traffic time, poor-road exposure, ...) plus the
+// bottleneck capacity (the smallest capacity along the route, to be maximized). Roads below a minimum
+// capacity can be excluded outright, for trucks.
+// Label-setting search (multi-criteria Dijkstra):
+// - a label is one partial route (node, costs, bottleneck, parent label), stored in primitive arrays;
+// - each node keeps a bucket of its non-dominated labels; a new label dominated by one of them is dropped,
+//   and the labels it dominates are removed;
+// - one reverse Dijkstra per criterion gives lower bounds to the target: a label whose costs plus the
+//   bounds are dominated by a route already found is pruned, and the first criterion's bound orders the heap;
+// - with epsilon > 0 a new label is also dropped when an existing one is within a factor (1 + epsilon) of it
+//   on every criterion, which keeps the number of labels bounded; the front is then approximate.
+
+import java.util.*;
+
+public class ParetoRouter {
+
+    public static final String[] VEHICLE_CRITERIA = {"distance", "traffic", "poor road"};
+
+    private final CompactGraph graph; // Array form of the road network
+    private final double[][] criteria; // criteria[k][arc] = cost of the arc under criterion k
+    private final String[] names; // Name of each criterion (for printing)
+    private final ThreadLocal<Labels> workspaces;
+
+    // One route of the front
+    public static class Option {
+        public final List<Integer> nodes; // Node IDs from start to end
+        public final double[] costs; // Total of every criterion
+        public final int bottleneck; // Smallest road capacity on the route
+
+        Option(List<Integer> nodes, double[] costs, int bottleneck) {
+            this.nodes = nodes;
+            this.costs = costs;
+            this.bottleneck = bottleneck;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(nodes.toString());
+            for (double cost : costs) sb.append(String.format(" %.2f", cost));
+            return sb.append(" min capacity ").append(bottleneck).toString();
+        }
+    }
+
+    public ParetoRouter(CompactGraph graph, double[][] criteria, String[] names) {
+        if (criteria.length == 0 || criteria.length != names.length) throw new IllegalArgumentException("One name per criterion is needed");
+        this.graph = graph;
+        this.criteria = criteria;
+        this.names = names;
+        this.workspaces = ThreadLocal.withInitial(() -> new Labels(graph.nodeCount, criteria.length));
+    }
+
+    // Distance (km), traffic-weighted length at a time of day (what AStarSearch minimizes), and poor-road
+    // exposure: km weighted by how far the road condition is below 10 (potential roads count as new, condition 10)
+    public static ParetoRouter forVehicles(CompactGraph graph, TrafficData trafficData, TrafficTime time) {
+        double[] poor = new double[graph.arcCount];
+        for (int a = 0; a < graph.arcCount; a++) {
+            int condition = graph.arcCondition[a] < 0 ? 10 : Math.min(graph.arcCondition[a], 10);
+            poor[a] = graph.arcDistance[a] * (10 - condition) / 10.0;
+        }
+        double[][] criteria = {graph.distanceWeights(), graph.trafficWeights(trafficData, time), poor};
+        return new ParetoRouter(graph, criteria, VEHICLE_CRITERIA);
+    }
+
+    public String[] criteriaNames() {
+        return names;
+    }
+
+    // Exact Pareto front from startId to endId, sorted by the first criterion
+    public List<Option> findRoutes(int startId, int endId) {
+        return findRoutes(startId, endId, 0, 0.0);
+    }
+
+    // Pareto front using only roads with capacity >= minCapacity; epsilon > 0 gives an approximate front:
+    // a label is only dropped for one within (1 + epsilon) of it, but the factors can add up along a route
+    public List<Option> findRoutes(int startId, int endId, int minCapacity, double epsilon) {
+        int source = graph.indexOf(startId);
+        int target = graph.indexOf(endId);
+        List<Option> front = new ArrayList<>();
+        if (source < 0 || target < 0 || epsilon < 0) return front;
+
+        Labels ws = workspaces.get();
+        int k = criteria.length;
+        double slack = 1.0 + epsilon;
+
+        // Lower bound of every criterion from each node to the target (over the allowed roads only)
+        for (int c = 0; c < k; c++) {
+            double[] weights = criteria[c];
+            if (minCapacity > 0) {
+                weights = weights.clone();
+                for (int a = 0; a < graph.arcCount; a++) {
+                    if (graph.arcCapacity[a] < minCapacity) weights[a] = Double.POSITIVE_INFINITY;
+                }
+            }
+            CompactDijkstra.shortestPathTree(graph, weights, target, true, ws.tree);
+            for (int v = 0; v < graph.nodeCount; v++) ws.bound[c][v] = ws.tree.distance(v);
+        }
+        if (ws.bound[0][source] == Double.POSITIVE_INFINITY) return front;
+
+        ws.reset();
+        double[] costs = new double[k];
+        int first = ws.add(source, costs, Integer.MAX_VALUE, -1);
+        ws.heap.push(first, ws.bound[0][source]);
+
+        while (!ws.heap.isEmpty()) {
+            int label = ws.heap.pop();
+            if (!ws.alive[label]) continue; // Removed after it was pushed
+            int u = ws.node[label];
+            if (u == target) {
+                ws.addTargetLabel(label);
+                continue; // Routes through the target and back are never better
+            }
+            if (ws.dominatedByTarget(ws.cost, label * k, ws.capacity[label], u, slack)) continue; // Beaten by a route found since
+
+            int base = label * k;
+            for (int a = graph.firstArc[u]; a < graph.firstArc[u + 1]; a++) {
+                if (graph.arcCapacity[a] < minCapacity) continue;
+                int v = graph.arcTarget[a];
+                if (ws.bound[0][v] == Double.POSITIVE_INFINITY) continue;
+                for (int c = 0; c < k; c++) costs[c] = ws.cost[base + c] + criteria[c][a];
+                int bottleneck = Math.min(ws.capacity[label], graph.arcCapacity[a]);
+                if (ws.dominatedByTarget(costs, 0, bottleneck, v, slack)) continue;
+                if (ws.dominatedAt(v, costs, bottleneck, slack)) continue;
+                int added = ws.add(v, costs, bottleneck, label);
+                ws.heap.push(added, costs[0] + ws.bound[0][v]);
+            }
+        }
+
+        // Labels at the target in the order found; drop any dominated by a later one (ties in the heap key)
+        for (int i = 0; i < ws.targetCount; i++) {
+            int label = ws.targetLabels[i];
+            if (!ws.alive[label]) continue;
+            front.add(ws.option(graph, label));
+        }
+        front.sort(Comparator.comparingDouble(option -> option.costs[0]));
+        return front;
+    }
+
+    // Number of labels created by the last query on this thread (how much work the front cost)
+    public int lastLabelCount() {
+        return workspaces.get().size;
+    }
+
+    // Per-thread label store: flat primitive arrays indexed by label, grown by doubling
+    private static class Labels {
+        final int k; // Number of additive criteria
+        int[] node = new int[1024]; // Node of each label
+        double[] cost; // cost[label * k + c]
+        int[] capacity = new int[1024]; // Bottleneck capacity so far
+        int[] parent = new int[1024]; // Label this one extends (-1 at the source)
+        boolean[] alive = new boolean[1024]; // False once dominated by a newer label
+        int[] nextInBucket = new int[1024]; // Next label of the same node (-1 at the end)
+        int size;
+
+        final int[] head; // First label of each node's bucket (valid only where stamp matches)
+        final int[] headStamp;
+        int stamp;
+        int[] targetLabels = new int[64]; // Labels that reached the target, in order
+        int targetCount;
+
+        final double[][] bound; // bound[c][v] = lower bound of criterion c from v to the target
+        final SearchWorkspace tree; // Reverse searches for the bounds
+        final NodeHeap heap = new NodeHeap(1024); // Labels by first criterion + its bound
+
+        Labels(int nodeCount, int k) {
+            this.k = k;
+            cost = new double[1024 * k];
+            head = new int[nodeCount];
+            headStamp = new int[nodeCount];
+            bound = new double[k][nodeCount];
+            tree = new SearchWorkspace(nodeCount);
+        }
+
+        void reset() {
+            size = 0;
+            targetCount = 0;
+            heap.clear();
+            if (++stamp == Integer.MAX_VALUE) {
+                Arrays.fill(headStamp, 0);
+                stamp = 1;
+            }
+        }
+
+        void addTargetLabel(int label) {
+            if (targetCount == targetLabels.length) targetLabels = Arrays.copyOf(targetLabels, targetCount * 2);
+            targetLabels[targetCount++] = label;
+        }
+
+        int bucket(int v) {
+            return headStamp[v] == stamp ? head[v] : -1;
+        }
+
+        int add(int v, double[] costs, int bottleneck, int parentLabel) {
+            if (size == node.length) grow();
+            int label = size++;
+            node[label] = v;
+            System.arraycopy(costs, 0, cost, label * k, k);
+            capacity[label] = bottleneck;
+            parent[label] = parentLabel;
+            alive[label] = true;
+            nextInBucket[label] = bucket(v);
+            head[v] = label;
+            headStamp[v] = stamp;
+            return label;
+        }
+
+        private void grow() {
+            int n = node.length * 2;
+            node = Arrays.copyOf(node, n);
+            cost = Arrays.copyOf(cost, n * k);
+            capacity = Arrays.copyOf(capacity, n);
+            parent = Arrays.copyOf(parent, n);
+            alive = Arrays.copyOf(alive, n);
+            nextInBucket = Arrays.copyOf(nextInBucket, n);
+        }
+
+        // True if a label of v's bucket (epsilon-)dominates the new costs; otherwise removes the labels of
+        // the bucket that the new costs dominate exactly, and unlinks them
+        boolean dominatedAt(int v, double[] costs, int bottleneck, double slack) {
+            for (int l = bucket(v); l >= 0; l = nextInBucket[l]) {
+                if (alive[l] && dominates(l, costs, bottleneck, slack)) return true;
+            }
+            int prev = -1;
+            for (int l = bucket(v); l >= 0; l = nextInBucket[l]) {
+                if (alive[l] && dominatedBy(l, costs, bottleneck)) alive[l] = false;
+                if (!alive[l]) { // Unlink dead labels so buckets stay short
+                    if (prev < 0) head[v] = nextInBucket[l];
+                    else nextInBucket[prev] = nextInBucket[l];
+                } else {
+                    prev = l;
+                }
+            }
+            return false;
+        }
+
+        // True if a route that reached the target beats costs[offset..offset + k) plus the lower bounds from v
+        boolean dominatedByTarget(double[] costs, int offset, int bottleneck, int v, double slack) {
+            for (int i = 0; i < targetCount; i++) {
+                int l = targetLabels[i];
+                if (!alive[l] || capacity[l] * slack < bottleneck) continue;
+                int base = l * k, c = 0;
+                while (c < k && cost[base + c] <= slack * (costs[offset + c] + bound[c][v])) c++;
+                if (c == k) return true;
+            }
+            return false;
+        }
+
+        // Label l is no worse than the costs on every criterion, within the slack factor
+        private boolean dominates(int l, double[] costs, int bottleneck, double slack) {
+            if (capacity[l] * slack < bottleneck) return false;
+            int base = l * k;
+            for (int c = 0; c < k; c++) {
+                if (cost[base + c] > slack * costs[c]) return false;
+            }
+            return true;
+        }
+
+        // The costs are no worse than label l on every criterion (exact)
+        private boolean dominatedBy(int l, double[] costs, int bottleneck) {
+            if (bottleneck < capacity[l]) return false;
+            int base = l * k;
+            for (int c = 0; c < k; c++) {
+                if (costs[c] > cost[base + c]) return false;
+            }
+            return true;
+        }
+
+        Option option(CompactGraph graph, int label) {
+            int length = 0;
+            for (int l = label; l >= 0; l = parent[l]) length++;
+            int[] path = new int[length];
+            for (int l = label, i = length - 1; l >= 0; l = parent[l], i--) path[i] = node[l];
+            int bottleneck = length > 1 ? capacity[label] : 0;
+            return new Option(graph.toNodeIds(path, length), Arrays.copyOfRange(cost, label * k, label * k + k), bottleneck);
+        }
+    }
+}
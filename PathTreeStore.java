@@ -0,0 +1,240 @@
+// PathTreeStore.java
+// Shared shortest-path trees for one-to-many queries from the same origins (a depot, Maadi, ...)
+// A tree is the whole result of one traffic-weighted Dijkstra from an origin at a time of day, kept as two
+// primitive arrays indexed by dense node index: the distance (double) and the tree parent (int), 12 bytes
+// per node. Any path from that origin is then read back in O(path length) by following the parents.
+// - Trees live in an LRU store under a memory budget: when a new tree does not fit, the least recently
+//   used trees are evicted first.
+// - An origin only gets a tree once it is queried heavily (hotQueries queries at one time of day), and only
+//   if the trees it would evict are queried less than it is, so more hot origins than the budget holds do
+//   not rebuild each other's trees on every query. Other queries run a single point-to-point search, which
+//   stops at the target.
+// - Query counts decay: every COUNT_WINDOW queries all counts are halved and the ones that reach 0 dropped,
+//   so the counts follow the recent load and only origins queried again keep an entry.
+// - Trees of several origins are built in parallel (prefetch, prefetchHottest), and threads asking for the
+//   same tree at the same time share one build.
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class PathTreeStore {
+    private static final int COUNT_WINDOW = 1 << 16; // Queries between two halvings of the query counts
+
+    private final CompactGraph graph; // Array form of the road network
+    private final TrafficData trafficData;
+    private final long budgetBytes; // Most memory the stored trees may use
+    private final int hotQueries; // Queries from an origin (at one time of day) before it gets a tree
+    private final double[][] weights = new double[TrafficTime.values().length][]; // Arc weights per time of day (built lazily)
+    private final LinkedHashMap<Long, Tree> trees = new LinkedHashMap<>(16, 0.75f, true); // Access order = LRU (guarded by this)
+    private final Map<Long, CompletableFuture<Tree>> building = new ConcurrentHashMap<>(); // Trees being built
+    private final Map<Long, Integer> queryCounts = new ConcurrentHashMap<>(); // Recent queries per (origin, time)
+    private final AtomicLong queries = new AtomicLong(); // All path queries, for the decay
+    private final ThreadLocal<SearchWorkspace> workspaces;
+    private long usedBytes; // Memory of the stored trees (guarded by this)
+    private final AtomicLong hits = new AtomicLong(), builds = new AtomicLong(), evictions = new AtomicLong();
+
+    // Shortest-path tree of one origin at one time of day
+    public static class Tree {
+        public final int originId;
+        public final TrafficTime time;
+        private final CompactGraph graph;
+        private final double[] distance; // By dense node index; infinity where unreachable
+        private final int[] parent; // Tree parent of each node (-1 at the origin and where unreachable)
+
+        Tree(int originId, TrafficTime time, CompactGraph graph, double[] distance, int[] parent) {
+            this.originId = originId;
+            this.time = time;
+            this.graph = graph;
+            this.distance = distance;
+            this.parent = parent;
+        }
+
+        // Traffic-weighted distance from the origin (infinity if unreachable or unknown)
+        public double distanceTo(int nodeId) {
+            int v = graph.indexOf(nodeId);
+            return v < 0 ? Double.POSITIVE_INFINITY : distance[v];
+        }
+
+        // Node IDs from the origin to nodeId, or an empty list if unreachable
+        public List<Integer> pathTo(int nodeId) {
+            int v = graph.indexOf(nodeId);
+            return v < 0 ? new ArrayList<>() : path(v);
+        }
+
+        List<Integer> path(int target) {
+            if (distance[target] == Double.POSITIVE_INFINITY) return new ArrayList<>();
+            int length = 1;
+            for (int v = target; parent[v] >= 0; v = parent[v]) length++;
+            int[] nodes = new int[length];
+            for (int v = target, i = length - 1; i >= 0; v = parent[v], i--) nodes[i] = v;
+            return graph.toNodeIds(nodes, length);
+        }
+
+        public long bytes() {
+            return (long) distance.length * (Double.BYTES + Integer.BYTES);
+        }
+    }
+
+    public PathTreeStore(CompactGraph graph, TrafficData trafficData, long budgetBytes, int hotQueries) {
+        this.graph = graph;
+        this.trafficData = trafficData;
+        this.budgetBytes = budgetBytes;
+        this.hotQueries = Math.max(1, hotQueries);
+        this.workspaces = ThreadLocal.withInitial(() -> new SearchWorkspace(graph.nodeCount));
+    }
+
+    // Route from originId to targetId at a time of day (same costs as TrafficDijkstra); empty if unreachable.
+    // Read from the origin's tree when it has one; the query that makes the origin hot builds it.
+    public List<Integer> path(int originId, int targetId, TrafficTime time) {
+        int origin = graph.indexOf(originId), target = graph.indexOf(targetId);
+        if (origin < 0 || target < 0) return new ArrayList<>();
+        long key = key(origin, time);
+        if (queries.incrementAndGet() % COUNT_WINDOW == 0) decayCounts();
+        int count = queryCounts.merge(key, 1, Integer::sum);
+        Tree tree = cached(key);
+        if (tree == null && count >= hotQueries && admits(count)) tree = tree(origin, time, key);
+        if (tree != null) return tree.path(target);
+
+        int[] path = CompactDijkstra.findPath(graph, weights(time), origin, target, workspaces.get());
+        return graph.toNodeIds(path, path.length);
+    }
+
+    // The tree of an origin at a time of day, from the store or built now
+    public Tree tree(int originId, TrafficTime time) {
+        int origin = graph.indexOf(originId);
+        if (origin < 0) throw new IllegalArgumentException("Unknown origin node " + originId);
+        return tree(origin, time, key(origin, time));
+    }
+
+    // Builds the trees of the given origins in parallel (trees beyond the budget evict the older ones)
+    public void prefetch(TrafficTime time, int... originIds) {
+        Arrays.stream(originIds).parallel().forEach(id -> tree(id, time));
+    }
+
+    // Builds, in parallel, the trees of the count most queried (origin, time) pairs that have none yet
+    public void prefetchHottest(int count) {
+        List<Long> keys = new ArrayList<>(queryCounts.keySet());
+        keys.removeIf(this::isStored);
+        keys.sort(Comparator.comparingInt((Long key) -> queryCounts.getOrDefault(key, 0)).reversed());
+        keys.subList(0, Math.min(count, keys.size())).parallelStream()
+                .forEach(key -> tree((int) (key >>> 8), TrafficTime.values()[(int) (key & 0xFF)], key));
+    }
+
+    public synchronized int treeCount() {
+        return trees.size();
+    }
+
+    public synchronized long usedBytes() {
+        return usedBytes;
+    }
+
+    // Queries answered from a stored tree
+    public long hits() {
+        return hits.get();
+    }
+
+    public long builds() {
+        return builds.get();
+    }
+
+    public long evictions() {
+        return evictions.get();
+    }
+
+    // Halves every query count and drops those that reach 0 (counts updated meanwhile may be off by a few)
+    private void decayCounts() {
+        queryCounts.replaceAll((key, count) -> count / 2);
+        queryCounts.values().removeIf(count -> count == 0);
+    }
+
+    private static long key(int origin, TrafficTime time) {
+        return (long) origin << 8 | time.ordinal();
+    }
+
+    private synchronized boolean isStored(long key) {
+        return trees.containsKey(key); // Does not count as a use
+    }
+
+    private synchronized Tree cached(long key) {
+        Tree tree = trees.get(key);
+        if (tree != null) hits.incrementAndGet();
+        return tree;
+    }
+
+    // True if one more tree fits, or the trees it would evict (least recently used first) were all queried
+    // fewer than count times
+    private synchronized boolean admits(int count) {
+        long needed = usedBytes + treeBytes() - budgetBytes;
+        for (Map.Entry<Long, Tree> entry : trees.entrySet()) {
+            if (needed <= 0) break;
+            if (queryCounts.getOrDefault(entry.getKey(), 0) >= count) return false;
+            needed -= entry.getValue().bytes();
+        }
+        return needed <= 0;
+    }
+
+    private long treeBytes() {
+        return (long) graph.nodeCount * (Double.BYTES + Integer.BYTES);
+    }
+
+    // Stored tree, or a new one; a thread that finds the same tree being built waits for that build
+    private Tree tree(int origin, TrafficTime time, long key) {
+        Tree tree = cached(key);
+        if (tree != null) return tree;
+        CompletableFuture<Tree> mine = new CompletableFuture<>();
+        CompletableFuture<Tree> pending = building.putIfAbsent(key, mine);
+        if (pending != null) return pending.join();
+        try {
+            tree = cached(key); // Stored between the first check and putIfAbsent
+            if (tree == null) {
+                tree = build(origin, time);
+                store(key, tree);
+            }
+            mine.complete(tree);
+            return tree;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            building.remove(key);
+        }
+    }
+
+    // One Dijkstra; only the settled nodes are copied out of the workspace
+    private Tree build(int origin, TrafficTime time) {
+        SearchWorkspace ws = workspaces.get();
+        CompactDijkstra.shortestPathTree(graph, weights(time), origin, false, ws);
+        double[] distance = new double[graph.nodeCount];
+        int[] parent = new int[graph.nodeCount];
+        Arrays.fill(distance, Double.POSITIVE_INFINITY);
+        Arrays.fill(parent, -1);
+        for (int i = 0; i < ws.orderSize; i++) {
+            int v = ws.order[i];
+            distance[v] = ws.dist[v];
+            if (ws.parentArc[v] >= 0) parent[v] = graph.arcSource(ws.parentArc[v]);
+        }
+        builds.incrementAndGet();
+        return new Tree(graph.nodeIds[origin], time, graph, distance, parent);
+    }
+
+    // Adds a tree and evicts the least recently used ones until the store fits its budget again.
+    // A tree larger than the whole budget is returned to the caller but not stored.
+    private synchronized void store(long key, Tree tree) {
+        if (tree.bytes() > budgetBytes) return;
+        trees.put(key, tree);
+        usedBytes += tree.bytes();
+        Iterator<Tree> eldest = trees.values().iterator();
+        while (usedBytes > budgetBytes) {
+            usedBytes -= eldest.next().bytes();
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private synchronized double[] weights(TrafficTime time) {
+        if (weights[time.ordinal()] == null) weights[time.ordinal()] = graph.trafficWeights(trafficData, time);
+        return weights[time.ordinal()];
+    }
+}
@@ -0,0 +1,106 @@
+// RemoteShard.java
+// Client side of ShardServer: a RoutingShard whose searches run in another process
+// One connection per client; calls are serialized on it. Network errors surface as UncheckedIOException, errors
+// of the remote shard (e.g. a node it does not have) as IllegalArgumentException.
+
+import java.io.*;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+public class RemoteShard implements RoutingShard, Closeable {
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    public RemoteShard(String host, int port) throws IOException {
+        socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    @Override
+    public synchronized int[] boundaryNodeIds() {
+        try {
+            out.write(ShardServer.BOUNDARY);
+            out.flush();
+            readStatus();
+            int[] ids = new int[in.readInt()];
+            for (int i = 0; i < ids.length; i++) ids[i] = in.readInt();
+            return ids;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized double[] boundaryMatrix() {
+        try {
+            out.write(ShardServer.MATRIX);
+            out.flush();
+            readStatus();
+            return readDoubles();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public double[] costsToBoundary(int nodeId) {
+        return costs(ShardServer.TO, nodeId);
+    }
+
+    @Override
+    public double[] costsFromBoundary(int nodeId) {
+        return costs(ShardServer.FROM, nodeId);
+    }
+
+    @Override
+    public synchronized Route route(int fromId, int toId) {
+        try {
+            out.write(ShardServer.ROUTE);
+            out.writeInt(fromId);
+            out.writeInt(toId);
+            out.flush();
+            readStatus();
+            int count = in.readInt();
+            if (count < 0) return null;
+            List<Integer> nodes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) nodes.add(in.readInt());
+            return new Route(nodes, in.readDouble());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private synchronized double[] costs(byte command, int nodeId) {
+        try {
+            out.write(command);
+            out.writeInt(nodeId);
+            out.flush();
+            readStatus();
+            return readDoubles();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Status byte of a reply; throws the remote shard's error
+    private void readStatus() throws IOException {
+        int status = in.read();
+        if (status < 0) throw new EOFException("Shard server closed the connection");
+        if (status == ShardServer.ERROR) throw new IllegalArgumentException(in.readUTF());
+    }
+
+    private double[] readDoubles() throws IOException {
+        double[] values = new double[in.readInt()];
+        for (int i = 0; i < values.length; i++) values[i] = in.readDouble();
+        return values;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -0,0 +1,18 @@
+// Route.java
+// A path through the network returned by the multi-route engines
+import java.util.List;
+
+public class Route {
+    public List<Integer> nodes; // Node IDs from start to end
+    public double cost; // Total cost of the path under the weights used to find it
+
+    public Route(List<Integer> nodes, double cost) {
+        this.nodes = nodes;
+        this.cost = cost;
+    }
+
+    @Override
+    public String toString() {
+        return nodes + String.format(" (%.2f)", cost);
+    }
+}
@@ -0,0 +1,21 @@
+// RoutingShard.java
+// One shard of the ShardedRouter: answers searches restricted to the roads of its own part of the network
+// Implemented in-process by LocalShard and over a socket by RemoteShard (talking to a ShardServer).
+// Boundary nodes are the nodes of the part that have a road to another part; all arrays about them
+// follow the order of boundaryNodeIds(). Unreachable costs are Double.POSITIVE_INFINITY.
+public interface RoutingShard {
+    // Boundary node IDs of this shard
+    int[] boundaryNodeIds();
+
+    // Cost from boundary node i to boundary node j inside the shard, row-major (b x b)
+    double[] boundaryMatrix();
+
+    // Cost from a node of the shard to every boundary node
+    double[] costsToBoundary(int nodeId);
+
+    // Cost from every boundary node to a node of the shard
+    double[] costsFromBoundary(int nodeId);
+
+    // Best route between two nodes of the shard using only its roads, or null if there is none
+    Route route(int fromId, int toId);
+}
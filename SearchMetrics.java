@@ -0,0 +1,95 @@
+// SearchMetrics.java
+// Instrumentation of the search algorithms (Dijkstra, TrafficDijkstra, AStarSearch, MSTBuilder)
+// Every query counts nodes settled, edges relaxed, heap pushes and stale pops in local variables and, when
+// metrics are enabled, adds them and its wall time to the SearchStats of its algorithm. When disabled
+// (the default) a query only pays for the local counters and one check of the flag at its start and end.
+// The stats can be read through JMX (registerJmx), as a Prometheus text dump, or as a console summary.
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.ToLongFunction;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public class SearchMetrics {
+    public static volatile boolean enabled = false;
+
+    private static final Map<String, SearchStats> stats = new ConcurrentSkipListMap<>(); // Sorted by algorithm name
+
+    // Start time for a query, or 0 when metrics are off
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    // Records a finished query; does nothing when metrics are off (or were off when the query started)
+    public static void record(String algorithm, long startTime, long settled, long relaxed, long pushes, long stale) {
+        if (!enabled || startTime == 0) return;
+        statsFor(algorithm).record(System.nanoTime() - startTime, settled, relaxed, pushes, stale);
+    }
+
+    public static SearchStats statsFor(String algorithm) {
+        return stats.computeIfAbsent(algorithm, SearchStats::new);
+    }
+
+    public static void reset() {
+        for (SearchStats s : stats.values()) s.reset();
+    }
+
+    // Publishes the stats of the given algorithms as MBeans "SmartCity:type=SearchMetrics,name=<algorithm>"
+    public static void registerJmx(String... algorithms) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (String algorithm : algorithms) {
+            try {
+                ObjectName name = new ObjectName("SmartCity:type=SearchMetrics,name=" + algorithm);
+                if (!server.isRegistered(name)) server.registerMBean(statsFor(algorithm), name);
+            } catch (Exception e) {
+                System.out.println("⚠️ Could not register metrics for " + algorithm + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // All stats in the Prometheus text exposition format
+    public static String prometheus() {
+        StringBuilder out = new StringBuilder();
+        counter(out, "search_queries_total", "Searches run", SearchStats::getQueries);
+        counter(out, "search_nodes_settled_total", "Nodes taken out of the queue for the first time", SearchStats::getNodesSettled);
+        counter(out, "search_edges_relaxed_total", "Edges examined", SearchStats::getEdgesRelaxed);
+        counter(out, "search_heap_pushes_total", "Entries added to the priority queue", SearchStats::getHeapPushes);
+        counter(out, "search_stale_pops_total", "Queue entries popped for an already settled node", SearchStats::getStalePops);
+
+        out.append("# HELP search_latency_seconds Wall time of one search\n");
+        out.append("# TYPE search_latency_seconds summary\n");
+        for (SearchStats s : stats.values()) {
+            long[] counts = s.latency.snapshot();
+            for (double q : new double[]{0.5, 0.9, 0.99, 1.0}) {
+                out.append("search_latency_seconds{algorithm=\"").append(s.algorithm).append("\",quantile=\"").append(q).append("\"} ")
+                        .append(LatencyHistogram.quantile(counts, q) / 1e9).append('\n');
+            }
+            out.append("search_latency_seconds_sum{algorithm=\"").append(s.algorithm).append("\"} ").append(s.getTotalMillis() / 1e3).append('\n');
+            out.append("search_latency_seconds_count{algorithm=\"").append(s.algorithm).append("\"} ").append(s.getQueries()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static void counter(StringBuilder out, String name, String help, ToLongFunction<SearchStats> value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        for (SearchStats s : stats.values()) {
+            out.append(name).append("{algorithm=\"").append(s.algorithm).append("\"} ").append(value.applyAsLong(s)).append('\n');
+        }
+    }
+
+    // One line per algorithm, for the console
+    public static String summary() {
+        StringBuilder out = new StringBuilder();
+        for (SearchStats s : stats.values()) {
+            long queries = s.getQueries();
+            if (queries == 0) continue;
+            out.append(String.format("%-18s %6d queries | per query: %8.1f settled, %8.1f relaxed, %8.1f pushes, %6.1f stale | p50 %.3f ms, p99 %.3f ms\n",
+                    s.algorithm, s.getQueries(), (double) s.getNodesSettled() / queries, (double) s.getEdgesRelaxed() / queries,
+                    (double) s.getHeapPushes() / queries, (double) s.getStalePops() / queries, s.getMedianMillis(), s.getP99Millis()));
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,23 @@
+// SearchProgress.java
+// Lets a caller watch a long-running search and stop it (used by GraphVisualizer's background tasks)
+// The searches report every road they add to their tree (the road that reached a settled node, or an
+// accepted MST road) and stop with a CancellationException once isCancelled() returns true.
+// Searches called without a SearchProgress use NONE and skip the reporting completely.
+
+public interface SearchProgress {
+    SearchProgress NONE = new SearchProgress() {
+        @Override
+        public void edgeAdded(Edge edge, int done, int total) {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    // edge is null for the start node; done out of total is the share of the work finished so far
+    void edgeAdded(Edge edge, int done, int total);
+
+    boolean isCancelled();
+}
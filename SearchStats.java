@@ -0,0 +1,88 @@
+// SearchStats.java
+// Metrics of one search algorithm: totals over all queries (striped LongAdder counters) and the latency histogram
+// For MSTBuilder the counters mean: nodes settled = roads added to the tree, edges relaxed = roads examined,
+// stale pops = roads rejected because they would close a cycle (it uses no heap).
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class SearchStats implements SearchStatsMXBean {
+    public final String algorithm;
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder nodesSettled = new LongAdder();
+    private final LongAdder edgesRelaxed = new LongAdder();
+    private final LongAdder heapPushes = new LongAdder();
+    private final LongAdder stalePops = new LongAdder(); // Queue entries popped after a shorter distance was found
+    private final LongAdder totalNanos = new LongAdder();
+    public final LatencyHistogram latency = new LatencyHistogram();
+
+    public SearchStats(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    // Adds the counts of one finished query
+    public void record(long nanos, long settled, long relaxed, long pushes, long stale) {
+        queries.increment();
+        nodesSettled.add(settled);
+        edgesRelaxed.add(relaxed);
+        heapPushes.add(pushes);
+        stalePops.add(stale);
+        totalNanos.add(nanos);
+        latency.record(nanos);
+    }
+
+    @Override
+    public long getQueries() {
+        return queries.sum();
+    }
+
+    @Override
+    public long getNodesSettled() {
+        return nodesSettled.sum();
+    }
+
+    @Override
+    public long getEdgesRelaxed() {
+        return edgesRelaxed.sum();
+    }
+
+    @Override
+    public long getHeapPushes() {
+        return heapPushes.sum();
+    }
+
+    @Override
+    public long getStalePops() {
+        return stalePops.sum();
+    }
+
+    @Override
+    public double getTotalMillis() {
+        return totalNanos.sum() / 1e6;
+    }
+
+    @Override
+    public double getMedianMillis() {
+        return latency.quantile(0.5) / 1e6;
+    }
+
+    @Override
+    public double getP99Millis() {
+        return latency.quantile(0.99) / 1e6;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return latency.quantile(1.0) / 1e6;
+    }
+
+    @Override
+    public void reset() {
+        queries.reset();
+        nodesSettled.reset();
+        edgesRelaxed.reset();
+        heapPushes.reset();
+        stalePops.reset();
+        totalNanos.reset();
+        latency.reset();
+    }
+}
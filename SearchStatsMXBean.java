@@ -0,0 +1,23 @@
+// SearchStatsMXBean.java
+// JMX view of the metrics of one search algorithm (see SearchMetrics), readable from JConsole or VisualVM
+public interface SearchStatsMXBean {
+    long getQueries();
+
+    long getNodesSettled();
+
+    long getEdgesRelaxed();
+
+    long getHeapPushes();
+
+    long getStalePops();
+
+    double getTotalMillis();
+
+    double getMedianMillis();
+
+    double getP99Millis();
+
+    double getMaxMillis();
+
+    void reset();
+}
@@ -0,0 +1,68 @@
+// SearchWorkspace.java
+// Reusable arrays for Dijkstra-style searches over a CompactGraph
+// Instead of refilling dist[] with infinity before each search, every search gets a new stamp:
+// an entry only counts if its stamp matches the current one. Engines keep one workspace per thread.
+
+import java.util.Arrays;
+
+public class SearchWorkspace {
+    public final double[] dist; // Tentative distance (valid only where visited == stamp)
+    public final int[] parentArc; // Arc used to reach each node (valid only where visited == stamp)
+    public final NodeHeap heap; // Priority queue of the current search
+    public final int[] order; // Nodes in the order they were settled by the current search
+    public int orderSize; // Number of valid entries in order
+    private final int[] visited; // Stamp of the search that last wrote dist[i]
+    private final int[] settled; // Stamp of the search that settled node i
+    private final int[] marked; // Extra per-node flag for callers (blocked nodes, targets, ...)
+    private int stamp;
+
+    public SearchWorkspace(int nodeCount) {
+        dist = new double[nodeCount];
+        parentArc = new int[nodeCount];
+        visited = new int[nodeCount];
+        settled = new int[nodeCount];
+        marked = new int[nodeCount];
+        order = new int[nodeCount];
+        heap = new NodeHeap(64);
+    }
+
+    // Starts a new search: forgets all distances, settled nodes and marks in O(1)
+    public void reset() {
+        heap.clear();
+        orderSize = 0;
+        stamp++;
+        if (stamp == Integer.MAX_VALUE) { // Wrap around: clear the stamps once
+            Arrays.fill(visited, 0);
+            Arrays.fill(settled, 0);
+            Arrays.fill(marked, 0);
+            stamp = 1;
+        }
+    }
+
+    public double distance(int node) {
+        return visited[node] == stamp ? dist[node] : Double.POSITIVE_INFINITY;
+    }
+
+    public void setDistance(int node, double d, int viaArc) {
+        visited[node] = stamp;
+        dist[node] = d;
+        parentArc[node] = viaArc;
+    }
+
+    public boolean isSettled(int node) {
+        return settled[node] == stamp;
+    }
+
+    public void settle(int node) {
+        settled[node] = stamp;
+        order[orderSize++] = node;
+    }
+
+    public boolean isMarked(int node) {
+        return marked[node] == stamp;
+    }
+
+    public void mark(int node) {
+        marked[node] = stamp;
+    }
+}
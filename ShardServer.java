@@ -0,0 +1,123 @@
+// ShardServer.java
+// Serves a RoutingShard over TCP so shards can run as separate processes (or on localhost for testing)
+// Binary protocol with DataInput/DataOutput streams, one request at a time per connection:
+//   request  = command byte, then its int arguments
+//   reply    = status byte: OK, then the result below, or ERROR, then the message (UTF) of the exception the shard
+//              threw (an unknown node, ...); the connection stays usable after an ERROR
+//   BOUNDARY → int count, count ints | MATRIX → int count, count doubles
+//   TO id / FROM id → int count, count doubles | ROUTE from to → int count (-1 if no route), count ints, double cost
+// RemoteShard is the client side.
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ShardServer implements Closeable {
+    static final byte BOUNDARY = 1, MATRIX = 2, TO = 3, FROM = 4, ROUTE = 5;
+    static final byte OK = 0, ERROR = 1;
+
+    private final RoutingShard shard;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "shard-connection");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Listens on the given port (0 = any free port, see getPort)
+    public ShardServer(RoutingShard shard, int port) throws IOException {
+        this.shard = shard;
+        this.serverSocket = new ServerSocket(port);
+        Thread acceptor = new Thread(this::acceptLoop, "shard-server-" + serverSocket.getLocalPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.submit(() -> serve(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) System.out.println("⚠️ Shard server: " + e.getMessage());
+            }
+        }
+    }
+
+    // Answers requests until the client closes the connection
+    private void serve(Socket socket) {
+        try (Socket s = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+            while (true) {
+                int command = in.read();
+                if (command < 0) return; // Client closed
+                // The result is written to a buffer first, so a failing call sends nothing but its error
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                try {
+                    answer(command, in, new DataOutputStream(buffer));
+                    out.write(OK);
+                    buffer.writeTo(out);
+                } catch (RuntimeException e) {
+                    out.write(ERROR);
+                    out.writeUTF(e.getMessage() != null ? e.getMessage() : e.toString());
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            if (!serverSocket.isClosed()) System.out.println("⚠️ Shard connection: " + e.getMessage());
+        }
+    }
+
+    // Reads the arguments of one command and writes its result
+    private void answer(int command, DataInputStream in, DataOutputStream out) throws IOException {
+        switch (command) {
+            case BOUNDARY:
+                writeInts(out, shard.boundaryNodeIds());
+                break;
+            case MATRIX:
+                writeDoubles(out, shard.boundaryMatrix());
+                break;
+            case TO:
+                writeDoubles(out, shard.costsToBoundary(in.readInt()));
+                break;
+            case FROM:
+                writeDoubles(out, shard.costsFromBoundary(in.readInt()));
+                break;
+            case ROUTE:
+                Route route = shard.route(in.readInt(), in.readInt());
+                if (route == null) {
+                    out.writeInt(-1);
+                } else {
+                    out.writeInt(route.nodes.size());
+                    for (int id : route.nodes) out.writeInt(id);
+                    out.writeDouble(route.cost);
+                }
+                break;
+            default:
+                throw new IOException("Unknown command " + command);
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int v : values) out.writeInt(v);
+    }
+
+    private static void writeDoubles(DataOutputStream out, double[] values) throws IOException {
+        out.writeInt(values.length);
+        for (double v : values) out.writeDouble(v);
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdownNow();
+    }
+}
@@ -0,0 +1,204 @@
+// ShardedRouter.java
+// Routing over a network split into shards (GraphPartitioner parts), each served by a RoutingShard
+// The router only keeps the overlay: the boundary nodes of all shards, linked by
+// - each shard's boundary-to-boundary costs (one overlay arc per pair, computed inside the shard) and
+// - the roads cut by the partition (they belong to no shard).
+// A query from s to t:
+// 1. asks the shard of s for the costs from s to its boundary nodes, and the shard of t for the costs from
+//    its boundary nodes to t;
+// 2. runs Dijkstra on the overlay from the boundary of s's shard, stopping once no boundary node of t's
+//    shard can still improve the best arrival;
+// 3. if s and t share a shard, also asks that shard for its internal route and keeps the cheaper one.
+// The route is expanded back to road level by asking each shard for the pieces inside it.
+
+import java.util.*;
+
+public class ShardedRouter {
+    private final GraphPartitioner.Partition partition;
+    private final List<RoutingShard> shards;
+
+    // Overlay in CSR form
+    private final int overlaySize;
+    private final int[] overlayNodeIds; // Node ID of each overlay node
+    private final int[] overlayShard; // Shard owning each overlay node
+    private final int[] overlayPosition; // Position of the node in its shard's boundary list
+    private final Map<Integer, Integer> overlayIndex = new HashMap<>();
+    private final int[] firstArc, arcTarget, arcShard; // arcShard = shard that expands the arc, -1 for a cut road
+    private final double[] arcCost;
+    private final int[][] shardBoundary; // Overlay index of every boundary node, per shard
+
+    private final ThreadLocal<SearchWorkspace> workspaces;
+
+    // Cut roads are weighted like the shards: plain distance, or traffic-weighted if traffic is given
+    public ShardedRouter(GraphPartitioner.Partition partition, List<RoutingShard> shards, TrafficData traffic, TrafficTime time) {
+        if (shards.size() != partition.parts) throw new IllegalArgumentException("One shard per part is needed");
+        this.partition = partition;
+        this.shards = shards;
+
+        // Overlay nodes: the boundary nodes of every shard
+        List<Integer> ids = new ArrayList<>();
+        List<Integer> owners = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        shardBoundary = new int[shards.size()][];
+        List<double[]> matrices = new ArrayList<>();
+        for (int p = 0; p < shards.size(); p++) {
+            int[] boundary = shards.get(p).boundaryNodeIds();
+            shardBoundary[p] = new int[boundary.length];
+            for (int i = 0; i < boundary.length; i++) {
+                shardBoundary[p][i] = ids.size();
+                overlayIndex.put(boundary[i], ids.size());
+                ids.add(boundary[i]);
+                owners.add(p);
+                positions.add(i);
+            }
+            matrices.add(shards.get(p).boundaryMatrix());
+        }
+        overlaySize = ids.size();
+        overlayNodeIds = ids.stream().mapToInt(Integer::intValue).toArray();
+        overlayShard = owners.stream().mapToInt(Integer::intValue).toArray();
+        overlayPosition = positions.stream().mapToInt(Integer::intValue).toArray();
+
+        // Overlay arcs {from, to, shard} and their costs
+        List<int[]> arcs = new ArrayList<>();
+        List<Double> costs = new ArrayList<>();
+        for (int p = 0; p < shards.size(); p++) {
+            int b = shardBoundary[p].length;
+            double[] matrix = matrices.get(p);
+            for (int i = 0; i < b; i++) {
+                for (int j = 0; j < b; j++) {
+                    if (i != j && matrix[i * b + j] < Double.POSITIVE_INFINITY) {
+                        arcs.add(new int[]{shardBoundary[p][i], shardBoundary[p][j], p});
+                        costs.add(matrix[i * b + j]);
+                    }
+                }
+            }
+        }
+        CompactGraph graph = partition.graph;
+        for (int a = 0; a < graph.arcCount; a++) {
+            int u = graph.arcSource(a), v = graph.arcTarget[a];
+            if (partition.partOf[u] == partition.partOf[v]) continue;
+            double cost = traffic == null ? graph.arcDistance[a]
+                    : traffic.getEffectiveDistance(graph.nodeIds[u], graph.nodeIds[v], graph.arcDistance[a], time);
+            arcs.add(new int[]{overlayIndex.get(graph.nodeIds[u]), overlayIndex.get(graph.nodeIds[v]), -1});
+            costs.add(cost);
+        }
+
+        firstArc = new int[overlaySize + 1];
+        for (int[] arc : arcs) firstArc[arc[0] + 1]++;
+        for (int i = 0; i < overlaySize; i++) firstArc[i + 1] += firstArc[i];
+        arcTarget = new int[arcs.size()];
+        arcShard = new int[arcs.size()];
+        arcCost = new double[arcs.size()];
+        int[] next = Arrays.copyOf(firstArc, overlaySize);
+        for (int k = 0; k < arcs.size(); k++) {
+            int slot = next[arcs.get(k)[0]]++;
+            arcTarget[slot] = arcs.get(k)[1];
+            arcShard[slot] = arcs.get(k)[2];
+            arcCost[slot] = costs.get(k);
+        }
+        workspaces = ThreadLocal.withInitial(() -> new SearchWorkspace(Math.max(overlaySize, 1)));
+    }
+
+    // All shards in this process
+    public static ShardedRouter inProcess(Graph graph, int parts, TrafficData traffic, TrafficTime time) {
+        GraphPartitioner.Partition partition = new GraphPartitioner().partition(graph, parts);
+        List<RoutingShard> shards = new ArrayList<>();
+        for (int p = 0; p < parts; p++) shards.add(LocalShard.forPart(graph, partition, p, traffic, time));
+        return new ShardedRouter(partition, shards, traffic, time);
+    }
+
+    public int overlayNodeCount() {
+        return overlaySize;
+    }
+
+    public int overlayArcCount() {
+        return arcTarget.length;
+    }
+
+    // Best route between two node IDs, or null if they are not connected
+    public Route route(int fromId, int toId) {
+        int sourceShard = partition.partOfNode(fromId);
+        int targetShard = partition.partOfNode(toId);
+        if (sourceShard < 0 || targetShard < 0) return null;
+
+        Route best = null;
+        if (sourceShard == targetShard) best = shards.get(sourceShard).route(fromId, toId);
+        double bestCost = best == null ? Double.POSITIVE_INFINITY : best.cost;
+
+        // Overlay search seeded with the costs from the source to its shard's boundary
+        double[] fromSource = shards.get(sourceShard).costsToBoundary(fromId);
+        double[] toTarget = shards.get(targetShard).costsFromBoundary(toId);
+        SearchWorkspace ws = workspaces.get();
+        ws.reset();
+        for (int i = 0; i < fromSource.length; i++) {
+            if (fromSource[i] < Double.POSITIVE_INFINITY) {
+                ws.setDistance(shardBoundary[sourceShard][i], fromSource[i], -1);
+                ws.heap.push(shardBoundary[sourceShard][i], fromSource[i]);
+            }
+        }
+        int exit = -1; // Overlay node where the best overlay route leaves for the target
+        while (!ws.heap.isEmpty()) {
+            double d = ws.heap.peekKey();
+            int u = ws.heap.pop();
+            if (d >= bestCost) break; // Nothing left can beat the best route
+            if (d > ws.dist[u] || ws.isSettled(u)) continue;
+            ws.settle(u);
+            if (overlayShard[u] == targetShard) {
+                double total = d + toTarget[overlayPosition[u]];
+                if (total < bestCost) {
+                    bestCost = total;
+                    exit = u;
+                }
+            }
+            for (int a = firstArc[u]; a < firstArc[u + 1]; a++) {
+                int v = arcTarget[a];
+                double newDist = d + arcCost[a];
+                if (newDist < ws.distance(v)) {
+                    ws.setDistance(v, newDist, a);
+                    ws.heap.push(v, newDist);
+                }
+            }
+        }
+        if (exit < 0) return best; // The route inside the shard (or none) was best
+
+        // Overlay arcs from the entry boundary node to the exit, then expanded to roads
+        LinkedList<Integer> overlayArcs = new LinkedList<>();
+        int v = exit;
+        while (ws.parentArc[v] >= 0) {
+            int a = ws.parentArc[v];
+            overlayArcs.addFirst(a);
+            v = arcSourceOf(a);
+        }
+        List<Integer> nodes = new ArrayList<>();
+        append(nodes, shards.get(sourceShard).route(fromId, overlayNodeIds[v]));
+        for (int a : overlayArcs) {
+            int from = overlayNodeIds[arcSourceOf(a)], to = overlayNodeIds[arcTarget[a]];
+            if (arcShard[a] < 0) {
+                append(nodes, new Route(Arrays.asList(from, to), arcCost[a]));
+            } else {
+                append(nodes, shards.get(arcShard[a]).route(from, to));
+            }
+        }
+        append(nodes, shards.get(targetShard).route(overlayNodeIds[exit], toId));
+        return new Route(nodes, bestCost);
+    }
+
+    // Adds a piece of route, skipping its first node when it repeats the last one
+    private static void append(List<Integer> nodes, Route piece) {
+        if (piece == null) return;
+        for (int id : piece.nodes) {
+            if (nodes.isEmpty() || nodes.get(nodes.size() - 1) != id) nodes.add(id);
+        }
+    }
+
+    // Overlay arcs are stored per source node; the source is found from the CSR offsets
+    private int arcSourceOf(int arc) {
+        int lo = 0, hi = overlaySize - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (firstArc[mid] <= arc) lo = mid;
+            else hi = mid - 1;
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,396 @@
+// SpatialIndex.java
+// Coordinate lookups on the network without scanning graph.nodes
+// - Nodes: implicit KD-tree. The dense node indices are reordered so that every range [lo, hi) has its
+//   median (by x on even depths, by y on odd depths) in the middle, splitting the rest into the two halves.
+// - Roads: packed R-tree (Sort-Tile-Recursive). Road segments are sorted into vertical slices by x, then by y
+//   inside each slice, and packed NODE_CAPACITY per leaf; upper levels pack consecutive boxes the same way.
+// Queries: nearest node, k nearest nodes, nodes/roads in a box, nearest road with the projected point.
+// Distances are in map coordinate units (the units of Node.x / Node.y). The index is read-only after
+// construction, so any number of threads can query it at once.
+
+import java.util.*;
+import java.util.function.IntConsumer;
+
+public class SpatialIndex {
+    private static final int NODE_CAPACITY = 16; // Children per R-tree node
+
+    public final CompactGraph graph;
+    public final double minX, minY, maxX, maxY; // Bounds of all nodes
+
+    // ----------- KD-tree over nodes -----------
+    private final int[] kdOrder; // Dense node indices in KD-tree order
+    private final double[] kdX, kdY; // Their coordinates in the same order (searches read them sequentially)
+
+    // ----------- R-tree over roads -----------
+    private final int[] roadFrom, roadTo; // Dense indices of the two ends of each road
+    private final int[] itemRoad; // Road of each leaf entry, in STR order
+    private final double[] itemBox; // minX, minY, maxX, maxY of each leaf entry
+    private final byte[] itemEnds; // Corner of the box holding edge.from: bit 0 = at maxX, bit 1 = at maxY
+    private final double[][] levelBox; // Boxes of the tree nodes, per level (level 0 = leaves)
+
+    // A road with the point on it closest to a query location
+    public static class EdgeProjection {
+        public final int road; // Position of the road in graph.edges
+        public final Edge edge;
+        public final double x, y; // Closest point on the road
+        public final double fraction; // 0 at edge.from, 1 at edge.to
+        public final double distance; // From the query location to (x, y)
+
+        EdgeProjection(int road, Edge edge, double x, double y, double fraction, double distance) {
+            this.road = road;
+            this.edge = edge;
+            this.x = x;
+            this.y = y;
+            this.fraction = fraction;
+            this.distance = distance;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s at %.0f%% (%.4f away)", edge, fraction * 100, distance);
+        }
+    }
+
+    public SpatialIndex(Graph graph) {
+        this(CompactGraph.fromGraph(graph));
+    }
+
+    public SpatialIndex(CompactGraph graph) {
+        this.graph = graph;
+        int n = graph.nodeCount;
+        double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+        double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            x0 = Math.min(x0, graph.x[i]);
+            y0 = Math.min(y0, graph.y[i]);
+            x1 = Math.max(x1, graph.x[i]);
+            y1 = Math.max(y1, graph.y[i]);
+        }
+        minX = x0;
+        minY = y0;
+        maxX = x1;
+        maxY = y1;
+
+        kdOrder = new int[n];
+        for (int i = 0; i < n; i++) kdOrder[i] = i;
+        buildKd(0, n, 0);
+        kdX = new double[n];
+        kdY = new double[n];
+        for (int k = 0; k < n; k++) {
+            kdX[k] = graph.x[kdOrder[k]];
+            kdY[k] = graph.y[kdOrder[k]];
+        }
+
+        // Road ends and segment boxes
+        int roads = graph.edges.length;
+        roadFrom = new int[roads];
+        roadTo = new int[roads];
+        for (int r = 0; r < roads; r++) {
+            roadFrom[r] = graph.indexOf(graph.edges[r].from);
+            roadTo[r] = graph.indexOf(graph.edges[r].to);
+        }
+        itemRoad = strOrder();
+        itemBox = new double[roads * 4];
+        itemEnds = new byte[roads];
+        for (int k = 0; k < roads; k++) {
+            int u = roadFrom[itemRoad[k]], v = roadTo[itemRoad[k]];
+            itemBox[4 * k] = Math.min(graph.x[u], graph.x[v]);
+            itemBox[4 * k + 1] = Math.min(graph.y[u], graph.y[v]);
+            itemBox[4 * k + 2] = Math.max(graph.x[u], graph.x[v]);
+            itemBox[4 * k + 3] = Math.max(graph.y[u], graph.y[v]);
+            itemEnds[k] = (byte) ((graph.x[u] > graph.x[v] ? 1 : 0) | (graph.y[u] > graph.y[v] ? 2 : 0));
+        }
+
+        // Pack boxes level by level until one root is left
+        List<double[]> levels = new ArrayList<>();
+        double[] below = itemBox;
+        do {
+            double[] level = pack(below);
+            levels.add(level);
+            below = level;
+        } while (below.length > 4);
+        levelBox = levels.toArray(new double[0][]);
+    }
+
+    public int nodeCount() {
+        return graph.nodeCount;
+    }
+
+    // =========================== Node queries ===========================
+
+    // ID of the node closest to (x, y), or -1 if the graph has no nodes
+    public int nearestNode(double x, double y) {
+        if (kdOrder.length == 0) return -1;
+        Nearest best = new Nearest(1);
+        nearest(0, kdOrder.length, 0, x, y, best);
+        return graph.nodeIds[best.index[0]];
+    }
+
+    // IDs of the k nodes closest to (x, y), closest first
+    public List<Integer> nearestNodes(double x, double y, int k) {
+        List<Integer> ids = new ArrayList<>();
+        if (k <= 0 || kdOrder.length == 0) return ids;
+        Nearest best = new Nearest(Math.min(k, kdOrder.length));
+        nearest(0, kdOrder.length, 0, x, y, best);
+        for (int i = 0; i < best.size; i++) ids.add(graph.nodeIds[best.index[i]]);
+        return ids;
+    }
+
+    // IDs of all nodes inside the box (borders included)
+    public List<Integer> nodesInBox(double x0, double y0, double x1, double y1) {
+        List<Integer> ids = new ArrayList<>();
+        forEachNodeInBox(x0, y0, x1, y1, i -> ids.add(graph.nodeIds[i]));
+        return ids;
+    }
+
+    // Calls the action with the dense index of every node inside the box
+    public void forEachNodeInBox(double x0, double y0, double x1, double y1, IntConsumer action) {
+        box(0, kdOrder.length, 0, x0, y0, x1, y1, action);
+    }
+
+    // Sorts kdOrder[lo, hi) into a KD-tree: median in the middle, smaller coordinates before it
+    private void buildKd(int lo, int hi, int depth) {
+        if (hi - lo <= 1) return;
+        int mid = (lo + hi) >>> 1;
+        select(kdOrder, lo, hi - 1, mid, depth % 2 == 0 ? graph.x : graph.y);
+        buildKd(lo, mid, depth + 1);
+        buildKd(mid + 1, hi, depth + 1);
+    }
+
+    private void nearest(int lo, int hi, int depth, double x, double y, Nearest best) {
+        if (lo >= hi) return;
+        int mid = (lo + hi) >>> 1;
+        double dx = x - kdX[mid], dy = y - kdY[mid];
+        best.offer(kdOrder[mid], dx * dx + dy * dy);
+
+        // Search the side of the query first; the other side only if the split line is closer than the worst kept
+        double diff = depth % 2 == 0 ? dx : dy;
+        if (diff < 0) {
+            nearest(lo, mid, depth + 1, x, y, best);
+            if (diff * diff < best.worst()) nearest(mid + 1, hi, depth + 1, x, y, best);
+        } else {
+            nearest(mid + 1, hi, depth + 1, x, y, best);
+            if (diff * diff < best.worst()) nearest(lo, mid, depth + 1, x, y, best);
+        }
+    }
+
+    private void box(int lo, int hi, int depth, double x0, double y0, double x1, double y1, IntConsumer action) {
+        if (lo >= hi) return;
+        int mid = (lo + hi) >>> 1;
+        double px = kdX[mid], py = kdY[mid];
+        if (px >= x0 && px <= x1 && py >= y0 && py <= y1) action.accept(kdOrder[mid]);
+        double split = depth % 2 == 0 ? px : py;
+        double low = depth % 2 == 0 ? x0 : y0, high = depth % 2 == 0 ? x1 : y1;
+        if (low <= split) box(lo, mid, depth + 1, x0, y0, x1, y1, action);
+        if (high >= split) box(mid + 1, hi, depth + 1, x0, y0, x1, y1, action);
+    }
+
+    // The k best candidates so far, sorted by squared distance (k is small, so insertion is enough)
+    private static class Nearest {
+        final int[] index;
+        final double[] distance;
+        int size;
+
+        Nearest(int k) {
+            index = new int[k];
+            distance = new double[k];
+        }
+
+        double worst() {
+            return size < index.length ? Double.POSITIVE_INFINITY : distance[size - 1];
+        }
+
+        void offer(int node, double d) {
+            if (d >= worst()) return;
+            int i = size < index.length ? size++ : size - 1;
+            while (i > 0 && distance[i - 1] > d) {
+                index[i] = index[i - 1];
+                distance[i] = distance[i - 1];
+                i--;
+            }
+            index[i] = node;
+            distance[i] = d;
+        }
+    }
+
+    // Quickselect: moves the element of rank k (by key) of a[lo..hi] to position k
+    private static void select(int[] a, int lo, int hi, int k, double[] key) {
+        while (lo < hi) {
+            double pivot = key[a[(lo + hi) >>> 1]];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (key[a[i]] < pivot) i++;
+                while (key[a[j]] > pivot) j--;
+                if (i <= j) {
+                    int t = a[i];
+                    a[i++] = a[j];
+                    a[j--] = t;
+                }
+            }
+            if (k <= j) hi = j;
+            else if (k >= i) lo = i;
+            else return;
+        }
+    }
+
+    // =========================== Road queries ===========================
+
+    // The road closest to (x, y) and the closest point on it, or null if there are no roads
+    public EdgeProjection nearestEdge(double x, double y) {
+        if (itemRoad.length == 0) return null;
+
+        // Best-first search: tree nodes and leaf entries ordered by their (minimum) distance to the point.
+        // Heap entries are tree nodes encoded as level * stride + index, or ~k for leaf entry k.
+        int top = levelBox.length - 1;
+        int stride = Math.max(itemRoad.length, 1);
+        NodeHeap heap = new NodeHeap(64);
+        heap.push(top * stride, 0);
+        while (!heap.isEmpty()) {
+            double d = heap.peekKey();
+            int entry = heap.pop();
+            if (entry < 0) return project(itemRoad[~entry], x, y);
+            int level = entry / stride, index = entry % stride;
+            double[] children = level == 0 ? itemBox : levelBox[level - 1];
+            int first = index * NODE_CAPACITY, last = Math.min(first + NODE_CAPACITY, children.length / 4);
+            for (int c = first; c < last; c++) {
+                if (level == 0) {
+                    heap.push(~c, project(itemRoad[c], x, y).distance);
+                } else {
+                    heap.push((level - 1) * stride + c, boxDistance(children, c, x, y));
+                }
+            }
+        }
+        return null;
+    }
+
+    // All roads within the given distance of (x, y), closest first
+    public List<EdgeProjection> edgesWithin(double x, double y, double radius) {
+        List<EdgeProjection> found = new ArrayList<>();
+        forEachEdgeInBox(x - radius, y - radius, x + radius, y + radius, road -> {
+            EdgeProjection p = project(road, x, y);
+            if (p.distance <= radius) found.add(p);
+        });
+        found.sort(Comparator.comparingDouble(p -> p.distance));
+        return found;
+    }
+
+    // Positions (in graph.edges) of all roads whose bounding box meets the box
+    public List<Integer> edgesInBox(double x0, double y0, double x1, double y1) {
+        List<Integer> roads = new ArrayList<>();
+        forEachEdgeInBox(x0, y0, x1, y1, roads::add);
+        return roads;
+    }
+
+    // Calls the action with the position of every road whose bounding box meets the box
+    public void forEachEdgeInBox(double x0, double y0, double x1, double y1, IntConsumer action) {
+        forEachEdgeInBox(x0, y0, x1, y1, 0, (road, fromX, fromY, toX, toY) -> action.accept(road), null);
+    }
+
+    // Level-of-detail variant for drawing: a group of roads (R-tree node) whose box is smaller than minExtent
+    // in both directions is reported once through coarse, with its box, instead of road by road.
+    // Roads come with their end coordinates (edge.from first), read in R-tree order rather than through the
+    // node arrays, which keeps drawing a big network from stalling on cache misses.
+    public void forEachEdgeInBox(double x0, double y0, double x1, double y1, double minExtent,
+                                 SegmentConsumer action, BoxConsumer coarse) {
+        if (itemRoad.length == 0) return;
+        visit(levelBox.length - 1, 0, x0, y0, x1, y1, minExtent, action, coarse);
+    }
+
+    public interface SegmentConsumer {
+        void accept(int road, double fromX, double fromY, double toX, double toY);
+    }
+
+    public interface BoxConsumer {
+        void accept(double minX, double minY, double maxX, double maxY);
+    }
+
+    // Dense index of the node a road starts from (edge.from) / leads to (edge.to)
+    public int roadFrom(int road) {
+        return roadFrom[road];
+    }
+
+    public int roadTo(int road) {
+        return roadTo[road];
+    }
+
+    // Closest point to (x, y) on a road segment
+    public EdgeProjection project(int road, double x, double y) {
+        int u = roadFrom[road], v = roadTo[road];
+        double ax = graph.x[u], ay = graph.y[u];
+        double dx = graph.x[v] - ax, dy = graph.y[v] - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : ((x - ax) * dx + (y - ay) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        double px = ax + t * dx, py = ay + t * dy;
+        return new EdgeProjection(road, graph.edges[road], px, py, t, Math.hypot(x - px, y - py));
+    }
+
+    private void visit(int level, int index, double x0, double y0, double x1, double y1,
+                       double minExtent, SegmentConsumer action, BoxConsumer coarse) {
+        double[] children = level == 0 ? itemBox : levelBox[level - 1];
+        int first = index * NODE_CAPACITY, last = Math.min(first + NODE_CAPACITY, children.length / 4);
+        for (int c = first; c < last; c++) {
+            if (children[4 * c] > x1 || children[4 * c + 2] < x0 || children[4 * c + 1] > y1 || children[4 * c + 3] < y0) continue;
+            if (level == 0) {
+                int ends = itemEnds[c];
+                action.accept(itemRoad[c], children[4 * c + (ends & 1) * 2], children[4 * c + 1 + (ends >> 1) * 2],
+                        children[4 * c + (1 - (ends & 1)) * 2], children[4 * c + 1 + (1 - (ends >> 1)) * 2]);
+            } else if (coarse != null && children[4 * c + 2] - children[4 * c] < minExtent
+                    && children[4 * c + 3] - children[4 * c + 1] < minExtent) {
+                coarse.accept(children[4 * c], children[4 * c + 1], children[4 * c + 2], children[4 * c + 3]);
+            } else {
+                visit(level - 1, c, x0, y0, x1, y1, minExtent, action, coarse);
+            }
+        }
+    }
+
+    // Distance from a point to box i of the array (0 inside the box)
+    private static double boxDistance(double[] boxes, int i, double x, double y) {
+        double dx = Math.max(0, Math.max(boxes[4 * i] - x, x - boxes[4 * i + 2]));
+        double dy = Math.max(0, Math.max(boxes[4 * i + 1] - y, y - boxes[4 * i + 3]));
+        return Math.hypot(dx, dy);
+    }
+
+    // Sort-Tile-Recursive order of the roads: ceil(sqrt(leaves)) slices by segment centre x, then y in each slice
+    private int[] strOrder() {
+        int roads = roadFrom.length;
+        Integer[] order = new Integer[roads];
+        double[] cx = new double[roads], cy = new double[roads];
+        for (int r = 0; r < roads; r++) {
+            order[r] = r;
+            cx[r] = (graph.x[roadFrom[r]] + graph.x[roadTo[r]]) / 2;
+            cy[r] = (graph.y[roadFrom[r]] + graph.y[roadTo[r]]) / 2;
+        }
+        Arrays.sort(order, Comparator.comparingDouble(r -> cx[r]));
+        int leaves = (roads + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int sliceSize = (int) Math.ceil(Math.sqrt(leaves)) * NODE_CAPACITY;
+        for (int start = 0; start < roads; start += sliceSize) {
+            Arrays.sort(order, start, Math.min(start + sliceSize, roads), Comparator.comparingDouble(r -> cy[r]));
+        }
+        int[] result = new int[roads];
+        for (int k = 0; k < roads; k++) result[k] = order[k];
+        return result;
+    }
+
+    // One box per NODE_CAPACITY consecutive boxes of the level below
+    private static double[] pack(double[] below) {
+        int count = below.length / 4;
+        int parents = Math.max((count + NODE_CAPACITY - 1) / NODE_CAPACITY, 1);
+        double[] boxes = new double[parents * 4];
+        for (int p = 0; p < parents; p++) {
+            double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+            double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+            for (int c = p * NODE_CAPACITY; c < Math.min((p + 1) * NODE_CAPACITY, count); c++) {
+                x0 = Math.min(x0, below[4 * c]);
+                y0 = Math.min(y0, below[4 * c + 1]);
+                x1 = Math.max(x1, below[4 * c + 2]);
+                y1 = Math.max(y1, below[4 * c + 3]);
+            }
+            boxes[4 * p] = x0;
+            boxes[4 * p + 1] = y0;
+            boxes[4 * p + 2] = x1;
+            boxes[4 * p + 3] = y1;
+        }
+        return boxes;
+    }
+}
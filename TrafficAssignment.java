@@ -0,0 +1,155 @@
+// TrafficAssignment.java
+// Static traffic assignment: loads the DemandModel trips onto the roads until user equilibrium
+// (no driver can find a faster route), using the Frank-Wolfe algorithm.
+// Road travel times follow the BPR function t = t0 * (1 + alpha * (volume / capacity)^beta),
+// where t0 is the free-flow time from Edge.distance and Edge.capacity is the capacity of each direction.
+// Each iteration computes an all-or-nothing assignment (every trip on its current shortest path);
+// the shortest-path trees of the origins are independent and are built in parallel.
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+public class TrafficAssignment {
+    public double alpha = 0.15; // BPR coefficient
+    public double beta = 4.0; // BPR exponent
+    public double freeFlowSpeedKmh = IsochroneEngine.DEFAULT_SPEED_KMH; // Speed on an empty road
+    public int maxIterations = 100; // Frank-Wolfe iterations at most
+    public double targetGap = 1e-4; // Stop once the relative gap is below this value
+
+    private final CompactGraph graph;
+    private final DemandModel demand;
+    private final double[] freeFlowTime; // t0 of every arc in minutes
+    private final ThreadLocal<SearchWorkspace> workspaces;
+
+    public TrafficAssignment(CompactGraph graph, DemandModel demand) {
+        this.graph = graph;
+        this.demand = demand;
+        this.freeFlowTime = new double[graph.arcCount];
+        this.workspaces = ThreadLocal.withInitial(() -> new SearchWorkspace(graph.nodeCount));
+    }
+
+    // Result of an assignment run
+    public static class Result {
+        public double[] arcVolumes; // Vehicles per hour on every arc (CompactGraph arc order)
+        public double[] arcTimes; // Congested travel time of every arc in minutes
+        public int iterations; // Frank-Wolfe iterations performed
+        public double relativeGap; // (current cost - shortest-path cost) / current cost at the end
+        public double totalTravelTime; // Vehicle-minutes per hour over the whole network
+    }
+
+    // Runs Frank-Wolfe until the relative gap reaches targetGap or maxIterations is hit
+    public Result solve() {
+        for (int a = 0; a < graph.arcCount; a++) {
+            freeFlowTime[a] = graph.arcDistance[a] / freeFlowSpeedKmh * 60.0;
+        }
+
+        // Start from the all-or-nothing assignment on free-flow times
+        double[] times = freeFlowTime.clone();
+        double[] volumes = allOrNothing(times);
+        double gap = Double.POSITIVE_INFINITY;
+        int iteration = 0;
+
+        while (iteration < maxIterations) {
+            iteration++;
+            updateTimes(volumes, times);
+
+            // Direction: all trips on the current shortest paths
+            double[] target = allOrNothing(times);
+
+            // Relative gap: how much faster the shortest paths are than the routes in use
+            double currentCost = 0, shortestCost = 0;
+            for (int a = 0; a < graph.arcCount; a++) {
+                currentCost += volumes[a] * times[a];
+                shortestCost += target[a] * times[a];
+            }
+            gap = currentCost > 0 ? (currentCost - shortestCost) / currentCost : 0;
+            if (gap < targetGap) break;
+
+            // Move towards the target by the step that minimizes the Beckmann objective
+            double step = lineSearch(volumes, target);
+            for (int a = 0; a < graph.arcCount; a++) {
+                volumes[a] += step * (target[a] - volumes[a]);
+            }
+        }
+
+        updateTimes(volumes, times);
+        Result result = new Result();
+        result.arcVolumes = volumes;
+        result.arcTimes = times;
+        result.iterations = iteration;
+        result.relativeGap = gap;
+        for (int a = 0; a < graph.arcCount; a++) {
+            result.totalTravelTime += volumes[a] * times[a];
+        }
+        return result;
+    }
+
+    // BPR travel time of one arc at a given volume
+    private double bprTime(int arc, double volume) {
+        double capacity = Math.max(graph.arcCapacity[arc], 1);
+        return freeFlowTime[arc] * (1 + alpha * Math.pow(volume / capacity, beta));
+    }
+
+    private void updateTimes(double[] volumes, double[] times) {
+        for (int a = 0; a < graph.arcCount; a++) {
+            times[a] = bprTime(a, volumes[a]);
+        }
+    }
+
+    // Loads every trip onto its shortest path; origins run in parallel, each thread sums into its own array
+    private double[] allOrNothing(double[] times) {
+        int[] origins = demand.origins();
+        return IntStream.range(0, origins.length).parallel().collect(
+                () -> new double[graph.arcCount],
+                (volumes, i) -> loadOrigin(origins[i], times, volumes),
+                (left, right) -> {
+                    for (int a = 0; a < left.length; a++) left[a] += right[a];
+                });
+    }
+
+    // Builds the shortest-path tree of one origin and pushes its trips up the tree:
+    // nodes are visited from farthest to nearest, so each node passes its own and its subtree's trips to its parent arc
+    private void loadOrigin(int origin, double[] times, double[] volumes) {
+        SearchWorkspace ws = workspaces.get();
+        CompactDijkstra.shortestPathTree(graph, times, origin, false, ws);
+
+        double[] flow = ws.dist; // Reuse the distance array for the subtree flow once distances are no longer needed
+        for (int k = 0; k < ws.orderSize; k++) {
+            int v = ws.order[k];
+            flow[v] = demand.demand(origin, v);
+        }
+        for (int k = ws.orderSize - 1; k > 0; k--) {
+            int v = ws.order[k];
+            int arc = ws.parentArc[v];
+            volumes[arc] += flow[v];
+            flow[graph.arcSource(arc)] += flow[v];
+        }
+    }
+
+    // Bisection on the derivative of the Beckmann objective along the direction (target - volumes)
+    private double lineSearch(double[] volumes, double[] target) {
+        double lo = 0, hi = 1;
+        for (int i = 0; i < 30; i++) {
+            double mid = (lo + hi) / 2;
+            double derivative = 0;
+            for (int a = 0; a < graph.arcCount; a++) {
+                double direction = target[a] - volumes[a];
+                if (direction != 0) derivative += direction * bprTime(a, volumes[a] + mid * direction);
+            }
+            if (derivative > 0) hi = mid;
+            else lo = mid;
+        }
+        return (lo + hi) / 2;
+    }
+
+    // Volume over capacity for every road (the busier direction), keyed like the traffic file ("from-to")
+    public Map<String, Double> volumeCapacityRatios(Result result) {
+        Map<String, Double> ratios = new LinkedHashMap<>();
+        for (int a = 0; a < graph.arcCount; a++) {
+            Edge edge = graph.edges[graph.arcEdge[a]];
+            double ratio = result.arcVolumes[a] / Math.max(graph.arcCapacity[a], 1);
+            ratios.merge(edge.from + "-" + edge.to, ratio, Math::max);
+        }
+        return ratios;
+    }
+}
@@ -7,6 +7,10 @@ public class TrafficData {
     // Example: "1-3" → [morning, afternoon, evening, night]
     public Map<String, int[]> trafficMap = new HashMap<>();
 
+    // Creates an empty table (roads without an entry get the default flow); used for generated networks
+    public TrafficData() {
+    }
+
     // Constructor that reads traffic data from a CSV file
     public TrafficData(String filePath) throws FileNotFoundException {
         // Create a Scanner to read the file
@@ -51,4 +55,22 @@ public class TrafficData {
         // ordinal() gives the index: 0 for MORNING, 1 for AFTERNOON, etc.
         return flows[time.ordinal()];
     }
+
+    // Returns the traffic-weighted length of a road at a given time of day
+    // Uses the same key lookup and congestion factor as TrafficDijkstra and AStarSearch
+    public double getEffectiveDistance(Edge edge, TrafficTime time) {
+        return getEffectiveDistance(edge.from, edge.to, edge.distance, time);
+    }
+
+    // Same as above for a road given by its endpoints (the direction decides which key is tried first)
+    public double getEffectiveDistance(int from, int to, double distance, TrafficTime time) {
+        // The traffic file may list the road in either direction
+        String key1 = from + "-" + to;
+        String key2 = to + "-" + from;
+        String trafficKey = trafficMap.containsKey(key1) ? key1 : key2;
+
+        int traffic = getTrafficFlow(trafficKey, time);
+        double trafficFactor = 4000.0 / Math.max(traffic, 500); // Avoid division by very small numbers
+        return distance * trafficFactor;
+    }
 }
@@ -13,6 +13,9 @@ public class TrafficDijkstra {
 
         // Priority queue to process nodes with the smallest current distance
         PriorityQueue<double[]> pq = new PriorityQueue<>(Comparator.comparingDouble(a -> a[1]));
+        long startTime = SearchMetrics.start(); // 0 when metrics are off
+        Set<Integer> settledNodes = startTime != 0 ? new HashSet<>() : null; // Only tracked for the metrics
+        int relaxed = 0, pushes = 1, stalePops = 0;
 
         // Initialize all distances to infinity
         for (int id : graph.nodes.keySet()) {
@@ -27,6 +30,7 @@ public class TrafficDijkstra {
         while (!pq.isEmpty()) {
             double[] current = pq.poll(); // Get node with the smallest distance
             int currentId = (int) current[0];
+            if (settledNodes != null && !settledNodes.add(currentId)) stalePops++; // Popped again after a shorter distance
 
             // If we reached the destination node, stop the loop
             if (currentId == endId) break;
@@ -52,15 +56,18 @@ public class TrafficDijkstra {
 
                 // Calculate new possible distance to neighbor
                 double newDist = distances.get(currentId) + effectiveDistance;
+                relaxed++;
 
                 // If this path is shorter, update distance and previous node, and add neighbor to queue
                 if (newDist < distances.get(neighbor)) {
                     distances.put(neighbor, newDist);
                     previous.put(neighbor, currentId);
                     pq.add(new double[]{neighbor, (int) newDist});
+                    pushes++;
                 }
             }
         }
+        SearchMetrics.record("traffic_dijkstra", startTime, settledNodes == null ? 0 : settledNodes.size(), relaxed, pushes, stalePops);
 
         // Reconstruct the path from endId to startId using the previous map
         List<Integer> path = new ArrayList<>();
@@ -0,0 +1,397 @@
+// TrafficSimulator.java
+// Discrete-time vehicle simulation over the roads of a Graph
+// - Vehicles start on the route TrafficDijkstra gives for their trip (cached per origin-destination pair).
+// - Every rerouteInterval steps, moving vehicles switch to the current fastest route to their destination,
+//   using the travel times the simulation is producing (one reverse tree per destination, shared by all).
+// - Routes and trees are computed in parallel before the steps that use them (initial routes when a run
+//   starts, destination trees at each rerouting round), so the region workers only read them.
+// - Speed on a road follows Greenshields' model: it drops linearly with the number of vehicles on it,
+//   with the jam density chosen so the road carries at most Edge.capacity vehicles per hour.
+// Vehicle state is kept as a structure of arrays (one array per field). The nodes are split into regions
+// (vertical strips by X), each region owns the roads leaving its nodes and the vehicles on them, and regions
+// are stepped in parallel. Vehicles that move onto another region's road are handed over after the step.
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+public class TrafficSimulator {
+    // Vehicle status values
+    private static final byte WAITING = 0; // Not departed yet
+    private static final byte DRIVING = 1; // On the road
+    private static final byte ARRIVED = 2; // Reached the destination
+    private static final byte NO_ROUTE = 3; // Destination unreachable
+
+    public double stepSeconds = 1.0; // Simulated time per step
+    public double freeFlowSpeedKmh = IsochroneEngine.DEFAULT_SPEED_KMH; // Speed on an empty road
+    public double minSpeedKmh = 3.0; // Speed in a full jam (keeps vehicles moving slowly)
+    public int rerouteInterval = 300; // Steps between rerouting rounds (0 = never reroute)
+
+    private final Graph graph;
+    private final CompactGraph compact;
+    private final TrafficData trafficData;
+    private final TrafficTime time;
+
+    // ----------- Vehicle state (structure of arrays) -----------
+    private int vehicleCount;
+    private int[] vehOrigin = new int[1024]; // Dense index of the origin node
+    private int[] vehDest = new int[1024]; // Dense index of the destination node
+    private int[] vehDepart = new int[1024]; // Departure step
+    private int[] vehArrive = new int[1024]; // Arrival step
+    private int[] vehArc = new int[1024]; // Current arc (-1 before departure)
+    private double[] vehOffset = new double[1024]; // Kilometers driven on the current arc
+    private int[][] vehRoute = new int[1024][]; // Planned arcs after the current one (null = follow destination tree)
+    private int[] vehNext = new int[1024]; // Index of the next arc in vehRoute
+    private byte[] vehStatus = new byte[1024];
+
+    // ----------- Road state -----------
+    private final int[] occupancy; // Vehicles on each arc at the start of the step
+    private final double[] speedKmh; // Speed on each arc for the current step
+
+    // ----------- Regions -----------
+    private final int regionCount;
+    private final int[] regionOfNode; // Region owning each node (and the arcs leaving it)
+    private final IntList[] regionVehicles; // Vehicles owned by each region
+    private final IntList[] regionOutbox; // Vehicles leaving each region at the end of the step
+    private final int[][] regionArcs; // Arcs owned by each region
+
+    // Cached routes: TrafficDijkstra routes per origin-destination pair, and next-arc trees per destination
+    // (destinationTrees[d] is null for destinations no rerouted vehicle is driving to)
+    private final Map<Long, int[]> initialRoutes = new ConcurrentHashMap<>();
+    private final int[][] destinationTrees;
+    private final ThreadLocal<SearchWorkspace> workspaces;
+
+    private int currentStep;
+    private long vehicleSteps; // Vehicles advanced, summed over the steps (for throughput reporting)
+
+    public TrafficSimulator(Graph graph, TrafficData trafficData, TrafficTime time, int regionCount) {
+        this.graph = graph;
+        this.compact = CompactGraph.fromGraph(graph);
+        this.trafficData = trafficData;
+        this.time = time;
+        this.regionCount = Math.max(1, Math.min(regionCount, compact.nodeCount));
+        this.occupancy = new int[compact.arcCount];
+        this.speedKmh = new double[compact.arcCount];
+        this.workspaces = ThreadLocal.withInitial(() -> new SearchWorkspace(compact.nodeCount));
+        this.destinationTrees = new int[compact.nodeCount][];
+
+        // Regions are vertical strips holding about the same number of nodes
+        regionOfNode = new int[compact.nodeCount];
+        Integer[] byX = new Integer[compact.nodeCount];
+        for (int i = 0; i < byX.length; i++) byX[i] = i;
+        Arrays.sort(byX, Comparator.comparingDouble(i -> compact.x[i]));
+        for (int k = 0; k < byX.length; k++) {
+            regionOfNode[byX[k]] = (int) ((long) k * this.regionCount / byX.length);
+        }
+
+        regionVehicles = new IntList[this.regionCount];
+        regionOutbox = new IntList[this.regionCount];
+        IntList[] arcs = new IntList[this.regionCount];
+        for (int r = 0; r < this.regionCount; r++) {
+            regionVehicles[r] = new IntList();
+            regionOutbox[r] = new IntList();
+            arcs[r] = new IntList();
+        }
+        for (int u = 0; u < compact.nodeCount; u++) {
+            for (int a = compact.firstArc[u]; a < compact.firstArc[u + 1]; a++) arcs[regionOfNode[u]].add(a);
+        }
+        regionArcs = new int[this.regionCount][];
+        for (int r = 0; r < this.regionCount; r++) regionArcs[r] = arcs[r].toArray();
+    }
+
+    // Statistics of a simulation run
+    public static class Stats {
+        public int steps; // Steps simulated
+        public int vehicles; // Vehicles in the simulation
+        public int arrived; // Vehicles that reached their destination
+        public int stillDriving; // Vehicles on the road at the end
+        public int unroutable; // Vehicles whose destination could not be reached
+        public double averageTripMinutes; // Mean travel time of arrived vehicles
+        public long vehicleSteps; // Vehicles advanced (departed or driving), summed over the steps
+        public double vehicleStepsPerSecond; // Throughput of the run (wall clock)
+    }
+
+    // Adds one trip; returns the vehicle number
+    public int addVehicle(int originId, int destinationId, int departStep) {
+        int o = compact.indexOf(originId);
+        int d = compact.indexOf(destinationId);
+        if (o < 0 || d < 0) throw new IllegalArgumentException("Unknown node in trip " + originId + " → " + destinationId);
+        ensureVehicleCapacity(vehicleCount + 1);
+
+        int v = vehicleCount++;
+        vehOrigin[v] = o;
+        vehDest[v] = d;
+        vehDepart[v] = departStep;
+        vehArc[v] = -1;
+        vehStatus[v] = WAITING;
+        regionVehicles[regionOfNode[o]].add(v);
+        return v;
+    }
+
+    // Adds trips sampled from a demand model, departing uniformly over the given number of hours
+    public void addTripsFromDemand(DemandModel demand, double hours, long seed) {
+        Random random = new Random(seed);
+        int steps = (int) (hours * 3600 / stepSeconds);
+        CompactGraph zones = demand.graph; // Indices of the demand model, translated through node IDs
+        for (int o : demand.origins()) {
+            for (int d = 0; d < zones.nodeCount; d++) {
+                double expected = demand.demand(o, d) * hours;
+                int trips = (int) expected + (random.nextDouble() < expected - (int) expected ? 1 : 0);
+                for (int t = 0; t < trips; t++) {
+                    if (compact.indexOf(zones.nodeIds[o]) < 0 || compact.indexOf(zones.nodeIds[d]) < 0) continue;
+                    addVehicle(zones.nodeIds[o], zones.nodeIds[d], random.nextInt(Math.max(steps, 1)));
+                }
+            }
+        }
+    }
+
+    // Simulates the given number of steps and returns the statistics so far
+    public Stats run(int steps) {
+        long startTime = System.nanoTime();
+        long startVehicleSteps = vehicleSteps;
+        computeInitialRoutes();
+
+        for (int s = 0; s < steps; s++) {
+            // 1. Speeds from the occupancy at the start of the step (each region its own arcs)
+            IntStream.range(0, regionCount).parallel().forEach(this::updateSpeeds);
+            if (rerouteInterval > 0 && currentStep > 0 && currentStep % rerouteInterval == 0) reroute();
+            // 2. Move the vehicles of every region
+            vehicleSteps += IntStream.range(0, regionCount).parallel().map(this::stepRegion).sum();
+            // 3. Boundary exchange: hand vehicles over to the region owning their new road
+            for (int r = 0; r < regionCount; r++) {
+                IntList outbox = regionOutbox[r];
+                for (int i = 0; i < outbox.size; i++) {
+                    int v = outbox.data[i];
+                    regionVehicles[regionOfNode[compact.arcSource(vehArc[v])]].add(v);
+                }
+                outbox.clear();
+            }
+            // 4. Recount occupancy for the next step
+            IntStream.range(0, regionCount).parallel().forEach(this::countOccupancy);
+            currentStep++;
+        }
+
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        Stats stats = collectStats();
+        stats.steps = currentStep;
+        stats.vehicleStepsPerSecond = seconds > 0 ? (vehicleSteps - startVehicleSteps) / seconds : 0;
+        return stats;
+    }
+
+    private void updateSpeeds(int region) {
+        for (int a : regionArcs[region]) {
+            double length = Math.max(compact.arcDistance[a], 0.01);
+            double jamDensity = 4.0 * Math.max(compact.arcCapacity[a], 1) / freeFlowSpeedKmh; // Vehicles per km
+            double density = occupancy[a] / length;
+            speedKmh[a] = Math.max(minSpeedKmh, freeFlowSpeedKmh * (1 - density / jamDensity));
+        }
+    }
+
+    // Moves the vehicles owned by a region; returns the number of vehicles advanced (waiting ones do not count)
+    private int stepRegion(int region) {
+        IntList vehicles = regionVehicles[region];
+        IntList outbox = regionOutbox[region];
+        int size = vehicles.size;
+        int kept = 0, advanced = 0;
+
+        for (int i = 0; i < size; i++) {
+            int v = vehicles.data[i];
+
+            if (vehStatus[v] == WAITING) {
+                if (vehDepart[v] > currentStep) {
+                    vehicles.data[kept++] = v;
+                    continue;
+                }
+                if (!depart(v)) continue; // No route or already at the destination
+            }
+            advanced++;
+
+            // Drive along the route, possibly over several short roads in one step
+            double distance = speedKmh[vehArc[v]] * stepSeconds / 3600.0;
+            double offset = vehOffset[v] + distance;
+            boolean done = false, leftRegion = false;
+            while (offset >= compact.arcDistance[vehArc[v]]) {
+                offset -= compact.arcDistance[vehArc[v]];
+                int next = nextArc(v);
+                if (next < 0) {
+                    done = true;
+                    break;
+                }
+                vehArc[v] = next;
+                if (regionOfNode[compact.arcSource(next)] != region) {
+                    leftRegion = true;
+                    break;
+                }
+            }
+
+            if (done) {
+                vehStatus[v] = ARRIVED;
+                vehArrive[v] = currentStep + 1;
+            } else {
+                vehOffset[v] = Math.min(offset, compact.arcDistance[vehArc[v]]);
+                if (leftRegion) outbox.add(v);
+                else vehicles.data[kept++] = v;
+            }
+        }
+        vehicles.size = kept;
+        return advanced;
+    }
+
+    // Puts a waiting vehicle on its first road; returns false if it cannot drive
+    private boolean depart(int v) {
+        int o = vehOrigin[v];
+        int d = vehDest[v];
+        if (o == d) {
+            vehStatus[v] = ARRIVED;
+            vehArrive[v] = currentStep;
+            return false;
+        }
+        int[] route = initialRoute(o, d);
+        if (route.length == 0) {
+            vehStatus[v] = NO_ROUTE;
+            return false;
+        }
+        vehRoute[v] = route;
+        vehArc[v] = route[0];
+        vehNext[v] = 1;
+        vehOffset[v] = 0;
+        vehStatus[v] = DRIVING;
+        return true;
+    }
+
+    // Next arc of a vehicle, or -1 when the current arc ends at the destination
+    private int nextArc(int v) {
+        int node = compact.arcTarget[vehArc[v]];
+        if (node == vehDest[v]) return -1;
+        int[] route = vehRoute[v];
+        if (route != null) {
+            return vehNext[v] < route.length ? route[vehNext[v]++] : -1;
+        }
+        return destinationTrees[vehDest[v]][node];
+    }
+
+    // Route of a trip, computed by computeInitialRoutes before the run
+    private int[] initialRoute(int o, int d) {
+        return initialRoutes.get(((long) o << 32) | d);
+    }
+
+    // Routes of the waiting vehicles' trips that are not cached yet, one TrafficDijkstra per distinct
+    // origin-destination pair, in parallel
+    private void computeInitialRoutes() {
+        Set<Long> missing = new HashSet<>();
+        for (int v = 0; v < vehicleCount; v++) {
+            long key = ((long) vehOrigin[v] << 32) | vehDest[v];
+            if (vehStatus[v] == WAITING && vehOrigin[v] != vehDest[v] && !initialRoutes.containsKey(key)) missing.add(key);
+        }
+        missing.parallelStream().forEach(key -> {
+            int o = (int) (key >>> 32), d = (int) (long) key;
+            List<Integer> path = TrafficDijkstra.findPathWithTraffic(graph, trafficData, compact.nodeIds[o], compact.nodeIds[d], time);
+            int[] arcs = new int[Math.max(path.size() - 1, 0)];
+            for (int i = 0; i + 1 < path.size(); i++) {
+                arcs[i] = shortestArc(compact.indexOf(path.get(i)), compact.indexOf(path.get(i + 1)));
+            }
+            initialRoutes.put(key, arcs);
+        });
+    }
+
+    // Shortest of the (possibly parallel) arcs between two adjacent nodes
+    private int shortestArc(int u, int v) {
+        int best = -1;
+        for (int a = compact.firstArc[u]; a < compact.firstArc[u + 1]; a++) {
+            if (compact.arcTarget[a] == v && (best < 0 || compact.arcDistance[a] < compact.arcDistance[best])) best = a;
+        }
+        return best;
+    }
+
+    // Next arc towards the destination from every node, under the given arc travel times
+    private int[] destinationTree(int dest, double[] minutes) {
+        SearchWorkspace ws = workspaces.get();
+        CompactDijkstra.shortestPathTree(compact, minutes, dest, true, ws);
+        int[] next = new int[compact.nodeCount];
+        for (int u = 0; u < compact.nodeCount; u++) {
+            int a = ws.parentArc[u];
+            next[u] = (ws.distance(u) == Double.POSITIVE_INFINITY || a < 0) ? -1 : compact.arcTwin[a];
+        }
+        return next;
+    }
+
+    // Rerouting round: every driving vehicle drops its route and follows the tree of its destination.
+    // The trees of all those destinations are rebuilt in parallel from the current speeds.
+    private void reroute() {
+        double[] minutes = new double[compact.arcCount];
+        for (int a = 0; a < compact.arcCount; a++) {
+            minutes[a] = compact.arcDistance[a] / speedKmh[a] * 60.0;
+        }
+        boolean[] needed = new boolean[compact.nodeCount];
+        for (int v = 0; v < vehicleCount; v++) {
+            if (vehStatus[v] == DRIVING) {
+                vehRoute[v] = null;
+                needed[vehDest[v]] = true;
+            }
+        }
+        IntStream.range(0, compact.nodeCount).parallel()
+                .forEach(d -> destinationTrees[d] = needed[d] ? destinationTree(d, minutes) : null);
+    }
+
+    private void countOccupancy(int region) {
+        for (int a : regionArcs[region]) occupancy[a] = 0;
+        IntList vehicles = regionVehicles[region];
+        for (int i = 0; i < vehicles.size; i++) {
+            int v = vehicles.data[i];
+            if (vehStatus[v] == DRIVING) occupancy[vehArc[v]]++;
+        }
+    }
+
+    private Stats collectStats() {
+        Stats stats = new Stats();
+        stats.vehicles = vehicleCount;
+        double totalMinutes = 0;
+        for (int v = 0; v < vehicleCount; v++) {
+            switch (vehStatus[v]) {
+                case ARRIVED -> {
+                    stats.arrived++;
+                    totalMinutes += (vehArrive[v] - vehDepart[v]) * stepSeconds / 60.0;
+                }
+                case DRIVING -> stats.stillDriving++;
+                case NO_ROUTE -> stats.unroutable++;
+                default -> { }
+            }
+        }
+        stats.averageTripMinutes = stats.arrived > 0 ? totalMinutes / stats.arrived : 0;
+        stats.vehicleSteps = vehicleSteps;
+        return stats;
+    }
+
+    private void ensureVehicleCapacity(int capacity) {
+        if (capacity <= vehOrigin.length) return;
+        int size = Math.max(capacity, vehOrigin.length * 2);
+        vehOrigin = Arrays.copyOf(vehOrigin, size);
+        vehDest = Arrays.copyOf(vehDest, size);
+        vehDepart = Arrays.copyOf(vehDepart, size);
+        vehArrive = Arrays.copyOf(vehArrive, size);
+        vehArc = Arrays.copyOf(vehArc, size);
+        vehOffset = Arrays.copyOf(vehOffset, size);
+        vehRoute = Arrays.copyOf(vehRoute, size);
+        vehNext = Arrays.copyOf(vehNext, size);
+        vehStatus = Arrays.copyOf(vehStatus, size);
+    }
+
+    // Growable list of ints (vehicle numbers, arc numbers)
+    private static class IntList {
+        int[] data = new int[16];
+        int size;
+
+        void add(int value) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = value;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+// TransitJourney.java
+// A public-transit journey found by TransitRouter: walking and bus legs with their times
+import java.util.ArrayList;
+import java.util.List;
+
+public class TransitJourney {
+    public int departure; // Leaving the origin (seconds after midnight)
+    public int arrival; // Reaching the destination (seconds after midnight)
+    public int transfers; // Bus changes (number of bus legs - 1)
+    public List<Leg> legs = new ArrayList<>();
+
+    // One part of the journey: walking between two nodes or riding one bus route
+    public static class Leg {
+        public String mode; // "WALK" or "BUS"
+        public String route; // Route name for bus legs, null for walking
+        public int fromNodeId, toNodeId;
+        public int departure, arrival;
+
+        public Leg(String mode, String route, int fromNodeId, int toNodeId, int departure, int arrival) {
+            this.mode = mode;
+            this.route = route;
+            this.fromNodeId = fromNodeId;
+            this.toNodeId = toNodeId;
+            this.departure = departure;
+            this.arrival = arrival;
+        }
+
+        @Override
+        public String toString() {
+            return mode + (route != null ? " " + route : "") + " " + fromNodeId + " → " + toNodeId
+                    + " [" + clock(departure) + "-" + clock(arrival) + "]";
+        }
+    }
+
+    // Formats seconds after midnight as HH:MM
+    public static String clock(int seconds) {
+        return String.format("%02d:%02d", seconds / 3600, seconds / 60 % 60);
+    }
+
+    @Override
+    public String toString() {
+        return clock(departure) + " → " + clock(arrival) + " (" + transfers + " transfers) " + legs;
+    }
+}
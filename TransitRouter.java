@@ -0,0 +1,315 @@
+// TransitRouter.java
+// Public-transit journey planner using RAPTOR (Round-bAsed Public Transit Optimized Router)
+// Round k finds the earliest arrival at every stop using exactly k buses: it scans each route served by a stop
+// improved in the previous round once, from the first such stop to the end, hopping on the earliest trip
+// that can be caught. After each round, walking transfers are relaxed once.
+// The result is the set of journeys that are best for their number of transfers (fewer transfers vs arrival).
+// Range queries (rRAPTOR) answer "all good journeys departing in a window": departures are processed from
+// latest to earliest while keeping the labels, and the window is split into chunks processed in parallel.
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class TransitRouter {
+    private static final int INF = Integer.MAX_VALUE;
+    // Label parent types
+    private static final byte NONE = 0, ACCESS = 1, BUS = 2, WALK = 3;
+
+    public int maxRounds = 5; // Maximum number of buses in a journey
+
+    private final TransitTimetable timetable;
+    private final ThreadLocal<Labels> workspaces;
+
+    public TransitRouter(TransitTimetable timetable) {
+        this.timetable = timetable;
+        this.workspaces = ThreadLocal.withInitial(Labels::new);
+    }
+
+    // Journeys from one node to another leaving at or after departure; the first one arrives earliest
+    public List<TransitJourney> query(int fromNodeId, int toNodeId, int departure) {
+        List<int[]> access = timetable.walkToStops(fromNodeId, false);
+        int[] egress = egressTimes(toNodeId);
+        Labels labels = workspaces.get();
+        labels.reset();
+        run(departure, access, egress, labels);
+        List<TransitJourney> journeys = collect(fromNodeId, toNodeId, departure, egress, labels);
+        journeys.sort(Comparator.comparingInt((TransitJourney j) -> j.arrival).thenComparingInt(j -> j.transfers));
+        return journeys;
+    }
+
+    // All Pareto-optimal journeys (later departure, earlier arrival, fewer transfers) departing in [windowStart, windowEnd]
+    public List<TransitJourney> rangeQuery(int fromNodeId, int toNodeId, int windowStart, int windowEnd) {
+        List<int[]> access = timetable.walkToStops(fromNodeId, false);
+        int[] egress = egressTimes(toNodeId);
+
+        // Candidate departures: every moment one could leave the origin and just catch a bus at an access stop
+        TreeSet<Integer> departureSet = new TreeSet<>(Comparator.reverseOrder());
+        for (int[] a : access) {
+            int stop = a[0];
+            for (int k = timetable.stopRouteStart[stop]; k < timetable.stopRouteStart[stop + 1]; k++) {
+                int r = timetable.stopRoutes[k];
+                int i = timetable.stopRoutePosition[k];
+                for (int t = 0; t < timetable.routeTripCount[r]; t++) {
+                    int leave = timetable.time(r, t, i) - a[1];
+                    if (leave >= windowStart && leave <= windowEnd) departureSet.add(leave);
+                }
+            }
+        }
+        int[] departures = departureSet.stream().mapToInt(Integer::intValue).toArray(); // Latest first
+
+        // Split into contiguous chunks; each chunk runs rRAPTOR with its own labels
+        int chunks = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), departures.length / 4));
+        List<TransitJourney> all = IntStream.range(0, chunks).parallel()
+                .mapToObj(c -> {
+                    Labels labels = workspaces.get();
+                    labels.reset();
+                    List<TransitJourney> found = new ArrayList<>();
+                    int from = (int) ((long) departures.length * c / chunks);
+                    int to = (int) ((long) departures.length * (c + 1) / chunks);
+                    for (int d = from; d < to; d++) {
+                        run(departures[d], access, egress, labels);
+                        found.addAll(collect(fromNodeId, toNodeId, departures[d], egress, labels));
+                    }
+                    return found;
+                })
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+
+        // Keep only journeys no other journey beats on all three criteria
+        List<TransitJourney> pareto = new ArrayList<>();
+        for (TransitJourney j : all) {
+            boolean dominated = false;
+            for (TransitJourney o : all) {
+                if (o != j && o.departure >= j.departure && o.arrival <= j.arrival && o.transfers <= j.transfers
+                        && (o.departure > j.departure || o.arrival < j.arrival || o.transfers < j.transfers)) {
+                    dominated = true;
+                    break;
+                }
+            }
+            if (!dominated && pareto.stream().noneMatch(p -> p.departure == j.departure && p.arrival == j.arrival && p.transfers == j.transfers)) {
+                pareto.add(j);
+            }
+        }
+        pareto.sort(Comparator.comparingInt((TransitJourney j) -> j.departure).thenComparingInt(j -> j.transfers));
+        return pareto;
+    }
+
+    // Walking seconds from every stop to the destination (INF if too far)
+    private int[] egressTimes(int toNodeId) {
+        int[] egress = new int[timetable.stopCount];
+        Arrays.fill(egress, INF);
+        for (int[] e : timetable.walkToStops(toNodeId, true)) egress[e[0]] = Math.min(egress[e[0]], e[1]);
+        return egress;
+    }
+
+    // One RAPTOR run; labels from an earlier run with a later departure may be kept (rRAPTOR)
+    private void run(int departure, List<int[]> access, int[] egress, Labels L) {
+        int stops = timetable.stopCount;
+        L.clearMarks();
+
+        // Round 0: walk from the origin to the nearby stops
+        for (int[] a : access) {
+            int s = a[0];
+            int time = departure + a[1];
+            if (time < L.arrival[s]) {
+                L.arrival[s] = time;
+                L.best[s] = Math.min(L.best[s], time);
+                L.parentType[s] = ACCESS;
+                L.mark(s);
+            }
+        }
+
+        int targetBound = L.targetBound(egress, 0);
+        for (int k = 1; k <= maxRounds && L.markedCount > 0; k++) {
+            int base = k * stops, prevBase = (k - 1) * stops;
+
+            // Routes to scan, each from the earliest marked stop on it
+            L.routeCount = 0;
+            for (int m = 0; m < L.markedCount; m++) {
+                int s = L.markedStops[m];
+                for (int x = timetable.stopRouteStart[s]; x < timetable.stopRouteStart[s + 1]; x++) {
+                    int r = timetable.stopRoutes[x];
+                    int pos = timetable.stopRoutePosition[x];
+                    if (L.routeFrom[r] < 0) {
+                        L.routeQueue[L.routeCount++] = r;
+                        L.routeFrom[r] = pos;
+                    } else if (pos < L.routeFrom[r]) {
+                        L.routeFrom[r] = pos;
+                    }
+                }
+            }
+            L.clearMarks();
+
+            // Scan every queued route once
+            for (int q = 0; q < L.routeCount; q++) {
+                int r = L.routeQueue[q];
+                int trip = -1, boardPos = -1;
+                for (int i = L.routeFrom[r]; i < timetable.routeStopCount[r]; i++) {
+                    int s = timetable.stopAt(r, i);
+                    if (trip >= 0) {
+                        int time = timetable.time(r, trip, i);
+                        if (time < Math.min(L.best[s], targetBound)) {
+                            L.arrival[base + s] = time;
+                            L.best[s] = time;
+                            L.parentType[base + s] = BUS;
+                            L.parentRoute[base + s] = r;
+                            L.parentTrip[base + s] = trip;
+                            L.parentFrom[base + s] = boardPos;
+                            L.mark(s);
+                        }
+                    }
+                    // Can an earlier trip be caught here with the previous round's arrival?
+                    int previous = L.arrival[prevBase + s];
+                    if (previous != INF && (trip < 0 || previous <= timetable.time(r, trip, i))) {
+                        int earlier = timetable.earliestTrip(r, i, previous);
+                        if (earlier >= 0 && (trip < 0 || earlier < trip)) {
+                            trip = earlier;
+                            boardPos = i;
+                        }
+                    }
+                }
+                L.routeFrom[r] = -1;
+            }
+
+            // Walking transfers from the stops reached by bus in this round
+            int busMarked = L.markedCount;
+            for (int m = 0; m < busMarked; m++) {
+                int s = L.markedStops[m];
+                if (L.parentType[base + s] != BUS) continue;
+                int reached = L.arrival[base + s];
+                for (int x = timetable.transferStart[s]; x < timetable.transferStart[s + 1]; x++) {
+                    int target = timetable.transferTarget[x];
+                    int time = reached + timetable.transferSeconds[x];
+                    if (time < Math.min(L.best[target], targetBound)) {
+                        L.arrival[base + target] = time;
+                        L.best[target] = time;
+                        L.parentType[base + target] = WALK;
+                        L.parentFrom[base + target] = s;
+                        L.mark(target);
+                    }
+                }
+            }
+            targetBound = Math.min(targetBound, L.targetBound(egress, k));
+        }
+    }
+
+    // Best journey per number of buses (only those arriving earlier than with fewer buses)
+    private List<TransitJourney> collect(int fromNodeId, int toNodeId, int departure, int[] egress, Labels L) {
+        List<TransitJourney> journeys = new ArrayList<>();
+        int bestSoFar = INF;
+        for (int k = 1; k <= maxRounds; k++) {
+            int base = k * timetable.stopCount;
+            int bestStop = -1, bestArrival = INF;
+            for (int s = 0; s < timetable.stopCount; s++) {
+                if (egress[s] == INF || L.arrival[base + s] == INF) continue;
+                int time = L.arrival[base + s] + egress[s];
+                if (time < bestArrival) {
+                    bestArrival = time;
+                    bestStop = s;
+                }
+            }
+            if (bestStop < 0 || bestArrival >= bestSoFar) continue;
+            bestSoFar = bestArrival;
+            journeys.add(reconstruct(fromNodeId, toNodeId, departure, k, bestStop, bestArrival, egress, L));
+        }
+        return journeys;
+    }
+
+    // Follows the parent labels back from the last stop to the origin
+    private TransitJourney reconstruct(int fromNodeId, int toNodeId, int departure, int round, int lastStop, int arrival, int[] egress, Labels L) {
+        TransitJourney journey = new TransitJourney();
+        journey.departure = departure;
+        journey.arrival = arrival;
+        LinkedList<TransitJourney.Leg> legs = new LinkedList<>();
+        int stops = timetable.stopCount;
+        int[] nodeOf = timetable.stopNodeIds;
+
+        int reached = L.arrival[round * stops + lastStop];
+        if (nodeOf[lastStop] != toNodeId) {
+            legs.addFirst(new TransitJourney.Leg("WALK", null, nodeOf[lastStop], toNodeId, reached, reached + egress[lastStop]));
+        }
+
+        int s = lastStop, k = round, buses = 0;
+        while (k > 0) {
+            int label = k * stops + s;
+            if (L.parentType[label] == WALK) {
+                int from = L.parentFrom[label];
+                legs.addFirst(new TransitJourney.Leg("WALK", null, nodeOf[from], nodeOf[s], L.arrival[k * stops + from], L.arrival[label]));
+                s = from;
+                continue;
+            }
+            int r = L.parentRoute[label];
+            int trip = L.parentTrip[label];
+            int boardPos = L.parentFrom[label];
+            int boardStop = timetable.stopAt(r, boardPos);
+            legs.addFirst(new TransitJourney.Leg("BUS", timetable.routeNames[r], nodeOf[boardStop], nodeOf[s],
+                    timetable.time(r, trip, boardPos), L.arrival[label]));
+            buses++;
+            s = boardStop;
+            k--;
+        }
+        if (nodeOf[s] != fromNodeId) {
+            legs.addFirst(new TransitJourney.Leg("WALK", null, fromNodeId, nodeOf[s], departure, L.arrival[s]));
+        }
+        journey.legs.addAll(legs);
+        journey.transfers = Math.max(buses - 1, 0);
+        return journey;
+    }
+
+    // Per-thread labels: (maxRounds + 1) x stops flat arrays, plus the marked stops and the route queue
+    private class Labels {
+        int[] arrival, parentRoute, parentTrip, parentFrom;
+        byte[] parentType;
+        int[] best; // Best arrival at each stop over all rounds
+        int[] markedStops; // Stops improved in the current round
+        boolean[] isMarked;
+        int markedCount;
+        int[] routeQueue, routeFrom; // Routes to scan and the position to start from (-1 = not queued)
+        int routeCount;
+
+        void reset() {
+            int stops = timetable.stopCount;
+            int size = (maxRounds + 1) * stops;
+            if (arrival == null || arrival.length != size || best.length != stops || routeFrom.length != timetable.routeCount) {
+                arrival = new int[size];
+                parentRoute = new int[size];
+                parentTrip = new int[size];
+                parentFrom = new int[size];
+                parentType = new byte[size];
+                best = new int[stops];
+                markedStops = new int[stops];
+                isMarked = new boolean[stops];
+                routeQueue = new int[timetable.routeCount];
+                routeFrom = new int[timetable.routeCount];
+            }
+            Arrays.fill(arrival, INF);
+            Arrays.fill(parentType, NONE);
+            Arrays.fill(best, INF);
+            Arrays.fill(routeFrom, -1);
+            clearMarks();
+        }
+
+        void mark(int s) {
+            if (!isMarked[s]) {
+                isMarked[s] = true;
+                markedStops[markedCount++] = s;
+            }
+        }
+
+        void clearMarks() {
+            for (int m = 0; m < markedCount; m++) isMarked[markedStops[m]] = false;
+            markedCount = 0;
+        }
+
+        // Earliest arrival at the destination using round k labels
+        int targetBound(int[] egress, int k) {
+            int bound = INF;
+            int base = k * timetable.stopCount;
+            for (int s = 0; s < timetable.stopCount; s++) {
+                if (egress[s] != INF && arrival[base + s] != INF) bound = Math.min(bound, arrival[base + s] + egress[s]);
+            }
+            return bound;
+        }
+    }
+}
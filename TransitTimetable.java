@@ -0,0 +1,221 @@
+// TransitTimetable.java
+// Timetable of the bus network in flat int arrays, as used by the RAPTOR journey planner (TransitRouter)
+// BusRoute only lists stops and buses, so the trips are generated:
+// - every BusRoute runs in both directions, each direction being one RAPTOR route;
+// - travel time between consecutive stops = shortest road distance / bus speed, plus a dwell time per stop;
+// - buses leave the first stop every headway seconds, headway = round trip time / busesAssigned.
+// Walking transfers connect stops within maxWalkKm of each other (road distance at walking speed).
+// All times are seconds after midnight.
+
+import java.util.*;
+
+public class TransitTimetable {
+    public double busSpeedKmh = 25.0;
+    public double walkSpeedKmh = 4.5;
+    public double maxWalkKm = 1.5; // Longest walk for transfers, access and egress
+    public int dwellSeconds = 30; // Time a bus waits at each stop
+    public int serviceStart = 6 * 3600; // First departure of every route
+    public int serviceEnd = 22 * 3600; // No departure from the first stop after this time
+
+    public final CompactGraph graph;
+
+    // ----------- Stops -----------
+    public int stopCount;
+    public int[] stopNodeIds; // Node ID of each stop
+    private final Map<Integer, Integer> stopByNodeId = new HashMap<>();
+
+    // ----------- Routes (one per BusRoute direction) -----------
+    public int routeCount;
+    public String[] routeNames; // BusRoute id plus direction, e.g. "B1>" and "B1<"
+    public int[] routeStopStart; // Stops of route r are routeStops[routeStopStart[r] .. + routeStopCount[r]]
+    public int[] routeStopCount;
+    public int[] routeStops; // Stop indices, flat
+    public int[] routeTripStart; // Times of trip t, stop i: stopTimes[routeTripStart[r] + t * routeStopCount[r] + i]
+    public int[] routeTripCount;
+    public int[] stopTimes; // Departure time of every trip at every stop, flat
+
+    // ----------- Stop → routes serving it -----------
+    public int[] stopRouteStart; // Routes of stop s are stopRoutes[stopRouteStart[s] .. stopRouteStart[s + 1] - 1]
+    public int[] stopRoutes; // Route index
+    public int[] stopRoutePosition; // Position of the stop within that route
+
+    // ----------- Walking transfers -----------
+    public int[] transferStart; // Transfers of stop s are transferTarget[transferStart[s] .. transferStart[s + 1] - 1]
+    public int[] transferTarget; // Stop index reached by walking
+    public int[] transferSeconds; // Walking time
+
+    private final IsochroneEngine walkingDistances; // Bounded searches on plain road lengths
+
+    public TransitTimetable(CompactGraph graph) {
+        this.graph = graph;
+        this.walkingDistances = IsochroneEngine.forDistance(graph);
+    }
+
+    // Builds the timetable of the given routes (the same list TransitOptimizer works on)
+    public static TransitTimetable build(CompactGraph graph, List<BusRoute> busRoutes) {
+        TransitTimetable timetable = new TransitTimetable(graph);
+        timetable.load(busRoutes);
+        return timetable;
+    }
+
+    // Fills all arrays; settings changed after this call have no effect until load is called again.
+    // Throws IllegalArgumentException if a route has a stop that is not in the graph, or two consecutive
+    // stops that are not connected by road.
+    public void load(List<BusRoute> busRoutes) {
+        // Stops: every node that appears on some route
+        List<Integer> stopIds = new ArrayList<>();
+        stopByNodeId.clear();
+        for (BusRoute route : busRoutes) {
+            for (int id : route.stops) {
+                if (graph.indexOf(id) < 0) throw new IllegalArgumentException("Bus route " + route.id + ": unknown stop " + id);
+                if (!stopByNodeId.containsKey(id)) {
+                    stopByNodeId.put(id, stopIds.size());
+                    stopIds.add(id);
+                }
+            }
+        }
+        stopCount = stopIds.size();
+        stopNodeIds = stopIds.stream().mapToInt(Integer::intValue).toArray();
+
+        // Routes and trips
+        routeCount = busRoutes.size() * 2;
+        routeNames = new String[routeCount];
+        routeStopStart = new int[routeCount];
+        routeStopCount = new int[routeCount];
+        routeTripStart = new int[routeCount];
+        routeTripCount = new int[routeCount];
+        List<Integer> flatStops = new ArrayList<>();
+        List<int[]> tripTables = new ArrayList<>();
+        int timeOffset = 0;
+        SearchWorkspace ws = new SearchWorkspace(graph.nodeCount);
+        double[] weights = graph.distanceWeights();
+
+        for (int b = 0; b < busRoutes.size(); b++) {
+            BusRoute busRoute = busRoutes.get(b);
+            List<Integer> stops = new ArrayList<>();
+            for (int id : busRoute.stops) stops.add(stopByNodeId.get(id));
+
+            // Running time between consecutive stops (the same in both directions)
+            int[] hop = new int[Math.max(stops.size() - 1, 0)];
+            int oneWay = 0;
+            for (int i = 0; i + 1 < stops.size(); i++) {
+                int from = graph.indexOf(stopNodeIds[stops.get(i)]);
+                int to = graph.indexOf(stopNodeIds[stops.get(i + 1)]);
+                int[] path = CompactDijkstra.findPath(graph, weights, from, to, ws);
+                if (path.length == 0) { // A bus cannot run this route; charging the hop as 0 km would let it teleport
+                    throw new IllegalArgumentException("Bus route " + busRoute.id + ": no road from stop "
+                            + stopNodeIds[stops.get(i)] + " to stop " + stopNodeIds[stops.get(i + 1)]);
+                }
+                hop[i] = (int) Math.round(ws.distance(to) / busSpeedKmh * 3600) + dwellSeconds;
+                oneWay += hop[i];
+            }
+            int headway = Math.max(120, 2 * oneWay / Math.max(busRoute.busesAssigned, 1));
+
+            for (int direction = 0; direction < 2; direction++) {
+                int r = 2 * b + direction;
+                routeNames[r] = busRoute.id + (direction == 0 ? ">" : "<");
+                routeStopStart[r] = flatStops.size();
+                routeStopCount[r] = stops.size();
+                for (int i = 0; i < stops.size(); i++) {
+                    flatStops.add(stops.get(direction == 0 ? i : stops.size() - 1 - i));
+                }
+
+                // Trips leave the first stop every headway seconds during service hours
+                int trips = stops.size() < 2 ? 0 : (serviceEnd - serviceStart) / headway + 1;
+                int[] times = new int[trips * stops.size()];
+                for (int t = 0; t < trips; t++) {
+                    int time = serviceStart + t * headway;
+                    for (int i = 0; i < stops.size(); i++) {
+                        times[t * stops.size() + i] = time;
+                        if (i + 1 < stops.size()) time += hop[direction == 0 ? i : stops.size() - 2 - i];
+                    }
+                }
+                routeTripStart[r] = timeOffset;
+                routeTripCount[r] = trips;
+                timeOffset += times.length;
+                tripTables.add(times);
+            }
+        }
+        routeStops = flatStops.stream().mapToInt(Integer::intValue).toArray();
+        stopTimes = new int[timeOffset];
+        int position = 0;
+        for (int[] times : tripTables) {
+            System.arraycopy(times, 0, stopTimes, position, times.length);
+            position += times.length;
+        }
+
+        buildStopRoutes();
+        buildTransfers();
+    }
+
+    // Inverts routeStops into the list of (route, position) pairs serving each stop
+    private void buildStopRoutes() {
+        stopRouteStart = new int[stopCount + 1];
+        for (int r = 0; r < routeCount; r++) {
+            for (int i = 0; i < routeStopCount[r]; i++) stopRouteStart[routeStops[routeStopStart[r] + i] + 1]++;
+        }
+        for (int s = 0; s < stopCount; s++) stopRouteStart[s + 1] += stopRouteStart[s];
+        stopRoutes = new int[stopRouteStart[stopCount]];
+        stopRoutePosition = new int[stopRoutes.length];
+        int[] next = Arrays.copyOf(stopRouteStart, stopCount);
+        for (int r = 0; r < routeCount; r++) {
+            for (int i = 0; i < routeStopCount[r]; i++) {
+                int s = routeStops[routeStopStart[r] + i];
+                stopRoutes[next[s]] = r;
+                stopRoutePosition[next[s]++] = i;
+            }
+        }
+    }
+
+    // Walking transfers between stops within maxWalkKm of road distance
+    private void buildTransfers() {
+        List<int[]> transfers = new ArrayList<>(); // {from stop, to stop, seconds}
+        for (int s = 0; s < stopCount; s++) {
+            for (int[] walk : walkToStops(stopNodeIds[s], false)) {
+                if (walk[0] != s) transfers.add(new int[]{s, walk[0], walk[1]});
+            }
+        }
+        transferStart = new int[stopCount + 1];
+        for (int[] t : transfers) transferStart[t[0] + 1]++;
+        for (int s = 0; s < stopCount; s++) transferStart[s + 1] += transferStart[s];
+        transferTarget = new int[transfers.size()];
+        transferSeconds = new int[transfers.size()];
+        int[] next = Arrays.copyOf(transferStart, stopCount);
+        for (int[] t : transfers) {
+            transferTarget[next[t[0]]] = t[1];
+            transferSeconds[next[t[0]]++] = t[2];
+        }
+    }
+
+    // Stops within walking distance of a node: {stop index, walking seconds}; inbound = walking TO the node
+    public List<int[]> walkToStops(int nodeId, boolean inbound) {
+        List<int[]> result = new ArrayList<>();
+        Isochrone area = inbound ? walkingDistances.computeInbound(nodeId, maxWalkKm) : walkingDistances.compute(nodeId, maxWalkKm);
+        for (int i = 0; i < area.reachedNodes.length; i++) {
+            Integer stop = stopByNodeId.get(graph.nodeIds[area.reachedNodes[i]]);
+            if (stop != null) result.add(new int[]{stop, (int) Math.round(area.reachTimes[i] / walkSpeedKmh * 3600)});
+        }
+        return result;
+    }
+
+    // Departure time of trip t of route r at stop position i
+    public int time(int r, int t, int i) {
+        return stopTimes[routeTripStart[r] + t * routeStopCount[r] + i];
+    }
+
+    // Stop index at position i of route r
+    public int stopAt(int r, int i) {
+        return routeStops[routeStopStart[r] + i];
+    }
+
+    // First trip of route r leaving position i at or after the given time, or -1 (trips never overtake each other)
+    public int earliestTrip(int r, int i, int time) {
+        int lo = 0, hi = routeTripCount[r];
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (time(r, mid, i) >= time) hi = mid;
+            else lo = mid + 1;
+        }
+        return lo < routeTripCount[r] ? lo : -1;
+    }
+}
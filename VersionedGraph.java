@@ -0,0 +1,501 @@
+// VersionedGraph.java
+// A road network that can be edited while routing threads keep reading it
+// Every commit publishes a new immutable version; readers pin the current version and see exactly that
+// version until they close it, without taking any lock:
+// - pin() is one atomic increment of the version's pin count (retried if the version was reclaimed meanwhile);
+// - snapshot.graph() is an ordinary Graph whose nodes, edges and adjacencyList are read-only views of the
+//   version, so Dijkstra, TrafficDijkstra, AStarSearch and MSTBuilder run on it unchanged.
+// Writers group edits (add or remove a road, change its capacity or condition) in a Batch. A commit copies
+// only what it touches: the adjacency of every node and the road list are split in chunks of 64 entries, and
+// a new version shares all untouched chunks with the previous one (structural sharing).
+// A version that is no longer current is reclaimed (its cached Graph and CompactGraph are dropped) as soon
+// as its last reader unpins it. Edge objects inside a version are owned by it and must not be modified.
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class VersionedGraph {
+    private static final int CHUNK_BITS = 6; // 64 entries per chunk
+    private static final int CHUNK = 1 << CHUNK_BITS;
+    private static final int RECLAIMED = Integer.MIN_VALUE; // Pin count of a reclaimed version
+
+    private final Map<Integer, Node> nodes; // Shared by every version (nodes are not edited)
+    private final Map<Integer, Integer> slotById; // Node ID → slot in the adjacency chunks
+    private final AtomicReference<Version> head; // Current version
+    private final Queue<Version> retired = new ConcurrentLinkedQueue<>(); // Old versions still pinned
+    private final AtomicInteger reclaimed = new AtomicInteger();
+
+    // Version 0 holds the nodes and roads of graph (copied, so later changes to graph are not seen)
+    public VersionedGraph(Graph graph) {
+        List<Integer> ids = new ArrayList<>(graph.nodes.keySet());
+        Collections.sort(ids);
+        Map<Integer, Node> nodeMap = new LinkedHashMap<>();
+        slotById = new HashMap<>(ids.size() * 2);
+        Editor adjacency = new Editor(new Chunks(new Object[0][], 0));
+        for (int id : ids) {
+            nodeMap.put(id, graph.nodes.get(id));
+            slotById.put(id, adjacency.size);
+            adjacency.add(Adjacency.EMPTY);
+        }
+        nodes = Collections.unmodifiableMap(nodeMap);
+
+        Batch batch = new Batch();
+        for (Edge edge : graph.edges) batch.addEdge(edge);
+        Version first = apply(new Version(-1, adjacency.freeze(), new Chunks(new Object[0][], 0)), batch.ops);
+        head = new AtomicReference<>(first);
+    }
+
+    // Pins the current version; the caller must close the snapshot (try-with-resources)
+    public Snapshot pin() {
+        while (true) {
+            Version version = head.get();
+            if (version.tryPin()) return new Snapshot(version);
+            // Reclaimed between reading head and pinning: head has moved on, read it again
+        }
+    }
+
+    // Starts a batch of edits; nothing is visible to readers until commit()
+    public Batch edit() {
+        return new Batch();
+    }
+
+    // Number of the current version (0 for the graph given to the constructor)
+    public long version() {
+        return head.get().number;
+    }
+
+    // Old versions still held by readers
+    public int retainedVersions() {
+        return retired.size();
+    }
+
+    // Old versions reclaimed so far
+    public int reclaimedVersions() {
+        return reclaimed.get();
+    }
+
+    // A pinned version; reading it never blocks and never sees later commits
+    public class Snapshot implements AutoCloseable {
+        private Version version; // null once closed
+
+        private Snapshot(Version version) {
+            this.version = version;
+        }
+
+        public long version() {
+            return pinned().number;
+        }
+
+        // The version as a read-only Graph (built once per version, then shared by all its readers)
+        public Graph graph() {
+            Version v = pinned();
+            Graph graph = v.graph;
+            if (graph == null) { // Two readers may both build it; either copy is valid
+                graph = new Graph();
+                graph.nodes = nodes;
+                graph.edges = new RoadList(v.roads);
+                graph.adjacencyList = new AdjacencyMap(v.adjacency);
+                v.graph = graph;
+            }
+            return graph;
+        }
+
+        // The version in array form for the CompactGraph engines (built once per version)
+        public CompactGraph compact() {
+            Version v = pinned();
+            CompactGraph compact = v.compact;
+            if (compact == null) {
+                compact = CompactGraph.fromGraph(graph());
+                v.compact = compact;
+            }
+            return compact;
+        }
+
+        private Version pinned() {
+            if (version == null) throw new IllegalStateException("Snapshot already closed");
+            return version;
+        }
+
+        @Override
+        public void close() {
+            if (version == null) return;
+            Version v = version;
+            version = null;
+            if (v.pins.decrementAndGet() == 0 && v != head.get()) reclaim();
+        }
+    }
+
+    // Edits applied together by commit(); roads are named by their two end node IDs (in either direction),
+    // and an edit applies to every parallel road between the two nodes
+    public class Batch {
+        private final List<Op> ops = new ArrayList<>();
+
+        public Batch addEdge(Edge edge) {
+            ops.add(new Op(Op.ADD, edge, edge.from, edge.to, 0));
+            return this;
+        }
+
+        public Batch removeEdge(int from, int to) {
+            ops.add(new Op(Op.REMOVE, null, from, to, 0));
+            return this;
+        }
+
+        public Batch setCapacity(int from, int to, int capacity) {
+            ops.add(new Op(Op.CAPACITY, null, from, to, capacity));
+            return this;
+        }
+
+        public Batch setCondition(int from, int to, int condition) {
+            ops.add(new Op(Op.CONDITION, null, from, to, condition));
+            return this;
+        }
+
+        // Publishes the edits as a new version and returns its number; if an edit is invalid nothing is published
+        public long commit() {
+            synchronized (VersionedGraph.this) { // Writers only: readers never take this lock
+                Version old = head.get();
+                Version next = apply(old, ops);
+                head.set(next);
+                retired.add(old);
+                reclaim();
+                return next.number;
+            }
+        }
+    }
+
+    // Reclaims every retired version that nobody has pinned
+    private void reclaim() {
+        for (Iterator<Version> it = retired.iterator(); it.hasNext(); ) {
+            Version v = it.next();
+            if (v.pins.compareAndSet(0, RECLAIMED)) {
+                v.graph = null;
+                v.compact = null;
+                it.remove();
+                reclaimed.incrementAndGet();
+            }
+        }
+    }
+
+    // Builds the version after base with the edits applied; base itself is not changed
+    private Version apply(Version base, List<Op> ops) {
+        Editor adjacency = new Editor(base.adjacency);
+        Editor roads = new Editor(base.roads);
+        for (Op op : ops) {
+            switch (op.kind) {
+                case Op.ADD: {
+                    Edge road = copy(op.edge, op.edge.capacity, op.edge.condition);
+                    int index = roads.size;
+                    roads.add(road);
+                    int from = slot(road.from), to = slot(road.to);
+                    adjacency.set(from, adj(adjacency, from).with(road, index));
+                    adjacency.set(to, adj(adjacency, to).with(reverse(road), ~index));
+                    break;
+                }
+                case Op.REMOVE:
+                    for (int index : roadsBetween(adjacency, op.from, op.to)) {
+                        removeRoad(adjacency, roads, index);
+                    }
+                    break;
+                default: { // CAPACITY or CONDITION
+                    boolean capacity = op.kind == Op.CAPACITY;
+                    int value = op.value;
+                    for (int index : roadsBetween(adjacency, op.from, op.to)) {
+                        Edge old = (Edge) roads.get(index);
+                        Edge road = copy(old, capacity ? value : old.capacity, capacity ? old.condition : value);
+                        roads.set(index, road);
+                        int from = slot(road.from), to = slot(road.to);
+                        adjacency.set(from, adj(adjacency, from).replaced(index, road));
+                        adjacency.set(to, adj(adjacency, to).replaced(~index, reverse(road)));
+                    }
+                }
+            }
+        }
+        return new Version(base.number + 1, adjacency.freeze(), roads.freeze());
+    }
+
+    // Road indices between two node IDs, in either direction (indices sorted high to low for removal)
+    private Set<Integer> roadsBetween(Editor adjacency, int a, int b) {
+        Set<Integer> found = new TreeSet<>(Comparator.reverseOrder()); // A loop road is listed twice at its node
+        Adjacency adj = adj(adjacency, slot(a));
+        for (int i = 0; i < adj.edges.length; i++) {
+            if (adj.edges[i].to == b) found.add(adj.road[i] >= 0 ? adj.road[i] : ~adj.road[i]);
+        }
+        if (found.isEmpty()) throw new IllegalArgumentException("No road between " + a + " and " + b);
+        return found;
+    }
+
+    // Removes a road by moving the last road into its index (so the road list stays dense)
+    private void removeRoad(Editor adjacency, Editor roads, int index) {
+        Edge road = (Edge) roads.get(index);
+        int from = slot(road.from), to = slot(road.to);
+        adjacency.set(from, adj(adjacency, from).without(index));
+        adjacency.set(to, adj(adjacency, to).without(~index));
+
+        int last = roads.size - 1;
+        Edge moved = (Edge) roads.removeLast();
+        if (index == last) return;
+        roads.set(index, moved);
+        from = slot(moved.from);
+        to = slot(moved.to);
+        adjacency.set(from, adj(adjacency, from).renumbered(last, index));
+        adjacency.set(to, adj(adjacency, to).renumbered(~last, ~index));
+    }
+
+    private int slot(int nodeId) {
+        Integer slot = slotById.get(nodeId);
+        if (slot == null) throw new IllegalArgumentException("Unknown node " + nodeId);
+        return slot;
+    }
+
+    private static Adjacency adj(Editor adjacency, int slot) {
+        return (Adjacency) adjacency.get(slot);
+    }
+
+    private static Edge copy(Edge edge, int capacity, int condition) {
+        Edge road = new Edge(edge.from, edge.to, edge.distance, capacity, condition, edge.isExisting);
+        road.cost = edge.cost;
+        return road;
+    }
+
+    // The copy stored at the other end, built the same way as Graph.addEdge does
+    private static Edge reverse(Edge road) {
+        return new Edge(road.to, road.from, road.distance, road.capacity, road.condition, road.isExisting);
+    }
+
+    // One edit of a batch
+    private static class Op {
+        static final int ADD = 0, REMOVE = 1, CAPACITY = 2, CONDITION = 3;
+
+        final int kind;
+        final Edge edge; // Road to add (ADD only)
+        final int from, to; // End node IDs of the road
+        final int value; // New capacity or condition
+
+        Op(int kind, Edge edge, int from, int to, int value) {
+            this.kind = kind;
+            this.edge = edge;
+            this.from = from;
+            this.to = to;
+            this.value = value;
+        }
+    }
+
+    // One published version
+    private static class Version {
+        final long number;
+        final Chunks adjacency; // Adjacency of every node slot
+        final Chunks roads; // Every road once, in the direction it was added
+        final AtomicInteger pins = new AtomicInteger(); // Readers holding it (RECLAIMED once reclaimed)
+        volatile Graph graph; // Cached read-only Graph view
+        volatile CompactGraph compact; // Cached array form
+
+        Version(long number, Chunks adjacency, Chunks roads) {
+            this.number = number;
+            this.adjacency = adjacency;
+            this.roads = roads;
+        }
+
+        boolean tryPin() {
+            int p;
+            do {
+                p = pins.get();
+                if (p < 0) return false;
+            } while (!pins.compareAndSet(p, p + 1));
+            return true;
+        }
+    }
+
+    // The roads at one node: the road itself where it starts (road[i] = its index) and a reverse copy where
+    // it ends (road[i] = ~index); immutable, every edit returns a new one
+    private static class Adjacency {
+        static final Adjacency EMPTY = new Adjacency(new Edge[0], new int[0]);
+
+        final Edge[] edges;
+        final int[] road;
+        final List<Edge> list; // Read-only view handed to the algorithms
+
+        Adjacency(Edge[] edges, int[] road) {
+            this.edges = edges;
+            this.road = road;
+            this.list = Collections.unmodifiableList(Arrays.asList(edges));
+        }
+
+        Adjacency with(Edge edge, int code) {
+            Edge[] e = Arrays.copyOf(edges, edges.length + 1);
+            int[] r = Arrays.copyOf(road, road.length + 1);
+            e[edges.length] = edge;
+            r[road.length] = code;
+            return new Adjacency(e, r);
+        }
+
+        Adjacency without(int code) {
+            int i = indexOf(code);
+            Edge[] e = new Edge[edges.length - 1];
+            int[] r = new int[road.length - 1];
+            System.arraycopy(edges, 0, e, 0, i);
+            System.arraycopy(edges, i + 1, e, i, e.length - i);
+            System.arraycopy(road, 0, r, 0, i);
+            System.arraycopy(road, i + 1, r, i, r.length - i);
+            return new Adjacency(e, r);
+        }
+
+        Adjacency replaced(int code, Edge edge) {
+            Edge[] e = edges.clone();
+            e[indexOf(code)] = edge;
+            return new Adjacency(e, road);
+        }
+
+        Adjacency renumbered(int code, int newCode) {
+            int[] r = road.clone();
+            r[indexOf(code)] = newCode;
+            return new Adjacency(edges, r);
+        }
+
+        private int indexOf(int code) {
+            for (int i = 0; i < road.length; i++) {
+                if (road[i] == code) return i;
+            }
+            throw new IllegalStateException("Road " + code + " missing from adjacency");
+        }
+    }
+
+    // Immutable array split in chunks of CHUNK entries; versions share the chunks they did not change
+    private static class Chunks {
+        final Object[][] chunks;
+        final int size;
+
+        Chunks(Object[][] chunks, int size) {
+            this.chunks = chunks;
+            this.size = size;
+        }
+
+        Object get(int i) {
+            return chunks[i >>> CHUNK_BITS][i & (CHUNK - 1)];
+        }
+    }
+
+    // Builds the next Chunks from a base one: a chunk is copied the first time it is written, then reused
+    private static class Editor {
+        Object[][] chunks;
+        boolean[] owned; // Chunks already copied by this editor
+        int size;
+
+        Editor(Chunks base) {
+            chunks = base.chunks.clone();
+            owned = new boolean[chunks.length];
+            size = base.size;
+        }
+
+        Object get(int i) {
+            return chunks[i >>> CHUNK_BITS][i & (CHUNK - 1)];
+        }
+
+        void set(int i, Object value) {
+            int c = i >>> CHUNK_BITS;
+            if (!owned[c]) {
+                chunks[c] = chunks[c].clone();
+                owned[c] = true;
+            }
+            chunks[c][i & (CHUNK - 1)] = value;
+        }
+
+        void add(Object value) {
+            int c = size >>> CHUNK_BITS;
+            if (c == chunks.length) {
+                chunks = Arrays.copyOf(chunks, Math.max(4, c * 2));
+                owned = Arrays.copyOf(owned, chunks.length);
+            }
+            if (chunks[c] == null) {
+                chunks[c] = new Object[CHUNK];
+                owned[c] = true;
+            }
+            size++;
+            set(size - 1, value);
+        }
+
+        Object removeLast() {
+            Object value = get(size - 1);
+            set(size - 1, null);
+            size--;
+            return value;
+        }
+
+        Chunks freeze() {
+            return new Chunks(chunks, size);
+        }
+    }
+
+    // Read-only List view of a version's roads
+    private static class RoadList extends AbstractList<Edge> implements RandomAccess {
+        private final Chunks roads;
+
+        RoadList(Chunks roads) {
+            this.roads = roads;
+        }
+
+        @Override
+        public Edge get(int index) {
+            Objects.checkIndex(index, roads.size);
+            return (Edge) roads.get(index);
+        }
+
+        @Override
+        public int size() {
+            return roads.size;
+        }
+    }
+
+    // Read-only Map view of a version's adjacency, keyed by node ID
+    private class AdjacencyMap extends AbstractMap<Integer, List<Edge>> {
+        private final Chunks adjacency;
+
+        AdjacencyMap(Chunks adjacency) {
+            this.adjacency = adjacency;
+        }
+
+        @Override
+        public List<Edge> get(Object key) {
+            Integer slot = slotById.get(key);
+            return slot == null ? null : ((Adjacency) adjacency.get(slot)).list;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return slotById.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return nodes.size();
+        }
+
+        @Override
+        public Set<Entry<Integer, List<Edge>>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<Integer, List<Edge>>> iterator() {
+                    Iterator<Integer> ids = nodes.keySet().iterator();
+                    return new Iterator<>() {
+                        @Override
+                        public boolean hasNext() {
+                            return ids.hasNext();
+                        }
+
+                        @Override
+                        public Entry<Integer, List<Edge>> next() {
+                            int id = ids.next();
+                            return new SimpleImmutableEntry<>(id, get(id));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return nodes.size();
+                }
+            };
+        }
+    }
+}